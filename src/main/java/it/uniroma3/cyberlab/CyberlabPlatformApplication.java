@@ -2,8 +2,10 @@ package it.uniroma3.cyberlab;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class CyberlabPlatformApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,98 @@
+package it.uniroma3.cyberlab.config;
+
+/**
+ * Minificazione conservativa dei CSS per la pipeline delle risorse statiche.
+ * Rimuove commenti e spazi superflui senza mai toccare le stringhe.
+ * Gli script non passano di qui: distinguere regex e divisioni richiede un tokenizer completo,
+ * per il JavaScript bastano bundle e gzip.
+ */
+final class AssetMinifier {
+
+    private AssetMinifier() {
+    }
+
+    /**
+     * Minifica un foglio di stile: commenti rimossi, spazi compattati
+     */
+    static String minifyCss(String css) {
+        StringBuilder out = new StringBuilder(css.length());
+        int i = 0;
+        int length = css.length();
+        boolean pendingSpace = false;
+
+        while (i < length) {
+            char c = css.charAt(i);
+
+            // Commento /* ... */
+            if (c == '/' && i + 1 < length && css.charAt(i + 1) == '*') {
+                int end = css.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                continue;
+            }
+
+            // Stringhe copiate cosi' come sono
+            if (c == '"' || c == '\'') {
+                flushSpace(out, pendingSpace);
+                pendingSpace = false;
+                i = copyQuoted(css, i, c, out);
+                continue;
+            }
+
+            if (Character.isWhitespace(c)) {
+                pendingSpace = true;
+                i++;
+                continue;
+            }
+
+            if (c == '{' || c == '}' || c == ';' || c == ',') {
+                trimTrailingSpace(out);
+                out.append(c);
+                pendingSpace = false;
+                i++;
+                // Salta gli spazi dopo il separatore
+                while (i < length && Character.isWhitespace(css.charAt(i))) {
+                    i++;
+                }
+                continue;
+            }
+
+            flushSpace(out, pendingSpace);
+            pendingSpace = false;
+            out.append(c);
+            i++;
+        }
+
+        return out.toString().trim();
+    }
+
+    private static int copyQuoted(String source, int start, char quote, StringBuilder out) {
+        out.append(quote);
+        int i = start + 1;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            out.append(c);
+            i++;
+            if (c == '\\' && i < source.length()) {
+                out.append(source.charAt(i));
+                i++;
+            } else if (c == quote || c == '\n') {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static void flushSpace(StringBuilder out, boolean pendingSpace) {
+        if (pendingSpace && out.length() > 0) {
+            out.append(' ');
+        }
+    }
+
+    private static void trimTrailingSpace(StringBuilder out) {
+        int end = out.length();
+        while (end > 0 && (out.charAt(end - 1) == ' ' || out.charAt(end - 1) == '\t')) {
+            end--;
+        }
+        out.setLength(end);
+    }
+}
@@ -0,0 +1,146 @@
+package it.uniroma3.cyberlab.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.resource.AbstractResourceResolver;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolver che unisce i bundle dichiarati (CSS e JS) e minifica i CSS.
+ * Il risultato e' una risorsa in memoria su cui VersionResourceResolver calcola l'hash del contenuto.
+ */
+public class AssetPipelineResourceResolver extends AbstractResourceResolver {
+
+    private final Map<String, List<String>> bundles;
+    private final boolean minify;
+
+    public AssetPipelineResourceResolver(Map<String, List<String>> bundles, boolean minify) {
+        this.bundles = bundles;
+        this.minify = minify;
+    }
+
+    @Override
+    protected Resource resolveResourceInternal(@Nullable HttpServletRequest request, String requestPath,
+                                               List<? extends Resource> locations, ResourceResolverChain chain) {
+        List<String> members = bundles.get(requestPath);
+        if (members != null) {
+            return resolveBundle(request, requestPath, members, locations, chain);
+        }
+
+        Resource resource = chain.resolveResource(request, requestPath, locations);
+        if (resource == null || !minify || !isCss(requestPath)) {
+            return resource;
+        }
+
+        String content = read(resource);
+        return new PipelineResource(AssetMinifier.minifyCss(content), resource.getFilename(), lastModified(resource));
+    }
+
+    @Override
+    protected String resolveUrlPathInternal(String resourceUrlPath,
+                                            List<? extends Resource> locations, ResourceResolverChain chain) {
+        if (bundles.containsKey(resourceUrlPath)) {
+            return resourceUrlPath;
+        }
+        return chain.resolveUrlPath(resourceUrlPath, locations);
+    }
+
+    private Resource resolveBundle(@Nullable HttpServletRequest request, String bundlePath, List<String> members,
+                                   List<? extends Resource> locations, ResourceResolverChain chain) {
+        StringBuilder content = new StringBuilder();
+        // Script separati da ';': un file che finisce senza punto e virgola non si fonde col successivo
+        String separator = isCss(bundlePath) ? "\n" : "\n;\n";
+        long lastModified = 0;
+        List<String> missing = new ArrayList<>();
+
+        for (String member : members) {
+            Resource resource = chain.resolveResource(request, member, locations);
+            if (resource == null) {
+                missing.add(member);
+                continue;
+            }
+            content.append(read(resource)).append(separator);
+            lastModified = Math.max(lastModified, lastModified(resource));
+        }
+
+        if (!missing.isEmpty()) {
+            System.err.println("⚠️ Bundle " + bundlePath + ": risorse mancanti " + missing);
+        }
+        if (content.length() == 0) {
+            return null;
+        }
+
+        String body = minify && isCss(bundlePath) ? AssetMinifier.minifyCss(content.toString()) : content.toString();
+        String filename = bundlePath.substring(bundlePath.lastIndexOf('/') + 1);
+        return new PipelineResource(body, filename, lastModified);
+    }
+
+    private boolean isCss(String path) {
+        return path.endsWith(".css");
+    }
+
+    private String read(Resource resource) {
+        try {
+            return StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Impossibile leggere " + resource.getDescription(), e);
+        }
+    }
+
+    private long lastModified(Resource resource) {
+        try {
+            return resource.lastModified();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Risorsa generata dalla pipeline, con nome file e data di modifica dell'originale
+     */
+    static class PipelineResource extends ByteArrayResource {
+
+        private final String filename;
+        private final long lastModified;
+
+        PipelineResource(String content, String filename, long lastModified) {
+            this(content.getBytes(StandardCharsets.UTF_8), filename, lastModified);
+        }
+
+        PipelineResource(byte[] content, String filename, long lastModified) {
+            super(content, "asset pipeline [" + filename + "]");
+            this.filename = filename;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public String getFilename() {
+            return filename;
+        }
+
+        @Override
+        public long lastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package it.uniroma3.cyberlab.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.Nullable;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.servlet.resource.AbstractResourceResolver;
+import org.springframework.web.servlet.resource.HttpResource;
+import org.springframework.web.servlet.resource.ResourceResolverChain;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Produce la variante gzip delle risorse CSS/JS risolte.
+ * Va usato con il caching della resource chain: la compressione avviene una sola volta per risorsa.
+ */
+public class GzipResourceResolver extends AbstractResourceResolver {
+
+    @Override
+    protected Resource resolveResourceInternal(@Nullable HttpServletRequest request, String requestPath,
+                                               List<? extends Resource> locations, ResourceResolverChain chain) {
+        Resource resource = chain.resolveResource(request, requestPath, locations);
+        if (resource == null || request == null || !acceptsGzip(request) || !isCompressible(requestPath)) {
+            return resource;
+        }
+        return new GzippedResource(resource, gzip(resource));
+    }
+
+    @Override
+    protected String resolveUrlPathInternal(String resourceUrlPath,
+                                            List<? extends Resource> locations, ResourceResolverChain chain) {
+        return chain.resolveUrlPath(resourceUrlPath, locations);
+    }
+
+    private boolean acceptsGzip(HttpServletRequest request) {
+        String header = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return header != null && header.toLowerCase(Locale.ROOT).contains("gzip");
+    }
+
+    private boolean isCompressible(String path) {
+        return path.endsWith(".css") || path.endsWith(".js");
+    }
+
+    private byte[] gzip(Resource resource) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (InputStream in = resource.getInputStream(); GZIPOutputStream out = new GZIPOutputStream(buffer)) {
+            StreamUtils.copy(in, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Compressione fallita per " + resource.getDescription(), e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Variante compressa: mantiene nome file e header (es. ETag) della risorsa originale
+     */
+    static class GzippedResource extends AssetPipelineResourceResolver.PipelineResource implements HttpResource {
+
+        private final Resource original;
+
+        GzippedResource(Resource original, byte[] compressed) {
+            super(compressed, original.getFilename(), lastModifiedOf(original));
+            this.original = original;
+        }
+
+        @Override
+        public HttpHeaders getResponseHeaders() {
+            HttpHeaders headers = new HttpHeaders();
+            if (original instanceof HttpResource httpResource) {
+                headers.putAll(httpResource.getResponseHeaders());
+            }
+            headers.add(HttpHeaders.CONTENT_ENCODING, "gzip");
+            headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            return headers;
+        }
+
+        private static long lastModifiedOf(Resource resource) {
+            try {
+                return resource.lastModified();
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+    }
+}
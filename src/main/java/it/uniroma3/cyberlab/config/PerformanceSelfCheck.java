@@ -0,0 +1,124 @@
+package it.uniroma3.cyberlab.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.web.ServerProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Self-check all'avvio: stampa le impostazioni di performance effettive
+ * e segnala quelle non adatte alla produzione quando il profilo prod e' attivo
+ */
+@Component
+@ConditionalOnProperty(name = "cyberlab.startup.self-check.enabled", havingValue = "true", matchIfMissing = true)
+public class PerformanceSelfCheck {
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ServerProperties serverProperties;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void reportEffectiveSettings() {
+        boolean prod = environment.acceptsProfiles(Profiles.of("prod"));
+        List<String> warnings = new ArrayList<>();
+
+        System.out.println("=== CyberLab performance self-check ===");
+        System.out.println("Profili attivi: " + Arrays.toString(environment.getActiveProfiles()));
+
+        // Template
+        boolean templateCache = environment.getProperty("spring.thymeleaf.cache", Boolean.class, true);
+        System.out.println("Thymeleaf cache: " + templateCache);
+        if (prod && !templateCache) {
+            warnings.add("spring.thymeleaf.cache e' disabilitata");
+        }
+
+        // Hibernate
+        String batchSize = environment.getProperty("spring.jpa.properties.hibernate.jdbc.batch_size", "disabilitato");
+        boolean orderInserts = environment.getProperty("spring.jpa.properties.hibernate.order_inserts", Boolean.class, false);
+        boolean orderUpdates = environment.getProperty("spring.jpa.properties.hibernate.order_updates", Boolean.class, false);
+        boolean showSql = environment.getProperty("spring.jpa.show-sql", Boolean.class, false);
+        System.out.println("Hibernate batch_size: " + batchSize
+                + ", order_inserts: " + orderInserts + ", order_updates: " + orderUpdates
+                + ", show-sql: " + showSql);
+        if (prod && "disabilitato".equals(batchSize)) {
+            warnings.add("hibernate.jdbc.batch_size non configurato");
+        }
+        if (prod && showSql) {
+            warnings.add("spring.jpa.show-sql e' attivo");
+        }
+
+        // Connection pool
+        DataSource target = dataSource instanceof LazyConnectionDataSourceProxy proxy
+                ? proxy.getTargetDataSource() : dataSource;
+        if (target instanceof ReadReplicaRoutingDataSource routing) {
+            System.out.println("DataSource routing: " + routing.describe());
+        } else if (dataSource instanceof HikariDataSource hikari) {
+            System.out.println("Hikari pool '" + hikari.getPoolName() + "': max " + hikari.getMaximumPoolSize()
+                    + ", min idle " + hikari.getMinimumIdle()
+                    + ", connection timeout " + hikari.getConnectionTimeout() + "ms");
+        } else {
+            System.out.println("DataSource: " + dataSource.getClass().getSimpleName());
+        }
+
+        // Tomcat
+        ServerProperties.Tomcat.Threads threads = serverProperties.getTomcat().getThreads();
+        System.out.println("Tomcat threads: max " + threads.getMax() + ", min spare " + threads.getMinSpare()
+                + ", accept count " + serverProperties.getTomcat().getAcceptCount()
+                + ", max connections " + serverProperties.getTomcat().getMaxConnections());
+
+        // Compressione e cache statiche
+        boolean compression = serverProperties.getCompression().getEnabled();
+        String staticMaxAge = environment.getProperty("spring.web.resources.cache.cachecontrol.max-age", "nessuna");
+        System.out.println("Compressione HTTP: " + compression + ", cache risorse statiche: " + staticMaxAge);
+        if (prod && !compression) {
+            warnings.add("server.compression.enabled e' disattivato");
+        }
+
+        // DevTools
+        boolean devToolsPresent = isClassPresent("org.springframework.boot.devtools.restart.Restarter");
+        boolean devToolsRestart = environment.getProperty("spring.devtools.restart.enabled", Boolean.class, true);
+        System.out.println("DevTools nel classpath: " + devToolsPresent
+                + (devToolsPresent ? ", restart: " + devToolsRestart : ""));
+        if (prod && devToolsPresent && devToolsRestart) {
+            warnings.add("DevTools e' attivo");
+        }
+
+        // Errori
+        boolean includeException = environment.getProperty("server.error.include-exception", Boolean.class, false);
+        if (prod && includeException) {
+            warnings.add("server.error.include-exception espone i dettagli delle eccezioni");
+        }
+
+        if (warnings.isEmpty()) {
+            System.out.println("✅ Impostazioni di performance OK");
+        } else {
+            warnings.forEach(warning -> System.out.println("⚠️ " + warning));
+        }
+        System.out.println("=======================================");
+    }
+
+    private boolean isClassPresent(String className) {
+        try {
+            Class.forName(className, false, getClass().getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package it.uniroma3.cyberlab.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Routing primario/repliche, attivo solo con cyberlab.datasource.read-replicas.enabled=true.
+ * Senza questa proprieta' resta il DataSource singolo configurato da Spring Boot.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "cyberlab.datasource.read-replicas", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ReadReplicaProperties.class)
+public class ReadReplicaDataSourceConfig {
+
+    /**
+     * Pool del primario, configurato da spring.datasource.* e spring.datasource.hikari.*
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReadReplicaRoutingDataSource readReplicaRoutingDataSource(
+            @Qualifier("primaryDataSource") HikariDataSource primary, ReadReplicaProperties properties) {
+
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        int index = 0;
+        for (ReadReplicaProperties.Replica replica : properties.getReplicas()) {
+            String name = replica.getName() != null ? replica.getName() : "replica-" + index;
+            replicas.put(name, createReplicaPool(name, replica));
+            index++;
+        }
+
+        System.out.println("✅ Read replicas configured: " + replicas.keySet());
+        return new ReadReplicaRoutingDataSource(primary, replicas,
+                properties.getReadYourWritesWindow(), properties.getMaxLag(),
+                properties.getLagQuery(), properties.getHealthCheckInterval());
+    }
+
+    /**
+     * DataSource usato da JPA: la connessione reale viene presa solo al primo statement,
+     * quando il routing conosce gia' il flag readOnly della transazione
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadReplicaRoutingDataSource routingDataSource) {
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+
+    private HikariDataSource createReplicaPool(String name, ReadReplicaProperties.Replica replica) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("cyberlab-" + name);
+        dataSource.setJdbcUrl(replica.getUrl());
+        dataSource.setUsername(replica.getUsername());
+        dataSource.setPassword(replica.getPassword());
+        dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+        dataSource.setReadOnly(true);
+        // Avvio anche con replica spenta: ci pensa l'health check a escluderla
+        dataSource.setInitializationFailTimeout(-1);
+        return dataSource;
+    }
+}
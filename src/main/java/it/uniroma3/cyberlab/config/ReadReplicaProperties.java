@@ -0,0 +1,70 @@
+package it.uniroma3.cyberlab.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configurazione delle repliche in sola lettura (cyberlab.datasource.read-replicas.*)
+ */
+@ConfigurationProperties(prefix = "cyberlab.datasource.read-replicas")
+public class ReadReplicaProperties {
+
+    private boolean enabled = false;
+
+    private List<Replica> replicas = new ArrayList<>();
+
+    /** Dopo una scrittura la sessione legge dal primario almeno per questo intervallo */
+    private Duration readYourWritesWindow = Duration.ofSeconds(5);
+
+    /** Repliche con lag superiore vengono escluse dal routing */
+    private Duration maxLag = Duration.ofSeconds(10);
+
+    /** Query che ritorna il lag in secondi (vuota = lag non misurato, es. H2) */
+    private String lagQuery = "SELECT COALESCE(EXTRACT(EPOCH FROM (now() - pg_last_xact_replay_timestamp())), 0)";
+
+    private Duration healthCheckInterval = Duration.ofSeconds(10);
+
+    public boolean isEnabled() { return enabled; }
+    public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+    public List<Replica> getReplicas() { return replicas; }
+    public void setReplicas(List<Replica> replicas) { this.replicas = replicas; }
+
+    public Duration getReadYourWritesWindow() { return readYourWritesWindow; }
+    public void setReadYourWritesWindow(Duration readYourWritesWindow) { this.readYourWritesWindow = readYourWritesWindow; }
+
+    public Duration getMaxLag() { return maxLag; }
+    public void setMaxLag(Duration maxLag) { this.maxLag = maxLag; }
+
+    public String getLagQuery() { return lagQuery; }
+    public void setLagQuery(String lagQuery) { this.lagQuery = lagQuery; }
+
+    public Duration getHealthCheckInterval() { return healthCheckInterval; }
+    public void setHealthCheckInterval(Duration healthCheckInterval) { this.healthCheckInterval = healthCheckInterval; }
+
+    public static class Replica {
+        private String name;
+        private String url;
+        private String username;
+        private String password;
+        private int maximumPoolSize = 10;
+
+        public String getName() { return name; }
+        public void setName(String name) { this.name = name; }
+
+        public String getUrl() { return url; }
+        public void setUrl(String url) { this.url = url; }
+
+        public String getUsername() { return username; }
+        public void setUsername(String username) { this.username = username; }
+
+        public String getPassword() { return password; }
+        public void setPassword(String password) { this.password = password; }
+
+        public int getMaximumPoolSize() { return maximumPoolSize; }
+        public void setMaximumPoolSize(int maximumPoolSize) { this.maximumPoolSize = maximumPoolSize; }
+    }
+}
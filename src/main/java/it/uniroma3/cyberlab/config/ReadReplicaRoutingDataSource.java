@@ -0,0 +1,339 @@
+package it.uniroma3.cyberlab.config;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource che instrada le transazioni readOnly sulle repliche e tutto il resto sul primario.
+ * Va avvolto in un LazyConnectionDataSourceProxy, cosi' la connessione viene presa quando
+ * il flag readOnly della transazione e' gia' impostato.
+ *
+ * - read-your-writes: dopo il commit di una transazione che ha davvero eseguito una scrittura
+ *   (INSERT/UPDATE/DELETE arrivati al driver) la richiesta, e la sessione HTTP se esiste gia',
+ *   restano sul primario per la finestra configurata (o per il lag osservato, se maggiore).
+ *   Una transazione di scrittura che ha solo letto non sposta nulla e non crea sessioni.
+ * - lag: le repliche oltre il lag massimo vengono escluse
+ * - failover: repliche non raggiungibili vengono escluse fino al prossimo health check positivo
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    public static final String PRIMARY = "primary";
+
+    static final String LAST_WRITE_ATTRIBUTE = ReadReplicaRoutingDataSource.class.getName() + ".LAST_WRITE";
+
+    private static final Object WRITE_MARKER = new Object();
+
+    // Metodi JDBC che eseguono sempre una modifica
+    private static final Set<String> UPDATE_METHODS = Set.of("executeUpdate", "executeLargeUpdate",
+            "executeBatch", "executeLargeBatch");
+
+    private final DataSource primary;
+    private final Map<String, DataSource> replicas;
+    private final Map<String, ReplicaState> states = new LinkedHashMap<>();
+    private final long readYourWritesWindowMillis;
+    private final long maxLagMillis;
+    private final String lagQuery;
+    private final Duration healthCheckInterval;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private ScheduledExecutorService healthChecker;
+
+    public ReadReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicas,
+                                        Duration readYourWritesWindow, Duration maxLag,
+                                        String lagQuery, Duration healthCheckInterval) {
+        this.primary = primary;
+        this.replicas = new LinkedHashMap<>(replicas);
+        this.readYourWritesWindowMillis = readYourWritesWindow.toMillis();
+        this.maxLagMillis = maxLag.toMillis();
+        this.lagQuery = lagQuery != null && !lagQuery.isBlank() ? lagQuery : null;
+        this.healthCheckInterval = healthCheckInterval;
+
+        Map<Object, Object> targets = new HashMap<>(this.replicas);
+        targets.put(PRIMARY, primary);
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        this.replicas.keySet().forEach(name -> states.put(name, new ReplicaState()));
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        if (!replicas.isEmpty() && healthCheckInterval != null && !healthCheckInterval.isZero()) {
+            healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replica-health-check");
+                thread.setDaemon(true);
+                return thread;
+            });
+            healthChecker.scheduleWithFixedDelay(this::checkReplicas, 0,
+                    healthCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+        if (isPinnedToPrimary()) {
+            return PRIMARY;
+        }
+        String replica = selectReplica();
+        return replica != null ? replica : PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (PRIMARY.equals(key)) {
+            return trackWrites(primary.getConnection());
+        }
+        try {
+            return replicas.get(key).getConnection();
+        } catch (SQLException e) {
+            markUnhealthy((String) key, e);
+            return primary.getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (PRIMARY.equals(key)) {
+            return trackWrites(primary.getConnection(username, password));
+        }
+        try {
+            return replicas.get(key).getConnection(username, password);
+        } catch (SQLException e) {
+            markUnhealthy((String) key, e);
+            return primary.getConnection(username, password);
+        }
+    }
+
+    /**
+     * Esegue subito un health check di tutte le repliche
+     */
+    public void checkReplicas() {
+        replicas.forEach((name, dataSource) -> {
+            ReplicaState state = states.get(name);
+            try (Connection connection = dataSource.getConnection()) {
+                if (!connection.isValid(2)) {
+                    throw new SQLException("connessione non valida");
+                }
+                state.lagMillis = measureLag(connection);
+                if (!state.healthy) {
+                    System.out.println("✅ Replica " + name + " di nuovo disponibile");
+                }
+                state.healthy = true;
+            } catch (SQLException e) {
+                markUnhealthy(name, e);
+            }
+        });
+    }
+
+    /**
+     * Descrizione dello stato corrente, usata dal self-check all'avvio
+     */
+    public String describe() {
+        List<String> parts = new ArrayList<>();
+        states.forEach((name, state) -> parts.add(name + (state.healthy ? " UP" : " DOWN")
+                + (state.lagMillis > 0 ? " lag " + state.lagMillis + "ms" : "")));
+        return "primario + repliche " + parts + ", read-your-writes " + readYourWritesWindowMillis
+                + "ms, lag massimo " + maxLagMillis + "ms";
+    }
+
+    public boolean isReplicaHealthy(String name) {
+        ReplicaState state = states.get(name);
+        return state != null && state.healthy;
+    }
+
+    @Override
+    public void destroy() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+        for (DataSource dataSource : replicas.values()) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    System.err.println("Errore chiusura replica: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private String selectReplica() {
+        List<String> candidates = new ArrayList<>(states.size());
+        states.forEach((name, state) -> {
+            if (state.healthy && state.lagMillis <= maxLagMillis) {
+                candidates.add(name);
+            }
+        });
+        if (candidates.isEmpty()) {
+            return null;
+        }
+        int index = Math.floorMod(nextReplica.getAndIncrement(), candidates.size());
+        return candidates.get(index);
+    }
+
+    private boolean isPinnedToPrimary() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return false;
+        }
+        if (attributes.getAttribute(LAST_WRITE_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+            return true;
+        }
+        Object lastWrite = attributes.getAttribute(LAST_WRITE_ATTRIBUTE, RequestAttributes.SCOPE_SESSION);
+        if (lastWrite instanceof Long timestamp) {
+            long window = Math.max(readYourWritesWindowMillis, currentMaxLag());
+            return System.currentTimeMillis() - timestamp < window;
+        }
+        return false;
+    }
+
+    private long currentMaxLag() {
+        long lag = 0;
+        for (ReplicaState state : states.values()) {
+            if (state.healthy) {
+                lag = Math.max(lag, state.lagMillis);
+            }
+        }
+        return lag;
+    }
+
+    /**
+     * Connessione del primario in una transazione di scrittura: gli statement segnalano le modifiche eseguite
+     */
+    private Connection trackWrites(Connection connection) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement statement) {
+                        String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                        return trackStatement(statement, sql);
+                    }
+                    return result;
+                });
+    }
+
+    private Statement trackStatement(Statement statement, String preparedSql) {
+        Class<?> type = statement instanceof CallableStatement ? CallableStatement.class
+                : statement instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        InvocationHandler handler = (proxy, method, args) -> {
+            String name = method.getName();
+            if (UPDATE_METHODS.contains(name)) {
+                registerWriteMarker();
+            } else if (name.equals("execute")) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String text ? text : preparedSql;
+                if (isWriteStatement(sql)) {
+                    registerWriteMarker();
+                }
+            }
+            return invoke(statement, method, args);
+        };
+        return (Statement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    static boolean isWriteStatement(String sql) {
+        if (sql == null) {
+            return false;
+        }
+        String head = sql.stripLeading().toLowerCase(Locale.ROOT);
+        return head.startsWith("insert") || head.startsWith("update") || head.startsWith("delete")
+                || head.startsWith("merge");
+    }
+
+    private static void registerWriteMarker() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()
+                || TransactionSynchronizationManager.hasResource(WRITE_MARKER)) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(WRITE_MARKER, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+                if (attributes == null) {
+                    return;
+                }
+                attributes.setAttribute(LAST_WRITE_ATTRIBUTE, Boolean.TRUE, RequestAttributes.SCOPE_REQUEST);
+                // Solo sessioni gia' esistenti: una scrittura anonima (es. contatore visite) non crea sessioni
+                if (attributes instanceof ServletRequestAttributes servletAttributes
+                        && servletAttributes.getRequest().getSession(false) != null) {
+                    attributes.setAttribute(LAST_WRITE_ATTRIBUTE, System.currentTimeMillis(),
+                            RequestAttributes.SCOPE_SESSION);
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(WRITE_MARKER);
+            }
+        });
+    }
+
+    private long measureLag(Connection connection) throws SQLException {
+        if (lagQuery == null) {
+            return 0;
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            return resultSet.next() ? Math.round(resultSet.getDouble(1) * 1000) : 0;
+        }
+    }
+
+    private void markUnhealthy(String name, Exception cause) {
+        ReplicaState state = states.get(name);
+        if (state != null && state.healthy) {
+            System.err.println("⚠️ Replica " + name + " esclusa dal routing: " + cause.getMessage());
+            state.healthy = false;
+        }
+    }
+
+    private static class ReplicaState {
+        volatile boolean healthy = true;
+        volatile long lagMillis = 0;
+    }
+}
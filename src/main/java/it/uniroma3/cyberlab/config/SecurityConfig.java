@@ -1,11 +1,16 @@
 package it.uniroma3.cyberlab.config;
 
+import it.uniroma3.cyberlab.security.CachingPersistentTokenRepository;
 import it.uniroma3.cyberlab.security.CustomUserDetailsService;
 import it.uniroma3.cyberlab.security.CustomAuthenticationSuccessHandler;
+import it.uniroma3.cyberlab.security.PersistentRememberMeServices;
+import it.uniroma3.cyberlab.security.TtlUserCache;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.CachingUserDetailsService;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -15,6 +20,11 @@ import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.security.SpringSessionBackedSessionRegistry;
+
+import java.time.Duration;
 
 @Configuration
 @EnableWebSecurity
@@ -24,6 +34,22 @@ public class SecurityConfig {
     @Autowired
     private CustomUserDetailsService userDetailsService;
 
+    @Autowired
+    private CachingPersistentTokenRepository rememberMeTokenRepository;
+
+    @Autowired
+    private TtlUserCache userCache;
+
+    @Value("${cyberlab.remember-me.key}")
+    private String rememberMeKey;
+
+    @Value("${cyberlab.remember-me.token-validity:7d}")
+    private Duration rememberMeValidity;
+
+    // Sessioni su JDBC (o Redis con il profilo Maven session-redis): indicizzate per username
+    @Autowired
+    private FindByIndexNameSessionRepository<? extends Session> sessionRepository;
+
     @Bean
     public PasswordEncoder passwordEncoder() {
         return new BCryptPasswordEncoder();
@@ -42,11 +68,35 @@ public class SecurityConfig {
         return config.getAuthenticationManager();
     }
 
+    /**
+     * "Ricordami" con token persistenti (serie + token ruotato); utenti caricati per username esatto
+     * tramite la cache a scadenza
+     */
+    @Bean
+    public PersistentRememberMeServices rememberMeServices() {
+        CachingUserDetailsService cachingUserDetailsService =
+                new CachingUserDetailsService(userDetailsService::loadUserByExactUsername);
+        cachingUserDetailsService.setUserCache(userCache);
+
+        PersistentRememberMeServices services = new PersistentRememberMeServices(
+                rememberMeKey, cachingUserDetailsService, rememberMeTokenRepository);
+        services.setTokenValiditySeconds((int) rememberMeValidity.toSeconds());
+        return services;
+    }
+
     @Bean
     public AuthenticationSuccessHandler customAuthenticationSuccessHandler() {
         return new CustomAuthenticationSuccessHandler();
     }
 
+    /**
+     * Registro delle sessioni condiviso tra i nodi: il limite di sessioni per utente vale su tutto il cluster
+     */
+    @Bean
+    public SpringSessionBackedSessionRegistry<? extends Session> sessionRegistry() {
+        return new SpringSessionBackedSessionRegistry<>(sessionRepository);
+    }
+
     @Bean
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         http.authenticationProvider(authenticationProvider());
@@ -59,6 +109,7 @@ public class SecurityConfig {
                 
                 // Authentication pages
                 .requestMatchers("/login", "/register", "/forgot-password").permitAll()
+                .requestMatchers("/check-username", "/check-email").permitAll()
                 
                 // Static resources
                 .requestMatchers("/css/**", "/js/**", "/images/**", "/favicon.ico").permitAll()
@@ -106,14 +157,13 @@ public class SecurityConfig {
                 .logoutUrl("/logout")
                 .logoutSuccessUrl("/home?logout")
                 .invalidateHttpSession(true)
-                .deleteCookies("JSESSIONID")
+                .deleteCookies("SESSION")
                 .permitAll()
         );
 
         http.rememberMe(remember -> remember
-                .key("CyberLabRememberMeKey")
-                .userDetailsService(userDetailsService)
-                .tokenValiditySeconds(86400 * 7) // 7 days
+                .key(rememberMeKey)
+                .rememberMeServices(rememberMeServices())
         );
 
         // CSRF protection (enabled for forms, disabled for API)
@@ -125,6 +175,7 @@ public class SecurityConfig {
         http.sessionManagement(session -> session
                 .maximumSessions(3)
                 .maxSessionsPreventsLogin(false)
+                .sessionRegistry(sessionRegistry())
         );
 
         // Security headers
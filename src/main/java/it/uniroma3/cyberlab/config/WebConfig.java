@@ -1,22 +1,78 @@
 package it.uniroma3.cyberlab.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    /**
+     * Bundle CSS serviti come singola risorsa: nome del bundle -> file sorgente in ordine
+     */
+    static final Map<String, List<String>> CSS_BUNDLES = Map.of(
+            "core.css", List.of("base.css", "components.css")
+    );
+
+    /**
+     * Bundle JS: script che le pagine caricano sempre insieme
+     */
+    static final Map<String, List<String>> JS_BUNDLES = Map.of(
+            "home.js", List.of("app.js", "homepage.js")
+    );
+
+    @Value("${cyberlab.assets.cache:true}")
+    private boolean cacheAssets;
+
+    @Value("${cyberlab.assets.minify:true}")
+    private boolean minifyAssets;
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         // ✅ Handler per avatar uploads
         String uploadPath = Paths.get("uploads").toAbsolutePath().toUri().toString();
-        
+
         registry.addResourceHandler("/uploads/**")
                 .addResourceLocations(uploadPath)
                 .setCachePeriod(3600); // Cache per 1 ora
-        
+
+        // ✅ Pipeline CSS/JS: bundle + minify CSS, nome con hash del contenuto, gzip, cache immutabile
+        registerAssetPipeline(registry, "/css/**", "classpath:/static/css/", CSS_BUNDLES);
+        registerAssetPipeline(registry, "/js/**", "classpath:/static/js/", JS_BUNDLES);
+
         System.out.println("✅ Avatar uploads configured: " + uploadPath);
     }
-}
\ No newline at end of file
+
+    private void registerAssetPipeline(ResourceHandlerRegistry registry, String pattern, String location,
+                                       Map<String, List<String>> bundles) {
+        registry.addResourceHandler(pattern)
+                .addResourceLocations(location)
+                .setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable())
+                .resourceChain(cacheAssets)
+                .addResolver(new GzipResourceResolver())
+                .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"))
+                .addResolver(new AssetPipelineResourceResolver(bundles, minifyAssets));
+    }
+
+    /**
+     * Riscrive gli URL @{/css/...} e @{/js/...} dei template con la versione hash
+     */
+    @Bean
+    public FilterRegistrationBean<ResourceUrlEncodingFilter> resourceUrlEncodingFilter() {
+        FilterRegistrationBean<ResourceUrlEncodingFilter> registration =
+                new FilterRegistrationBean<>(new ResourceUrlEncodingFilter());
+        registration.addUrlPatterns("/*");
+        return registration;
+    }
+}
@@ -1,13 +1,15 @@
 package it.uniroma3.cyberlab.controller;
 
+import it.uniroma3.cyberlab.entity.BackgroundJob;
 import it.uniroma3.cyberlab.entity.Category;
 import it.uniroma3.cyberlab.entity.User;
-import it.uniroma3.cyberlab.security.CustomUserPrincipal;
+import it.uniroma3.cyberlab.security.SecurityUtils;
+import it.uniroma3.cyberlab.service.BackgroundJobService;
 import it.uniroma3.cyberlab.service.CategoryService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
@@ -27,6 +29,9 @@ public class AdminCategoryController {
     @Autowired
     private CategoryService categoryService;
 
+    @Autowired
+    private BackgroundJobService backgroundJobService;
+
     /**
      * Pagina di gestione categorie
      */
@@ -56,12 +61,10 @@ public class AdminCategoryController {
     public String createCategory(@RequestParam String name,
                                @RequestParam(required = false) String description,
                                @RequestParam(defaultValue = "#6c757d") String color,
-                               Authentication auth,
                                RedirectAttributes redirectAttributes) {
         try {
-            // Ottieni l'utente dal CustomUserPrincipal
-            CustomUserPrincipal userPrincipal = (CustomUserPrincipal) auth.getPrincipal();
-            User admin = userPrincipal.getUser(); // Assumendo che CustomUserPrincipal abbia un metodo getUser()
+            // Ottieni l'utente corrente
+            User admin = SecurityUtils.getCurrentUser();
             
             // Validazione base
             if (name == null || name.trim().isEmpty()) {
@@ -103,12 +106,10 @@ public class AdminCategoryController {
                                @RequestParam String name,
                                @RequestParam(required = false) String description,
                                @RequestParam(defaultValue = "#6c757d") String color,
-                               Authentication auth,
                                RedirectAttributes redirectAttributes) {
         try {
-            // Ottieni l'utente dal CustomUserPrincipal
-            CustomUserPrincipal userPrincipal = (CustomUserPrincipal) auth.getPrincipal();
-            User admin = userPrincipal.getUser();
+            // Ottieni l'utente corrente
+            User admin = SecurityUtils.getCurrentUser();
             
             // Validazione base
             if (name == null || name.trim().isEmpty()) {
@@ -148,12 +149,10 @@ public class AdminCategoryController {
      */
     @DeleteMapping("/{id}")
     public String deleteCategory(@PathVariable Long id,
-                               Authentication auth,
                                RedirectAttributes redirectAttributes) {
         try {
-            // Ottieni l'utente dal CustomUserPrincipal
-            CustomUserPrincipal userPrincipal = (CustomUserPrincipal) auth.getPrincipal();
-            User admin = userPrincipal.getUser();
+            // Ottieni l'utente corrente
+            User admin = SecurityUtils.getCurrentUser();
             
             // Trova categoria per ottenere il nome prima di eliminarla
             Category category = categoryService.findById(id);
@@ -219,21 +218,19 @@ public class AdminCategoryController {
     @GetMapping("/{fromId}/move-to/{toId}")
     public String moveCategoryContent(@PathVariable Long fromId,
                                     @PathVariable Long toId,
-                                    Authentication auth,
                                     RedirectAttributes redirectAttributes) {
         try {
-            // Ottieni l'utente dal CustomUserPrincipal
-            CustomUserPrincipal userPrincipal = (CustomUserPrincipal) auth.getPrincipal();
-            User admin = userPrincipal.getUser();
+            // Ottieni l'utente corrente
+            User admin = SecurityUtils.getCurrentUser();
             
             Category fromCategory = categoryService.findById(fromId);
             Category toCategory = categoryService.findById(toId);
             
-            categoryService.moveCategoryContent(fromId, toId, admin);
+            BackgroundJob job = categoryService.moveCategoryContent(fromId, toId, admin);
             
             redirectAttributes.addFlashAttribute("successMessage", 
-                "Content moved successfully from '" + fromCategory.getName() + 
-                "' to '" + toCategory.getName() + "'");
+                "Moving " + job.getTotalItems() + " items from '" + fromCategory.getName() + 
+                "' to '" + toCategory.getName() + "' in background (job #" + job.getId() + ")");
                 
         } catch (RuntimeException e) {
             redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
@@ -245,6 +242,32 @@ public class AdminCategoryController {
         return "redirect:/admin/categories";
     }
 
+    /**
+     * Stato di un job di spostamento contenuti
+     */
+    @GetMapping("/jobs/{jobId}")
+    @ResponseBody
+    public ResponseEntity<BackgroundJob> migrationJobStatus(@PathVariable Long jobId) {
+        try {
+            BackgroundJob job = backgroundJobService.findById(jobId);
+            if (job.getJobType() != BackgroundJob.JobType.CATEGORY_MIGRATION) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(job);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Ultimi job di spostamento contenuti
+     */
+    @GetMapping("/jobs")
+    @ResponseBody
+    public List<BackgroundJob> migrationJobs() {
+        return backgroundJobService.findRecentJobs(BackgroundJob.JobType.CATEGORY_MIGRATION);
+    }
+
     /**
      * API endpoint per ricerca categorie (opzionale)
      */
@@ -1,15 +1,20 @@
 package it.uniroma3.cyberlab.controller;
 
 import it.uniroma3.cyberlab.entity.User;
+import it.uniroma3.cyberlab.service.AvailabilityCheckService;
 import it.uniroma3.cyberlab.service.UserService;
 import it.uniroma3.cyberlab.security.SecurityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.web.csrf.CsrfToken;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 
 @Controller
@@ -18,6 +23,20 @@ public class AuthController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private AvailabilityCheckService availabilityCheckService;
+
+    /**
+     * Token CSRF caricato prima del rendering: i form di login e registrazione stanno oltre i primi 8KB della pagina
+     * e la sessione (salvata su database) va creata prima che la risposta inizi a partire, altrimenti manca il cookie
+     */
+    @ModelAttribute
+    public void loadCsrfToken(CsrfToken csrfToken) {
+        if (csrfToken != null) {
+            csrfToken.getToken();
+        }
+    }
+
     /**
      * Pagina di login - URL: /login
      */
@@ -78,7 +97,9 @@ public class AuthController {
         model.addAttribute("pageTitle", "Register");
         
         // Validazione custom usando UserService
-        if (!userService.isUsernameAvailable(request.getUsername())) {
+        if (request.getUsername() != null && request.getUsername().indexOf('@') >= 0) {
+            bindingResult.rejectValue("username", "username.invalid", "Username cannot contain '@'!");
+        } else if (!userService.isUsernameAvailable(request.getUsername())) {
             bindingResult.rejectValue("username", "username.exists", "Username already exists!");
         }
         
@@ -156,11 +177,15 @@ public class AuthController {
 
     /**
      * Verifica disponibilità username (AJAX) - URL: /check-username
+     * Limite per IP del client: in produzione getRemoteAddr() lo ricava da X-Forwarded-For del proxy fidato
      */
     @GetMapping("/check-username")
     @ResponseBody
-    public boolean checkUsername(@RequestParam String username) {
-        return userService.isUsernameAvailable(username);
+    public ResponseEntity<Boolean> checkUsername(@RequestParam String username, HttpServletRequest request) {
+        if (!availabilityCheckService.tryAcquire(request.getRemoteAddr())) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        return ResponseEntity.ok(userService.isUsernameAvailable(username));
     }
 
     /**
@@ -168,8 +193,11 @@ public class AuthController {
      */
     @GetMapping("/check-email")
     @ResponseBody
-    public boolean checkEmail(@RequestParam String email) {
-        return userService.isEmailAvailable(email);
+    public ResponseEntity<Boolean> checkEmail(@RequestParam String email, HttpServletRequest request) {
+        if (!availabilityCheckService.tryAcquire(request.getRemoteAddr())) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        return ResponseEntity.ok(userService.isEmailAvailable(email));
     }
 
     /**
@@ -2,9 +2,9 @@ package it.uniroma3.cyberlab.controller;
 
 import it.uniroma3.cyberlab.entity.*;
 import it.uniroma3.cyberlab.repository.CommentRepository;
-import it.uniroma3.cyberlab.repository.ReportRepository;
 import it.uniroma3.cyberlab.service.CommentService;
 import it.uniroma3.cyberlab.service.PostService;
+import it.uniroma3.cyberlab.service.ReportService;
 import it.uniroma3.cyberlab.security.SecurityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
@@ -23,6 +23,9 @@ import java.util.Map;
 @RequestMapping("/comments")
 public class CommentController {
 
+    // Righe massime delle liste (i totali arrivano da COUNT)
+    private static final int LIST_LIMIT = 100;
+
     @Autowired
     private CommentService commentService;
     
@@ -31,7 +34,7 @@ public class CommentController {
 
     // --- DIPENDENZE AGGIUNTE ---
     @Autowired
-    private ReportRepository reportRepository;
+    private ReportService reportService;
 
     @Autowired
     private CommentRepository commentRepository;
@@ -229,30 +232,9 @@ public class CommentController {
                 return ResponseEntity.ok(response);
             }
 
-            // Controlla se l'utente ha già segnalato questo commento
-            boolean alreadyReported = reportRepository.existsByCommentAndReportedBy(commentToReport, currentUser);
-            if (alreadyReported) {
-                response.put("success", false);
-                response.put("message", "You have already reported this comment.");
-                return ResponseEntity.ok(response);
-            }
-
-            // Crea e salva la nuova segnalazione
-            Report newReport = new Report();
-            newReport.setComment(commentToReport);
-            newReport.setReportedBy(currentUser);
-            newReport.setReason(reason);
-            if (details != null && !details.trim().isEmpty()) {
-                newReport.setAdditionalDetails(details.trim());
-            }
-            reportRepository.save(newReport);
-
-            // Aggiorna lo stato del commento
-            if(commentToReport.getReportCount() != null){
-                commentToReport.incrementReportCount();
-            }
-            commentToReport.setIsReported(true);
-            commentRepository.save(commentToReport);
+            // Dedup per utente, aggregazione nel caso e contatore sul commento
+            String trimmedDetails = details != null && !details.trim().isEmpty() ? details.trim() : null;
+            reportService.reportComment(id, currentUser, reason, trimmedDetails);
             
             response.put("success", true);
             response.put("message", "Comment reported successfully. Thank you for keeping our community safe.");
@@ -277,11 +259,11 @@ public class CommentController {
             return "redirect:/auth/login";
         }
         
-        List<Comment> userComments = commentService.findCommentsByUser(currentUser);
+        List<Comment> userComments = commentService.findUserComments(currentUser, LIST_LIMIT);
         
         model.addAttribute("comments", userComments);
         model.addAttribute("pageTitle", "My Comments");
-        model.addAttribute("totalComments", userComments.size());
+        model.addAttribute("totalComments", commentService.countCommentsByUser(currentUser));
         
         return "comments/my-comments";
     }
@@ -293,11 +275,11 @@ public class CommentController {
     @PreAuthorize("hasRole('ADMIN')")
     public String reportedComments(Model model) {
         
-        List<Comment> reportedComments = commentService.findReportedComments();
+        List<Comment> reportedComments = commentService.findReportedComments(LIST_LIMIT);
         
         model.addAttribute("comments", reportedComments);
         model.addAttribute("pageTitle", "Reported Comments");
-        model.addAttribute("totalReported", reportedComments.size());
+        model.addAttribute("totalReported", commentRepository.countReportedComments());
         
         return "admin/reported-comments";
     }
@@ -5,10 +5,27 @@ import it.uniroma3.cyberlab.service.UserService;
 import it.uniroma3.cyberlab.service.PostService;
 import it.uniroma3.cyberlab.service.LabService;
 import it.uniroma3.cyberlab.service.CommentService;
+import it.uniroma3.cyberlab.service.BackgroundJobService;
+import it.uniroma3.cyberlab.service.LabAnalyticsService;
+import it.uniroma3.cyberlab.service.ReportService;
+import it.uniroma3.cyberlab.service.ActivityTimelineService;
+import it.uniroma3.cyberlab.service.ActivityTimelineService.ActivityItem;
+import it.uniroma3.cyberlab.service.DataExportLimiter;
+import it.uniroma3.cyberlab.service.DataExportService;
+import it.uniroma3.cyberlab.service.DataExportService.Format;
+import it.uniroma3.cyberlab.service.DataExportService.Section;
 import it.uniroma3.cyberlab.repository.*;
 import it.uniroma3.cyberlab.security.SecurityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -16,7 +33,10 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -29,6 +49,8 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.http.ResponseEntity;
@@ -36,6 +58,9 @@ import org.springframework.http.ResponseEntity;
 @Controller
 public class DashboardController {
 
+    // Voci per pagina della cronologia attivita'
+    private static final int ACTIVITY_PAGE_SIZE = 20;
+
     @Autowired
     private UserService userService;
     
@@ -51,8 +76,26 @@ public class DashboardController {
     @Autowired
     private ReportRepository reportRepository;
     
+    @Autowired
+    private ReportService reportService;
+    
     @Autowired
     private CategoryRepository categoryRepository;
+    
+    @Autowired
+    private BackgroundJobService backgroundJobService;
+
+    @Autowired
+    private LabAnalyticsService labAnalyticsService;
+
+    @Autowired
+    private ActivityTimelineService activityTimelineService;
+
+    @Autowired
+    private DataExportService dataExportService;
+    
+    @Autowired
+    private DataExportLimiter dataExportLimiter;
 
     /**
      * Dashboard principale - redirect in base al ruolo
@@ -138,10 +181,12 @@ public class DashboardController {
             if (adminStats != null) {
                 stats.put("totalUsers", adminStats.getTotalUsers());
                 stats.put("activeUsers", adminStats.getActiveUsers());
+                stats.put("bannedUsers", adminStats.getBannedUsers());
                 stats.put("newUsersThisMonth", adminStats.getNewUsersThisMonth());
             } else {
                 stats.put("totalUsers", 0L);
                 stats.put("activeUsers", 0L);
+                stats.put("bannedUsers", 0L);
                 stats.put("newUsersThisMonth", 0L);
             }
             
@@ -161,16 +206,16 @@ public class DashboardController {
             stats.put("newUsersToday", 0L);
             stats.put("totalCompletions", 0L);
             stats.put("postsToday", 0L);
-            stats.put("bannedUsers", 0L);
             stats.put("verifiedUsers", 0L);
             stats.put("uptime", "99.9%");
             stats.put("dbSize", "2.3 GB");
             stats.put("storageUsed", "45.2 GB");
             
-            // Calcola pendingReports
+            // Calcola pendingReports (casi aperti, non singole segnalazioni)
+            long openCases = 0L;
             try {
-                Long pendingCount = reportRepository.countByStatus(Report.ReportStatus.PENDING);
-                stats.put("pendingReports", pendingCount != null ? pendingCount : 0L);
+                openCases = reportService.getCaseStatistics().getOpenCases();
+                stats.put("pendingReports", openCases);
             } catch (Exception e) {
                 stats.put("pendingReports", 0L);
             }
@@ -179,10 +224,8 @@ public class DashboardController {
             
             // Recent Reports
             try {
-                List<Report> recentReports = reportRepository.findByStatusOrderByCreatedDateAsc(Report.ReportStatus.PENDING);
-                if (recentReports.size() > 5) {
-                    recentReports = recentReports.subList(0, 5);
-                }
+                List<Report> recentReports = reportRepository.findByStatusOrderByCreatedDateAsc(
+                        Report.ReportStatus.PENDING, PageRequest.of(0, 5));
                 model.addAttribute("recentReports", recentReports);
             } catch (Exception e) {
                 model.addAttribute("recentReports", new ArrayList<>());
@@ -214,12 +257,10 @@ public class DashboardController {
             }
             
             // Variabili aggiuntive per compatibilità
-            List<Report> pendingReportsList = reportRepository.findByStatusOrderByCreatedDateAsc(Report.ReportStatus.PENDING);
-            if (pendingReportsList.size() > 10) {
-                pendingReportsList = pendingReportsList.subList(0, 10);
-            }
+            List<Report> pendingReportsList = reportRepository.findByStatusOrderByCreatedDateAsc(
+                    Report.ReportStatus.PENDING, PageRequest.of(0, 10));
             model.addAttribute("pendingReportsList", pendingReportsList);
-            model.addAttribute("pendingReports", pendingReportsList.size());
+            model.addAttribute("pendingReports", openCases);
             
             List<Post> popularPosts = postService.getMostViewedPosts(5);
             model.addAttribute("popularPosts", popularPosts);
@@ -310,29 +351,107 @@ public class DashboardController {
     }
 
     /**
-     * Attività recente dell'utente
+     * Attività dell'utente: cronologia a pagine di post, commenti e lab
      */
     @GetMapping("/activity")
     @PreAuthorize("hasRole('USER')")
     public String userActivity(@RequestParam(defaultValue = "0") int page, Model model) {
-        User currentUser = SecurityUtils.getCurrentUser();
-        if (currentUser == null) {
+        Long userId = SecurityUtils.getCurrentUserId();
+        if (userId == null) {
             return "redirect:/auth/login";
         }
         
         model.addAttribute("pageTitle", "My Activity");
-        model.addAttribute("user", currentUser);
         
-        List<Post> userPosts = postService.findUserPosts(currentUser, -1);
-        model.addAttribute("userPosts", userPosts);
+        Slice<ActivityItem> activity = activityTimelineService.getTimeline(userId, page, ACTIVITY_PAGE_SIZE);
+        model.addAttribute("activity", activity.getContent());
+        model.addAttribute("currentPage", activity.getNumber());
+        model.addAttribute("hasNext", activity.hasNext());
+        model.addAttribute("hasPrevious", activity.hasPrevious());
+        
+        return "activity/user";
+    }
+
+    /**
+     * Download dei dati personali - URL: /profile/export?format=ndjson|csv|zip&section=posts
+     * Il file viene scritto in streaming: section e' obbligatoria per il CSV, facoltativa per l'NDJSON.
+     * La scrittura gira sul pool dedicato di DataExportLimiter, con il suo timeout (non quello globale delle
+     * richieste asincrone); 429 se l'utente o il server hanno gia' troppi export in corso.
+     * Il corpo e' scritto direttamente sulla risposta: @ResponseBody evita la ricerca di una vista a fine download
+     */
+    @GetMapping("/profile/export")
+    @PreAuthorize("hasRole('USER')")
+    @ResponseBody
+    public WebAsyncTask<Void> exportPersonalData(@RequestParam(defaultValue = "zip") String format,
+                                                 @RequestParam(required = false) String section,
+                                                 HttpServletResponse response) {
+        Long userId = SecurityUtils.getCurrentUserId();
+        String username = SecurityUtils.getCurrentUsername();
+        if (userId == null) {
+            response.setStatus(HttpStatus.UNAUTHORIZED.value());
+            return null;
+        }
+        
+        Format exportFormat;
+        Section exportSection;
+        try {
+            exportFormat = Format.valueOf(format.trim().toUpperCase());
+            exportSection = section != null ? Section.valueOf(section.trim().toUpperCase()) : null;
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            return null;
+        }
+        if (exportFormat == Format.CSV && exportSection == null) {
+            response.setStatus(HttpStatus.BAD_REQUEST.value());
+            return null;
+        }
         
-        List<Comment> userComments = commentService.findCommentsByUser(currentUser);
-        model.addAttribute("userComments", userComments);
+        String fileName = "cyberlab-" + username + (exportSection != null ? "-" + exportSection.getFileName() : "");
+        MediaType contentType;
+        StreamingResponseBody body;
+        switch (exportFormat) {
+            case NDJSON -> {
+                fileName += ".ndjson";
+                contentType = MediaType.parseMediaType("application/x-ndjson");
+                body = out -> dataExportService.exportNdjson(userId, exportSection, out);
+            }
+            case CSV -> {
+                fileName += ".csv";
+                contentType = MediaType.parseMediaType("text/csv;charset=UTF-8");
+                body = out -> dataExportService.exportCsv(userId, exportSection, out);
+            }
+            default -> {
+                fileName = "cyberlab-" + username + ".zip";
+                contentType = MediaType.parseMediaType("application/zip");
+                body = out -> dataExportService.exportZip(userId, out);
+            }
+        }
         
-        List<UserProgress> userProgress = labService.getUserAllProgress(currentUser);
-        model.addAttribute("userProgress", userProgress);
+        DataExportLimiter.Slot slot = dataExportLimiter.tryAcquire(userId);
+        if (slot == null) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "60");
+            return null;
+        }
         
-        return "activity/user";
+        response.setContentType(contentType.toString());
+        // Nome codificato (RFC 6266/5987): lo username non puo' alterare l'header
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename(fileName, StandardCharsets.UTF_8).build().toString());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        
+        WebAsyncTask<Void> task = new WebAsyncTask<>(dataExportLimiter.getTimeout().toMillis(),
+                dataExportLimiter.getExecutor(), () -> {
+                    try (slot) {
+                        OutputStream out = response.getOutputStream();
+                        body.writeTo(out);
+                        out.flush();
+                    }
+                    return null;
+                });
+        // Posto liberato anche se la richiesta finisce prima della scrittura (timeout, client disconnesso)
+        task.onCompletion(slot::close);
+        return task;
     }
 
     /**
@@ -393,43 +512,29 @@ public class DashboardController {
     }
 
     /**
-     * Admin - Gestione segnalazioni
+     * Admin - Gestione segnalazioni: coda dei casi (un caso per contenuto segnalato)
      */
     @GetMapping("/admin/reports")
     @PreAuthorize("hasRole('ADMIN')")
-    public String manageReports(@RequestParam(defaultValue = "PENDING") String status,
+    public String manageReports(@RequestParam(defaultValue = "OPEN") String status,
+                               @RequestParam(defaultValue = "0") int page,
                                Model model) {
         
         model.addAttribute("pageTitle", "Manage Reports");
         model.addAttribute("statusFilter", status);
         
-        List<Report> reports;
-        try {
-            Report.ReportStatus reportStatus = Report.ReportStatus.valueOf(status);
-            reports = reportRepository.findByStatusOrderByCreatedDateDesc(reportStatus);
-        } catch (IllegalArgumentException e) {
-            reports = reportRepository.findAll();
-        }
-        
-        model.addAttribute("reports", reports);
-        model.addAttribute("totalReports", reports.size());
+        Page<ReportCase> cases = reportService.findCases(status, PageRequest.of(Math.max(page, 0), 20));
+        model.addAttribute("cases", reportService.summarize(cases.getContent()));
+        model.addAttribute("currentPage", cases.getNumber());
+        model.addAttribute("totalPages", cases.getTotalPages());
+        model.addAttribute("hasNext", cases.hasNext());
+        model.addAttribute("hasPrevious", cases.hasPrevious());
         
-        // ✅ FIX: Aggiungi TUTTI i conteggi
-        Long pendingCount = reportRepository.countByStatus(Report.ReportStatus.PENDING);
-        Long resolvedCount = reportRepository.countByStatus(Report.ReportStatus.RESOLVED);
-        Long dismissedCount = reportRepository.countByStatus(Report.ReportStatus.DISMISSED);
-        
-        // ✅ Sicurezza contro null
-        model.addAttribute("pendingCount", pendingCount != null ? pendingCount : 0L);
-        model.addAttribute("resolvedCount", resolvedCount != null ? resolvedCount : 0L);
-        model.addAttribute("dismissedCount", dismissedCount != null ? dismissedCount : 0L);
-        
-        // ✅ Debug per verificare
-        System.out.println("=== REPORT COUNTS DEBUG ===");
-        System.out.println("Pending: " + pendingCount);
-        System.out.println("Resolved: " + resolvedCount);
-        System.out.println("Dismissed: " + dismissedCount);
-        System.out.println("Total: " + (pendingCount + resolvedCount + dismissedCount));
+        ReportService.CaseStatistics caseStats = reportService.getCaseStatistics();
+        model.addAttribute("totalCases", caseStats.getTotalCases());
+        model.addAttribute("pendingCount", caseStats.getOpenCases());
+        model.addAttribute("resolvedCount", caseStats.getResolvedCases());
+        model.addAttribute("dismissedCount", caseStats.getDismissedCases());
         
         return "admin/reports";
     }
@@ -635,14 +740,16 @@ public class DashboardController {
                 return "redirect:/profile/edit";
             }
             
-            // In un sistema reale, implementeresti la logica di eliminazione account
-            // Per ora, simuliamo
-            redirectAttributes.addFlashAttribute("warning", 
-                "Account deletion simulated. In a real system, this would permanently delete your account.");
+            // Account anonimizzato subito, contenuti e progressi eliminati in background
+            userService.deleteUserAccount(currentUser);
             
             // Logout dell'utente
+            SecurityContextHolder.clearContext();
             request.getSession().invalidate();
             
+            redirectAttributes.addFlashAttribute("success", 
+                "Your account has been deleted. Remaining data is being removed in the background.");
+            
             return "redirect:/";
             
         } catch (Exception e) {
@@ -686,7 +793,7 @@ public class DashboardController {
     
     
     /**
-     * Admin - Risolvi segnalazione
+     * Admin - Risolvi caso (tutte le segnalazioni del contenuto)
      */
     @PostMapping("/admin/reports/{id}/resolve")
     @PreAuthorize("hasRole('ADMIN')")
@@ -699,12 +806,7 @@ public class DashboardController {
         
         try {
             User currentAdmin = SecurityUtils.getCurrentUser();
-            Report report = reportRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Report not found"));
-            
-            // Risolvi la segnalazione
-            report.resolve(currentAdmin, notes != null ? notes : "Resolved from admin panel");
-            reportRepository.save(report);
+            reportService.resolveCase(id, currentAdmin, notes != null ? notes : "Resolved from admin panel");
             
             response.put("success", true);
             response.put("message", "Report resolved successfully");
@@ -717,6 +819,33 @@ public class DashboardController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * Admin - Rigetta caso (contatori azzerati, blocco automatico rimosso)
+     */
+    @PostMapping("/admin/reports/{id}/dismiss")
+    @PreAuthorize("hasRole('ADMIN')")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> dismissReportFromAdmin(
+            @PathVariable Long id,
+            @RequestParam(required = false) String notes) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            User currentAdmin = SecurityUtils.getCurrentUser();
+            reportService.dismissCase(id, currentAdmin, notes != null ? notes : "Dismissed from admin panel");
+            
+            response.put("success", true);
+            response.put("message", "Report dismissed successfully");
+            
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Error dismissing report: " + e.getMessage());
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Admin - Elimina contenuto segnalato
      */
@@ -731,29 +860,16 @@ public class DashboardController {
         
         try {
             User currentAdmin = SecurityUtils.getCurrentUser();
-            Report report = reportRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Report not found"));
             
-            // PRIMA risolvi il report (senza salvarlo)
+            // PRIMA risolvi il caso
             String resolutionNotes = (notes != null ? notes : "") + " - Content deleted by admin";
-            report.resolve(currentAdmin, resolutionNotes);
+            ReportCase reportCase = reportService.resolveCase(id, currentAdmin, resolutionNotes);
             
-            // POI elimina il contenuto segnalato
-            if (report.getComment() != null) {
-                // Salva il report PRIMA di eliminare il commento
-                reportRepository.save(report);
-                
-                // Ora elimina il commento
-                commentService.deleteComment(report.getComment().getId(), currentAdmin);
-            } else if (report.getPost() != null) {
-                // Salva il report PRIMA di eliminare il post
-                reportRepository.save(report);
-                
-                // Ora elimina il post
-                postService.deletePost(report.getPost().getId(), currentAdmin);
-            } else {
-                // Nessun contenuto da eliminare, salva solo il report
-                reportRepository.save(report);
+            // POI elimina il contenuto segnalato (il caso resta come storico)
+            switch (reportCase.getTargetType()) {
+                case COMMENT -> commentService.deleteComment(reportCase.getTargetId(), currentAdmin);
+                case POST -> postService.deletePost(reportCase.getTargetId(), currentAdmin);
+                default -> { }
             }
             
             response.put("success", true);
@@ -778,17 +894,8 @@ public class DashboardController {
         Map<String, Object> response = new HashMap<>();
         
         try {
-            Report report = reportRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Report not found"));
-            
-            String contentUrl = null;
-            
-            if (report.getComment() != null) {
-                Comment comment = report.getComment();
-                contentUrl = "/posts/" + comment.getPost().getId() + "#comment-" + comment.getId();
-            } else if (report.getPost() != null) {
-                contentUrl = "/posts/" + report.getPost().getId();
-            }
+            ReportCase reportCase = reportService.findCaseById(id);
+            String contentUrl = reportService.summarize(List.of(reportCase)).get(0).getContentUrl();
             
             if (contentUrl != null) {
                 response.put("success", true);
@@ -879,6 +986,42 @@ public class DashboardController {
         }
         return ResponseEntity.ok(response);
     }
-    
-    
-}
\ No newline at end of file
+
+    /**
+     * Admin - Avanzamento delle cancellazioni account in background
+     */
+    @GetMapping("/admin/users/erasures")
+    @PreAuthorize("hasRole('ADMIN')")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> accountErasureJobs() {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            response.put("success", true);
+            response.put("jobs", backgroundJobService.findRecentJobs(BackgroundJob.JobType.ACCOUNT_ERASURE));
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            response.put("jobs", new ArrayList<>());
+        }
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Admin - Statistiche di un lab (distribuzione dei tempi, tentativi, abbandoni, piu' veloci)
+     */
+    @GetMapping("/admin/labs/{labId}/analytics")
+    @PreAuthorize("hasRole('ADMIN')")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> labAnalytics(@PathVariable Long labId) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            labService.findById(labId);
+            response.put("success", true);
+            response.put("analytics", labAnalyticsService.getSummary(labId));
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+        }
+        return ResponseEntity.ok(response);
+    }
+}
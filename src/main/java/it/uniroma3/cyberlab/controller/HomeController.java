@@ -7,6 +7,14 @@ import it.uniroma3.cyberlab.repository.CategoryRepository;
 import it.uniroma3.cyberlab.repository.PostRepository;
 import it.uniroma3.cyberlab.repository.LabRepository;
 import it.uniroma3.cyberlab.repository.UserRepository;
+import it.uniroma3.cyberlab.security.SecurityUtils;
+import it.uniroma3.cyberlab.service.ContentVersionService;
+import it.uniroma3.cyberlab.service.ContentVersionService.Region;
+import it.uniroma3.cyberlab.service.FragmentCacheService;
+import it.uniroma3.cyberlab.service.PostRankingService;
+import it.uniroma3.cyberlab.service.PostService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Controller;
@@ -14,9 +22,15 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Controller
 public class HomeController {
@@ -33,42 +47,81 @@ public class HomeController {
     @Autowired
     private UserRepository userRepository;
 
+    @Autowired
+    private ContentVersionService contentVersionService;
+
+    @Autowired
+    private FragmentCacheService fragmentCacheService;
+
+    @Autowired
+    private PostRankingService postRankingService;
+
+    private static final String HOME_FRAGMENTS = "fragments/home";
+
+    private static final Set<Region> HOME_REGIONS = EnumSet.allOf(Region.class);
+    private static final Set<Region> STATS_REGIONS = EnumSet.of(Region.USERS, Region.POSTS, Region.LABS, Region.CATEGORIES);
+    private static final Set<Region> CATEGORY_REGIONS = EnumSet.of(Region.CATEGORIES, Region.POSTS, Region.LABS);
+
     /**
      * Homepage - Landing page del sito
      */
     @GetMapping({"/", "/home"})
-    public String home(Model model) {
+    public String home(Model model, ServletWebRequest webRequest,
+                       HttpServletRequest request, HttpServletResponse response) {
+        boolean authenticated = SecurityUtils.isAuthenticated();
+        // I post in tendenza dipendono dal ranking (e il fallback dalla data): entrambi entrano nella versione
+        String today = LocalDate.now().toString();
+        String trending = postRankingService.signature(null, 5);
+        if (contentVersionService.checkNotModifiedForAnonymous(webRequest, authenticated, HOME_REGIONS,
+                "home-" + today + "-" + trending)) {
+            return null;
+        }
+        String variant = authenticated ? "auth" : "anon";
+
         // Statistiche per la homepage
-        model.addAttribute("totalUsers", userRepository.count());
-        model.addAttribute("totalPosts", postRepository.count());
-        model.addAttribute("totalLabs", labRepository.countPublishedLabs());
-        model.addAttribute("totalCategories", categoryRepository.count());
+        model.addAttribute("statsFragment", fragmentCacheService.render(HOME_FRAGMENTS, "stats",
+                STATS_REGIONS, variant, request, response, () -> {
+                    Map<String, Object> variables = new HashMap<>();
+                    variables.put("totalUsers", userRepository.count());
+                    variables.put("totalPosts", postRepository.count());
+                    variables.put("totalLabs", labRepository.countPublishedLabs());
+                    variables.put("totalCategories", categoryRepository.count());
+                    return variables;
+                }));
         
         // Post in evidenza (featured/pinned)
-        List<Post> featuredPosts = postRepository.findFeaturedAndPinnedPosts();
-        if (featuredPosts.size() > 6) {
-            featuredPosts = featuredPosts.subList(0, 6); // Massimo 6 post
-        }
-        model.addAttribute("featuredPosts", featuredPosts);
+        model.addAttribute("featuredPostsFragment", fragmentCacheService.render(HOME_FRAGMENTS, "featuredPosts",
+                EnumSet.of(Region.POSTS, Region.COMMENTS, Region.CATEGORIES, Region.USERS), variant, request, response, () -> {
+                    // Massimo 6 post
+                    return Map.of("featuredPosts", postRepository.findFeaturedAndPinnedPosts(PageRequest.of(0, 6)));
+                }));
         
         // Lab più popolari
-        List<Lab> popularLabs = labRepository.findMostViewedLabs(PageRequest.of(0, 4));
-        model.addAttribute("popularLabs", popularLabs);
+        model.addAttribute("popularLabsFragment", fragmentCacheService.render(HOME_FRAGMENTS, "popularLabs",
+                EnumSet.of(Region.LABS, Region.CATEGORIES), variant, request, response,
+                () -> Map.of("popularLabs", labRepository.findMostViewedLabs(PageRequest.of(0, 4)))));
         
         // Categorie principali
-        List<Category> categories = categoryRepository.findAllOrderByPostCountDesc();
-        if (categories.size() > 8) {
-            categories = categories.subList(0, 8); // Massimo 8 categorie
-        }
-        model.addAttribute("categories", categories);
+        model.addAttribute("categoriesFragment", fragmentCacheService.render(HOME_FRAGMENTS, "categories",
+                EnumSet.of(Region.CATEGORIES, Region.POSTS), variant, request, response, () -> {
+                    List<Category> categories = categoryRepository.findAllOrderByPostCountDesc();
+                    if (categories.size() > 8) {
+                        categories = categories.subList(0, 8); // Massimo 8 categorie
+                    }
+                    return Map.of("categories", categories);
+                }));
         
-        // Post recenti (ultima settimana)
-        LocalDateTime oneWeekAgo = LocalDateTime.now().minusWeeks(1);
-        List<Post> recentPosts = postRepository.findRecentPosts(oneWeekAgo);
-        if (recentPosts.size() > 5) {
-            recentPosts = recentPosts.subList(0, 5);
-        }
-        model.addAttribute("recentPosts", recentPosts);
+        // Post in tendenza (ranking hot), con i post dell'ultima settimana se il ranking e' vuoto
+        model.addAttribute("trendingPostsFragment", fragmentCacheService.render(HOME_FRAGMENTS, "trendingPosts",
+                EnumSet.of(Region.POSTS, Region.COMMENTS, Region.CATEGORIES, Region.USERS),
+                variant + "-" + today + "-" + trending, request, response, () -> {
+                    List<Post> trendingPosts = postRankingService.findTrendingPosts(null, 0, 5);
+                    if (trendingPosts.isEmpty()) {
+                        LocalDateTime oneWeekAgo = LocalDateTime.now().minusWeeks(1);
+                        trendingPosts = postRepository.findRecentPosts(oneWeekAgo, PageRequest.of(0, 5));
+                    }
+                    return Map.of("trendingPosts", trendingPosts);
+                }));
         
         return "layout/homepage";
     }
@@ -77,7 +130,11 @@ public class HomeController {
      * Pagina About - Informazioni sul progetto
      */
     @GetMapping("/about")
-    public String about(Model model) {
+    public String about(Model model, ServletWebRequest webRequest) {
+        if (contentVersionService.checkNotModifiedForAnonymous(webRequest, SecurityUtils.isAuthenticated(),
+                STATS_REGIONS, "about")) {
+            return null;
+        }
         model.addAttribute("pageTitle", "About CyberLab");
         
         // Statistiche generali
@@ -105,7 +162,11 @@ public class HomeController {
      * Lista categorie pubbliche
      */
     @GetMapping("/categories")
-    public String categories(Model model) {
+    public String categories(Model model, ServletWebRequest webRequest) {
+        if (contentVersionService.checkNotModifiedForAnonymous(webRequest, SecurityUtils.isAuthenticated(),
+                CATEGORY_REGIONS, "categories")) {
+            return null;
+        }
         List<Category> allCategories = categoryRepository.findAllByOrderByNameAsc();
         model.addAttribute("categories", allCategories);
         model.addAttribute("pageTitle", "All Categories");
@@ -163,7 +224,8 @@ public class HomeController {
             String searchTerm = q.trim();
             
             if ("all".equals(type) || "posts".equals(type)) {
-                List<Post> foundPosts = postRepository.searchPosts(searchTerm);
+                List<Post> foundPosts = postRepository.searchPosts(searchTerm,
+                        PageRequest.of(0, PostService.SEARCH_LIMIT));
                 model.addAttribute("posts", foundPosts);
                 model.addAttribute("postCount", foundPosts.size());
             }
@@ -185,19 +247,35 @@ public class HomeController {
     }
 
     /**
-     * Feed pubblico dei post recenti
+     * Feed pubblico: post in tendenza (default) oppure piu' recenti con sort=new
      */
     @GetMapping("/feed")
     public String publicFeed(@RequestParam(defaultValue = "0") int page,
                             @RequestParam(required = false) Long categoryId,
+                            @RequestParam(defaultValue = "hot") String sort,
                             Model model) {
         
         model.addAttribute("pageTitle", "Latest Posts");
+        model.addAttribute("sort", sort);
         
         PageRequest pageRequest = PageRequest.of(page, 20);
+        Category selectedCategory = categoryId != null ? categoryRepository.findById(categoryId).orElse(null) : null;
         
-        if (categoryId != null) {
-            Category category = categoryRepository.findById(categoryId).orElse(null);
+        if ("hot".equals(sort) && postRankingService.isReady()
+                && (categoryId == null || selectedCategory != null)) {
+            // Ranking in memoria: nessun ordinamento sul database
+            Long rankingCategory = selectedCategory != null ? selectedCategory.getId() : null;
+            int ranked = postRankingService.getTrendingSize(rankingCategory);
+            model.addAttribute("posts", postRankingService.findTrendingPosts(rankingCategory, page * 20, 20));
+            model.addAttribute("pageTitle", selectedCategory != null
+                    ? "Trending in " + selectedCategory.getName() : "Trending Posts");
+            model.addAttribute("selectedCategory", selectedCategory);
+            model.addAttribute("currentPage", page);
+            model.addAttribute("totalPages", (ranked + 19) / 20);
+            model.addAttribute("hasNext", (page + 1) * 20 < ranked);
+            model.addAttribute("hasPrevious", page > 0);
+        } else if (categoryId != null) {
+            Category category = selectedCategory;
             if (category != null) {
                 var postPage = postRepository.findByCategoryOrderByCreatedDateDesc(category, pageRequest);
                 model.addAttribute("posts", postPage.getContent());
@@ -213,22 +291,13 @@ public class HomeController {
         } else {
             // Tutti i post recenti
             LocalDateTime oneMonthAgo = LocalDateTime.now().minusMonths(1);
-            List<Post> recentPosts = postRepository.findRecentPosts(oneMonthAgo);
-            
-            // Simuliamo paginazione manuale
-            int start = page * 20;
-            int end = Math.min(start + 20, recentPosts.size());
-            
-            if (start < recentPosts.size()) {
-                model.addAttribute("posts", recentPosts.subList(start, end));
-            } else {
-                model.addAttribute("posts", List.of());
-            }
+            var postPage = postRepository.findRecentPostsPage(oneMonthAgo, pageRequest);
+            model.addAttribute("posts", postPage.getContent());
             
             model.addAttribute("currentPage", page);
-            model.addAttribute("totalPages", (recentPosts.size() + 19) / 20);
-            model.addAttribute("hasNext", end < recentPosts.size());
-            model.addAttribute("hasPrevious", page > 0);
+            model.addAttribute("totalPages", postPage.getTotalPages());
+            model.addAttribute("hasNext", postPage.hasNext());
+            model.addAttribute("hasPrevious", postPage.hasPrevious());
         }
         
         // Tutte le categorie per il filtro
@@ -242,7 +311,12 @@ public class HomeController {
      * Statistiche pubbliche della piattaforma
      */
     @GetMapping("/stats")
-    public String platformStats(Model model) {
+    public String platformStats(Model model, ServletWebRequest webRequest) {
+        // Le statistiche mensili dipendono dalla data corrente
+        if (contentVersionService.checkNotModifiedForAnonymous(webRequest, SecurityUtils.isAuthenticated(),
+                STATS_REGIONS, "stats-" + LocalDate.now())) {
+            return null;
+        }
         model.addAttribute("pageTitle", "Platform Statistics");
         
         // Statistiche generali
@@ -1,19 +1,27 @@
 package it.uniroma3.cyberlab.controller;
 
 import it.uniroma3.cyberlab.entity.*;
+import it.uniroma3.cyberlab.service.ContentVersionService;
+import it.uniroma3.cyberlab.service.ContentVersionService.Region;
+import it.uniroma3.cyberlab.service.LabAnalyticsService;
 import it.uniroma3.cyberlab.service.LabService;
 import it.uniroma3.cyberlab.repository.CategoryRepository;
 import it.uniroma3.cyberlab.security.SecurityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,6 +35,12 @@ public class LabController {
     
     @Autowired
     private CategoryRepository categoryRepository; 
+    
+    @Autowired
+    private ContentVersionService contentVersionService;
+    
+    @Autowired
+    private LabAnalyticsService labAnalyticsService;
 
     /**
      * Lista tutti i lab (pubblici)
@@ -53,11 +67,24 @@ public class LabController {
             }
         }
         
-        List<Lab> labs = labService.findPublishedLabs(selectedCategory, selectedDifficulty, page, 12);
+        User currentUser = SecurityUtils.getCurrentUser();
+        
+        // Lab della pagina e progresso dell'utente in un'unica query
+        Page<LabService.LabCatalogItem> catalog = labService.findCatalog(selectedCategory, selectedDifficulty, true,
+                null, null, currentUser, page, 12);
+        
+        List<Lab> labs = new ArrayList<>();
+        Map<Long, UserProgress> progressMap = new HashMap<>();
+        for (LabService.LabCatalogItem item : catalog.getContent()) {
+            labs.add(item.getLab());
+            if (item.getProgress() != null) {
+                progressMap.put(item.getLab().getId(), item.getProgress());
+            }
+        }
         
         model.addAttribute("labs", labs);
         model.addAttribute("currentPage", page);
-        model.addAttribute("hasNext", labs.size() == 12);
+        model.addAttribute("hasNext", catalog.hasNext());
         model.addAttribute("hasPrevious", page > 0);
         
         List<Category> categories = categoryRepository.findAll();
@@ -66,9 +93,7 @@ public class LabController {
         model.addAttribute("selectedCategory", selectedCategory);
         model.addAttribute("selectedDifficulty", selectedDifficulty);
         
-        User currentUser = SecurityUtils.getCurrentUser();
         if (currentUser != null) {
-            Map<Long, UserProgress> progressMap = labService.getUserProgressMap(currentUser);
             model.addAttribute("userProgress", progressMap);
             
             // Calculate and add user-specific stats only if the user is logged in
@@ -118,7 +143,17 @@ public class LabController {
      * Visualizza lab - teoria (USA REGEX PER SOLO NUMERI)
      */
     @GetMapping("/{id:[0-9]+}")
-    public String viewLab(@PathVariable Long id, Model model) {
+    public String viewLab(@PathVariable Long id, Model model,
+                          ServletWebRequest webRequest, HttpServletRequest request) {
+        
+        // GET condizionale prima di caricare il lab: 304 se il lettore ha gia' questa versione
+        ContentVersionService.ResourceVersion version = labService.getLabPageVersion(id,
+                SecurityUtils.getCurrentUserId(), contentVersionService.viewerKey(request),
+                contentVersionService.fingerprint(EnumSet.of(Region.LABS)));
+        if (version != null && contentVersionService.checkNotModified(webRequest, version, SecurityUtils.isAuthenticated())) {
+            labService.recordView(id);
+            return null;
+        }
         
         Lab lab = labService.findByIdAndIncrementViews(id);
         
@@ -131,6 +166,7 @@ public class LabController {
             userProgress = labService.getUserProgress(currentUser, lab);
         }
         model.addAttribute("userProgress", userProgress);
+        model.addAttribute("labAnalytics", labAnalyticsService.getSummary(lab.getId()));
         
         List<Lab> relatedLabs = labService.findRelatedLabs(lab, 4);
         model.addAttribute("relatedLabs", relatedLabs);
@@ -3,21 +3,32 @@ package it.uniroma3.cyberlab.controller;
 import it.uniroma3.cyberlab.entity.*;
 import it.uniroma3.cyberlab.service.PostService;
 import it.uniroma3.cyberlab.service.CommentService;
+import it.uniroma3.cyberlab.service.ContentVersionService;
+import it.uniroma3.cyberlab.service.ContentVersionService.Region;
+import it.uniroma3.cyberlab.service.ReportService;
+import it.uniroma3.cyberlab.service.TagService;
 import it.uniroma3.cyberlab.repository.CategoryRepository;
 import it.uniroma3.cyberlab.security.SecurityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Controller
 @RequestMapping("/posts")
@@ -31,6 +42,15 @@ public class PostController {
     
     @Autowired
     private CategoryRepository categoryRepository;
+    
+    @Autowired
+    private ContentVersionService contentVersionService;
+    
+    @Autowired
+    private TagService tagService;
+    
+    @Autowired
+    private ReportService reportService;
 
     /**
      * Lista tutti i post (pubblica)
@@ -88,7 +108,17 @@ public class PostController {
      * Visualizza singolo post - FIXED
      */
     @GetMapping("/{id}")
-    public String viewPost(@PathVariable Long id, Model model) {
+    public String viewPost(@PathVariable Long id, Model model,
+                           ServletWebRequest webRequest, HttpServletRequest request) {
+        
+        // GET condizionale prima di caricare il post: 304 se il lettore ha gia' questa versione
+        ContentVersionService.ResourceVersion version = postService.getPostPageVersion(id,
+                contentVersionService.viewerKey(request),
+                contentVersionService.fingerprint(EnumSet.of(Region.POSTS)));
+        if (version != null && contentVersionService.checkNotModified(webRequest, version, SecurityUtils.isAuthenticated())) {
+            postService.recordView(id);
+            return null;
+        }
         
         try {
             // Usa PostService per trovare e incrementare views
@@ -321,6 +351,41 @@ public class PostController {
         return "redirect:/posts";
     }
 
+    /**
+     * Segnala post: una segnalazione per utente, il post si blocca oltre la soglia
+     */
+    @PostMapping("/{id}/report")
+    @PreAuthorize("hasRole('USER')")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> reportPost(
+            @PathVariable Long id,
+            @RequestParam Report.ReportReason reason,
+            @RequestParam(required = false) String details) {
+        
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            User currentUser = SecurityUtils.getCurrentUser();
+            if (currentUser == null) {
+                response.put("success", false);
+                response.put("message", "User not authenticated");
+                return ResponseEntity.status(401).body(response);
+            }
+            
+            String trimmedDetails = details != null && !details.trim().isEmpty() ? details.trim() : null;
+            reportService.reportPost(id, currentUser, reason, trimmedDetails);
+            
+            response.put("success", true);
+            response.put("message", "Post reported successfully. Thank you for keeping our community safe.");
+            
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Error reporting post: " + e.getMessage());
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * Ricerca post
      */
@@ -390,6 +455,36 @@ public class PostController {
         }
     }
 
+    /**
+     * Post per tag
+     */
+    @GetMapping("/tag/{tag}")
+    public String postsByTag(@PathVariable String tag,
+                             @RequestParam(defaultValue = "0") int page,
+                             Model model) {
+        
+        String tagName = tagService.normalize(tag);
+        if (tagName == null) {
+            return "redirect:/posts";
+        }
+        
+        Page<Post> posts = tagService.findPostsByTag(tagName, page, 15);
+        
+        model.addAttribute("pageTitle", "Posts tagged #" + tagName);
+        model.addAttribute("posts", posts.getContent());
+        model.addAttribute("currentPage", page);
+        model.addAttribute("hasNext", posts.hasNext());
+        model.addAttribute("hasPrevious", posts.hasPrevious());
+        
+        model.addAttribute("categories", categoryRepository.findAllByOrderByNameAsc());
+        model.addAttribute("postTypes", Post.PostType.values());
+        model.addAttribute("selectedTag", tagName);
+        model.addAttribute("relatedTags", tagService.findRelatedTags(tagName, 10));
+        model.addAttribute("totalPosts", posts.getTotalElements());
+        
+        return "posts/list";
+    }
+
     /**
      * DTO per creazione/modifica post - FIXED WITH VALIDATION
      */
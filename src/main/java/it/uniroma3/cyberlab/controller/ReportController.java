@@ -3,6 +3,10 @@ package it.uniroma3.cyberlab.controller;
 import it.uniroma3.cyberlab.entity.*;
 import it.uniroma3.cyberlab.repository.*;
 import it.uniroma3.cyberlab.security.SecurityUtils;
+import it.uniroma3.cyberlab.service.CommentService;
+import it.uniroma3.cyberlab.service.ReportService;
+import it.uniroma3.cyberlab.util.GroupedCounts;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -11,22 +15,36 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Controller
 @RequestMapping("/reports")
 public class ReportController {
 
+    private static final int CASE_REPORTS_LIMIT = 20;
+    private static final int MY_REPORTS_LIMIT = 100;
+    private static final int TOP_REPORTED_LIMIT = 10;
+
     @Autowired
     private ReportRepository reportRepository;
     
+    @Autowired
+    private ReportService reportService;
+    
+    
     @Autowired
     private CommentRepository commentRepository;
     
     @Autowired
     private UserRepository userRepository;
+    
+    @Autowired
+    private CommentService commentService;
 
     /*
      * Il metodo @PostMapping("/create") che si trovava qui è stato rimosso.
@@ -47,50 +65,30 @@ public class ReportController {
             return "redirect:/auth/login";
         }
         
-        List<Report> userReports = reportRepository.findByReportedByOrderByCreatedDateDesc(currentUser);
+        List<Report> userReports = reportRepository.findByReportedByOrderByCreatedDateDesc(currentUser,
+                PageRequest.of(0, MY_REPORTS_LIMIT));
+        
+        // Statistiche per status su tutte le segnalazioni dell'utente, non solo su quelle mostrate
+        Map<Report.ReportStatus, Long> byStatus = reportRepository.countPerStatusForReporter(currentUser);
         
         model.addAttribute("reports", userReports);
         model.addAttribute("pageTitle", "My Reports");
-        model.addAttribute("totalReports", userReports.size());
-        
-        // Statistiche per status
-        long pendingCount = userReports.stream().filter(Report::isPending).count();
-        long resolvedCount = userReports.stream().filter(Report::isResolved).count();
-        long dismissedCount = userReports.stream().filter(Report::isDismissed).count();
+        model.addAttribute("totalReports", GroupedCounts.sum(byStatus));
         
-        model.addAttribute("pendingCount", pendingCount);
-        model.addAttribute("resolvedCount", resolvedCount);
-        model.addAttribute("dismissedCount", dismissedCount);
+        model.addAttribute("pendingCount", byStatus.get(Report.ReportStatus.PENDING));
+        model.addAttribute("resolvedCount", byStatus.get(Report.ReportStatus.RESOLVED));
+        model.addAttribute("dismissedCount", byStatus.get(Report.ReportStatus.DISMISSED));
         
         return "reports/my-reports";
     }
 
     /**
-     * Admin - Gestione segnalazioni
+     * Admin - Gestione segnalazioni (la coda lavora sui casi)
      */
     @GetMapping("/admin/reports")
     @PreAuthorize("hasRole('ADMIN')")
-    public String manageReports(@RequestParam(defaultValue = "PENDING") String status,
-                               Model model) {
-        
-        model.addAttribute("pageTitle", "Manage Reports");
-        model.addAttribute("statusFilter", status);
-        
-        List<Report> reports;
-        try {
-            Report.ReportStatus reportStatus = Report.ReportStatus.valueOf(status);
-            reports = reportRepository.findByStatusOrderByCreatedDateDesc(reportStatus);
-        } catch (IllegalArgumentException e) {
-            reports = reportRepository.findAll();
-        }
-        
-        model.addAttribute("reports", reports);
-        model.addAttribute("totalReports", reports.size());
-        
-        model.addAttribute("pendingCount", reportRepository.countByStatus(Report.ReportStatus.PENDING));
-        model.addAttribute("resolvedCount", reportRepository.countByStatus(Report.ReportStatus.RESOLVED));
-        
-        return "admin/reports";
+    public String manageReports(@RequestParam(defaultValue = "OPEN") String status) {
+        return "redirect:/admin/reports?status=" + status;
     }
 
     /**
@@ -106,19 +104,23 @@ public class ReportController {
         model.addAttribute("report", report);
         model.addAttribute("pageTitle", "Report #" + id);
         
-        // Altre segnalazioni per lo stesso commento
-        List<Report> relatedReports = reportRepository.findByComment(report.getComment());
-        relatedReports = relatedReports.stream()
-                .filter(r -> !r.getId().equals(report.getId()))
-                .toList();
+        // Ultime segnalazioni dello stesso caso (pagina limitata, non l'intero storico)
+        List<Report> relatedReports = new ArrayList<>();
+        if (report.getReportCase() != null) {
+            model.addAttribute("reportCase", report.getReportCase());
+            relatedReports = reportService.findCaseReports(report.getReportCase().getId(),
+                            PageRequest.of(0, CASE_REPORTS_LIMIT)).getContent()
+                    .stream()
+                    .filter(r -> !r.getId().equals(report.getId()))
+                    .toList();
+        }
         model.addAttribute("relatedReports", relatedReports);
         
-        // Storico segnalazioni dell'utente segnalato
-        User reportedUser = report.getComment().getAuthor();
-        List<Comment> userComments = commentRepository.findByAuthor(reportedUser);
-        long totalReportedComments = userComments.stream()
-                .filter(Comment::getIsReported)
-                .count();
+        // Storico segnalazioni dell'utente segnalato (COUNT, senza caricare i commenti)
+        long totalReportedComments = 0;
+        if (report.getComment() != null) {
+            totalReportedComments = commentRepository.countReportedByAuthorId(report.getComment().getAuthor().getId());
+        }
         model.addAttribute("userTotalReportedComments", totalReportedComments);
         
         return "admin/report-detail";
@@ -139,17 +141,15 @@ public class ReportController {
         
         try {
             User currentAdmin = SecurityUtils.getCurrentUser();
-            Report report = reportRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Report not found"));
             
-            // Risolvi la segnalazione
-            report.resolve(currentAdmin, notes);
-            reportRepository.save(report);
+            // Risolve l'intero caso del contenuto
+            Report report = reportService.resolveReport(id, currentAdmin, notes);
             
             // Se richiesto, cancella il commento
-            if (deleteComment) {
+            if (deleteComment && report.getComment() != null) {
+                // Tramite CommentService per aggiornare i contatori di post e commento padre
                 Comment comment = report.getComment();
-                commentRepository.delete(comment);
+                commentService.deleteComment(comment.getId(), currentAdmin);
                 response.put("commentDeleted", true);
             }
             
@@ -178,26 +178,9 @@ public class ReportController {
         
         try {
             User currentAdmin = SecurityUtils.getCurrentUser();
-            Report report = reportRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Report not found"));
-            
-            // Rigetta la segnalazione
-            report.dismiss(currentAdmin, notes);
-            reportRepository.save(report);
-            
-            // Decrementa contatore nel commento se era l'unica segnalazione
-            Comment comment = report.getComment();
-            List<Report> activeReports = reportRepository.findByComment(comment)
-                    .stream()
-                    .filter(r -> r.getStatus() == Report.ReportStatus.PENDING || 
-                               r.getStatus() == Report.ReportStatus.UNDER_REVIEW)
-                    .toList();
             
-            if (activeReports.isEmpty()) {
-                comment.setIsReported(false);
-                comment.setReportCount(0);
-                commentRepository.save(comment);
-            }
+            // Rigetta il caso: contatori del contenuto e blocco automatico vengono ripristinati
+            reportService.dismissReport(id, currentAdmin, notes);
             
             response.put("success", true);
             response.put("message", "Report dismissed successfully");
@@ -224,12 +207,9 @@ public class ReportController {
         
         try {
             User currentAdmin = SecurityUtils.getCurrentUser();
-            Report report = reportRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Report not found"));
             
-            // Escalate la segnalazione
-            report.escalate(currentAdmin, notes);
-            reportRepository.save(report);
+            // Escalate del caso
+            reportService.escalateReport(id, currentAdmin, notes);
             
             response.put("success", true);
             response.put("message", "Report escalated successfully");
@@ -243,11 +223,59 @@ public class ReportController {
     }
 
     /**
-     * Admin - Batch action su segnalazioni
+     * Admin - Dettaglio di un caso: istogramma dei motivi e ultime segnalazioni
+     */
+    @GetMapping("/cases/{caseId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    @ResponseBody
+    public ResponseEntity<Map<String, Object>> viewCase(@PathVariable Long caseId) {
+        Map<String, Object> response = new HashMap<>();
+        
+        try {
+            ReportCase reportCase = reportService.findCaseById(caseId);
+            ReportService.CaseSummary summary = reportService.summarize(List.of(reportCase)).get(0);
+            
+            response.put("success", true);
+            response.put("id", reportCase.getId());
+            response.put("targetType", reportCase.getTargetType());
+            response.put("targetId", reportCase.getTargetId());
+            response.put("target", summary.getTargetLabel());
+            response.put("contentUrl", summary.getContentUrl());
+            response.put("status", reportCase.getStatus());
+            response.put("openReports", reportCase.getOpenReports());
+            response.put("totalReports", reportCase.getTotalReports());
+            response.put("reasons", summary.getReasonHistogram());
+            response.put("autoLocked", reportCase.isAutoLocked());
+            response.put("firstReportDate", reportCase.getFirstReportDate());
+            response.put("lastReportDate", reportCase.getLastReportDate());
+            
+            List<Map<String, Object>> reports = new ArrayList<>();
+            for (Report report : reportService.findCaseReports(caseId, PageRequest.of(0, CASE_REPORTS_LIMIT))) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("id", report.getId());
+                item.put("reportedBy", report.getReportedBy().getUsername());
+                item.put("reason", report.getReason());
+                item.put("details", report.getAdditionalDetails());
+                item.put("status", report.getStatus());
+                item.put("createdDate", report.getCreatedDate());
+                reports.add(item);
+            }
+            response.put("latestReports", reports);
+            
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Error loading report case: " + e.getMessage());
+        }
+        
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Admin - Batch action sui casi
      */
     @PostMapping("/batch-action")
     @PreAuthorize("hasRole('ADMIN')")
-    public String batchAction(@RequestParam List<Long> reportIds,
+    public String batchAction(@RequestParam List<Long> caseIds,
                              @RequestParam String action,
                              @RequestParam(required = false) String notes,
                              RedirectAttributes redirectAttributes) {
@@ -256,36 +284,33 @@ public class ReportController {
             User currentAdmin = SecurityUtils.getCurrentUser();
             int processedCount = 0;
             
-            for (Long reportId : reportIds) {
-                Report report = reportRepository.findById(reportId).orElse(null);
-                if (report != null) {
-                    switch (action.toLowerCase()) {
-                        case "resolve":
-                            report.resolve(currentAdmin, notes);
-                            break;
-                        case "dismiss":
-                            report.dismiss(currentAdmin, notes);
-                            break;
-                        case "escalate":
-                            report.escalate(currentAdmin, notes);
-                            break;
-                        default:
-                            continue;
-                    }
-                    reportRepository.save(report);
-                    processedCount++;
+            Set<Long> uniqueCaseIds = new LinkedHashSet<>(caseIds);
+            for (Long caseId : uniqueCaseIds) {
+                switch (action.toLowerCase()) {
+                    case "resolve":
+                        reportService.resolveCase(caseId, currentAdmin, notes);
+                        break;
+                    case "dismiss":
+                        reportService.dismissCase(caseId, currentAdmin, notes);
+                        break;
+                    case "escalate":
+                        reportService.escalateCase(caseId, currentAdmin, notes);
+                        break;
+                    default:
+                        continue;
                 }
+                processedCount++;
             }
             
             redirectAttributes.addFlashAttribute("success", 
-                    processedCount + " reports processed successfully");
+                    processedCount + " report cases processed successfully");
             
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("error", 
-                    "Error processing reports: " + e.getMessage());
+                    "Error processing report cases: " + e.getMessage());
         }
         
-        return "redirect:/reports/admin";
+        return "redirect:/admin/reports";
     }
 
     /**
@@ -297,10 +322,11 @@ public class ReportController {
         
         model.addAttribute("pageTitle", "Report Statistics");
         
-        // Statistiche generali
-        long totalReports = reportRepository.count();
-        long pendingReports = reportRepository.countPendingReports();
-        long resolvedReports = reportRepository.countResolvedReports();
+        // Statistiche generali (una query GROUP BY)
+        Map<Report.ReportStatus, Long> byStatus = reportRepository.countPerStatus();
+        long totalReports = GroupedCounts.sum(byStatus);
+        long pendingReports = byStatus.get(Report.ReportStatus.PENDING);
+        long resolvedReports = byStatus.get(Report.ReportStatus.RESOLVED);
         
         model.addAttribute("totalReports", totalReports);
         model.addAttribute("pendingReports", pendingReports);
@@ -323,10 +349,8 @@ public class ReportController {
         model.addAttribute("adminResolvedCount", adminResolvedCount);
         
         // Commenti più segnalati
-        List<Comment> mostReportedComments = commentRepository.findReportedCommentsOrderByReportCount();
-        if (mostReportedComments.size() > 10) {
-            mostReportedComments = mostReportedComments.subList(0, 10);
-        }
+        List<Comment> mostReportedComments = commentRepository.findReportedCommentsOrderByReportCount(
+                PageRequest.of(0, TOP_REPORTED_LIMIT));
         model.addAttribute("mostReportedComments", mostReportedComments);
         
         return "admin/report-stats";
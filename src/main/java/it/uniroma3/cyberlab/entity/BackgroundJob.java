@@ -0,0 +1,229 @@
+package it.uniroma3.cyberlab.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Job in background persistito: stato e avanzamento sopravvivono al riavvio dell'applicazione
+ */
+@Entity
+@Table(name = "background_job", indexes = {
+    @Index(name = "idx_background_job_status", columnList = "job_type, status")
+})
+public class BackgroundJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "background_job_seq")
+    @SequenceGenerator(name = "background_job_seq", sequenceName = "background_job_seq", allocationSize = 50)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "job_type", nullable = false, length = 40)
+    private JobType jobType;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private JobStatus status = JobStatus.PENDING;
+
+    // Parametri del job (es. id delle categorie), interpretati dal servizio che lo esegue
+    @Column(name = "source_id")
+    private Long sourceId;
+
+    @Column(name = "target_id")
+    private Long targetId;
+
+    // Fase corrente e cursore per riprendere un job interrotto
+    @Column(length = 40)
+    private String phase;
+
+    @Column(name = "cursor_id")
+    private Long cursorId;
+
+    @Column(name = "processed_items")
+    private Long processedItems = 0L;
+
+    @Column(name = "total_items")
+    private Long totalItems = 0L;
+
+    @Column(columnDefinition = "TEXT")
+    private String message;
+
+    @Column(name = "requested_by")
+    private Long requestedBy;
+
+    @Column(name = "created_date", nullable = false)
+    private LocalDateTime createdDate = LocalDateTime.now();
+
+    @Column(name = "started_date")
+    private LocalDateTime startedDate;
+
+    @Column(name = "finished_date")
+    private LocalDateTime finishedDate;
+
+    @Column(name = "last_updated")
+    private LocalDateTime lastUpdated = LocalDateTime.now();
+
+    // Enums
+    public enum JobType {
+        CATEGORY_MIGRATION,
+        ACCOUNT_ERASURE
+    }
+
+    public enum JobStatus {
+        PENDING, RUNNING, COMPLETED, FAILED;
+
+        public boolean isActive() {
+            return this == PENDING || this == RUNNING;
+        }
+    }
+
+    // Constructors
+    public BackgroundJob() {}
+
+    public BackgroundJob(JobType jobType, Long sourceId, Long targetId, Long requestedBy) {
+        this.jobType = jobType;
+        this.sourceId = sourceId;
+        this.targetId = targetId;
+        this.requestedBy = requestedBy;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public JobType getJobType() {
+        return jobType;
+    }
+
+    public void setJobType(JobType jobType) {
+        this.jobType = jobType;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(JobStatus status) {
+        this.status = status;
+    }
+
+    public Long getSourceId() {
+        return sourceId;
+    }
+
+    public void setSourceId(Long sourceId) {
+        this.sourceId = sourceId;
+    }
+
+    public Long getTargetId() {
+        return targetId;
+    }
+
+    public void setTargetId(Long targetId) {
+        this.targetId = targetId;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public Long getCursorId() {
+        return cursorId;
+    }
+
+    public void setCursorId(Long cursorId) {
+        this.cursorId = cursorId;
+    }
+
+    public Long getProcessedItems() {
+        return processedItems != null ? processedItems : 0L;
+    }
+
+    public void setProcessedItems(Long processedItems) {
+        this.processedItems = processedItems;
+    }
+
+    public Long getTotalItems() {
+        return totalItems != null ? totalItems : 0L;
+    }
+
+    public void setTotalItems(Long totalItems) {
+        this.totalItems = totalItems;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public Long getRequestedBy() {
+        return requestedBy;
+    }
+
+    public void setRequestedBy(Long requestedBy) {
+        this.requestedBy = requestedBy;
+    }
+
+    public LocalDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(LocalDateTime createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public LocalDateTime getStartedDate() {
+        return startedDate;
+    }
+
+    public void setStartedDate(LocalDateTime startedDate) {
+        this.startedDate = startedDate;
+    }
+
+    public LocalDateTime getFinishedDate() {
+        return finishedDate;
+    }
+
+    public void setFinishedDate(LocalDateTime finishedDate) {
+        this.finishedDate = finishedDate;
+    }
+
+    public LocalDateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(LocalDateTime lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+
+    // Helper methods
+    public int getProgressPercentage() {
+        long total = getTotalItems();
+        if (total <= 0) {
+            return status == JobStatus.COMPLETED ? 100 : 0;
+        }
+        return (int) Math.min(100, getProcessedItems() * 100 / total);
+    }
+
+    public boolean isActive() {
+        return status != null && status.isActive();
+    }
+
+    @Override
+    public String toString() {
+        return "BackgroundJob{id=" + id + ", type=" + jobType + ", status=" + status
+                + ", processed=" + processedItems + "/" + totalItems + "}";
+    }
+}
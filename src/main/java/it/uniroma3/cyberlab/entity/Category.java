@@ -7,10 +7,12 @@ import java.util.List;
 
 @Entity
 @Table(name = "category")
+@EntityListeners(ContentChangeListener.class)
 public class Category {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "category_seq")
+    @SequenceGenerator(name = "category_seq", sequenceName = "category_seq", allocationSize = 50)
     private Long id;
     
     @Column(unique = true, nullable = false, length = 50)
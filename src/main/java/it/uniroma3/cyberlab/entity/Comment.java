@@ -2,16 +2,24 @@ package it.uniroma3.cyberlab.entity;
 
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "comment")
+@Table(name = "comment", indexes = {
+    @Index(name = "idx_comment_created_date", columnList = "created_date"),
+    @Index(name = "idx_comment_author_created", columnList = "author_id, created_date"),
+    @Index(name = "idx_comment_post", columnList = "post_id"),
+    @Index(name = "idx_comment_parent", columnList = "parent_comment_id")
+})
+@EntityListeners(ContentChangeListener.class)
 public class Comment {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "comment_seq")
+    @SequenceGenerator(name = "comment_seq", sequenceName = "comment_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, columnDefinition = "TEXT")
@@ -37,6 +45,11 @@ public class Comment {
     @Column(name = "is_edited")
     private Boolean isEdited = false;
     
+    // Contatore denormalizzato delle risposte dirette: scritto solo con UPDATE atomici
+    @Column(name = "reply_count", updatable = false)
+    @ColumnDefault("0")
+    private Integer replyCount = 0;
+    
     // Relationships
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "post_id", nullable = false)
@@ -50,10 +63,11 @@ public class Comment {
     @JoinColumn(name = "parent_comment_id")
     private Comment parentComment; // For nested comments/replies
     
-    @OneToMany(mappedBy = "parentComment", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    // Senza cascade: il sotto-albero lo elimina ContentDeletionService (CTE ricorsiva)
+    @OneToMany(mappedBy = "parentComment", fetch = FetchType.LAZY)
     private List<Comment> replies = new ArrayList<>();
     
-    @OneToMany(mappedBy = "comment", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @OneToMany(mappedBy = "comment", fetch = FetchType.LAZY)
     private List<Report> reports = new ArrayList<>();
     
     // Constructors
@@ -211,11 +225,15 @@ public class Comment {
     }
     
     public boolean hasReplies() {
-        return replies != null && !replies.isEmpty();
+        return getReplyCount() > 0;
     }
     
     public int getReplyCount() {
-        return replies != null ? replies.size() : 0;
+        return replyCount != null ? replyCount : 0;
+    }
+    
+    public void setReplyCount(Integer replyCount) {
+        this.replyCount = replyCount;
     }
     
     public boolean isOwnedBy(User user) {
@@ -0,0 +1,73 @@
+package it.uniroma3.cyberlab.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Testi lunghi compressi nel database: oltre la soglia il valore diventa MARKER + Base64(deflate(UTF-8)).
+ * I testi corti restano in chiaro, quindi le righe scritte prima della compressione (e import.sql) si leggono invariate.
+ * La colonna resta TEXT: niente tipi binari diversi tra PostgreSQL e H2.
+ */
+@Converter
+public class CompressedTextConverter implements AttributeConverter<String, String> {
+
+    static final int THRESHOLD = 2048;
+
+    // Carattere di controllo: non compare all'inizio di un testo inserito da un form
+    private static final char MARKER = '\u0001';
+
+    @Override
+    public String convertToDatabaseColumn(String text) {
+        // Un testo che inizia gia' con il marcatore viene sempre compresso, cosi' la lettura non e' ambigua
+        if (text == null || (text.length() < THRESHOLD && (text.isEmpty() || text.charAt(0) != MARKER))) {
+            return text;
+        }
+        byte[] input = text.getBytes(StandardCharsets.UTF_8);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length / 2);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                output.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return MARKER + Base64.getEncoder().encodeToString(output.toByteArray());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public String convertToEntityAttribute(String value) {
+        if (value == null || value.isEmpty() || value.charAt(0) != MARKER) {
+            return value;
+        }
+        byte[] input = Base64.getDecoder().decode(value.substring(1));
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            ByteArrayOutputStream output = new ByteArrayOutputStream(input.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int read = inflater.inflate(buffer);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("Truncated compressed text");
+                }
+                output.write(buffer, 0, read);
+            }
+            return output.toString(StandardCharsets.UTF_8);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Invalid compressed text", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
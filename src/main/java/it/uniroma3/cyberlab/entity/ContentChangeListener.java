@@ -0,0 +1,37 @@
+package it.uniroma3.cyberlab.entity;
+
+import it.uniroma3.cyberlab.service.ContentVersionService;
+import it.uniroma3.cyberlab.service.ContentVersionService.Region;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Entity listener JPA: ogni insert/update/delete dei contenuti pubblici
+ * incrementa la versione dell'area corrispondente
+ */
+public class ContentChangeListener {
+
+    @Autowired
+    private ContentVersionService contentVersionService;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        Region region = regionOf(entity);
+        if (region != null && contentVersionService != null) {
+            contentVersionService.markChanged(region);
+        }
+    }
+
+    private Region regionOf(Object entity) {
+        if (entity instanceof Post) return Region.POSTS;
+        if (entity instanceof Comment) return Region.COMMENTS;
+        if (entity instanceof Lab) return Region.LABS;
+        if (entity instanceof Category) return Region.CATEGORIES;
+        if (entity instanceof User) return Region.USERS;
+        return null;
+    }
+}
@@ -1,17 +1,22 @@
 package it.uniroma3.cyberlab.entity;
 
 import jakarta.persistence.*;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "lab")
+@Table(name = "lab", indexes = {
+    @Index(name = "idx_lab_catalog", columnList = "is_published, created_date")
+})
+@EntityListeners(ContentChangeListener.class)
 public class Lab {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lab_seq")
+    @SequenceGenerator(name = "lab_seq", sequenceName = "lab_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, length = 200)
@@ -23,17 +28,6 @@ public class Lab {
     @Size(max = 1000, message = "Description must not exceed 1000 characters")
     private String description;
     
-    @Column(nullable = false, columnDefinition = "TEXT")
-    @NotBlank(message = "Theory content is required")
-    private String theory; // Theory explanation
-    
-    @Column(nullable = false, columnDefinition = "TEXT")
-    @NotBlank(message = "Exercise content is required")
-    private String exercise; // Practical exercise instructions
-    
-    @Column(columnDefinition = "TEXT")
-    private String solution; // Solution/hints for the exercise
-    
     @Enumerated(EnumType.STRING)
     @Column(nullable = false, length = 20)
     private Difficulty difficulty = Difficulty.BEGINNER;
@@ -66,6 +60,12 @@ public class Lab {
     private String labUrl; // URL to interactive lab environment
     
     // Relationships
+    // Teoria, esercizio e soluzione in lab_content: caricati solo quando servono
+    @OneToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @JoinColumn(name = "content_id", unique = true)
+    @Valid
+    private LabContent content;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "category_id", nullable = false)
     private Category category;
@@ -106,8 +106,7 @@ public class Lab {
     
     public Lab(String title, String theory, String exercise, Category category, User createdBy) {
         this.title = title;
-        this.theory = theory;
-        this.exercise = exercise;
+        this.content = new LabContent(theory, exercise, null);
         this.category = category;
         this.createdBy = createdBy;
     }
@@ -116,8 +115,7 @@ public class Lab {
                Difficulty difficulty, Category category, User createdBy) {
         this.title = title;
         this.description = description;
-        this.theory = theory;
-        this.exercise = exercise;
+        this.content = new LabContent(theory, exercise, null);
         this.difficulty = difficulty;
         this.category = category;
         this.createdBy = createdBy;
@@ -149,30 +147,46 @@ public class Lab {
         this.description = description;
     }
     
+    public LabContent getContent() {
+        return content;
+    }
+    
+    public void setContent(LabContent content) {
+        this.content = content;
+    }
+    
+    // Teoria, esercizio e soluzione: la lettura carica lab_content (lazy)
     public String getTheory() {
-        return theory;
+        return content != null ? content.getTheory() : null;
     }
     
     public void setTheory(String theory) {
-        this.theory = theory;
+        editableContent().setTheory(theory);
         this.lastModified = LocalDateTime.now();
     }
     
     public String getExercise() {
-        return exercise;
+        return content != null ? content.getExercise() : null;
     }
     
     public void setExercise(String exercise) {
-        this.exercise = exercise;
+        editableContent().setExercise(exercise);
         this.lastModified = LocalDateTime.now();
     }
     
     public String getSolution() {
-        return solution;
+        return content != null ? content.getSolution() : null;
     }
     
     public void setSolution(String solution) {
-        this.solution = solution;
+        editableContent().setSolution(solution);
+    }
+    
+    private LabContent editableContent() {
+        if (content == null) {
+            content = new LabContent();
+        }
+        return content;
     }
     
     public Difficulty getDifficulty() {
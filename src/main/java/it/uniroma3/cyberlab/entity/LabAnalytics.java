@@ -0,0 +1,171 @@
+package it.uniroma3.cyberlab.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Aggregati per lab salvati in forma compatta (istogrammi come liste di contatori separati da virgola).
+ * E' lo stato di riferimento condiviso dai nodi: ogni modifica di un progresso la aggiorna sotto lock di riga
+ * nella propria transazione, LabAnalyticsService ne tiene solo una copia in memoria.
+ */
+@Entity
+@Table(name = "lab_analytics")
+public class LabAnalytics {
+
+    @Id
+    @Column(name = "lab_id")
+    private Long labId;
+
+    // Righe di user_progress del lab, per stato
+    @Column(name = "total_count", nullable = false)
+    private long totalCount;
+
+    @Column(name = "in_progress_count", nullable = false)
+    private long inProgressCount;
+
+    @Column(name = "completed_count", nullable = false)
+    private long completedCount;
+
+    @Column(name = "abandoned_count", nullable = false)
+    private long abandonedCount;
+
+    // Somme su tutte le righe (medie di tempo e completamento)
+    @Column(name = "time_sum", nullable = false)
+    private long timeSum;
+
+    @Column(name = "completion_sum", nullable = false)
+    private long completionSum;
+
+    // Tempi dei completamenti, attempts_count, percentuale raggiunta da chi abbandona
+    @Column(name = "time_histogram", length = 512)
+    private String timeHistogram;
+
+    @Column(name = "attempts_histogram", length = 512)
+    private String attemptsHistogram;
+
+    @Column(name = "drop_off_histogram", length = 512)
+    private String dropOffHistogram;
+
+    // Completamenti piu' veloci: "progressId:minuti,..."
+    @Column(name = "fastest", length = 1024)
+    private String fastest;
+
+    // Incrementata a ogni modifica della riga: versione delle statistiche per ETag e cache dei nodi
+    @Column(name = "revision")
+    private Long revision = 0L;
+
+    @Column(name = "last_updated", nullable = false)
+    private LocalDateTime lastUpdated = LocalDateTime.now();
+
+    // Constructors
+    public LabAnalytics() {}
+
+    public LabAnalytics(Long labId) {
+        this.labId = labId;
+    }
+
+    // Getters and Setters
+    public Long getLabId() {
+        return labId;
+    }
+
+    public void setLabId(Long labId) {
+        this.labId = labId;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public void setTotalCount(long totalCount) {
+        this.totalCount = totalCount;
+    }
+
+    public long getInProgressCount() {
+        return inProgressCount;
+    }
+
+    public void setInProgressCount(long inProgressCount) {
+        this.inProgressCount = inProgressCount;
+    }
+
+    public long getCompletedCount() {
+        return completedCount;
+    }
+
+    public void setCompletedCount(long completedCount) {
+        this.completedCount = completedCount;
+    }
+
+    public long getAbandonedCount() {
+        return abandonedCount;
+    }
+
+    public void setAbandonedCount(long abandonedCount) {
+        this.abandonedCount = abandonedCount;
+    }
+
+    public long getTimeSum() {
+        return timeSum;
+    }
+
+    public void setTimeSum(long timeSum) {
+        this.timeSum = timeSum;
+    }
+
+    public long getCompletionSum() {
+        return completionSum;
+    }
+
+    public void setCompletionSum(long completionSum) {
+        this.completionSum = completionSum;
+    }
+
+    public String getTimeHistogram() {
+        return timeHistogram;
+    }
+
+    public void setTimeHistogram(String timeHistogram) {
+        this.timeHistogram = timeHistogram;
+    }
+
+    public String getAttemptsHistogram() {
+        return attemptsHistogram;
+    }
+
+    public void setAttemptsHistogram(String attemptsHistogram) {
+        this.attemptsHistogram = attemptsHistogram;
+    }
+
+    public String getDropOffHistogram() {
+        return dropOffHistogram;
+    }
+
+    public void setDropOffHistogram(String dropOffHistogram) {
+        this.dropOffHistogram = dropOffHistogram;
+    }
+
+    public String getFastest() {
+        return fastest;
+    }
+
+    public void setFastest(String fastest) {
+        this.fastest = fastest;
+    }
+
+    public long getRevision() {
+        return revision != null ? revision : 0L;
+    }
+
+    public void setRevision(long revision) {
+        this.revision = revision;
+    }
+
+    public LocalDateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(LocalDateTime lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+}
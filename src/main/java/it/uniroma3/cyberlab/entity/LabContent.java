@@ -0,0 +1,75 @@
+package it.uniroma3.cyberlab.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.*;
+
+/**
+ * Testi lunghi di un lab (teoria, esercizio, soluzione) separati dalla riga del lab:
+ * catalogo e liste leggono solo la tabella lab, il contenuto si carica nella pagina del lab e nella pratica.
+ * I testi oltre la soglia di CompressedTextConverter sono salvati compressi.
+ */
+@Entity
+@Table(name = "lab_content")
+public class LabContent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "lab_content_seq")
+    @SequenceGenerator(name = "lab_content_seq", sequenceName = "lab_content_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.class)
+    @NotBlank(message = "Theory content is required")
+    private String theory;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.class)
+    @NotBlank(message = "Exercise content is required")
+    private String exercise;
+
+    @Column(columnDefinition = "TEXT")
+    @Convert(converter = CompressedTextConverter.class)
+    private String solution;
+
+    // Constructors
+    public LabContent() {}
+
+    public LabContent(String theory, String exercise, String solution) {
+        this.theory = theory;
+        this.exercise = exercise;
+        this.solution = solution;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getTheory() {
+        return theory;
+    }
+
+    public void setTheory(String theory) {
+        this.theory = theory;
+    }
+
+    public String getExercise() {
+        return exercise;
+    }
+
+    public void setExercise(String exercise) {
+        this.exercise = exercise;
+    }
+
+    public String getSolution() {
+        return solution;
+    }
+
+    public void setSolution(String solution) {
+        this.solution = solution;
+    }
+}
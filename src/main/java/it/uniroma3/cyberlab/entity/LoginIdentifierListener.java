@@ -0,0 +1,27 @@
+package it.uniroma3.cyberlab.entity;
+
+import it.uniroma3.cyberlab.service.AvailabilityCheckService;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Entity listener JPA: username ed email di ogni utente registrato o rinominato
+ * finiscono subito nei filtri di disponibilita'.
+ * Servizio risolto al primo evento: il listener nasce con l'EntityManagerFactory, prima dei repository.
+ */
+public class LoginIdentifierListener {
+
+    @Autowired
+    private ObjectProvider<AvailabilityCheckService> availabilityCheckService;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(User user) {
+        AvailabilityCheckService service = availabilityCheckService != null ? availabilityCheckService.getIfAvailable() : null;
+        if (service != null) {
+            service.register(user);
+        }
+    }
+}
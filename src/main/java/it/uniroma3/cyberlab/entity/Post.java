@@ -1,17 +1,28 @@
 package it.uniroma3.cyberlab.entity;
 
 import jakarta.persistence.*;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Entity
-@Table(name = "post")
+@Table(name = "post", indexes = {
+    @Index(name = "idx_post_comment_count", columnList = "comment_count"),
+    @Index(name = "idx_post_created_date", columnList = "created_date"),
+    @Index(name = "idx_post_author_created", columnList = "author_id, created_date")
+})
+@EntityListeners(ContentChangeListener.class)
 public class Post {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "post_seq")
+    @SequenceGenerator(name = "post_seq", sequenceName = "post_seq", allocationSize = 50)
     private Long id;
     
     @Column(nullable = false, length = 200)
@@ -19,10 +30,19 @@ public class Post {
     @Size(max = 200, message = "Title must not exceed 200 characters")
     private String title;
     
-    @Column(nullable = false, columnDefinition = "TEXT")
-    @NotBlank(message = "Post content is required")
-    @Size(min = 10, message = "Content must be at least 10 characters")
-    private String content;
+    // Markdown e HTML renderizzato in post_body (lazy): le liste usano solo excerpt
+    @OneToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @JoinColumn(name = "body_id", unique = true)
+    @Valid
+    private PostBody body;
+    
+    // Estratto in testo semplice, calcolato da PostContentRenderer alla creazione/modifica
+    @Column(length = 300)
+    private String excerpt;
+    
+    // SHA-256 del markdown: se non cambia, la modifica non rifa' il rendering
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
     
     @Enumerated(EnumType.STRING)
     @Column(name = "post_type", nullable = false, length = 20)
@@ -60,6 +80,15 @@ public class Post {
     @Column(name = "is_locked")
     private Boolean isLocked = false;
     
+    // Contatore denormalizzato: scritto solo con UPDATE atomici (vedi PostRepository.adjustCommentCount)
+    @Column(name = "comment_count", updatable = false)
+    @ColumnDefault("0")
+    private Integer commentCount = 0;
+    
+    // Punteggio "hot" in scala logaritmica, salvato periodicamente da PostRankingService
+    @Column(name = "hot_score")
+    private Double hotScore;
+    
     // Relationships
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "author_id", nullable = false)
@@ -69,13 +98,26 @@ public class Post {
     @JoinColumn(name = "category_id", nullable = false)
     private Category category;
     
-    @OneToMany(mappedBy = "post", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    // Senza cascade: commenti e segnalazioni li elimina ContentDeletionService con statement set-based
+    @OneToMany(mappedBy = "post", fetch = FetchType.LAZY)
     private List<Comment> comments = new ArrayList<>();
     
     // ========== AGGIUNTA RELAZIONE CON REPORT ==========
-    @OneToMany(mappedBy = "post", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @OneToMany(mappedBy = "post", fetch = FetchType.LAZY)
     private List<Report> reports = new ArrayList<>();
     
+    // ========== TAG NORMALIZZATI ==========
+    // Sincronizzati da TagService con la colonna tags (che resta come testo originale)
+    @ManyToMany(fetch = FetchType.LAZY)
+    @JoinTable(name = "post_tag",
+            joinColumns = @JoinColumn(name = "post_id"),
+            inverseJoinColumns = @JoinColumn(name = "tag_id"),
+            indexes = @Index(name = "idx_post_tag_tag", columnList = "tag_id, post_id"))
+    private Set<Tag> tagSet = new HashSet<>();
+    
+    @Transient
+    private List<String> tagListCache;
+    
     // Enums
     public enum PostType {
         SCRIPT("Attack Script"),
@@ -101,14 +143,14 @@ public class Post {
     
     public Post(String title, String content, User author, Category category) {
         this.title = title;
-        this.content = content;
+        this.body = new PostBody(content);
         this.author = author;
         this.category = category;
     }
     
     public Post(String title, String content, PostType postType, User author, Category category) {
         this.title = title;
-        this.content = content;
+        this.body = new PostBody(content);
         this.postType = postType;
         this.author = author;
         this.category = category;
@@ -132,15 +174,47 @@ public class Post {
         this.lastModified = LocalDateTime.now();
     }
     
+    public PostBody getBody() {
+        return body;
+    }
+    
+    public void setBody(PostBody body) {
+        this.body = body;
+    }
+    
+    // Markdown e HTML: la lettura carica post_body (lazy)
     public String getContent() {
-        return content;
+        return body != null ? body.getContent() : null;
     }
     
     public void setContent(String content) {
-        this.content = content;
+        if (body == null) {
+            body = new PostBody();
+        }
+        body.setContent(content);
         this.lastModified = LocalDateTime.now();
     }
     
+    public String getContentHtml() {
+        return body != null ? body.getContentHtml() : null;
+    }
+    
+    public String getExcerpt() {
+        return excerpt;
+    }
+    
+    public void setExcerpt(String excerpt) {
+        this.excerpt = excerpt;
+    }
+    
+    public String getContentHash() {
+        return contentHash;
+    }
+    
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+    
     public PostType getPostType() {
         return postType;
     }
@@ -187,6 +261,23 @@ public class Post {
     
     public void setTags(String tags) {
         this.tags = tags;
+        this.tagListCache = null;
+    }
+    
+    public Double getHotScore() {
+        return hotScore;
+    }
+    
+    public void setHotScore(Double hotScore) {
+        this.hotScore = hotScore;
+    }
+    
+    public Set<Tag> getTagSet() {
+        return tagSet;
+    }
+    
+    public void setTagSet(Set<Tag> tagSet) {
+        this.tagSet = tagSet;
     }
     
     public Boolean getIsPinned() {
@@ -307,18 +398,26 @@ public class Post {
     }
     
     public int getCommentCount() {
-        return comments != null ? comments.size() : 0;
+        return commentCount != null ? commentCount : 0;
+    }
+    
+    public void setCommentCount(Integer commentCount) {
+        this.commentCount = commentCount;
     }
     
+    // Dall'estratto salvato: non carica il corpo del post
     public String getShortContent(int maxLength) {
-        if (content == null) return "";
-        if (content.length() <= maxLength) return content;
-        return content.substring(0, maxLength) + "...";
+        if (excerpt == null) return "";
+        if (excerpt.length() <= maxLength) return excerpt;
+        return excerpt.substring(0, maxLength) + "...";
     }
     
     public List<String> getTagList() {
+        if (tagListCache != null) {
+            return tagListCache;
+        }
         if (tags == null || tags.trim().isEmpty()) {
-            return new ArrayList<>();
+            return Collections.emptyList();
         }
         List<String> tagList = new ArrayList<>();
         for (String tag : tags.split(",")) {
@@ -327,7 +426,9 @@ public class Post {
                 tagList.add(trimmedTag);
             }
         }
-        return tagList;
+        // Split una sola volta per istanza: i template chiamano getTagList piu' volte
+        tagListCache = Collections.unmodifiableList(tagList);
+        return tagListCache;
     }
     
     public boolean isOwnedBy(User user) {
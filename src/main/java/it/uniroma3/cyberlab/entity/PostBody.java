@@ -0,0 +1,59 @@
+package it.uniroma3.cyberlab.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.*;
+
+/**
+ * Testo di un post (markdown originale) e HTML gia' renderizzato, separati dalla riga del post:
+ * le liste leggono solo post (con l'estratto), il corpo si carica nella pagina del post e nella modifica.
+ * L'HTML viene prodotto da PostContentRenderer alla creazione/modifica, non a ogni visualizzazione.
+ */
+@Entity
+@Table(name = "post_body")
+public class PostBody {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "post_body_seq")
+    @SequenceGenerator(name = "post_body_seq", sequenceName = "post_body_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    @NotBlank(message = "Post content is required")
+    @Size(min = 10, message = "Content must be at least 10 characters")
+    private String content;
+
+    @Column(name = "content_html", columnDefinition = "TEXT")
+    private String contentHtml;
+
+    // Constructors
+    public PostBody() {}
+
+    public PostBody(String content) {
+        this.content = content;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public String getContentHtml() {
+        return contentHtml;
+    }
+
+    public void setContentHtml(String contentHtml) {
+        this.contentHtml = contentHtml;
+    }
+}
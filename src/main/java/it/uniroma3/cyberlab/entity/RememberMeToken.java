@@ -0,0 +1,84 @@
+package it.uniroma3.cyberlab.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Token "ricordami" persistente: una riga per serie (un browser), il token ruota a ogni accesso automatico.
+ * Il cookie contiene serie e token; la password non entra nella firma come nel token hash-based.
+ * Il token sostituito dall'ultima rotazione resta in previous_token per le richieste partite in parallelo
+ */
+@Entity
+@Table(name = "remember_me_token", indexes = {
+    @Index(name = "idx_remember_me_token_username", columnList = "username"),
+    @Index(name = "idx_remember_me_token_last_used", columnList = "last_used")
+})
+public class RememberMeToken {
+
+    @Id
+    @Column(length = 64)
+    private String series;
+
+    @Column(nullable = false, length = 50)
+    private String username;
+
+    @Column(nullable = false, length = 64)
+    private String token;
+
+    @Column(name = "previous_token", length = 64)
+    private String previousToken;
+
+    @Column(name = "last_used", nullable = false)
+    private LocalDateTime lastUsed;
+
+    // Constructors
+    public RememberMeToken() {}
+
+    public RememberMeToken(String series, String username, String token, LocalDateTime lastUsed) {
+        this.series = series;
+        this.username = username;
+        this.token = token;
+        this.lastUsed = lastUsed;
+    }
+
+    // Getters and Setters
+    public String getSeries() {
+        return series;
+    }
+
+    public void setSeries(String series) {
+        this.series = series;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public void setToken(String token) {
+        this.token = token;
+    }
+
+    public String getPreviousToken() {
+        return previousToken;
+    }
+
+    public void setPreviousToken(String previousToken) {
+        this.previousToken = previousToken;
+    }
+
+    public LocalDateTime getLastUsed() {
+        return lastUsed;
+    }
+
+    public void setLastUsed(LocalDateTime lastUsed) {
+        this.lastUsed = lastUsed;
+    }
+}
@@ -5,11 +5,19 @@ import jakarta.validation.constraints.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "report")
+@Table(name = "report",
+       uniqueConstraints = @UniqueConstraint(name = "uk_report_case_reporter", columnNames = {"case_id", "reported_by"}),
+       indexes = {
+           @Index(name = "idx_report_created_date", columnList = "created_date"),
+           @Index(name = "idx_report_reporter_created", columnList = "reported_by, created_date"),
+           @Index(name = "idx_report_post", columnList = "post_id"),
+           @Index(name = "idx_report_comment", columnList = "comment_id")
+       })
 public class Report {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "report_seq")
+    @SequenceGenerator(name = "report_seq", sequenceName = "report_seq", allocationSize = 50)
     private Long id;
     
     @Enumerated(EnumType.STRING)
@@ -41,6 +49,11 @@ public class Report {
     private LocalDateTime resolvedDate;
     
     // Relationships
+    // Caso a cui appartiene: una sola segnalazione per utente e contenuto
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "case_id")
+    private ReportCase reportCase;
+    
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "comment_id")
     private Comment comment;
@@ -221,6 +234,14 @@ public class Report {
         this.resolvedDate = resolvedDate;
     }
     
+    public ReportCase getReportCase() {
+        return reportCase;
+    }
+    
+    public void setReportCase(ReportCase reportCase) {
+        this.reportCase = reportCase;
+    }
+    
     public Comment getComment() {
         return comment;
     }
@@ -0,0 +1,325 @@
+package it.uniroma3.cyberlab.entity;
+
+import it.uniroma3.cyberlab.entity.Report.ReportReason;
+import it.uniroma3.cyberlab.entity.Report.ReportStatus;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Caso di moderazione: raggruppa tutte le segnalazioni sullo stesso contenuto (post, commento o utente).
+ * Contatori e istogramma dei motivi sono aggiornati a ogni nuova segnalazione, cosi' gli admin
+ * lavorano su una riga per contenuto invece che su una riga per segnalazione.
+ */
+@Entity
+@Table(name = "report_case",
+       uniqueConstraints = @UniqueConstraint(name = "uk_report_case_target", columnNames = {"target_type", "target_id"}),
+       indexes = @Index(name = "idx_report_case_queue", columnList = "status, open_reports"))
+public class ReportCase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "report_case_seq")
+    @SequenceGenerator(name = "report_case_seq", sequenceName = "report_case_seq", allocationSize = 50)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "target_type", nullable = false, length = 10)
+    private TargetType targetType;
+
+    @Column(name = "target_id", nullable = false)
+    private Long targetId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private ReportStatus status = ReportStatus.PENDING;
+
+    // Segnalazioni ancora da gestire (azzerate a ogni chiusura) e totali dall'apertura del caso
+    @Column(name = "open_reports", nullable = false)
+    private int openReports;
+
+    @Column(name = "total_reports", nullable = false)
+    private int totalReports;
+
+    // Segnalazioni per motivo: "SPAM:3,HARASSMENT:1"
+    @Column(name = "reason_counts", length = 512)
+    private String reasonCounts;
+
+    @Column(name = "first_report_date", nullable = false)
+    private LocalDateTime firstReportDate = LocalDateTime.now();
+
+    @Column(name = "last_report_date", nullable = false)
+    private LocalDateTime lastReportDate = LocalDateTime.now();
+
+    // Post bloccato automaticamente al superamento della soglia
+    @Column(name = "auto_locked", nullable = false)
+    private boolean autoLocked;
+
+    @Column(columnDefinition = "TEXT")
+    private String resolution;
+
+    @Column(name = "resolved_date")
+    private LocalDateTime resolvedDate;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "resolved_by")
+    private User resolvedBy;
+
+    public enum TargetType {
+        POST, COMMENT, USER
+    }
+
+    // Constructors
+    public ReportCase() {}
+
+    public ReportCase(TargetType targetType, Long targetId) {
+        this.targetType = targetType;
+        this.targetId = targetId;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public TargetType getTargetType() {
+        return targetType;
+    }
+
+    public void setTargetType(TargetType targetType) {
+        this.targetType = targetType;
+    }
+
+    public Long getTargetId() {
+        return targetId;
+    }
+
+    public void setTargetId(Long targetId) {
+        this.targetId = targetId;
+    }
+
+    public ReportStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ReportStatus status) {
+        this.status = status;
+    }
+
+    public int getOpenReports() {
+        return openReports;
+    }
+
+    public void setOpenReports(int openReports) {
+        this.openReports = openReports;
+    }
+
+    public int getTotalReports() {
+        return totalReports;
+    }
+
+    public void setTotalReports(int totalReports) {
+        this.totalReports = totalReports;
+    }
+
+    public String getReasonCounts() {
+        return reasonCounts;
+    }
+
+    public void setReasonCounts(String reasonCounts) {
+        this.reasonCounts = reasonCounts;
+    }
+
+    public LocalDateTime getFirstReportDate() {
+        return firstReportDate;
+    }
+
+    public void setFirstReportDate(LocalDateTime firstReportDate) {
+        this.firstReportDate = firstReportDate;
+    }
+
+    public LocalDateTime getLastReportDate() {
+        return lastReportDate;
+    }
+
+    public void setLastReportDate(LocalDateTime lastReportDate) {
+        this.lastReportDate = lastReportDate;
+    }
+
+    public boolean isAutoLocked() {
+        return autoLocked;
+    }
+
+    public void setAutoLocked(boolean autoLocked) {
+        this.autoLocked = autoLocked;
+    }
+
+    public String getResolution() {
+        return resolution;
+    }
+
+    public void setResolution(String resolution) {
+        this.resolution = resolution;
+    }
+
+    public LocalDateTime getResolvedDate() {
+        return resolvedDate;
+    }
+
+    public void setResolvedDate(LocalDateTime resolvedDate) {
+        this.resolvedDate = resolvedDate;
+    }
+
+    public User getResolvedBy() {
+        return resolvedBy;
+    }
+
+    public void setResolvedBy(User resolvedBy) {
+        this.resolvedBy = resolvedBy;
+    }
+
+    // Utility methods
+    public boolean isOpen() {
+        return isOpenStatus(status);
+    }
+
+    public static boolean isOpenStatus(ReportStatus status) {
+        return status == ReportStatus.PENDING || status == ReportStatus.UNDER_REVIEW
+                || status == ReportStatus.ESCALATED;
+    }
+
+    /**
+     * Nuova segnalazione: un caso chiuso viene riaperto.
+     * autoLocked resta: il post bloccato automaticamente e' ancora bloccato e il rifiuto del caso deve sbloccarlo
+     */
+    public void addReport(ReportReason reason, LocalDateTime when) {
+        if (!isOpen()) {
+            status = ReportStatus.PENDING;
+            resolution = null;
+            resolvedDate = null;
+            resolvedBy = null;
+        }
+        openReports++;
+        totalReports++;
+        lastReportDate = when;
+        adjustReason(reason, 1);
+    }
+
+    /**
+     * Segnalazione precedente ai casi (migrazione): lo stato del caso segue quello delle segnalazioni
+     */
+    public void attachExisting(Report report) {
+        LocalDateTime created = report.getCreatedDate();
+        if (totalReports == 0) {
+            firstReportDate = created;
+            lastReportDate = created;
+        } else if (created.isBefore(firstReportDate)) {
+            firstReportDate = created;
+        } else if (created.isAfter(lastReportDate)) {
+            lastReportDate = created;
+        }
+        totalReports++;
+        adjustReason(report.getReason(), 1);
+
+        if (isOpenStatus(report.getStatus())) {
+            openReports++;
+            if (status != ReportStatus.ESCALATED) {
+                status = report.getStatus() == ReportStatus.ESCALATED ? ReportStatus.ESCALATED : ReportStatus.PENDING;
+            }
+            resolution = null;
+            resolvedDate = null;
+            resolvedBy = null;
+        } else if (openReports == 0) {
+            status = report.getStatus();
+            resolution = report.getResolution();
+            resolvedDate = report.getResolvedDate();
+            resolvedBy = report.getResolvedBy();
+        }
+    }
+
+    /**
+     * Segnalazione eliminata (es. cancellazione account): senza segnalazioni aperte il caso si chiude
+     */
+    public void removeReport(ReportReason reason, boolean wasOpen) {
+        if (wasOpen && openReports > 0) {
+            openReports--;
+        }
+        if (totalReports > 0) {
+            totalReports--;
+        }
+        adjustReason(reason, -1);
+
+        if (isOpen() && openReports == 0) {
+            status = ReportStatus.DISMISSED;
+            resolution = "All reports withdrawn";
+            resolvedDate = LocalDateTime.now();
+        }
+    }
+
+    public void close(ReportStatus closedStatus, User admin, String resolution) {
+        this.status = closedStatus;
+        this.resolvedBy = admin;
+        this.resolution = resolution;
+        this.resolvedDate = LocalDateTime.now();
+        this.openReports = 0;
+    }
+
+    /**
+     * Istogramma dei motivi, in ordine di dichiarazione
+     */
+    public Map<ReportReason, Integer> getReasonHistogram() {
+        Map<ReportReason, Integer> histogram = new EnumMap<>(ReportReason.class);
+        if (reasonCounts == null || reasonCounts.isBlank()) {
+            return histogram;
+        }
+        for (String entry : reasonCounts.split(",")) {
+            int separator = entry.indexOf(':');
+            if (separator > 0) {
+                try {
+                    histogram.put(ReportReason.valueOf(entry.substring(0, separator)),
+                            Integer.parseInt(entry.substring(separator + 1)));
+                } catch (IllegalArgumentException e) {
+                    // Motivo non piu' esistente: ignorato
+                }
+            }
+        }
+        return histogram;
+    }
+
+    private void adjustReason(ReportReason reason, int delta) {
+        if (reason == null) {
+            return;
+        }
+        Map<ReportReason, Integer> histogram = getReasonHistogram();
+        int count = histogram.getOrDefault(reason, 0) + delta;
+        if (count > 0) {
+            histogram.put(reason, count);
+        } else {
+            histogram.remove(reason);
+        }
+
+        StringBuilder value = new StringBuilder();
+        histogram.forEach((key, total) -> {
+            if (value.length() > 0) {
+                value.append(',');
+            }
+            value.append(key.name()).append(':').append(total);
+        });
+        reasonCounts = value.length() > 0 ? value.toString() : null;
+    }
+
+    @Override
+    public String toString() {
+        return "ReportCase{" +
+                "id=" + id +
+                ", targetType=" + targetType +
+                ", targetId=" + targetId +
+                ", status=" + status +
+                ", openReports=" + openReports +
+                '}';
+    }
+}
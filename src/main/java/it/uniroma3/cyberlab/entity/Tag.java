@@ -0,0 +1,62 @@
+package it.uniroma3.cyberlab.entity;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.*;
+
+@Entity
+@Table(name = "tag")
+public class Tag {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "tag_seq")
+    @SequenceGenerator(name = "tag_seq", sequenceName = "tag_seq", allocationSize = 50)
+    private Long id;
+
+    // Nome normalizzato (minuscolo, senza spazi ai bordi): indice univoco per il lookup
+    @Column(unique = true, nullable = false, length = 50)
+    @NotBlank(message = "Tag name is required")
+    @Size(max = 50, message = "Tag name must not exceed 50 characters")
+    private String name;
+
+    // Constructors
+    public Tag() {}
+
+    public Tag(String name) {
+        this.name = name;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Tag)) return false;
+        Tag tag = (Tag) o;
+        return name != null && name.equals(tag.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return name != null ? name.hashCode() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Tag{id=" + id + ", name='" + name + "'}";
+    }
+}
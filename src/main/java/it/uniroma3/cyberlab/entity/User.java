@@ -5,13 +5,20 @@ import jakarta.validation.constraints.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+    @Index(name = "idx_users_join_date", columnList = "join_date"),
+    @Index(name = "idx_users_username_normalized", columnList = "username_normalized"),
+    @Index(name = "idx_users_email_normalized", columnList = "email_normalized")
+})
+@EntityListeners({ContentChangeListener.class, LoginIdentifierListener.class})
 public class User {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Long id;
     
     @Column(unique = true, nullable = false, length = 50)
@@ -25,6 +32,14 @@ public class User {
     @Size(max = 100, message = "Email must not exceed 100 characters")
     private String email;
     
+    // Identificativi di login normalizzati (trim + minuscolo): lookup del login con un indice per colonna.
+    // Nulli solo per le righe non ancora migrate (LoginIdentifierMigration)
+    @Column(name = "username_normalized", length = 50)
+    private String usernameNormalized;
+    
+    @Column(name = "email_normalized", length = 100)
+    private String emailNormalized;
+    
     @Column(nullable = false)
     @NotBlank(message = "Password is required")
     private String password; // BCrypt encrypted
@@ -55,17 +70,17 @@ public class User {
     @Column(name = "avatar_url", length = 255)
     private String avatar;
     
-    // Relationships
-    @OneToMany(mappedBy = "author", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    // Relationships (senza cascade: i contenuti di un account li gestisce AccountErasureService)
+    @OneToMany(mappedBy = "author", fetch = FetchType.LAZY)
     private List<Post> posts = new ArrayList<>();
     
-    @OneToMany(mappedBy = "author", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @OneToMany(mappedBy = "author", fetch = FetchType.LAZY)
     private List<Comment> comments = new ArrayList<>();
     
-    @OneToMany(mappedBy = "reportedBy", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @OneToMany(mappedBy = "reportedBy", fetch = FetchType.LAZY)
     private List<Report> reports = new ArrayList<>();
     
-    @OneToMany(mappedBy = "createdBy", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @OneToMany(mappedBy = "createdBy", fetch = FetchType.LAZY)
     private List<Lab> createdLabs = new ArrayList<>();
     
     // Enums
@@ -81,8 +96,8 @@ public class User {
     public User() {}
     
     public User(String username, String email, String password) {
-        this.username = username;
-        this.email = email;
+        setUsername(username);
+        setEmail(email);
         this.password = password;
     }
     
@@ -101,6 +116,7 @@ public class User {
     
     public void setUsername(String username) {
         this.username = username;
+        this.usernameNormalized = normalizeLoginIdentifier(username);
     }
     
     public String getEmail() {
@@ -109,6 +125,22 @@ public class User {
     
     public void setEmail(String email) {
         this.email = email;
+        this.emailNormalized = normalizeLoginIdentifier(email);
+    }
+    
+    public String getUsernameNormalized() {
+        return usernameNormalized;
+    }
+    
+    public String getEmailNormalized() {
+        return emailNormalized;
+    }
+    
+    /**
+     * Forma usata per confrontare username ed email al login e alla registrazione
+     */
+    public static String normalizeLoginIdentifier(String value) {
+        return value != null ? value.trim().toLowerCase(Locale.ROOT) : null;
     }
     
     public String getPassword() {
@@ -0,0 +1,82 @@
+package it.uniroma3.cyberlab.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Preferenza utente (chiave/valore): una riga per preferenza, al posto del blocco [Preferences] in profileInfo
+ */
+@Entity
+@Table(name = "user_preference", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_user_preference_key", columnNames = {"user_id", "pref_key"})
+})
+public class UserPreference {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_preference_seq")
+    @SequenceGenerator(name = "user_preference_seq", sequenceName = "user_preference_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "user_id", nullable = false)
+    private User user;
+
+    @Column(name = "pref_key", nullable = false, length = 60)
+    private String key;
+
+    @Column(name = "pref_value", length = 255)
+    private String value;
+
+    @Column(name = "last_modified", nullable = false)
+    private LocalDateTime lastModified = LocalDateTime.now();
+
+    // Constructors
+    public UserPreference() {}
+
+    public UserPreference(User user, String key, String value) {
+        this.user = user;
+        this.key = key;
+        this.value = value;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public void setUser(User user) {
+        this.user = user;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+    }
+
+    public LocalDateTime getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(LocalDateTime lastModified) {
+        this.lastModified = lastModified;
+    }
+}
@@ -5,11 +5,16 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "user_progress", 
-       uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "lab_id"}))
+       uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "lab_id"}),
+       indexes = {
+           @Index(name = "idx_user_progress_lab_fastest", columnList = "lab_id, status, time_spent"),
+           @Index(name = "idx_user_progress_completed_date", columnList = "completed_date")
+       })
 public class UserProgress {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "user_progress_seq")
+    @SequenceGenerator(name = "user_progress_seq", sequenceName = "user_progress_seq", allocationSize = 50)
     private Long id;
     
     @Enumerated(EnumType.STRING)
@@ -0,0 +1,139 @@
+package it.uniroma3.cyberlab.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Snapshot delle statistiche di un utente, aggiornato con delta dai servizi che modificano
+ * post, commenti e progressi: profilo e dashboard lo leggono con un solo lookup per chiave primaria
+ */
+@Entity
+@Table(name = "user_stats")
+public class UserStats {
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "post_count", nullable = false)
+    private long postCount;
+
+    @Column(name = "comment_count", nullable = false)
+    private long commentCount;
+
+    // Righe di user_progress (qualunque stato)
+    @Column(name = "labs_started", nullable = false)
+    private long labsStarted;
+
+    @Column(name = "labs_completed", nullable = false)
+    private long labsCompleted;
+
+    @Column(name = "labs_in_progress", nullable = false)
+    private long labsInProgress;
+
+    @Column(name = "labs_abandoned", nullable = false)
+    private long labsAbandoned;
+
+    @Column(name = "total_time_spent", nullable = false)
+    private long totalTimeSpent;
+
+    // Somma di completion_percentage: la media si ricava dividendo per labs_started
+    @Column(name = "completion_sum", nullable = false)
+    private long completionSum;
+
+    @Column(name = "last_updated", nullable = false)
+    private LocalDateTime lastUpdated = LocalDateTime.now();
+
+    // Constructors
+    public UserStats() {}
+
+    public UserStats(Long userId) {
+        this.userId = userId;
+    }
+
+    // Getters and Setters
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public long getPostCount() {
+        return postCount;
+    }
+
+    public void setPostCount(long postCount) {
+        this.postCount = postCount;
+    }
+
+    public long getCommentCount() {
+        return commentCount;
+    }
+
+    public void setCommentCount(long commentCount) {
+        this.commentCount = commentCount;
+    }
+
+    public long getLabsStarted() {
+        return labsStarted;
+    }
+
+    public void setLabsStarted(long labsStarted) {
+        this.labsStarted = labsStarted;
+    }
+
+    public long getLabsCompleted() {
+        return labsCompleted;
+    }
+
+    public void setLabsCompleted(long labsCompleted) {
+        this.labsCompleted = labsCompleted;
+    }
+
+    public long getLabsInProgress() {
+        return labsInProgress;
+    }
+
+    public void setLabsInProgress(long labsInProgress) {
+        this.labsInProgress = labsInProgress;
+    }
+
+    public long getLabsAbandoned() {
+        return labsAbandoned;
+    }
+
+    public void setLabsAbandoned(long labsAbandoned) {
+        this.labsAbandoned = labsAbandoned;
+    }
+
+    public long getTotalTimeSpent() {
+        return totalTimeSpent;
+    }
+
+    public void setTotalTimeSpent(long totalTimeSpent) {
+        this.totalTimeSpent = totalTimeSpent;
+    }
+
+    public long getCompletionSum() {
+        return completionSum;
+    }
+
+    public void setCompletionSum(long completionSum) {
+        this.completionSum = completionSum;
+    }
+
+    public LocalDateTime getLastUpdated() {
+        return lastUpdated;
+    }
+
+    public void setLastUpdated(LocalDateTime lastUpdated) {
+        this.lastUpdated = lastUpdated;
+    }
+
+    // Helper methods
+    public double getAverageCompletion() {
+        return labsStarted > 0 ? (double) completionSum / labsStarted : 0.0;
+    }
+}
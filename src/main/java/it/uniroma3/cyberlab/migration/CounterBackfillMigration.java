@@ -0,0 +1,25 @@
+package it.uniroma3.cyberlab.migration;
+
+import it.uniroma3.cyberlab.service.CounterReconciliationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Migrazione all'avvio: popola comment_count e reply_count per le righe esistenti
+ * (le colonne nuove partono da 0). Dopo la prima esecuzione non trova piu' nulla da correggere.
+ */
+@Component
+@Order(20)
+public class CounterBackfillMigration implements ApplicationRunner {
+
+    @Autowired
+    private CounterReconciliationService counterReconciliationService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        counterReconciliationService.reconcile();
+    }
+}
@@ -0,0 +1,54 @@
+package it.uniroma3.cyberlab.migration;
+
+import it.uniroma3.cyberlab.service.LabService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Migrazione all'avvio: sposta teoria, esercizio e soluzione dalle vecchie colonne di lab alla tabella lab_content.
+ * Le vecchie colonne perdono il NOT NULL (i nuovi lab non le scrivono) e vengono svuotate; si possono eliminare a mano.
+ * Idempotente: i lab gia' migrati hanno content_id. Su un database nuovo le colonne non esistono e non fa nulla.
+ */
+@Component
+@Order(5)
+public class LabContentMigration implements ApplicationRunner {
+
+    private static final int CHUNK_SIZE = 100;
+
+    @Autowired
+    private LabService labService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Integer legacyColumns = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = CURRENT_SCHEMA " +
+                "AND table_name = 'lab' AND column_name IN ('theory', 'exercise')", Integer.class);
+        if (legacyColumns == null || legacyColumns < 2) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE lab ALTER COLUMN theory DROP NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE lab ALTER COLUMN exercise DROP NOT NULL");
+
+        long start = System.currentTimeMillis();
+        int moved = 0;
+        int chunk;
+        while ((chunk = labService.migrateLegacyContentChunk(CHUNK_SIZE)) > 0) {
+            moved += chunk;
+        }
+
+        if (moved > 0) {
+            System.out.println("✅ Lab content migration completed: " + moved + " labs in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package it.uniroma3.cyberlab.migration;
+
+import it.uniroma3.cyberlab.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Migrazione all'avvio: riempie users.username_normalized ed email_normalized per gli utenti creati prima
+ * delle colonne (e per le righe di import.sql), cosi' il login li trova con la ricerca per indice.
+ * Idempotente: gli utenti gia' migrati hanno entrambe le colonne.
+ */
+@Component
+@Order(1)
+public class LoginIdentifierMigration implements ApplicationRunner {
+
+    private static final int CHUNK_SIZE = 500;
+
+    @Autowired
+    private UserService userService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.currentTimeMillis();
+        int chunks = 0;
+        Long cursor = 0L;
+
+        while ((cursor = userService.fillLoginIdentifiersChunk(cursor, CHUNK_SIZE)) != null) {
+            chunks++;
+        }
+
+        if (chunks > 0) {
+            System.out.println("✅ Login identifier migration completed: " + chunks + " chunks in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+}
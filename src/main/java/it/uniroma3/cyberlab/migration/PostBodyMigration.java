@@ -0,0 +1,60 @@
+package it.uniroma3.cyberlab.migration;
+
+import it.uniroma3.cyberlab.service.PostService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Migrazione all'avvio: sposta il testo dei post dalla vecchia colonna post.content alla tabella post_body
+ * (la colonna perde il NOT NULL e viene svuotata; si puo' eliminare a mano), poi calcola estratto,
+ * HTML e hash per i post che non li hanno (post migrati e righe di import.sql).
+ * Idempotente: i post gia' migrati hanno body_id, quelli gia' renderizzati hanno l'hash.
+ */
+@Component
+@Order(6)
+public class PostBodyMigration implements ApplicationRunner {
+
+    private static final int CHUNK_SIZE = 100;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        long start = System.currentTimeMillis();
+
+        int moved = 0;
+        Integer legacyColumn = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns WHERE table_schema = CURRENT_SCHEMA " +
+                "AND table_name = 'post' AND column_name = 'content'", Integer.class);
+        if (legacyColumn != null && legacyColumn > 0) {
+            jdbcTemplate.execute("ALTER TABLE post ALTER COLUMN content DROP NOT NULL");
+            int chunk;
+            while ((chunk = postService.migrateLegacyContentChunk(CHUNK_SIZE)) > 0) {
+                moved += chunk;
+            }
+        }
+
+        // Un blocco per transazione, come il backfill dei tag
+        int chunks = 0;
+        Long cursor = 0L;
+        while ((cursor = postService.renderPendingChunk(cursor, CHUNK_SIZE)) != null) {
+            chunks++;
+        }
+
+        if (moved > 0 || chunks > 0) {
+            System.out.println("✅ Post body migration completed: " + moved + " posts moved, " + chunks
+                    + " chunks rendered in " + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package it.uniroma3.cyberlab.migration;
+
+import it.uniroma3.cyberlab.service.ReportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Migrazione all'avvio: raggruppa nei casi (report_case) le segnalazioni create prima dei casi.
+ * Le segnalazioni doppie dello stesso utente sullo stesso contenuto restano fuori dal caso e vengono rifiutate.
+ * Idempotente: le segnalazioni gia' assegnate non vengono piu' selezionate.
+ */
+@Component
+@Order(40)
+public class ReportCaseMigration implements ApplicationRunner {
+
+    private static final int CHUNK_SIZE = 200;
+
+    @Autowired
+    private ReportService reportService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.currentTimeMillis();
+        int chunks = 0;
+        Long cursor = 0L;
+
+        while ((cursor = reportService.migrateLegacyChunk(cursor, CHUNK_SIZE)) != null) {
+            chunks++;
+        }
+
+        if (chunks > 0) {
+            System.out.println("✅ Report cases migration completed: " + chunks + " chunks in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package it.uniroma3.cyberlab.migration;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import jakarta.persistence.metamodel.EntityType;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Field;
+
+/**
+ * Migrazione all'avvio: porta ogni sequenza degli id oltre il MAX(id) della sua tabella.
+ * Serve al passaggio da IDENTITY alle sequenze (le righe esistenti hanno gia' id alti)
+ * e dopo import.sql, che inserisce id espliciti. Gli id sono assegnati a blocchi di allocationSize:
+ * un blocco parte da nextval - allocationSize + 1, quindi la sequenza indietro viene riavviata
+ * da MAX(id) + allocationSize. Idempotente: una sequenza gia' avanti non viene toccata
+ * (si perde solo il blocco letto per il controllo, come a ogni avvio di Hibernate).
+ */
+@Component
+@Order(0)
+public class SequenceAlignmentMigration implements ApplicationRunner {
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        Dialect dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        int aligned = 0;
+
+        for (EntityType<?> entity : entityManagerFactory.getMetamodel().getEntities()) {
+            Field idField = findSequenceId(entity.getJavaType());
+            Table table = entity.getJavaType().getAnnotation(Table.class);
+            if (idField == null || table == null) {
+                continue;
+            }
+            SequenceGenerator generator = idField.getAnnotation(SequenceGenerator.class);
+            Column column = idField.getAnnotation(Column.class);
+            String idColumn = column != null && !column.name().isEmpty() ? column.name() : idField.getName();
+
+            Long maxId = jdbcTemplate.queryForObject(
+                    "SELECT COALESCE(MAX(" + idColumn + "), 0) FROM " + table.name(), Long.class);
+            Long next = jdbcTemplate.queryForObject(
+                    dialect.getSequenceSupport().getSequenceNextValString(generator.sequenceName()), Long.class);
+
+            // Il prossimo nextval (next + allocationSize) darebbe il blocco next + 1 .. next + allocationSize
+            if (next == null || next >= maxId) {
+                continue;
+            }
+            jdbcTemplate.execute("ALTER SEQUENCE " + generator.sequenceName()
+                    + " RESTART WITH " + (maxId + generator.allocationSize()));
+            aligned++;
+        }
+
+        if (aligned > 0) {
+            System.out.println("✅ Sequence alignment completed: " + aligned + " sequences moved past the existing ids");
+        }
+    }
+
+    private static Field findSequenceId(Class<?> type) {
+        Field[] found = new Field[1];
+        ReflectionUtils.doWithFields(type, field -> found[0] = field,
+                field -> field.isAnnotationPresent(Id.class) && field.isAnnotationPresent(SequenceGenerator.class));
+        return found[0];
+    }
+}
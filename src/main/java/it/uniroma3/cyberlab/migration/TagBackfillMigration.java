@@ -0,0 +1,39 @@
+package it.uniroma3.cyberlab.migration;
+
+import it.uniroma3.cyberlab.service.TagService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Migrazione all'avvio: popola tag e post_tag dalla vecchia colonna post.tags.
+ * Idempotente: considera solo i post con tags valorizzato e nessuna riga in post_tag.
+ */
+@Component
+@Order(10)
+public class TagBackfillMigration implements ApplicationRunner {
+
+    private static final int CHUNK_SIZE = 200;
+
+    @Autowired
+    private TagService tagService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.currentTimeMillis();
+        int chunks = 0;
+        Long cursor = 0L;
+
+        // Un blocco per transazione: la migrazione non tiene lock lunghi su post
+        while ((cursor = tagService.backfillChunk(cursor, CHUNK_SIZE)) != null) {
+            chunks++;
+        }
+
+        if (chunks > 0) {
+            System.out.println("✅ Tag backfill completed: " + chunks + " chunks in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+}
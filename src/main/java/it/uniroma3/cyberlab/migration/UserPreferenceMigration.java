@@ -0,0 +1,39 @@
+package it.uniroma3.cyberlab.migration;
+
+import it.uniroma3.cyberlab.service.UserPreferenceService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Migrazione all'avvio: sposta i blocchi [Preferences] e [Avatar] da users.profile_info
+ * alla tabella user_preference e alla colonna avatar_url, lasciando in profileInfo solo la bio.
+ * Idempotente: gli utenti gia' migrati non contengono piu' i marcatori.
+ */
+@Component
+@Order(30)
+public class UserPreferenceMigration implements ApplicationRunner {
+
+    private static final int CHUNK_SIZE = 200;
+
+    @Autowired
+    private UserPreferenceService userPreferenceService;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long start = System.currentTimeMillis();
+        int chunks = 0;
+        Long cursor = 0L;
+
+        while ((cursor = userPreferenceService.migrateEmbeddedChunk(cursor, CHUNK_SIZE)) != null) {
+            chunks++;
+        }
+
+        if (chunks > 0) {
+            System.out.println("✅ User preferences migration completed: " + chunks + " chunks in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package it.uniroma3.cyberlab.repository;
+
+import it.uniroma3.cyberlab.entity.BackgroundJob;
+import it.uniroma3.cyberlab.entity.BackgroundJob.JobStatus;
+import it.uniroma3.cyberlab.entity.BackgroundJob.JobType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BackgroundJobRepository extends JpaRepository<BackgroundJob, Long> {
+
+    List<BackgroundJob> findByJobTypeAndStatusIn(JobType jobType, Collection<JobStatus> statuses);
+
+    List<BackgroundJob> findTop20ByJobTypeOrderByCreatedDateDesc(JobType jobType);
+
+    // Job attivi senza avanzamenti recenti: interrotti (o mai partiti) su qualsiasi nodo
+    @Query("SELECT j FROM BackgroundJob j WHERE j.jobType = :jobType AND j.status IN :statuses " +
+           "AND j.lastUpdated < :staleBefore ORDER BY j.id")
+    List<BackgroundJob> findStaleJobs(@Param("jobType") JobType jobType,
+                                      @Param("statuses") Collection<JobStatus> statuses,
+                                      @Param("staleBefore") LocalDateTime staleBefore, Pageable pageable);
+
+    // Presa in carico atomica: un solo nodo passa il job in RUNNING (o riprende uno fermo)
+    @Modifying
+    @Query("UPDATE BackgroundJob j SET j.status = :running, j.lastUpdated = :now, " +
+           "j.startedDate = COALESCE(j.startedDate, :now) WHERE j.id = :id " +
+           "AND (j.status = :pending OR (j.status = :running AND j.lastUpdated < :staleBefore))")
+    int claim(@Param("id") Long id, @Param("pending") JobStatus pending, @Param("running") JobStatus running,
+              @Param("staleBefore") LocalDateTime staleBefore, @Param("now") LocalDateTime now);
+
+    // Avanzamento scritto nella stessa transazione del blocco elaborato
+    @Modifying
+    @Query("UPDATE BackgroundJob j SET j.processedItems = j.processedItems + :delta, j.phase = :phase, " +
+           "j.cursorId = :cursorId, j.lastUpdated = :now WHERE j.id = :id")
+    int recordProgress(@Param("id") Long id, @Param("delta") long delta, @Param("phase") String phase,
+                       @Param("cursorId") Long cursorId, @Param("now") LocalDateTime now);
+}
@@ -1,7 +1,9 @@
 package it.uniroma3.cyberlab.repository;
 
 import it.uniroma3.cyberlab.entity.Category;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -18,6 +20,11 @@ public interface CategoryRepository extends JpaRepository<Category, Long> {
     boolean existsByName(String name);
     boolean existsByNameIgnoreCase(String name);
     
+    // Lock sulla riga della categoria: operazioni concorrenti sulla stessa categoria vengono serializzate
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM Category c WHERE c.id = :id")
+    Optional<Category> findByIdForUpdate(@Param("id") Long id);
+    
     // Ordered queries
     List<Category> findAllByOrderByNameAsc();
     
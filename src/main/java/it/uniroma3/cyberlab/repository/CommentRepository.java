@@ -3,63 +3,117 @@ package it.uniroma3.cyberlab.repository;
 import it.uniroma3.cyberlab.entity.Comment;
 import it.uniroma3.cyberlab.entity.Post;
 import it.uniroma3.cyberlab.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
     
-    // Basic queries
-    List<Comment> findByPost(Post post);
-    List<Comment> findByAuthor(User author);
-    List<Comment> findByPostOrderByCreatedDateAsc(Post post);
-    List<Comment> findByPostOrderByCreatedDateDesc(Post post);
-    
     // Parent/child relationships
-    List<Comment> findByParentCommentIsNull(); // Top-level comments
     List<Comment> findByParentComment(Comment parentComment);
-    List<Comment> findByPostAndParentCommentIsNull(Post post); // Top-level comments for a post
     
     @Query("SELECT c FROM Comment c WHERE c.post = :post AND c.parentComment IS NULL ORDER BY c.createdDate ASC")
     List<Comment> findTopLevelCommentsByPost(@Param("post") Post post);
     
     // Reported comments
-    List<Comment> findByIsReportedTrue();
-    List<Comment> findByReportCountGreaterThan(int count);
-    
     @Query("SELECT c FROM Comment c WHERE c.isReported = true ORDER BY c.reportCount DESC, c.createdDate DESC")
-    List<Comment> findReportedCommentsOrderByReportCount();
-    
-    // Recent comments
-    List<Comment> findByCreatedDateAfter(LocalDateTime date);
-    List<Comment> findByCreatedDateBetween(LocalDateTime start, LocalDateTime end);
+    List<Comment> findReportedCommentsOrderByReportCount(Pageable pageable);
     
+    // Recent comments: data e limite nella query
     @Query("SELECT c FROM Comment c WHERE c.createdDate >= :date ORDER BY c.createdDate DESC")
-    List<Comment> findRecentComments(@Param("date") LocalDateTime date);
+    List<Comment> findRecentComments(@Param("date") LocalDateTime date, Pageable pageable);
     
     // User's comments
     @Query("SELECT c FROM Comment c WHERE c.author = :author ORDER BY c.createdDate DESC")
-    List<Comment> findByAuthorOrderByCreatedDateDesc(@Param("author") User author);
+    List<Comment> findByAuthorOrderByCreatedDateDesc(@Param("author") User author, Pageable pageable);
+    
+    @Query("SELECT c FROM Comment c WHERE c.author = :author AND c.createdDate > :date ORDER BY c.createdDate DESC")
+    List<Comment> findByAuthorCreatedAfter(@Param("author") User author, @Param("date") LocalDateTime date,
+                                           Pageable pageable);
     
     // Statistics
     @Query("SELECT COUNT(c) FROM Comment c WHERE c.post = :post")
     long countByPost(@Param("post") Post post);
     
+    @Query("SELECT COUNT(c) FROM Comment c WHERE c.post = :post AND c.createdDate > :date")
+    long countByPostCreatedAfter(@Param("post") Post post, @Param("date") LocalDateTime date);
+    
     @Query("SELECT COUNT(c) FROM Comment c WHERE c.author = :author")
     long countByAuthor(@Param("author") User author);
     
     @Query("SELECT COUNT(c) FROM Comment c WHERE c.isReported = true")
     long countReportedComments();
     
+    @Query("SELECT COUNT(c) FROM Comment c WHERE c.author.id = :authorId AND c.isReported = true")
+    long countReportedByAuthorId(@Param("authorId") Long authorId);
+    
     @Query("SELECT COUNT(c) FROM Comment c WHERE c.createdDate >= :date")
     long countCommentsCreatedAfter(@Param("date") LocalDateTime date);
     
-    // Most liked comments
-    @Query("SELECT c FROM Comment c ORDER BY c.likeCount DESC")
-    List<Comment> findMostLikedComments();
+    // Contatore risposte: delta atomico
+    @Modifying
+    @Query("UPDATE Comment c SET c.replyCount = COALESCE(c.replyCount, 0) + :delta WHERE c.id = :id")
+    int adjustReplyCount(@Param("id") Long id, @Param("delta") int delta);
+    
+    @Modifying
+    @Query("UPDATE Comment c SET c.replyCount = (SELECT COUNT(r) FROM Comment r WHERE r.parentComment = c) " +
+           "WHERE c.replyCount IS NULL OR c.replyCount <> (SELECT COUNT(r) FROM Comment r WHERE r.parentComment = c)")
+    int reconcileReplyCounts();
+    
+    // Cancellazione account: i commenti passano all'utente segnaposto a blocchi
+    @Modifying
+    @Query(value = "UPDATE comment SET author_id = :toId WHERE id IN " +
+                   "(SELECT id FROM comment WHERE author_id = :fromId ORDER BY id LIMIT :limit)", nativeQuery = true)
+    int reassignAuthorChunk(@Param("fromId") Long fromId, @Param("toId") Long toId, @Param("limit") int limit);
+    
+    @Modifying
+    @Query("UPDATE Comment c SET c.reportCount = CASE WHEN COALESCE(c.reportCount, 0) + :delta > 0 " +
+           "THEN COALESCE(c.reportCount, 0) + :delta ELSE 0 END, " +
+           "c.isReported = CASE WHEN COALESCE(c.reportCount, 0) + :delta > 0 THEN true ELSE false END WHERE c.id = :id")
+    int adjustReportCount(@Param("id") Long id, @Param("delta") int delta);
+    
+    @Query("SELECT COUNT(c) FROM Comment c WHERE c.author.id = :authorId")
+    long countByAuthorId(@Param("authorId") Long authorId);
+    
+    // Statistiche utente: commenti per autore nel post eliminato
+    @Query("SELECT c.author.id, COUNT(c) FROM Comment c WHERE c.post.id = :postId GROUP BY c.author.id")
+    List<Object[]> countByAuthorForPost(@Param("postId") Long postId);
+    
+    // Eliminazione set-based (ContentDeletionService): sotto-albero con una CTE ricorsiva su parent_comment_id,
+    // righe (id, profondita', autore) dal livello piu' profondo
+    @Query(value = "WITH RECURSIVE subtree (id, depth, author_id) AS (" +
+                   "SELECT id, 0, author_id FROM comment WHERE id = :rootId " +
+                   "UNION ALL SELECT c.id, s.depth + 1, c.author_id FROM comment c " +
+                   "JOIN subtree s ON c.parent_comment_id = s.id) " +
+                   "SELECT id, depth, author_id FROM subtree ORDER BY depth DESC", nativeQuery = true)
+    List<Object[]> findSubtreeByDepth(@Param("rootId") Long rootId);
+    
+    // Tutti i commenti di un post, partendo da quelli di primo livello
+    @Query(value = "WITH RECURSIVE subtree (id, depth) AS (" +
+                   "SELECT id, 0 FROM comment WHERE post_id = :postId AND parent_comment_id IS NULL " +
+                   "UNION ALL SELECT c.id, s.depth + 1 FROM comment c JOIN subtree s ON c.parent_comment_id = s.id) " +
+                   "SELECT id, depth FROM subtree ORDER BY depth DESC", nativeQuery = true)
+    List<Object[]> findThreadByDepth(@Param("postId") Long postId);
+    
+    @Modifying
+    @Query("DELETE FROM Comment c WHERE c.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+    
+    // Export dati personali: commenti dell'autore in streaming
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+                 @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT c FROM Comment c WHERE c.author.id = :authorId ORDER BY c.id")
+    Stream<Comment> streamByAuthorForExport(@Param("authorId") Long authorId);
 }
@@ -0,0 +1,25 @@
+package it.uniroma3.cyberlab.repository;
+
+import it.uniroma3.cyberlab.entity.LabAnalytics;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface LabAnalyticsRepository extends JpaRepository<LabAnalytics, Long> {
+
+    // Lock sulla riga del lab: le modifiche dei progressi (da qualsiasi nodo) vengono applicate una alla volta
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM LabAnalytics a WHERE a.labId = :labId")
+    Optional<LabAnalytics> findByIdForUpdate(@Param("labId") Long labId);
+
+    // Revisioni salvate (una riga per lab), per ricaricare solo gli aggregati cambiati su altri nodi
+    @Query("SELECT a.labId, a.revision FROM LabAnalytics a")
+    List<Object[]> findRevisions();
+}
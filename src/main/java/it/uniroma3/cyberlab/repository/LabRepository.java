@@ -7,15 +7,17 @@ import it.uniroma3.cyberlab.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface LabRepository extends JpaRepository<Lab, Long> {
+public interface LabRepository extends JpaRepository<Lab, Long>, LabRepositoryCustom {
     
     // Basic queries
     List<Lab> findByCategory(Category category);
@@ -28,9 +30,13 @@ public interface LabRepository extends JpaRepository<Lab, Long> {
     Page<Lab> findByDifficulty(Difficulty difficulty, Pageable pageable);
     Page<Lab> findByIsPublishedTrue(Pageable pageable);
     
+    // Pagina del lab: riga del lab e contenuto in una sola query
+    @Query("SELECT l FROM Lab l LEFT JOIN FETCH l.content WHERE l.id = :id")
+    Optional<Lab> findWithContentById(@Param("id") Long id);
+    
     // Published labs by category and difficulty
     List<Lab> findByCategoryAndIsPublishedTrueOrderByCreatedDateDesc(Category category);
-    List<Lab> findByDifficultyAndIsPublishedTrueOrderByCreatedDateDesc(Difficulty difficulty);
+    List<Lab> findByDifficultyAndIsPublishedTrueOrderByCreatedDateDesc(Difficulty difficulty, Pageable pageable);
     List<Lab> findByCategoryAndDifficultyAndIsPublishedTrue(Category category, Difficulty difficulty);
     
     // Popular labs
@@ -47,11 +53,10 @@ public interface LabRepository extends JpaRepository<Lab, Long> {
     List<Lab> findByCreatedDateAfter(LocalDateTime date);
     List<Lab> findByIsPublishedTrueAndCreatedDateAfterOrderByCreatedDateDesc(LocalDateTime date);
     
-    // Search functionality
+    // Search functionality (titolo e descrizione: la teoria sta in lab_content, anche compressa)
     @Query("SELECT l FROM Lab l WHERE l.isPublished = true AND (" +
            "LOWER(l.title) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(l.description) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(l.theory) LIKE LOWER(CONCAT('%', :search, '%')))")
+           "LOWER(l.description) LIKE LOWER(CONCAT('%', :search, '%')))")
     List<Lab> searchPublishedLabs(@Param("search") String search);
     
     @Query("SELECT l FROM Lab l WHERE " +
@@ -82,9 +87,42 @@ public interface LabRepository extends JpaRepository<Lab, Long> {
     @Query("SELECT l FROM Lab l WHERE LOWER(l.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR LOWER(l.description) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
     List<Lab> searchLabs(@Param("searchTerm") String searchTerm);
     
+    // Lab pubblicati non ancora iniziati dall'utente, in una sola query invece di un controllo per lab
+    @Query("SELECT l FROM Lab l WHERE l.isPublished = true AND NOT EXISTS " +
+           "(SELECT up.id FROM UserProgress up WHERE up.lab = l AND up.user = :user) ORDER BY l.createdDate DESC")
+    List<Lab> findNotStartedByUser(@Param("user") User user, Pageable pageable);
+    
     long countByCategory(Category category);
-    List<Lab> findByCategoryOrderByViewCountDesc(Category category);
+    Optional<Lab> findFirstByCategoryOrderByViewCountDesc(Category category);
     @Query("SELECT COALESCE(SUM(l.viewCount), 0) FROM Lab l WHERE l.category = :category")
     Long sumViewsByCategory(@Param("category") Category category);
     
-}
\ No newline at end of file
+    // Conditional GET: ultima modifica e stato di pubblicazione
+    @Query("SELECT l.lastModified, l.isPublished FROM Lab l WHERE l.id = :id")
+    List<Object[]> findPageVersionById(@Param("id") Long id);
+    
+    // Incremento visualizzazioni senza caricare l'entita'
+    @Modifying
+    @Query("UPDATE Lab l SET l.viewCount = COALESCE(l.viewCount, 0) + 1 WHERE l.id = :id")
+    int incrementViewCount(@Param("id") Long id);
+    
+    // Migrazione di categoria: un blocco di lab per statement (UPDATE set-based)
+    @Modifying
+    @Query(value = "UPDATE lab SET category_id = :toId WHERE id IN " +
+                   "(SELECT id FROM lab WHERE category_id = :fromId ORDER BY id LIMIT :limit)", nativeQuery = true)
+    int moveCategoryChunk(@Param("fromId") Long fromId, @Param("toId") Long toId, @Param("limit") int limit);
+    
+    // Cancellazione account: i lab creati passano all'utente segnaposto a blocchi
+    @Modifying
+    @Query(value = "UPDATE lab SET created_by = :toId WHERE id IN " +
+                   "(SELECT id FROM lab WHERE created_by = :fromId ORDER BY id LIMIT :limit)", nativeQuery = true)
+    int reassignCreatorChunk(@Param("fromId") Long fromId, @Param("toId") Long toId, @Param("limit") int limit);
+    
+    @Modifying
+    @Query("UPDATE Lab l SET l.completionCount = CASE WHEN COALESCE(l.completionCount, 0) + :delta > 0 " +
+           "THEN COALESCE(l.completionCount, 0) + :delta ELSE 0 END WHERE l.id = :id")
+    int adjustCompletionCount(@Param("id") Long id, @Param("delta") long delta);
+    
+    @Query("SELECT l.id FROM Lab l ORDER BY l.id")
+    List<Long> findAllIds();
+}
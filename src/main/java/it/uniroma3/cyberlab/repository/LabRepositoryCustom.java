@@ -0,0 +1,19 @@
+package it.uniroma3.cyberlab.repository;
+
+import it.uniroma3.cyberlab.entity.Lab.Difficulty;
+import it.uniroma3.cyberlab.entity.UserProgress.ProgressStatus;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Query del catalogo lab costruite a runtime (implementate in LabRepositoryImpl)
+ */
+public interface LabRepositoryCustom {
+
+    /**
+     * Catalogo con paginazione sul database: ogni riga e' [Lab, UserProgress dell'utente o null].
+     * I filtri null vengono ignorati; progress richiede userId (senza utente nessun lab risulta iniziato)
+     */
+    Page<Object[]> findCatalog(Long categoryId, Difficulty difficulty, Boolean published, String search,
+                               ProgressStatus progress, Long userId, Pageable pageable);
+}
@@ -0,0 +1,89 @@
+package it.uniroma3.cyberlab.repository;
+
+import it.uniroma3.cyberlab.entity.Lab.Difficulty;
+import it.uniroma3.cyberlab.entity.UserProgress.ProgressStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Catalogo lab: una sola query con LEFT JOIN sul progresso dell'utente corrente,
+ * cosi' il costo della pagina non dipende da quanti lab l'utente ha gia' fatto
+ */
+public class LabRepositoryImpl implements LabRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<Object[]> findCatalog(Long categoryId, Difficulty difficulty, Boolean published, String search,
+                                      ProgressStatus progress, Long userId, Pageable pageable) {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        StringBuilder where = new StringBuilder(" WHERE 1 = 1");
+
+        if (published != null) {
+            where.append(" AND l.isPublished = :published");
+            parameters.put("published", published);
+        }
+        if (categoryId != null) {
+            where.append(" AND l.category.id = :categoryId");
+            parameters.put("categoryId", categoryId);
+        }
+        if (difficulty != null) {
+            where.append(" AND l.difficulty = :difficulty");
+            parameters.put("difficulty", difficulty);
+        }
+        if (search != null && !search.trim().isEmpty()) {
+            where.append(" AND (LOWER(l.title) LIKE :search ESCAPE '\\' OR LOWER(l.description) LIKE :search ESCAPE '\\')");
+            parameters.put("search", "%" + escapeLike(search.trim().toLowerCase()) + "%");
+        }
+
+        String join = "";
+        if (userId != null) {
+            join = " LEFT JOIN UserProgress up ON up.lab = l AND up.user.id = :userId";
+            parameters.put("userId", userId);
+            if (progress == ProgressStatus.NOT_STARTED) {
+                where.append(" AND (up.id IS NULL OR up.status = :progress)");
+                parameters.put("progress", progress);
+            } else if (progress != null) {
+                where.append(" AND up.status = :progress");
+                parameters.put("progress", progress);
+            }
+        } else if (progress != null && progress != ProgressStatus.NOT_STARTED) {
+            return Page.empty(pageable);
+        }
+
+        String select = (userId != null ? "SELECT l, up" : "SELECT l")
+                + " FROM Lab l JOIN FETCH l.category" + join + where
+                + " ORDER BY l.createdDate DESC, l.id DESC";
+        Query query = entityManager.createQuery(select);
+        parameters.forEach(query::setParameter);
+        query.setFirstResult((int) pageable.getOffset());
+        query.setMaxResults(pageable.getPageSize());
+
+        List<Object[]> rows = new ArrayList<>();
+        for (Object result : query.getResultList()) {
+            rows.add(result instanceof Object[] row ? row : new Object[] { result, null });
+        }
+
+        // Il conteggio serve solo se la pagina e' piena o non e' la prima
+        String countQuery = "SELECT COUNT(l) FROM Lab l" + join + where;
+        return PageableExecutionUtils.getPage(rows, pageable, () -> {
+            Query count = entityManager.createQuery(countQuery);
+            parameters.forEach(count::setParameter);
+            return (Long) count.getSingleResult();
+        });
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -4,50 +4,50 @@ import it.uniroma3.cyberlab.entity.Post;
 import it.uniroma3.cyberlab.entity.Post.PostType;
 import it.uniroma3.cyberlab.entity.Category;
 import it.uniroma3.cyberlab.entity.User;
+import it.uniroma3.cyberlab.util.GroupedCounts;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
     
     // Basic queries
-    List<Post> findByAuthor(User author);
-    List<Post> findByCategory(Category category);
-    List<Post> findByPostType(PostType postType);
-    
     Page<Post> findByAuthor(User author, Pageable pageable);
     Page<Post> findByCategory(Category category, Pageable pageable);
     Page<Post> findByPostType(PostType postType, Pageable pageable);
+    Page<Post> findByCategoryAndPostType(Category category, PostType postType, Pageable pageable);
     
     // Author ordered queries
-    List<Post> findByAuthorOrderByCreatedDateDesc(User author);
-    List<Post> findByAuthorOrderByCreatedDateAsc(User author);
+    List<Post> findByAuthorOrderByCreatedDateDesc(User author, Pageable pageable);
     
     // Category ordered queries
-    List<Post> findByCategoryOrderByCreatedDateDesc(Category category);
-    List<Post> findByCategoryOrderByCreatedDateAsc(Category category);
     Page<Post> findByCategoryOrderByCreatedDateDesc(Category category, Pageable pageable);
     
     // Featured and pinned posts
-    List<Post> findByIsFeaturedTrueOrderByCreatedDateDesc();
-    List<Post> findByIsPinnedTrueOrderByCreatedDateDesc();
-    
     @Query("SELECT p FROM Post p WHERE p.isFeatured = true OR p.isPinned = true ORDER BY p.isPinned DESC, p.createdDate DESC")
-    List<Post> findFeaturedAndPinnedPosts();
-    
-    // Date-based queries
-    List<Post> findByCreatedDateAfter(LocalDateTime date);
-    List<Post> findByCreatedDateBetween(LocalDateTime start, LocalDateTime end);
+    List<Post> findFeaturedAndPinnedPosts(Pageable pageable);
     
+    // Date-based queries: data e limite nella query
     @Query("SELECT p FROM Post p WHERE p.createdDate >= :date ORDER BY p.createdDate DESC")
-    List<Post> findRecentPosts(@Param("date") LocalDateTime date);
+    List<Post> findRecentPosts(@Param("date") LocalDateTime date, Pageable pageable);
+    
+    @Query(value = "SELECT p FROM Post p WHERE p.createdDate >= :date ORDER BY p.createdDate DESC",
+           countQuery = "SELECT COUNT(p) FROM Post p WHERE p.createdDate >= :date")
+    Page<Post> findRecentPostsPage(@Param("date") LocalDateTime date, Pageable pageable);
     
     // Popular posts
     @Query("SELECT p FROM Post p ORDER BY p.viewCount DESC")
@@ -56,24 +56,23 @@ public interface PostRepository extends JpaRepository<Post, Long> {
     @Query("SELECT p FROM Post p ORDER BY p.likeCount DESC")
     List<Post> findMostLikedPosts(Pageable pageable);
     
-    @Query("SELECT p FROM Post p ORDER BY SIZE(p.comments) DESC")
+    @Query("SELECT p FROM Post p ORDER BY p.commentCount DESC")
     List<Post> findMostCommentedPosts(Pageable pageable);
     
     // Search functionality
     @Query("SELECT p FROM Post p WHERE " +
            "LOWER(p.title) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(p.content) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(p.tags) LIKE LOWER(CONCAT('%', :search, '%'))")
-    List<Post> searchPosts(@Param("search") String search);
+           "LOWER(p.body.content) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
+           "p.id IN (SELECT tp.id FROM Post tp JOIN tp.tagSet t WHERE t.name LIKE LOWER(CONCAT('%', :search, '%'))) " +
+           "ORDER BY p.createdDate DESC")
+    List<Post> searchPosts(@Param("search") String search, Pageable pageable);
     
     @Query("SELECT p FROM Post p WHERE " +
            "p.category = :category AND (" +
            "LOWER(p.title) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(p.content) LIKE LOWER(CONCAT('%', :search, '%')))")
-    List<Post> searchPostsInCategory(@Param("search") String search, @Param("category") Category category);
-    
-    // Category and type combinations
-    List<Post> findByCategoryAndPostType(Category category, PostType postType);
+           "LOWER(p.body.content) LIKE LOWER(CONCAT('%', :search, '%'))) ORDER BY p.createdDate DESC")
+    List<Post> searchPostsInCategory(@Param("search") String search, @Param("category") Category category,
+                                     Pageable pageable);
     
     // Statistics
     @Query("SELECT COUNT(p) FROM Post p WHERE p.author = :author")
@@ -82,15 +81,102 @@ public interface PostRepository extends JpaRepository<Post, Long> {
     @Query("SELECT COUNT(p) FROM Post p WHERE p.category = :category")
     long countByCategory(@Param("category") Category category);
     
+    // Post per tipo in una sola query (GROUP BY)
+    @Query("SELECT p.postType, COUNT(p) FROM Post p GROUP BY p.postType")
+    List<Object[]> groupCountsByPostType();
+    
+    default Map<PostType, Long> countPerPostType() {
+        return GroupedCounts.toEnumMap(PostType.class, groupCountsByPostType());
+    }
+    
     @Query("SELECT COUNT(p) FROM Post p WHERE p.createdDate >= :date")
     long countPostsCreatedAfter(@Param("date") LocalDateTime date);
     
-    // Author's posts by category
-    @Query("SELECT p FROM Post p WHERE p.author = :author AND p.category = :category")
-    List<Post> findByAuthorAndCategory(@Param("author") User author, @Param("category") Category category);
+    Optional<Post> findFirstByCategoryOrderByViewCountDesc(Category category);
     
-    List<Post> findByCategoryOrderByViewCountDesc(Category category);
     @Query("SELECT COALESCE(SUM(p.viewCount), 0) FROM Post p WHERE p.category = :category")
     Long sumViewsByCategory(@Param("category") Category category);
     
+    // Conditional GET: ultima modifica del post, numero e ultima modifica dei commenti
+    @Query("SELECT p.lastModified, p.commentCount, " +
+           "(SELECT MAX(c.lastModified) FROM Comment c WHERE c.post = p) " +
+           "FROM Post p WHERE p.id = :id")
+    List<Object[]> findPageVersionById(@Param("id") Long id);
+    
+    // Tag: lookup tramite post_tag (indice tag_id, post_id)
+    @Query(value = "SELECT p FROM Post p JOIN p.tagSet t WHERE t.name = :name ORDER BY p.createdDate DESC",
+           countQuery = "SELECT COUNT(p) FROM Post p JOIN p.tagSet t WHERE t.name = :name")
+    Page<Post> findByTagName(@Param("name") String name, Pageable pageable);
+    
+    // Backfill di post_tag dalla colonna tags, a blocchi per id
+    @Query("SELECT p FROM Post p WHERE p.id > :afterId AND p.tags IS NOT NULL AND p.tags <> '' " +
+           "AND p.tagSet IS EMPTY ORDER BY p.id")
+    List<Post> findPostsWithUnindexedTags(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // Ranking: dati per ricaricare o stimare il punteggio hot di ogni post
+    @Query("SELECT p.id, p.category.id, p.hotScore, p.createdDate, p.viewCount, p.likeCount, p.reportCount, " +
+           "p.commentCount FROM Post p")
+    List<Object[]> findRankingSeeds();
+    
+    @Modifying
+    @Query("UPDATE Post p SET p.hotScore = :score WHERE p.id = :id")
+    int updateHotScore(@Param("id") Long id, @Param("score") double score);
+    
+    // Contatore commenti: delta atomico, senza leggere il valore corrente
+    @Modifying
+    @Query("UPDATE Post p SET p.commentCount = COALESCE(p.commentCount, 0) + :delta WHERE p.id = :id")
+    int adjustCommentCount(@Param("id") Long id, @Param("delta") int delta);
+    
+    // Riconciliazione: riallinea solo i contatori che non corrispondono ai commenti reali
+    @Modifying
+    @Query("UPDATE Post p SET p.commentCount = (SELECT COUNT(c) FROM Comment c WHERE c.post = p) " +
+           "WHERE p.commentCount IS NULL OR p.commentCount <> (SELECT COUNT(c) FROM Comment c WHERE c.post = p)")
+    int reconcileCommentCounts();
+    
+    // Migrazione di categoria: un blocco di post per statement (UPDATE set-based)
+    @Modifying
+    @Query(value = "UPDATE post SET category_id = :toId WHERE id IN " +
+                   "(SELECT id FROM post WHERE category_id = :fromId ORDER BY id LIMIT :limit)", nativeQuery = true)
+    int moveCategoryChunk(@Param("fromId") Long fromId, @Param("toId") Long toId, @Param("limit") int limit);
+    
+    // Incremento visualizzazioni senza caricare l'entita'
+    @Modifying
+    @Query("UPDATE Post p SET p.viewCount = COALESCE(p.viewCount, 0) + 1 WHERE p.id = :id")
+    int incrementViewCount(@Param("id") Long id);
+    
+    // Cancellazione account: i post passano all'utente segnaposto a blocchi
+    @Modifying
+    @Query(value = "UPDATE post SET author_id = :toId WHERE id IN " +
+                   "(SELECT id FROM post WHERE author_id = :fromId ORDER BY id LIMIT :limit)", nativeQuery = true)
+    int reassignAuthorChunk(@Param("fromId") Long fromId, @Param("toId") Long toId, @Param("limit") int limit);
+    
+    // Contatore segnalazioni: delta atomico, il flag segue il contatore
+    @Modifying
+    @Query("UPDATE Post p SET p.reportCount = CASE WHEN COALESCE(p.reportCount, 0) + :delta > 0 " +
+           "THEN COALESCE(p.reportCount, 0) + :delta ELSE 0 END, " +
+           "p.isReported = CASE WHEN COALESCE(p.reportCount, 0) + :delta > 0 THEN true ELSE false END WHERE p.id = :id")
+    int adjustReportCount(@Param("id") Long id, @Param("delta") int delta);
+    
+    // Blocco dei commenti (es. soglia di segnalazioni superata): UPDATE diretto, report_count non viene riscritto
+    @Modifying
+    @Query("UPDATE Post p SET p.isLocked = :locked WHERE p.id = :id")
+    int updateLocked(@Param("id") Long id, @Param("locked") boolean locked);
+    
+    // Pagina del post: corpo (markdown e HTML renderizzato) nella stessa query
+    @Query("SELECT p FROM Post p LEFT JOIN FETCH p.body WHERE p.id = :id")
+    Optional<Post> findWithBodyById(@Param("id") Long id);
+    
+    // Post con corpo ma senza estratto/HTML salvati (rendering da completare), a blocchi per id
+    @Query("SELECT p FROM Post p JOIN FETCH p.body WHERE p.id > :afterId " +
+           "AND (p.excerpt IS NULL OR p.contentHash IS NULL OR p.body.contentHtml IS NULL) ORDER BY p.id")
+    List<Post> findPostsToRender(@Param("afterId") Long afterId, Pageable pageable);
+    
+    @Query("SELECT COUNT(p) FROM Post p WHERE p.author.id = :authorId")
+    long countByAuthorId(@Param("authorId") Long authorId);
+    
+    // Export dati personali: post dell'autore in streaming (cursore con fetch size, memoria costante)
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+                 @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT p FROM Post p LEFT JOIN FETCH p.body JOIN FETCH p.category WHERE p.author.id = :authorId ORDER BY p.id")
+    Stream<Post> streamByAuthorForExport(@Param("authorId") Long authorId);
 }
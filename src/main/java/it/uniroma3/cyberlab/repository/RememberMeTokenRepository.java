@@ -0,0 +1,37 @@
+package it.uniroma3.cyberlab.repository;
+
+import it.uniroma3.cyberlab.entity.RememberMeToken;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface RememberMeTokenRepository extends JpaRepository<RememberMeToken, String> {
+
+    // Rotazione del token della serie senza caricare la riga
+    @Modifying
+    @Query("UPDATE RememberMeToken t SET t.token = :token, t.lastUsed = :lastUsed WHERE t.series = :series")
+    int updateToken(@Param("series") String series, @Param("token") String token,
+                    @Param("lastUsed") LocalDateTime lastUsed);
+
+    // Rotazione compare-and-set: riesce solo se il token e' ancora quello presentato dal cookie
+    // (la riga eventualmente gia' caricata nel contesto di persistenza viene scartata)
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE RememberMeToken t SET t.token = :token, t.previousToken = :presented, t.lastUsed = :lastUsed " +
+           "WHERE t.series = :series AND t.token = :presented")
+    int rotateToken(@Param("series") String series, @Param("presented") String presented,
+                    @Param("token") String token, @Param("lastUsed") LocalDateTime lastUsed);
+
+    @Modifying
+    @Query("DELETE FROM RememberMeToken t WHERE t.username = :username")
+    int deleteByUsername(@Param("username") String username);
+
+    // Serie non usate da oltre la validita' del cookie
+    @Modifying
+    @Query("DELETE FROM RememberMeToken t WHERE t.lastUsed < :before")
+    int deleteUnusedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,76 @@
+package it.uniroma3.cyberlab.repository;
+
+import it.uniroma3.cyberlab.entity.Report.ReportStatus;
+import it.uniroma3.cyberlab.entity.ReportCase;
+import it.uniroma3.cyberlab.entity.ReportCase.TargetType;
+import it.uniroma3.cyberlab.util.GroupedCounts;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+@Repository
+public interface ReportCaseRepository extends JpaRepository<ReportCase, Long> {
+
+    Optional<ReportCase> findByTargetTypeAndTargetId(TargetType targetType, Long targetId);
+
+    // Lock sulla riga del caso: nuove segnalazioni sullo stesso contenuto vengono serializzate
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM ReportCase c WHERE c.targetType = :targetType AND c.targetId = :targetId")
+    Optional<ReportCase> findByTargetForUpdate(@Param("targetType") TargetType targetType,
+                                               @Param("targetId") Long targetId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM ReportCase c WHERE c.id = :id")
+    Optional<ReportCase> findByIdForUpdate(@Param("id") Long id);
+
+    // Coda di moderazione: prima i casi con piu' segnalazioni aperte
+    @Query(value = "SELECT c FROM ReportCase c WHERE c.status IN :statuses " +
+                   "ORDER BY c.openReports DESC, c.lastReportDate DESC",
+           countQuery = "SELECT COUNT(c) FROM ReportCase c WHERE c.status IN :statuses")
+    Page<ReportCase> findQueue(@Param("statuses") Collection<ReportStatus> statuses, Pageable pageable);
+
+    // Casi per stato in una sola query (GROUP BY)
+    @Query("SELECT c.status, COUNT(c) FROM ReportCase c GROUP BY c.status")
+    List<Object[]> groupCountsByStatus();
+
+    default Map<ReportStatus, Long> countPerStatus() {
+        return GroupedCounts.toEnumMap(ReportStatus.class, groupCountsByStatus());
+    }
+
+    // Cancellazione account
+    @Modifying
+    @Query("DELETE FROM ReportCase c WHERE c.targetType = :targetType AND c.targetId = :targetId")
+    int deleteByTarget(@Param("targetType") TargetType targetType, @Param("targetId") Long targetId);
+
+    @Modifying
+    @Query("UPDATE ReportCase c SET c.resolvedBy = NULL WHERE c.resolvedBy.id = :userId")
+    int clearResolver(@Param("userId") Long userId);
+
+    // Contenuto eliminato con le sue segnalazioni (ContentDeletionService): i casi ancora aperti vengono chiusi
+    @Modifying
+    @Query("UPDATE ReportCase c SET c.status = 'RESOLVED', c.openReports = 0, c.autoLocked = false, " +
+           "c.resolution = :resolution, c.resolvedDate = :now WHERE c.targetType = :targetType " +
+           "AND c.targetId IN :targetIds AND c.status IN ('PENDING', 'UNDER_REVIEW', 'ESCALATED')")
+    int closeOpenForTargets(@Param("targetType") TargetType targetType, @Param("targetIds") Collection<Long> targetIds,
+                            @Param("resolution") String resolution, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE ReportCase c SET c.status = 'RESOLVED', c.openReports = 0, c.autoLocked = false, " +
+           "c.resolution = :resolution, c.resolvedDate = :now WHERE c.targetType = 'COMMENT' " +
+           "AND c.targetId IN (SELECT cm.id FROM Comment cm WHERE cm.post.id = :postId) " +
+           "AND c.status IN ('PENDING', 'UNDER_REVIEW', 'ESCALATED')")
+    int closeOpenForCommentsOfPost(@Param("postId") Long postId, @Param("resolution") String resolution,
+                                   @Param("now") LocalDateTime now);
+}
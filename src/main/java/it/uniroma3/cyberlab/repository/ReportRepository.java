@@ -2,77 +2,73 @@ package it.uniroma3.cyberlab.repository;
 
 import it.uniroma3.cyberlab.entity.Report;
 import it.uniroma3.cyberlab.entity.Report.ReportStatus;
-import it.uniroma3.cyberlab.entity.Report.ReportReason;
 import it.uniroma3.cyberlab.entity.Comment;
 import it.uniroma3.cyberlab.entity.Post;
 import it.uniroma3.cyberlab.entity.User;
+import it.uniroma3.cyberlab.util.GroupedCounts;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 @Repository
 public interface ReportRepository extends JpaRepository<Report, Long> {
     
     // Status-based queries
-    List<Report> findByStatus(ReportStatus status);
-    List<Report> findByStatusOrderByCreatedDateDesc(ReportStatus status);
-    List<Report> findByStatusNot(ReportStatus status);
-    
-    // AGGIUNTO - Ordinamento ASC
-    List<Report> findByStatusOrderByCreatedDateAsc(ReportStatus status);
-    
-    @Query("SELECT r FROM Report r WHERE r.status = 'PENDING' ORDER BY r.createdDate ASC")
-    List<Report> findPendingReportsOldestFirst();
+    List<Report> findByStatusOrderByCreatedDateDesc(ReportStatus status, Pageable pageable);
+    List<Report> findByStatusOrderByCreatedDateAsc(ReportStatus status, Pageable pageable);
     
     // User-based queries
-    List<Report> findByReportedBy(User reportedBy);
-    List<Report> findByReviewedBy(User reviewedBy);
-    
     @Query("SELECT r FROM Report r WHERE r.reportedBy = :user ORDER BY r.createdDate DESC")
-    List<Report> findByReportedByOrderByCreatedDateDesc(@Param("user") User user);
+    List<Report> findByReportedByOrderByCreatedDateDesc(@Param("user") User user, Pageable pageable);
+    
+    @Query("SELECT r.status, COUNT(r) FROM Report r WHERE r.reportedBy = :user GROUP BY r.status")
+    List<Object[]> groupCountsByStatusForReporter(@Param("user") User user);
+    
+    default Map<ReportStatus, Long> countPerStatusForReporter(User user) {
+        return GroupedCounts.toEnumMap(ReportStatus.class, groupCountsByStatusForReporter(user));
+    }
     
     // AGGIUNTO - Segnalazioni contro un utente
-    List<Report> findByReportedUserOrderByCreatedDateDesc(User reportedUser);
+    List<Report> findByReportedUserOrderByCreatedDateDesc(User reportedUser, Pageable pageable);
     
     // Comment-based queries
-    List<Report> findByComment(Comment comment);
-    
     @Query("SELECT COUNT(r) FROM Report r WHERE r.comment = :comment")
     long countByComment(@Param("comment") Comment comment);
     
     // Reason-based queries
-    List<Report> findByReason(ReportReason reason);
-    
     @Query("SELECT r.reason, COUNT(r) FROM Report r GROUP BY r.reason ORDER BY COUNT(r) DESC")
     List<Object[]> findReportCountByReason();
     
-    // Date-based queries
-    List<Report> findByCreatedDateAfter(LocalDateTime date);
-    List<Report> findByCreatedDateBetween(LocalDateTime start, LocalDateTime end);
-    List<Report> findByReviewDateAfter(LocalDateTime date);
-    
-    // AGGIUNTO - Data con ordinamento
-    List<Report> findByCreatedDateAfterOrderByCreatedDateDesc(LocalDateTime date);
+    // Date-based queries: data e limite nella query
+    List<Report> findByCreatedDateAfterOrderByCreatedDateDesc(LocalDateTime date, Pageable pageable);
     
     // Statistics - AGGIUNTI METODI MANCANTI
-    @Query("SELECT COUNT(r) FROM Report r WHERE r.status = 'PENDING'")
-    long countPendingReports();
-    
-    @Query("SELECT COUNT(r) FROM Report r WHERE r.status = 'RESOLVED'")
-    long countResolvedReports();
-    
     @Query("SELECT COUNT(r) FROM Report r WHERE r.createdDate >= :date")
     long countReportsCreatedAfter(@Param("date") LocalDateTime date);
     
     @Query("SELECT COUNT(r) FROM Report r WHERE r.reviewedBy = :admin")
     long countReportsReviewedBy(@Param("admin") User admin);
     
-    // AGGIUNTO - Conta per stato
-    long countByStatus(ReportStatus status);
+    // Segnalazioni per stato in una sola query (GROUP BY)
+    @Query("SELECT r.status, COUNT(r) FROM Report r GROUP BY r.status")
+    List<Object[]> groupCountsByStatus();
+    
+    default Map<ReportStatus, Long> countPerStatus() {
+        return GroupedCounts.toEnumMap(ReportStatus.class, groupCountsByStatus());
+    }
     
     // AGGIUNTO - Conta per data
     long countByCreatedDateAfter(LocalDateTime date);
@@ -82,10 +78,81 @@ public interface ReportRepository extends JpaRepository<Report, Long> {
     boolean existsByCommentAndReportedBy(Comment comment, User reportedBy);
     boolean existsByReportedUserAndReportedBy(User reportedUser, User reportedBy);
     
-    // Admin dashboard queries
-    @Query("SELECT r FROM Report r WHERE r.status IN ('PENDING', 'UNDER_REVIEW') ORDER BY r.createdDate ASC")
-    List<Report> findActiveReports();
-    
-    @Query("SELECT r FROM Report r WHERE r.reviewedBy = :admin ORDER BY r.reviewDate DESC")
-    List<Report> findReportsReviewedBy(@Param("admin") User admin);
+    // Casi: una segnalazione per utente e contenuto (vincolo uk_report_case_reporter)
+    boolean existsByReportCaseIdAndReportedById(Long caseId, Long reportedById);
+    
+    // Inserimento in blocco: chi, tra gli utenti indicati, ha gia' segnalato il caso
+    @Query("SELECT r.reportedBy.id FROM Report r WHERE r.reportCase.id = :caseId AND r.reportedBy.id IN :userIds")
+    List<Long> findReporterIdsForCase(@Param("caseId") Long caseId, @Param("userIds") Collection<Long> userIds);
+    
+    @Query(value = "SELECT r FROM Report r JOIN FETCH r.reportedBy WHERE r.reportCase.id = :caseId ORDER BY r.createdDate DESC",
+           countQuery = "SELECT COUNT(r) FROM Report r WHERE r.reportCase.id = :caseId")
+    Page<Report> findByCaseId(@Param("caseId") Long caseId, Pageable pageable);
+    
+    // Chiusura del caso: tutte le segnalazioni ancora aperte in un solo UPDATE
+    @Modifying
+    @Query("UPDATE Report r SET r.status = :status, r.resolvedBy = :admin, r.resolution = :resolution, " +
+           "r.resolvedDate = :now WHERE r.reportCase.id = :caseId AND r.status IN ('PENDING', 'UNDER_REVIEW', 'ESCALATED')")
+    int closeOpenReports(@Param("caseId") Long caseId, @Param("status") ReportStatus status,
+                         @Param("admin") User admin, @Param("resolution") String resolution,
+                         @Param("now") LocalDateTime now);
+    
+    @Modifying
+    @Query("UPDATE Report r SET r.status = 'ESCALATED', r.reviewedBy = :admin, r.reviewDate = :now, " +
+           "r.adminNotes = :notes WHERE r.reportCase.id = :caseId AND r.status IN ('PENDING', 'UNDER_REVIEW')")
+    int escalateOpenReports(@Param("caseId") Long caseId, @Param("admin") User admin,
+                            @Param("notes") String notes, @Param("now") LocalDateTime now);
+    
+    // Righe [caseId, reason, status] delle segnalazioni da eliminare, per aggiornare i casi
+    @Query("SELECT r.reportCase.id, r.reason, r.status FROM Report r WHERE r.id IN :ids AND r.reportCase IS NOT NULL")
+    List<Object[]> findCaseEntriesForIds(@Param("ids") Collection<Long> ids);
+    
+    // Migrazione: segnalazioni precedenti ai casi, a blocchi per id
+    @Query("SELECT r FROM Report r WHERE r.reportCase IS NULL AND r.id > :afterId ORDER BY r.id")
+    List<Report> findWithoutCaseAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    @Modifying
+    @Query("DELETE FROM Report r WHERE r.post.id = :postId")
+    int deleteByPostId(@Param("postId") Long postId);
+    
+    // Segnalazioni sui commenti eliminati insieme al post o al sotto-albero (ContentDeletionService)
+    @Modifying
+    @Query("DELETE FROM Report r WHERE r.comment.id IN (SELECT c.id FROM Comment c WHERE c.post.id = :postId)")
+    int deleteForCommentsOfPost(@Param("postId") Long postId);
+    
+    @Modifying
+    @Query("DELETE FROM Report r WHERE r.comment.id IN :commentIds")
+    int deleteByCommentIds(@Param("commentIds") Collection<Long> commentIds);
+    
+    // Cancellazione account: segnalazioni inviate dall'utente o che lo riguardano, eliminate a blocchi
+    @Query("SELECT r.id FROM Report r WHERE r.reportedBy.id = :userId OR r.reportedUser.id = :userId ORDER BY r.id")
+    List<Long> findIdsInvolvingUser(@Param("userId") Long userId, Pageable pageable);
+    
+    @Query("SELECT r.post.id, COUNT(r) FROM Report r WHERE r.id IN :ids AND r.post IS NOT NULL GROUP BY r.post.id")
+    List<Object[]> countByPostForIds(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT r.comment.id, COUNT(r) FROM Report r WHERE r.id IN :ids AND r.comment IS NOT NULL GROUP BY r.comment.id")
+    List<Object[]> countByCommentForIds(@Param("ids") Collection<Long> ids);
+    
+    @Modifying
+    @Query("DELETE FROM Report r WHERE r.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT COUNT(r) FROM Report r WHERE r.reportedBy.id = :userId OR r.reportedUser.id = :userId")
+    long countInvolvingUser(@Param("userId") Long userId);
+    
+    // Le segnalazioni gestite da un admin cancellato restano, senza riferimento all'admin
+    @Modifying
+    @Query("UPDATE Report r SET r.reviewedBy = NULL WHERE r.reviewedBy.id = :userId")
+    int clearReviewer(@Param("userId") Long userId);
+    
+    @Modifying
+    @Query("UPDATE Report r SET r.resolvedBy = NULL WHERE r.resolvedBy.id = :userId")
+    int clearResolver(@Param("userId") Long userId);
+    
+    // Export dati personali: segnalazioni inviate dall'utente
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+                 @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT r FROM Report r WHERE r.reportedBy.id = :userId ORDER BY r.id")
+    Stream<Report> streamByReporterForExport(@Param("userId") Long userId);
 }
@@ -0,0 +1,27 @@
+package it.uniroma3.cyberlab.repository;
+
+import it.uniroma3.cyberlab.entity.Tag;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface TagRepository extends JpaRepository<Tag, Long> {
+
+    // Lookup per nome normalizzato (indice univoco)
+    Optional<Tag> findByName(String name);
+
+    List<Tag> findByNameIn(Collection<String> names);
+
+    // Coppie (post, tag) per costruire l'indice in memoria
+    @Query("SELECT p.id, t.id, t.name FROM Post p JOIN p.tagSet t")
+    List<Object[]> findAllPostTagPairs();
+
+    @Query("SELECT t.id, t.name FROM Tag t WHERE t.id IN :ids")
+    List<Object[]> findNamesByIds(@Param("ids") Collection<Long> ids);
+}
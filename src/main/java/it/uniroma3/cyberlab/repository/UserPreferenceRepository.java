@@ -0,0 +1,21 @@
+package it.uniroma3.cyberlab.repository;
+
+import it.uniroma3.cyberlab.entity.UserPreference;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface UserPreferenceRepository extends JpaRepository<UserPreference, Long> {
+
+    @Query("SELECT p FROM UserPreference p WHERE p.user.id = :userId")
+    List<UserPreference> findByUserId(@Param("userId") Long userId);
+
+    @Modifying
+    @Query("DELETE FROM UserPreference p WHERE p.user.id = :userId")
+    int deleteByUserId(@Param("userId") Long userId);
+}
@@ -4,14 +4,23 @@ import it.uniroma3.cyberlab.entity.UserProgress;
 import it.uniroma3.cyberlab.entity.UserProgress.ProgressStatus;
 import it.uniroma3.cyberlab.entity.User;
 import it.uniroma3.cyberlab.entity.Lab;
+import it.uniroma3.cyberlab.util.GroupedCounts;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface UserProgressRepository extends JpaRepository<UserProgress, Long> {
@@ -19,21 +28,19 @@ public interface UserProgressRepository extends JpaRepository<UserProgress, Long
     // Basic queries
     Optional<UserProgress> findByUserAndLab(User user, Lab lab);
     List<UserProgress> findByUser(User user);
-    List<UserProgress> findByLab(Lab lab);
-    List<UserProgress> findByStatus(ProgressStatus status);
     
     List<UserProgress> findByUserOrderByLastAccessedDesc(User user);
-    List<UserProgress> findByLabOrderByCompletionPercentageDesc(Lab lab);
+    List<UserProgress> findByLabOrderByCompletionPercentageDesc(Lab lab, Pageable pageable);
     
     // Status-based queries
     List<UserProgress> findByUserAndStatus(User user, ProgressStatus status);
-    List<UserProgress> findByLabAndStatus(Lab lab, ProgressStatus status);
+    List<UserProgress> findByLabAndStatusOrderByCompletedDateDesc(Lab lab, ProgressStatus status, Pageable pageable);
     
     @Query("SELECT up FROM UserProgress up WHERE up.user = :user AND up.status = 'COMPLETED' ORDER BY up.completedDate DESC")
-    List<UserProgress> findCompletedByUser(@Param("user") User user);
+    List<UserProgress> findCompletedByUser(@Param("user") User user, Pageable pageable);
     
     @Query("SELECT up FROM UserProgress up WHERE up.user = :user AND up.status = 'IN_PROGRESS' ORDER BY up.lastAccessed DESC")
-    List<UserProgress> findInProgressByUser(@Param("user") User user);
+    List<UserProgress> findInProgressByUser(@Param("user") User user, Pageable pageable);
     
     // Completion statistics
     @Query("SELECT COUNT(up) FROM UserProgress up WHERE up.user = :user AND up.status = 'COMPLETED'")
@@ -46,30 +53,23 @@ public interface UserProgressRepository extends JpaRepository<UserProgress, Long
     long countInProgressByUser(@Param("user") User user);
     
     /**
-     * Conta UserProgress per stato
+     * Progressi per stato in una sola query (GROUP BY)
      */
-    @Query("SELECT COUNT(up) FROM UserProgress up WHERE up.status = :status")
-    long countByStatus(@Param("status") UserProgress.ProgressStatus status);
+    @Query("SELECT up.status, COUNT(up) FROM UserProgress up GROUP BY up.status")
+    List<Object[]> groupCountsByStatus();
     
-    /**
-     * Conta per stato senza query custom (metodo alternativo)
-     */
-    default long countByStatusSimple(UserProgress.ProgressStatus status) {
-        return findByStatus(status).size();
+    default Map<ProgressStatus, Long> countPerStatus() {
+        return GroupedCounts.toEnumMap(ProgressStatus.class, groupCountsByStatus());
     }
     
-    // Time-based queries
-    List<UserProgress> findByStartedDateAfter(LocalDateTime date);
-    List<UserProgress> findByCompletedDateAfter(LocalDateTime date);
-    List<UserProgress> findByLastAccessedAfter(LocalDateTime date);
+    // Time-based queries: data e limite nella query
+    List<UserProgress> findByCompletedDateAfterOrderByCompletedDateDesc(LocalDateTime date, Pageable pageable);
+    long countByLastAccessedAfter(LocalDateTime date);
     
     @Query("SELECT up FROM UserProgress up WHERE up.user = :user AND up.lastAccessed >= :date ORDER BY up.lastAccessed DESC")
     List<UserProgress> findRecentActivityByUser(@Param("user") User user, @Param("date") LocalDateTime date);
     
     // Progress percentage queries
-    @Query("SELECT up FROM UserProgress up WHERE up.user = :user AND up.completionPercentage >= :percentage")
-    List<UserProgress> findByUserAndMinCompletion(@Param("user") User user, @Param("percentage") int percentage);
-    
     @Query("SELECT AVG(up.completionPercentage) FROM UserProgress up WHERE up.lab = :lab")
     Double findAverageCompletionByLab(@Param("lab") Lab lab);
     
@@ -91,19 +91,57 @@ public interface UserProgressRepository extends JpaRepository<UserProgress, Long
     @Query("SELECT COUNT(up) FROM UserProgress up WHERE up.status = 'COMPLETED'")
     long countCompletedLabs();
     
-    @Query("SELECT up FROM UserProgress up WHERE up.lab = :lab ORDER BY up.timeSpent ASC")
-    List<UserProgress> findFastestCompletionsByLab(@Param("lab") Lab lab);
+    @Query("SELECT up FROM UserProgress up WHERE up.lab.id = :labId AND up.status = 'COMPLETED' ORDER BY up.timeSpent ASC, up.id ASC")
+    List<UserProgress> findFastestCompletionsByLab(@Param("labId") Long labId, Pageable pageable);
+    
+    // Analytics per lab: una riga per combinazione distinta (ricostruzione degli istogrammi)
+    @Query("SELECT up.status, up.timeSpent, up.attemptsCount, up.completionPercentage, COUNT(up) FROM UserProgress up " +
+           "WHERE up.lab.id = :labId GROUP BY up.status, up.timeSpent, up.attemptsCount, up.completionPercentage")
+    List<Object[]> aggregateByLab(@Param("labId") Long labId);
     
     // Leaderboard queries
     @Query("SELECT up.user, COUNT(up) as completedCount FROM UserProgress up WHERE up.status = 'COMPLETED' GROUP BY up.user ORDER BY completedCount DESC")
-    List<Object[]> findUsersByCompletedLabsCount();
+    List<Object[]> findUsersByCompletedLabsCount(Pageable pageable);
     
     @Query("SELECT up.user, SUM(up.timeSpent) as totalTime FROM UserProgress up WHERE up.status = 'COMPLETED' GROUP BY up.user ORDER BY totalTime DESC")
-    List<Object[]> findUsersByTotalTimeSpent();
+    List<Object[]> findUsersByTotalTimeSpent(Pageable pageable);
     
     // Existence checks
     boolean existsByUserAndLab(User user, Lab lab);
     
     @Query("SELECT CASE WHEN COUNT(up) > 0 THEN true ELSE false END FROM UserProgress up WHERE up.user = :user AND up.lab = :lab AND up.status = 'COMPLETED'")
     boolean hasUserCompletedLab(@Param("user") User user, @Param("lab") Lab lab);
-}
\ No newline at end of file
+    
+    // Conditional GET: stato del progresso dell'utente sul lab
+    @Query("SELECT up.lastAccessed, up.completionPercentage, up.status FROM UserProgress up " +
+           "WHERE up.user.id = :userId AND up.lab.id = :labId")
+    List<Object[]> findPageVersionByUserAndLab(@Param("userId") Long userId, @Param("labId") Long labId);
+    
+    // Cancellazione account: progressi eliminati a blocchi
+    @Query("SELECT up.id FROM UserProgress up WHERE up.user.id = :userId ORDER BY up.id")
+    List<Long> findIdsByUserId(@Param("userId") Long userId, Pageable pageable);
+    
+    @Query("SELECT DISTINCT up.lab.id FROM UserProgress up WHERE up.id IN :ids")
+    List<Long> findLabIdsForIds(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT up.lab.id, COUNT(up) FROM UserProgress up WHERE up.id IN :ids AND up.status = 'COMPLETED' GROUP BY up.lab.id")
+    List<Object[]> countCompletedByLabForIds(@Param("ids") Collection<Long> ids);
+    
+    @Modifying
+    @Query("DELETE FROM UserProgress up WHERE up.id IN :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT COUNT(up) FROM UserProgress up WHERE up.user.id = :userId")
+    long countByUserId(@Param("userId") Long userId);
+    
+    // Snapshot statistiche: conteggio, tempo e somma percentuali per stato in una sola query
+    @Query("SELECT up.status, COUNT(up), COALESCE(SUM(up.timeSpent), 0), COALESCE(SUM(up.completionPercentage), 0) " +
+           "FROM UserProgress up WHERE up.user.id = :userId GROUP BY up.status")
+    List<Object[]> aggregateByStatusForUser(@Param("userId") Long userId);
+    
+    // Export dati personali: progressi dell'utente con il titolo del lab
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+                 @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT up FROM UserProgress up JOIN FETCH up.lab WHERE up.user.id = :userId ORDER BY up.id")
+    Stream<UserProgress> streamByUserForExport(@Param("userId") Long userId);
+}
@@ -4,13 +4,19 @@ package it.uniroma3.cyberlab.repository;
 import it.uniroma3.cyberlab.entity.User;
 import it.uniroma3.cyberlab.entity.User.Role;
 import it.uniroma3.cyberlab.entity.User.UserStatus;
+import it.uniroma3.cyberlab.util.GroupedCounts;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
@@ -19,50 +25,87 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // Authentication queries
     Optional<User> findByUsername(String username);
     Optional<User> findByEmail(String email);
-    Optional<User> findByUsernameOrEmail(String username, String email);
+    
+    // Login: una ricerca per indice sulla colonna normalizzata (niente OR tra username ed email)
+    Optional<User> findFirstByUsernameNormalizedOrderByIdAsc(String usernameNormalized);
+    Optional<User> findFirstByEmailNormalizedOrderByIdAsc(String emailNormalized);
+    
+    default Optional<User> findByLoginIdentifier(String usernameOrEmail) {
+        String identifier = User.normalizeLoginIdentifier(usernameOrEmail);
+        if (identifier == null || identifier.isEmpty()) {
+            return Optional.empty();
+        }
+        // Gli username possono contenere '@': se non e' un'email si riprova come username
+        if (identifier.indexOf('@') >= 0) {
+            Optional<User> user = findFirstByEmailNormalizedOrderByIdAsc(identifier);
+            if (user.isPresent()) {
+                return user;
+            }
+        }
+        return findFirstByUsernameNormalizedOrderByIdAsc(identifier);
+    }
     
     // Existence checks
     boolean existsByUsername(String username);
     boolean existsByEmail(String email);
-    boolean existsByUsernameIgnoreCase(String username);
-    boolean existsByEmailIgnoreCase(String email);
+    boolean existsByUsernameNormalized(String usernameNormalized);
+    boolean existsByEmailNormalized(String emailNormalized);
     
     // Role-based queries
-    List<User> findByRole(Role role);
-    List<User> findByRoleAndStatus(Role role, UserStatus status);
-    
     @Query("SELECT COUNT(u) FROM User u WHERE u.role = :role")
     long countByRole(@Param("role") Role role);
     
     // Status-based queries
-    List<User> findByStatus(UserStatus status);
-    List<User> findByStatusNot(UserStatus status);
+    Page<User> findByStatus(UserStatus status, Pageable pageable);
     
-    @Query("SELECT u FROM User u WHERE u.status = 'ACTIVE' ORDER BY u.joinDate DESC")
-    List<User> findActiveUsersOrderByJoinDate();
+    // Utenti per stato in una sola query (GROUP BY)
+    @Query("SELECT u.status, COUNT(u) FROM User u GROUP BY u.status")
+    List<Object[]> groupCountsByStatus();
     
-    // Date-based queries
-    List<User> findByJoinDateAfter(LocalDateTime date);
-    List<User> findByJoinDateBetween(LocalDateTime start, LocalDateTime end);
+    default Map<UserStatus, Long> countPerStatus() {
+        return GroupedCounts.toEnumMap(UserStatus.class, groupCountsByStatus());
+    }
     
-    @Query("SELECT u FROM User u WHERE u.joinDate >= :date AND u.status = 'ACTIVE'")
-    List<User> findNewActiveUsers(@Param("date") LocalDateTime date);
+    // Date-based queries: data e limite nella query
+    @Query("SELECT u FROM User u WHERE u.joinDate >= :date AND u.status = 'ACTIVE' ORDER BY u.joinDate DESC")
+    List<User> findNewActiveUsers(@Param("date") LocalDateTime date, Pageable pageable);
     
     // Search queries
     @Query("SELECT u FROM User u WHERE " +
            "LOWER(u.username) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
            "LOWER(u.email) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
            "LOWER(u.name) LIKE LOWER(CONCAT('%', :search, '%')) OR " +
-           "LOWER(u.surname) LIKE LOWER(CONCAT('%', :search, '%'))")
-    List<User> searchUsers(@Param("search") String search);
+           "LOWER(u.surname) LIKE LOWER(CONCAT('%', :search, '%')) ORDER BY u.username")
+    List<User> searchUsers(@Param("search") String search, Pageable pageable);
     
     // Admin statistics
     @Query("SELECT COUNT(u) FROM User u WHERE u.status = 'ACTIVE'")
     long countActiveUsers();
     
-    @Query("SELECT COUNT(u) FROM User u WHERE u.status = 'BANNED'")
-    long countBannedUsers();
-    
     @Query("SELECT COUNT(u) FROM User u WHERE u.joinDate >= :date")
     long countUsersJoinedAfter(@Param("date") LocalDateTime date);
+    
+    // Cancellazione definitiva della riga, senza caricare le collezioni in cascata
+    @Modifying
+    @Query("DELETE FROM User u WHERE u.id = :id")
+    int deleteRowById(@Param("id") Long id);
+    
+    // Migrazione identificativi di login: utenti senza colonne normalizzate, a blocchi per id
+    @Query("SELECT u.id FROM User u WHERE u.id > :afterId " +
+           "AND (u.usernameNormalized IS NULL OR u.emailNormalized IS NULL) ORDER BY u.id")
+    List<Long> findIdsWithoutLoginIdentifiers(@Param("afterId") Long afterId, Pageable pageable);
+    
+    @Modifying
+    @Query("UPDATE User u SET u.usernameNormalized = LOWER(TRIM(u.username)), " +
+           "u.emailNormalized = LOWER(TRIM(u.email)) WHERE u.id IN :ids")
+    int fillLoginIdentifiers(@Param("ids") Collection<Long> ids);
+    
+    // Filtri di disponibilita': (id, username, email) normalizzati a blocchi per id
+    @Query("SELECT u.id, u.usernameNormalized, u.emailNormalized FROM User u WHERE u.id > :afterId ORDER BY u.id")
+    List<Object[]> findLoginIdentifiersAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    // Migrazione preferenze: utenti con blocchi [Preferences]/[Avatar] ancora in profileInfo
+    @Query("SELECT u FROM User u WHERE u.id > :afterId AND (u.profileInfo LIKE '%[Preferences]%' " +
+           "OR u.profileInfo LIKE '%[Avatar]%') ORDER BY u.id")
+    List<User> findUsersWithEmbeddedProfileData(@Param("afterId") Long afterId, Pageable pageable);
 }
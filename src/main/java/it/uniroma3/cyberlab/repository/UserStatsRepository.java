@@ -0,0 +1,72 @@
+package it.uniroma3.cyberlab.repository;
+
+import it.uniroma3.cyberlab.entity.UserStats;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Optional;
+
+@Repository
+public interface UserStatsRepository extends JpaRepository<UserStats, Long> {
+
+    // Lock sulla riga durante la costruzione: i delta concorrenti attendono il conteggio
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM UserStats s WHERE s.userId = :userId")
+    Optional<UserStats> findByIdForUpdate(@Param("userId") Long userId);
+
+    // Delta atomici: se lo snapshot non esiste ancora non aggiornano nulla (verra' costruito alla prima lettura)
+    @Modifying
+    @Query("UPDATE UserStats s SET s.postCount = s.postCount + :posts, s.commentCount = s.commentCount + :comments, " +
+           "s.lastUpdated = :now WHERE s.userId = :userId")
+    int adjustContent(@Param("userId") Long userId, @Param("posts") long posts,
+                      @Param("comments") long comments, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE UserStats s SET s.labsStarted = s.labsStarted + :started, " +
+           "s.labsCompleted = s.labsCompleted + :completed, s.labsInProgress = s.labsInProgress + :inProgress, " +
+           "s.labsAbandoned = s.labsAbandoned + :abandoned, s.totalTimeSpent = s.totalTimeSpent + :time, " +
+           "s.completionSum = s.completionSum + :completion, s.lastUpdated = :now WHERE s.userId = :userId")
+    int adjustProgress(@Param("userId") Long userId, @Param("started") long started,
+                       @Param("completed") long completed, @Param("inProgress") long inProgress,
+                       @Param("abandoned") long abandoned, @Param("time") long time,
+                       @Param("completion") long completion, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM UserStats s WHERE s.userId IN :userIds")
+    int deleteByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    // Snapshot degli utenti con progressi sul lab (prima che il lab venga eliminato con i suoi progressi)
+    @Modifying
+    @Query("DELETE FROM UserStats s WHERE s.userId IN " +
+           "(SELECT up.user.id FROM UserProgress up WHERE up.lab.id = :labId)")
+    int deleteByProgressOnLab(@Param("labId") Long labId);
+
+    // Riconciliazione: riallinea gli snapshot ai dati reali (solo le righe che divergono)
+    @Modifying
+    @Query("UPDATE UserStats s SET " +
+           "s.postCount = (SELECT COUNT(p) FROM Post p WHERE p.author.id = s.userId), " +
+           "s.commentCount = (SELECT COUNT(c) FROM Comment c WHERE c.author.id = s.userId), " +
+           "s.labsStarted = (SELECT COUNT(up) FROM UserProgress up WHERE up.user.id = s.userId), " +
+           "s.labsCompleted = (SELECT COUNT(up) FROM UserProgress up WHERE up.user.id = s.userId AND up.status = 'COMPLETED'), " +
+           "s.labsInProgress = (SELECT COUNT(up) FROM UserProgress up WHERE up.user.id = s.userId AND up.status = 'IN_PROGRESS'), " +
+           "s.labsAbandoned = (SELECT COUNT(up) FROM UserProgress up WHERE up.user.id = s.userId AND up.status = 'ABANDONED'), " +
+           "s.totalTimeSpent = (SELECT COALESCE(SUM(up.timeSpent), 0) FROM UserProgress up WHERE up.user.id = s.userId), " +
+           "s.completionSum = (SELECT COALESCE(SUM(up.completionPercentage), 0) FROM UserProgress up WHERE up.user.id = s.userId), " +
+           "s.lastUpdated = :now " +
+           "WHERE s.postCount <> (SELECT COUNT(p) FROM Post p WHERE p.author.id = s.userId) " +
+           "OR s.commentCount <> (SELECT COUNT(c) FROM Comment c WHERE c.author.id = s.userId) " +
+           "OR s.labsStarted <> (SELECT COUNT(up) FROM UserProgress up WHERE up.user.id = s.userId) " +
+           "OR s.labsCompleted <> (SELECT COUNT(up) FROM UserProgress up WHERE up.user.id = s.userId AND up.status = 'COMPLETED') " +
+           "OR s.labsInProgress <> (SELECT COUNT(up) FROM UserProgress up WHERE up.user.id = s.userId AND up.status = 'IN_PROGRESS') " +
+           "OR s.labsAbandoned <> (SELECT COUNT(up) FROM UserProgress up WHERE up.user.id = s.userId AND up.status = 'ABANDONED') " +
+           "OR s.totalTimeSpent <> (SELECT COALESCE(SUM(up.timeSpent), 0) FROM UserProgress up WHERE up.user.id = s.userId) " +
+           "OR s.completionSum <> (SELECT COALESCE(SUM(up.completionPercentage), 0) FROM UserProgress up WHERE up.user.id = s.userId)")
+    int reconcileAll(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,126 @@
+package it.uniroma3.cyberlab.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.web.authentication.rememberme.PersistentRememberMeToken;
+import org.springframework.security.web.authentication.rememberme.PersistentTokenRepository;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache in memoria (per nodo, TTL breve) delle serie "ricordami" appena validate davanti a RememberMeTokenService.
+ * - il token corrente di una serie si legge dalla cache invece che dal database
+ * - resta anche il token precedente alla rotazione: le richieste partite in parallelo con il vecchio cookie
+ *   vengono riconosciute (PersistentRememberMeServices) invece di sembrare un furto del cookie
+ * - la rotazione e' sempre un compare-and-set sul database: la cache non basta per ruotare, e se il database
+ *   non conferma il token presentato la serie viene scartata e riletta
+ */
+@Component
+public class CachingPersistentTokenRepository implements PersistentTokenRepository {
+
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final Map<String, CachedSeries> cache = new ConcurrentHashMap<>();
+
+    @Autowired
+    private RememberMeTokenService delegate;
+
+    @Value("${cyberlab.remember-me.series-cache-ttl:30s}")
+    private Duration ttl;
+
+    @Override
+    public void createNewToken(PersistentRememberMeToken token) {
+        delegate.createNewToken(token);
+        put(token, null);
+    }
+
+    @Override
+    public void updateToken(String series, String tokenValue, Date lastUsed) {
+        delegate.updateToken(series, tokenValue, lastUsed);
+        cache.remove(series);
+    }
+
+    /**
+     * Ruota il token della serie se nel database e' ancora quello di current; false se e' gia' stato ruotato
+     * (da un'altra richiesta o da un altro nodo), e in quel caso la serie esce dalla cache
+     */
+    public boolean rotateToken(PersistentRememberMeToken current, String tokenValue, Date lastUsed) {
+        String series = current.getSeries();
+        if (!delegate.rotateToken(series, current.getTokenValue(), tokenValue, lastUsed)) {
+            cache.remove(series);
+            return false;
+        }
+        put(new PersistentRememberMeToken(current.getUsername(), series, tokenValue, lastUsed), current.getTokenValue());
+        return true;
+    }
+
+    @Override
+    public PersistentRememberMeToken getTokenForSeries(String seriesId) {
+        CachedSeries cached = fresh(seriesId);
+        if (cached != null) {
+            return cached.token();
+        }
+        PersistentRememberMeToken token = delegate.getTokenForSeries(seriesId);
+        if (token != null) {
+            put(token, null);
+        }
+        return token;
+    }
+
+    @Override
+    public void removeUserTokens(String username) {
+        delegate.removeUserTokens(username);
+        cache.values().removeIf(cached -> cached.token().getUsername().equals(username));
+    }
+
+    /**
+     * Token corrente della serie se quello presentato e' il predecessore appena ruotato (entro il TTL), altrimenti null.
+     * Prima la rotazione fatta da questo nodo, poi quella registrata nel database (altri nodi)
+     */
+    public PersistentRememberMeToken findRotatedFrom(String series, String presentedToken) {
+        CachedSeries cached = fresh(series);
+        if (cached != null && presentedToken.equals(cached.previousTokenValue())) {
+            return cached.token();
+        }
+        return delegate.findRotatedFrom(series, presentedToken, LocalDateTime.now().minus(ttl));
+    }
+
+    /**
+     * Serie riletta dal database, scartando quella in cache
+     */
+    public PersistentRememberMeToken reload(String series) {
+        cache.remove(series);
+        return getTokenForSeries(series);
+    }
+
+    private CachedSeries fresh(String series) {
+        CachedSeries cached = cache.get(series);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.expiresAt() < System.currentTimeMillis()) {
+            cache.remove(series, cached);
+            return null;
+        }
+        return cached;
+    }
+
+    private void put(PersistentRememberMeToken token, String previousTokenValue) {
+        long now = System.currentTimeMillis();
+        if (cache.size() >= MAX_ENTRIES) {
+            cache.values().removeIf(cached -> cached.expiresAt() < now);
+            if (cache.size() >= MAX_ENTRIES) {
+                return;
+            }
+        }
+        cache.put(token.getSeries(), new CachedSeries(token, previousTokenValue, now + ttl.toMillis()));
+    }
+
+    private record CachedSeries(PersistentRememberMeToken token, String previousTokenValue, long expiresAt) {
+    }
+}
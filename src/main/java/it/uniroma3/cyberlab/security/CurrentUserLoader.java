@@ -0,0 +1,51 @@
+package it.uniroma3.cyberlab.security;
+
+import it.uniroma3.cyberlab.entity.User;
+import it.uniroma3.cyberlab.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.support.WebApplicationContextUtils;
+
+/**
+ * Carica l'entita' User del principal in sessione. Dentro una richiesta HTTP la carica una volta sola
+ * e la tiene tra gli attributi della richiesta (SecurityUtils.getCurrentUser() e' chiamato piu' volte per pagina).
+ * SecurityUtils e' una classe di utilita' statica: il bean viene preso dal contesto web della richiesta corrente.
+ */
+@Component
+public class CurrentUserLoader {
+
+    private static final String REQUEST_ATTRIBUTE = CurrentUserLoader.class.getName() + ".user";
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Utente della richiesta corrente; null fuori da una richiesta HTTP
+     */
+    static User load(Long userId) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (userId == null || !(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return null;
+        }
+
+        Object cached = attributes.getAttribute(REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (cached instanceof User user && userId.equals(user.getId())) {
+            return user;
+        }
+
+        WebApplicationContext context = WebApplicationContextUtils.getWebApplicationContext(
+                servletAttributes.getRequest().getServletContext());
+        if (context == null) {
+            return null;
+        }
+        User user = context.getBean(CurrentUserLoader.class).userRepository.findById(userId).orElse(null);
+        if (user != null) {
+            attributes.setAttribute(REQUEST_ATTRIBUTE, user, RequestAttributes.SCOPE_REQUEST);
+        }
+        return user;
+    }
+}
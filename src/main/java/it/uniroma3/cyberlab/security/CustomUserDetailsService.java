@@ -24,9 +24,23 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Override
     @Transactional
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = userRepository.findByUsernameOrEmail(username, username)
+        User user = userRepository.findByLoginIdentifier(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+        return toPrincipal(user);
+    }
+
+    /**
+     * Caricamento per username esatto, per i token "ricordami": il token conserva lo username dell'account,
+     * che non va reinterpretato come email (uno username "vittima@x.com" risolverebbe un altro utente)
+     */
+    @Transactional
+    public UserDetails loadUserByExactUsername(String username) throws UsernameNotFoundException {
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+        return toPrincipal(user);
+    }
 
+    private UserDetails toPrincipal(User user) {
         if (user.getStatus() == User.UserStatus.BANNED) {
             throw new DisabledException("User account is banned");
         }
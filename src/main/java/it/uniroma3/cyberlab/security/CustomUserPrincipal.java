@@ -1,6 +1,7 @@
 package it.uniroma3.cyberlab.security;
 
 import it.uniroma3.cyberlab.entity.User;
+import org.springframework.security.core.CredentialsContainer;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -9,46 +10,66 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
-public class CustomUserPrincipal implements UserDetails {
+/**
+ * Principal salvato nella sessione (condivisa tra i nodi): solo id, username, ruolo e stato, non l'entita' User
+ * con le sue collezioni lazy. La password serve solo durante il login e non viene serializzata.
+ * L'utente completo si ottiene con SecurityUtils.getCurrentUser() (caricato una volta per richiesta).
+ */
+public class CustomUserPrincipal implements UserDetails, CredentialsContainer {
 
-    private User user;
+    private static final long serialVersionUID = 1L;
+
+    private final Long id;
+    private final String username;
+    private final User.Role role;
+    private final User.UserStatus status;
+    private transient String password;
 
     public CustomUserPrincipal(User user) {
-        this.user = user;
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.role = user.getRole();
+        this.status = user.getStatus();
+        this.password = user.getPassword();
     }
 
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         List<GrantedAuthority> authorities = new ArrayList<>();
-        
+
         // Add role-based authority
-        authorities.add(new SimpleGrantedAuthority("ROLE_" + user.getRole().name()));
-        
+        authorities.add(new SimpleGrantedAuthority("ROLE_" + role.name()));
+
         // Add additional permissions based on role
-        if (user.getRole() == User.Role.ADMIN) {
+        if (role == User.Role.ADMIN) {
             authorities.add(new SimpleGrantedAuthority("ADMIN_READ"));
             authorities.add(new SimpleGrantedAuthority("ADMIN_WRITE"));
             authorities.add(new SimpleGrantedAuthority("USER_MANAGE"));
             authorities.add(new SimpleGrantedAuthority("CONTENT_MODERATE"));
         }
-        
-        if (user.getRole() == User.Role.USER) {
+
+        if (role == User.Role.USER) {
             authorities.add(new SimpleGrantedAuthority("USER_READ"));
             authorities.add(new SimpleGrantedAuthority("USER_WRITE"));
             authorities.add(new SimpleGrantedAuthority("CONTENT_CREATE"));
         }
-        
+
         return authorities;
     }
 
     @Override
     public String getPassword() {
-        return user.getPassword();
+        return password;
+    }
+
+    @Override
+    public void eraseCredentials() {
+        password = null;
     }
 
     @Override
     public String getUsername() {
-        return user.getUsername();
+        return username;
     }
 
     @Override
@@ -58,8 +79,8 @@ public class CustomUserPrincipal implements UserDetails {
 
     @Override
     public boolean isAccountNonLocked() {
-        return user.getStatus() != User.UserStatus.BANNED && 
-               user.getStatus() != User.UserStatus.SUSPENDED;
+        return status != User.UserStatus.BANNED &&
+               status != User.UserStatus.SUSPENDED;
     }
 
     @Override
@@ -69,33 +90,34 @@ public class CustomUserPrincipal implements UserDetails {
 
     @Override
     public boolean isEnabled() {
-        return user.getStatus() == User.UserStatus.ACTIVE;
+        return status == User.UserStatus.ACTIVE;
     }
 
     // Additional helper methods
-    public User getUser() {
-        return user;
+    public Long getId() {
+        return id;
     }
 
- // in CustomUserPrincipal.java
-
-    public Long getId() {
-        return user.getId();
+    public User.Role getRole() {
+        return role;
     }
 
-    public String getEmail() {
-        return user.getEmail();
+    public boolean isAdmin() {
+        return role == User.Role.ADMIN;
     }
 
-    public String getFullName() {
-        return user.getFullName();
+    public boolean isUser() {
+        return role == User.Role.USER;
     }
 
-    public boolean isAdmin() {
-        return user.getRole() == User.Role.ADMIN;
+    // Il registro delle sessioni e il remember-me confrontano i principal per username
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CustomUserPrincipal principal && username.equals(principal.username);
     }
 
-    public boolean isUser() {
-        return user.getRole() == User.Role.USER;
+    @Override
+    public int hashCode() {
+        return username.hashCode();
     }
- }
\ No newline at end of file
+}
@@ -0,0 +1,89 @@
+package it.uniroma3.cyberlab.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.web.authentication.rememberme.CookieTheftException;
+import org.springframework.security.web.authentication.rememberme.InvalidCookieException;
+import org.springframework.security.web.authentication.rememberme.PersistentRememberMeToken;
+import org.springframework.security.web.authentication.rememberme.PersistentTokenBasedRememberMeServices;
+import org.springframework.security.web.authentication.rememberme.RememberMeAuthenticationException;
+
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * "Ricordami" con serie e token ruotato a ogni accesso automatico (PersistentTokenBasedRememberMeServices),
+ * piu' la cache delle serie validate di CachingPersistentTokenRepository:
+ * - la rotazione e' un compare-and-set sul token presentato, quindi un cookie vecchio letto da una cache
+ *   non sovrascrive la rotazione fatta da un altro nodo
+ * - una richiesta con il token appena ruotato (es. piu' richieste in parallelo all'apertura del browser)
+ *   riceve il cookie aggiornato senza una nuova rotazione, invece di invalidare tutte le serie dell'utente
+ */
+public class PersistentRememberMeServices extends PersistentTokenBasedRememberMeServices {
+
+    private final CachingPersistentTokenRepository tokenRepository;
+
+    public PersistentRememberMeServices(String key, UserDetailsService userDetailsService,
+                                        CachingPersistentTokenRepository tokenRepository) {
+        super(key, userDetailsService, tokenRepository);
+        this.tokenRepository = tokenRepository;
+    }
+
+    @Override
+    protected UserDetails processAutoLoginCookie(String[] cookieTokens, HttpServletRequest request,
+                                                 HttpServletResponse response) {
+        if (cookieTokens.length != 2) {
+            throw new InvalidCookieException("Cookie token did not contain 2 tokens, but contained '"
+                    + Arrays.asList(cookieTokens) + "'");
+        }
+        String series = cookieTokens[0];
+        String presentedToken = cookieTokens[1];
+
+        PersistentRememberMeToken token = tokenRepository.getTokenForSeries(series);
+        if (token != null && !presentedToken.equals(token.getTokenValue())) {
+            // In cache c'e' un altro token: decide il database
+            token = tokenRepository.reload(series);
+        }
+        if (token == null) {
+            throw new RememberMeAuthenticationException("No persistent token found for series id: " + series);
+        }
+        if (!presentedToken.equals(token.getTokenValue())) {
+            return acceptRotated(token, presentedToken, request, response);
+        }
+        if (token.getDate().getTime() + getTokenValiditySeconds() * 1000L < System.currentTimeMillis()) {
+            throw new RememberMeAuthenticationException("Remember-me login has expired");
+        }
+
+        String newTokenValue = generateTokenData();
+        if (!tokenRepository.rotateToken(token, newTokenValue, new Date())) {
+            // Ruotato nel frattempo da un'altra richiesta: stesso caso del cookie appena sostituito
+            PersistentRememberMeToken current = tokenRepository.getTokenForSeries(series);
+            if (current == null) {
+                throw new RememberMeAuthenticationException("No persistent token found for series id: " + series);
+            }
+            return acceptRotated(current, presentedToken, request, response);
+        }
+        setCookie(new String[] {series, newTokenValue}, getTokenValiditySeconds(), request, response);
+        return getUserDetailsService().loadUserByUsername(token.getUsername());
+    }
+
+    /**
+     * Token presentato diverso da quello nel database: accettato solo se e' il predecessore appena ruotato
+     * (il cookie riceve il token corrente), altrimenti e' un furto del cookie e le serie dell'utente vengono eliminate
+     */
+    private UserDetails acceptRotated(PersistentRememberMeToken stored, String presentedToken,
+                                      HttpServletRequest request, HttpServletResponse response) {
+        PersistentRememberMeToken current = tokenRepository.findRotatedFrom(stored.getSeries(), presentedToken);
+        if (current == null) {
+            tokenRepository.removeUserTokens(stored.getUsername());
+            throw new CookieTheftException(this.messages.getMessage(
+                    "PersistentTokenBasedRememberMeServices.cookieStolen",
+                    "Invalid remember-me token (Series/token) mismatch. Implies previous cookie theft attack."));
+        }
+        setCookie(new String[] {current.getSeries(), current.getTokenValue()}, getTokenValiditySeconds(),
+                request, response);
+        return getUserDetailsService().loadUserByUsername(current.getUsername());
+    }
+}
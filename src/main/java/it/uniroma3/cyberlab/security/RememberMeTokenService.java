@@ -0,0 +1,92 @@
+package it.uniroma3.cyberlab.security;
+
+import it.uniroma3.cyberlab.entity.RememberMeToken;
+import it.uniroma3.cyberlab.repository.RememberMeTokenRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.web.authentication.rememberme.PersistentRememberMeToken;
+import org.springframework.security.web.authentication.rememberme.PersistentTokenRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Serie e token "ricordami" sulla tabella remember_me_token.
+ * Le letture restano sul primario (niente readOnly): una replica in ritardo vedrebbe il token prima
+ * della rotazione e l'accesso verrebbe scambiato per un furto del cookie.
+ */
+@Service
+@Transactional
+public class RememberMeTokenService implements PersistentTokenRepository {
+
+    @Autowired
+    private RememberMeTokenRepository rememberMeTokenRepository;
+
+    @Value("${cyberlab.remember-me.token-validity:7d}")
+    private Duration tokenValidity;
+
+    @Override
+    public void createNewToken(PersistentRememberMeToken token) {
+        rememberMeTokenRepository.save(new RememberMeToken(token.getSeries(), token.getUsername(),
+                token.getTokenValue(), toLocalDateTime(token.getDate())));
+    }
+
+    @Override
+    public void updateToken(String series, String tokenValue, Date lastUsed) {
+        rememberMeTokenRepository.updateToken(series, tokenValue, toLocalDateTime(lastUsed));
+    }
+
+    /**
+     * Ruota il token solo se nel database e' ancora quello presentato; false se un'altra richiesta l'ha gia' ruotato
+     */
+    public boolean rotateToken(String series, String presentedToken, String tokenValue, Date lastUsed) {
+        return rememberMeTokenRepository.rotateToken(series, presentedToken, tokenValue, toLocalDateTime(lastUsed)) == 1;
+    }
+
+    @Override
+    public PersistentRememberMeToken getTokenForSeries(String seriesId) {
+        return rememberMeTokenRepository.findById(seriesId)
+                .map(RememberMeTokenService::toPersistentToken)
+                .orElse(null);
+    }
+
+    /**
+     * Token corrente della serie se quello presentato e' il predecessore ruotato dopo since, altrimenti null
+     */
+    public PersistentRememberMeToken findRotatedFrom(String series, String presentedToken, LocalDateTime since) {
+        return rememberMeTokenRepository.findById(series)
+                .filter(token -> presentedToken.equals(token.getPreviousToken()) && token.getLastUsed().isAfter(since))
+                .map(RememberMeTokenService::toPersistentToken)
+                .orElse(null);
+    }
+
+    @Override
+    public void removeUserTokens(String username) {
+        rememberMeTokenRepository.deleteByUsername(username);
+    }
+
+    /**
+     * Pulizia notturna delle serie scadute (browser che non sono piu' tornati)
+     */
+    @Scheduled(cron = "${cyberlab.remember-me.purge-cron:0 15 4 * * *}")
+    public void purgeExpiredTokens() {
+        int deleted = rememberMeTokenRepository.deleteUnusedBefore(LocalDateTime.now().minus(tokenValidity));
+        if (deleted > 0) {
+            System.out.println("✅ Expired remember-me tokens removed: " + deleted);
+        }
+    }
+
+    private static PersistentRememberMeToken toPersistentToken(RememberMeToken token) {
+        return new PersistentRememberMeToken(token.getUsername(), token.getSeries(), token.getToken(),
+                Date.from(token.getLastUsed().atZone(ZoneId.systemDefault()).toInstant()));
+    }
+
+    private static LocalDateTime toLocalDateTime(Date date) {
+        return LocalDateTime.ofInstant(date.toInstant(), ZoneId.systemDefault());
+    }
+}
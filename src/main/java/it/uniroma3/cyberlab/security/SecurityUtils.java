@@ -8,9 +8,17 @@ import org.springframework.security.core.context.SecurityContextHolder;
 public class SecurityUtils {
 
     /**
-     * Get the currently authenticated user
+     * Get the currently authenticated user (loaded from the database, once per request)
      */
     public static User getCurrentUser() {
+        CustomUserPrincipal principal = getCurrentPrincipal();
+        return principal != null ? CurrentUserLoader.load(principal.getId()) : null;
+    }
+
+    /**
+     * Get the session principal (id, username, role) without touching the database
+     */
+    public static CustomUserPrincipal getCurrentPrincipal() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         
         if (authentication == null || 
@@ -21,7 +29,7 @@ public class SecurityUtils {
         
         Object principal = authentication.getPrincipal();
         if (principal instanceof CustomUserPrincipal) {
-            return ((CustomUserPrincipal) principal).getUser();
+            return (CustomUserPrincipal) principal;
         }
         
         return null;
@@ -31,16 +39,16 @@ public class SecurityUtils {
      * Get the current user's ID
      */
     public static Long getCurrentUserId() {
-        User user = getCurrentUser();
-        return user != null ? user.getId() : null;
+        CustomUserPrincipal principal = getCurrentPrincipal();
+        return principal != null ? principal.getId() : null;
     }
 
     /**
      * Get the current username
      */
     public static String getCurrentUsername() {
-        User user = getCurrentUser();
-        return user != null ? user.getUsername() : null;
+        CustomUserPrincipal principal = getCurrentPrincipal();
+        return principal != null ? principal.getUsername() : null;
     }
 
     /**
@@ -57,25 +65,25 @@ public class SecurityUtils {
      * Check if current user is admin
      */
     public static boolean isAdmin() {
-        User user = getCurrentUser();
-        return user != null && user.getRole() == User.Role.ADMIN;
+        CustomUserPrincipal principal = getCurrentPrincipal();
+        return principal != null && principal.isAdmin();
     }
 
     /**
      * Check if current user is regular user
      */
     public static boolean isUser() {
-        User user = getCurrentUser();
-        return user != null && user.getRole() == User.Role.USER;
+        CustomUserPrincipal principal = getCurrentPrincipal();
+        return principal != null && principal.isUser();
     }
 
     /**
      * Check if current user owns the given entity
      */
     public static boolean isOwner(User owner) {
-        User currentUser = getCurrentUser();
-        return currentUser != null && owner != null && 
-               currentUser.getId().equals(owner.getId());
+        Long currentUserId = getCurrentUserId();
+        return currentUserId != null && owner != null && 
+               currentUserId.equals(owner.getId());
     }
 
     /**
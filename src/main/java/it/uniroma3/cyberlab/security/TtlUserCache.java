@@ -0,0 +1,59 @@
+package it.uniroma3.cyberlab.security;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache a scadenza dei principal caricati per gli accessi "ricordami": uno studente che torna non costa
+ * una query sugli utenti a ogni richiesta senza sessione. Il principal e' solo un'istantanea (id, username,
+ * ruolo, stato); UserService la scarta quando cambiano stato o ruolo, gli altri nodi la vedono scadere col TTL.
+ */
+@Component
+public class TtlUserCache implements UserCache {
+
+    private static final int MAX_ENTRIES = 10_000;
+
+    private final Map<String, CachedUser> cache = new ConcurrentHashMap<>();
+
+    @Value("${cyberlab.remember-me.user-cache-ttl:5m}")
+    private Duration ttl;
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        CachedUser cached = cache.get(username);
+        if (cached == null) {
+            return null;
+        }
+        if (cached.expiresAt() < System.currentTimeMillis()) {
+            cache.remove(username, cached);
+            return null;
+        }
+        return cached.user();
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        long now = System.currentTimeMillis();
+        if (cache.size() >= MAX_ENTRIES) {
+            cache.values().removeIf(cached -> cached.expiresAt() < now);
+            if (cache.size() >= MAX_ENTRIES) {
+                return;
+            }
+        }
+        cache.put(user.getUsername(), new CachedUser(user, now + ttl.toMillis()));
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        cache.remove(username);
+    }
+
+    private record CachedUser(UserDetails user, long expiresAt) {
+    }
+}
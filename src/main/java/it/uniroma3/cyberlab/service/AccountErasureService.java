@@ -0,0 +1,303 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.BackgroundJob;
+import it.uniroma3.cyberlab.entity.BackgroundJob.JobType;
+import it.uniroma3.cyberlab.entity.User;
+import it.uniroma3.cyberlab.repository.CommentRepository;
+import it.uniroma3.cyberlab.repository.LabRepository;
+import it.uniroma3.cyberlab.repository.PostRepository;
+import it.uniroma3.cyberlab.repository.ReportRepository;
+import it.uniroma3.cyberlab.repository.UserPreferenceRepository;
+import it.uniroma3.cyberlab.repository.UserProgressRepository;
+import it.uniroma3.cyberlab.repository.UserRepository;
+import it.uniroma3.cyberlab.security.CachingPersistentTokenRepository;
+import it.uniroma3.cyberlab.security.TtlUserCache;
+import it.uniroma3.cyberlab.service.ContentVersionService.Region;
+import it.uniroma3.cyberlab.util.TransactionCallbacks;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Cancellazione account in background.
+ * La richiesta anonimizza subito la riga dell'utente (niente piu' login ne' dati personali visibili);
+ * il job poi, a blocchi e in transazioni brevi:
+ * - assegna post, commenti e lab all'utente segnaposto "deleted_user" (le discussioni restano leggibili)
+ * - elimina i progressi nei lab, aggiornando completion_count e le statistiche dei lab
+ * - elimina le segnalazioni inviate o ricevute, aggiornando report_count
+ * - infine elimina preferenze e riga dell'utente.
+ * Ogni blocco lavora solo su cio' che appartiene ancora all'utente, quindi dopo un riavvio il job riparte da dove era.
+ */
+@Service
+public class AccountErasureService {
+
+    public static final String GHOST_USERNAME = "deleted_user";
+    private static final String GHOST_EMAIL = "deleted_user@cyberlab.deleted";
+
+    private static final String PHASE_POSTS = "POSTS";
+    private static final String PHASE_COMMENTS = "COMMENTS";
+    private static final String PHASE_LABS = "LABS";
+    private static final String PHASE_PROGRESS = "PROGRESS";
+    private static final String PHASE_REPORTS = "REPORTS";
+
+    @Value("${cyberlab.jobs.account-erasure.chunk-size:500}")
+    private int chunkSize;
+
+    @Autowired
+    private BackgroundJobService backgroundJobService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private LabRepository labRepository;
+
+    @Autowired
+    private UserProgressRepository userProgressRepository;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private UserPreferenceRepository userPreferenceRepository;
+
+    @Autowired
+    private UserPreferenceService userPreferenceService;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private ReportService reportService;
+
+    @Autowired
+    private LabAnalyticsService labAnalyticsService;
+
+    @Autowired
+    private ContentVersionService contentVersionService;
+
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
+    @Autowired
+    private CachingPersistentTokenRepository rememberMeTokenRepository;
+
+    @Autowired
+    private TtlUserCache userCache;
+
+    @Autowired
+    private FindByIndexNameSessionRepository<? extends Session> sessionRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private TaskExecutor taskExecutor;
+
+    /**
+     * Anonimizza l'account e accoda la cancellazione dei dati collegati
+     */
+    @Transactional
+    public BackgroundJob requestErasure(Long userId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        if (GHOST_USERNAME.equals(user.getUsername())) {
+            throw new IllegalArgumentException("This account cannot be deleted");
+        }
+
+        for (BackgroundJob active : backgroundJobService.findActiveJobs(JobType.ACCOUNT_ERASURE)) {
+            if (userId.equals(active.getSourceId())) {
+                return active;
+            }
+        }
+
+        User ghost = findOrCreateGhostUser();
+
+        long total = postRepository.countByAuthor(user)
+                + commentRepository.countByAuthor(user)
+                + labRepository.countByCreatedBy(user)
+                + userProgressRepository.countByUserId(userId)
+                + reportRepository.countInvolvingUser(userId);
+
+        // Tutte le sessioni dell'utente terminate, non solo quella della richiesta (altri browser e dispositivi)
+        String previousUsername = user.getUsername();
+        for (String sessionId : sessionRepository.findByPrincipalName(previousUsername).keySet()) {
+            sessionRepository.deleteById(sessionId);
+        }
+
+        // Dati personali rimossi subito: il resto puo' attendere il job
+        user.setUsername("deleted_user_" + userId);
+        user.setEmail("deleted_" + userId + "@cyberlab.deleted");
+        user.setPassword(passwordEncoder.encode(UUID.randomUUID().toString()));
+        user.setName(null);
+        user.setSurname(null);
+        user.setProfileInfo(null);
+        user.setAvatar(null);
+        user.setStatus(User.UserStatus.SUSPENDED);
+        userRepository.save(user);
+
+        // Niente piu' accessi "ricordami" (e lo username torna libero per altri)
+        rememberMeTokenRepository.removeUserTokens(previousUsername);
+        userCache.removeUserFromCache(previousUsername);
+
+        BackgroundJob job = backgroundJobService.create(JobType.ACCOUNT_ERASURE, userId, ghost.getId(), userId, total);
+        Long jobId = job.getId();
+        TransactionCallbacks.afterCommit(() -> taskExecutor.execute(() -> run(jobId)));
+        System.out.println("Account erasure job #" + jobId + " queued for user " + userId + " (" + total + " items)");
+        return job;
+    }
+
+    /**
+     * Riprende le cancellazioni interrotte da un riavvio (su qualsiasi nodo): solo quelle ferme da stale-after
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${cyberlab.jobs.resume-interval:60000}",
+               initialDelayString = "${cyberlab.jobs.resume-interval:60000}")
+    public void resumeInterruptedJobs() {
+        for (BackgroundJob job : backgroundJobService.findStaleJobs(JobType.ACCOUNT_ERASURE)) {
+            System.out.println("Resuming account erasure job #" + job.getId());
+            Long jobId = job.getId();
+            taskExecutor.execute(() -> run(jobId));
+        }
+    }
+
+    void run(Long jobId) {
+        if (!backgroundJobService.claim(jobId)) {
+            System.out.println("Account erasure job #" + jobId + " already running elsewhere, skipped");
+            return;
+        }
+        BackgroundJob job = backgroundJobService.findById(jobId);
+        Long userId = job.getSourceId();
+        Long ghostId = job.getTargetId();
+        long start = System.currentTimeMillis();
+
+        try {
+
+            long posts = backgroundJobService.processInChunks(jobId, PHASE_POSTS,
+                    () -> postRepository.reassignAuthorChunk(userId, ghostId, chunkSize));
+            long comments = backgroundJobService.processInChunks(jobId, PHASE_COMMENTS,
+                    () -> commentRepository.reassignAuthorChunk(userId, ghostId, chunkSize));
+            long labs = backgroundJobService.processInChunks(jobId, PHASE_LABS,
+                    () -> labRepository.reassignCreatorChunk(userId, ghostId, chunkSize));
+            long progress = backgroundJobService.processInChunks(jobId, PHASE_PROGRESS,
+                    () -> deleteProgressChunk(userId));
+            long reports = backgroundJobService.processInChunks(jobId, PHASE_REPORTS,
+                    () -> deleteReportsChunk(userId));
+
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                reportRepository.clearReviewer(userId);
+                reportRepository.clearResolver(userId);
+                reportService.onUserErased(userId);
+                userPreferenceRepository.deleteByUserId(userId);
+                userRepository.deleteRowById(userId);
+                // Contenuti riassegnati in blocco: lo snapshot del segnaposto va ricostruito
+                userStatsService.invalidate(List.of(userId, ghostId));
+            });
+            userPreferenceService.evict(userId);
+
+            // Gli UPDATE set-based non passano dai listener JPA: invalidazione esplicita, una volta sola
+            contentVersionService.markChanged(Region.POSTS);
+            contentVersionService.markChanged(Region.COMMENTS);
+            contentVersionService.markChanged(Region.LABS);
+            contentVersionService.markChanged(Region.USERS);
+
+            String message = "Anonymized " + posts + " posts, " + comments + " comments, " + labs + " labs; deleted "
+                    + progress + " progress entries and " + reports + " reports in "
+                    + (System.currentTimeMillis() - start) + "ms";
+            backgroundJobService.markCompleted(jobId, message);
+            System.out.println("✅ Account erasure job #" + jobId + ": " + message);
+        } catch (RuntimeException e) {
+            backgroundJobService.markFailed(jobId, e.getMessage());
+            System.out.println("⚠️ Account erasure job #" + jobId + " failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Un blocco di progressi: completion_count dei lab ridotto con un UPDATE per lab, poi DELETE per id
+     */
+    private int deleteProgressChunk(Long userId) {
+        List<Long> ids = userProgressRepository.findIdsByUserId(userId, PageRequest.of(0, chunkSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        for (Object[] row : userProgressRepository.countCompletedByLabForIds(ids)) {
+            labRepository.adjustCompletionCount((Long) row[0], -((Long) row[1]));
+        }
+        labAnalyticsService.invalidate(userProgressRepository.findLabIdsForIds(ids));
+        return userProgressRepository.deleteByIds(ids);
+    }
+
+    /**
+     * Un blocco di segnalazioni: report_count di post e commenti ridotto in blocco, casi aggiornati, poi DELETE per id
+     */
+    private int deleteReportsChunk(Long userId) {
+        List<Long> ids = reportRepository.findIdsInvolvingUser(userId, PageRequest.of(0, chunkSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        for (Object[] row : reportRepository.countByPostForIds(ids)) {
+            postRepository.adjustReportCount((Long) row[0], -((Long) row[1]).intValue());
+        }
+        for (Object[] row : reportRepository.countByCommentForIds(ids)) {
+            commentRepository.adjustReportCount((Long) row[0], -((Long) row[1]).intValue());
+        }
+        reportService.onReportsDeleted(ids);
+        return reportRepository.deleteByIds(ids);
+    }
+
+    /**
+     * Utente segnaposto a cui vengono assegnati i contenuti degli account cancellati
+     */
+    private User findOrCreateGhostUser() {
+        return userRepository.findByUsername(GHOST_USERNAME).orElseGet(() -> {
+            createGhostUser();
+            return userRepository.findByUsername(GHOST_USERNAME)
+                    .orElseThrow(() -> new IllegalStateException("Ghost user not found"));
+        });
+    }
+
+    /**
+     * Creazione in una transazione separata: con due cancellazioni contemporanee il vincolo univoco
+     * sullo username ne scarta una e l'utente creato dall'altra viene riletto
+     */
+    private void createGhostUser() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                User ghost = new User(GHOST_USERNAME, GHOST_EMAIL, passwordEncoder.encode(UUID.randomUUID().toString()));
+                ghost.setName("Deleted");
+                ghost.setSurname("User");
+                ghost.setStatus(User.UserStatus.SUSPENDED);
+                userRepository.save(ghost);
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Creato nel frattempo da un'altra richiesta
+            System.out.println("Ghost user created concurrently, reusing it");
+        }
+    }
+}
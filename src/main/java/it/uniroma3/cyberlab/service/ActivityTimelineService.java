@@ -0,0 +1,113 @@
+package it.uniroma3.cyberlab.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cronologia delle attivita' di un utente (post, commenti, lab) a pagine:
+ * una sola query UNION ALL, ogni ramo legge al massimo le righe necessarie a riempire la pagina
+ * dagli indici (autore, data), poi l'ordinamento comune taglia la pagina richiesta.
+ */
+@Service
+@Transactional(readOnly = true)
+public class ActivityTimelineService {
+
+    public enum ActivityType {
+        POST, COMMENT, LAB
+    }
+
+    // Pagine oltre questa non hanno senso da sfogliare (e l'offset resta nei limiti di un int)
+    private static final int MAX_PAGE = 10_000;
+
+    // Limiti inseriti come numeri: H2 non rivaluta i parametri LIMIT nelle sottoquery a ogni esecuzione
+    private static final String TIMELINE_QUERY =
+            "SELECT type, id, title, detail, ref_id, occurred_at FROM (" +
+            "(SELECT 'POST' AS type, p.id AS id, p.title AS title, p.post_type AS detail, p.id AS ref_id, " +
+            "p.created_date AS occurred_at FROM post p WHERE p.author_id = :userId " +
+            "ORDER BY p.created_date DESC, p.id DESC LIMIT %1$d) " +
+            "UNION ALL " +
+            "(SELECT 'COMMENT', c.id, p.title, SUBSTRING(c.content, 1, 140), c.post_id, c.created_date " +
+            "FROM comment c JOIN post p ON p.id = c.post_id WHERE c.author_id = :userId " +
+            "ORDER BY c.created_date DESC, c.id DESC LIMIT %1$d) " +
+            "UNION ALL " +
+            "(SELECT 'LAB', up.id, l.title, up.status, up.lab_id, " +
+            "COALESCE(up.completed_date, up.last_accessed, up.started_date) " +
+            "FROM user_progress up JOIN lab l ON l.id = up.lab_id WHERE up.user_id = :userId " +
+            "ORDER BY 6 DESC NULLS LAST, up.id DESC LIMIT %1$d)" +
+            ") activity ORDER BY occurred_at DESC NULLS LAST, type, id DESC LIMIT %2$d OFFSET %3$d";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Pagina della cronologia, dalla piu' recente; hasNext() dice se esiste la pagina successiva
+     */
+    public Slice<ActivityItem> getTimeline(Long userId, int page, int size) {
+        page = Math.min(Math.max(0, page), MAX_PAGE);
+        int offset = page * size;
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(TIMELINE_QUERY.formatted(offset + size + 1, size + 1, offset))
+                .setParameter("userId", userId)
+                .getResultList();
+
+        List<ActivityItem> items = new ArrayList<>(Math.min(rows.size(), size));
+        for (Object[] row : rows.subList(0, Math.min(rows.size(), size))) {
+            items.add(new ActivityItem(
+                    ActivityType.valueOf(((String) row[0]).trim()),
+                    ((Number) row[1]).longValue(),
+                    (String) row[2],
+                    row[3] != null ? row[3].toString() : null,
+                    ((Number) row[4]).longValue(),
+                    toLocalDateTime(row[5])));
+        }
+        return new SliceImpl<>(items, PageRequest.of(page, size), rows.size() > size);
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return (LocalDateTime) value;
+    }
+
+    /**
+     * Voce della cronologia: refId e' il post (post e commenti) o il lab (progressi)
+     */
+    public static class ActivityItem {
+
+        private final ActivityType type;
+        private final Long id;
+        private final String title;
+        private final String detail;
+        private final Long refId;
+        private final LocalDateTime occurredAt;
+
+        public ActivityItem(ActivityType type, Long id, String title, String detail, Long refId,
+                            LocalDateTime occurredAt) {
+            this.type = type;
+            this.id = id;
+            this.title = title;
+            this.detail = detail;
+            this.refId = refId;
+            this.occurredAt = occurredAt;
+        }
+
+        public ActivityType getType() { return type; }
+        public Long getId() { return id; }
+        public String getTitle() { return title; }
+        public String getDetail() { return detail; }
+        public Long getRefId() { return refId; }
+        public LocalDateTime getOccurredAt() { return occurredAt; }
+    }
+}
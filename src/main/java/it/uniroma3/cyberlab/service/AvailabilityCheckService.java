@@ -0,0 +1,172 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.User;
+import it.uniroma3.cyberlab.repository.UserRepository;
+import it.uniroma3.cyberlab.util.BloomFilter;
+import it.uniroma3.cyberlab.util.RateLimiter;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Disponibilita' di username ed email durante la registrazione (controlli AJAX a ogni tasto):
+ * - filtri di Bloom in memoria con username ed email normalizzati: "sicuramente libero" senza query,
+ *   solo i "forse preso" arrivano al database
+ * - costruiti all'avvio (dopo le migrazioni), aggiornati da LoginIdentifierListener a ogni insert/update
+ *   di un utente e ricostruiti periodicamente per le registrazioni arrivate dagli altri nodi
+ * - limite di richieste per client sui controlli AJAX
+ * Il controllo definitivo resta su database in UserService.createUser.
+ */
+@Service
+@Transactional(readOnly = true)
+public class AvailabilityCheckService {
+
+    private static final int LOAD_PAGE_SIZE = 5000;
+
+    // Spazio per le registrazioni fino alla prossima ricostruzione
+    private static final int MIN_EXPECTED_INSERTIONS = 10_000;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Value("${cyberlab.availability.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    @Value("${cyberlab.availability.rate-limit.capacity:20}")
+    private int rateLimitCapacity;
+
+    @Value("${cyberlab.availability.rate-limit.refill-per-second:2}")
+    private double rateLimitRefillPerSecond;
+
+    private RateLimiter rateLimiter;
+
+    // null finche' i filtri non sono pronti: nel frattempo si interroga il database
+    private volatile Filters filters;
+
+    // Utenti registrati durante una ricostruzione (null fuori dalla ricostruzione), guardato da registrationLock
+    private final Object registrationLock = new Object();
+    private List<String[]> pendingRegistrations;
+
+    @PostConstruct
+    void createRateLimiter() {
+        rateLimiter = new RateLimiter(rateLimitCapacity, rateLimitRefillPerSecond);
+    }
+
+    /**
+     * Costruzione all'avvio, dopo le migrazioni (ApplicationRunner) che riempiono le colonne normalizzate
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        rebuild();
+    }
+
+    /**
+     * Ricostruzione periodica: registrazioni degli altri nodi e crescita della tabella
+     */
+    @Scheduled(fixedDelayString = "${cyberlab.availability.rebuild-interval:600000}",
+               initialDelayString = "${cyberlab.availability.rebuild-interval:600000}")
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        long expected = Math.max(MIN_EXPECTED_INSERTIONS, userRepository.count() * 2);
+        Filters rebuilt = new Filters(new BloomFilter(expected, falsePositiveRate),
+                new BloomFilter(expected, falsePositiveRate));
+
+        // Prima della scansione: chi si registra mentre si legge la tabella finisce anche nel nuovo filtro
+        synchronized (registrationLock) {
+            pendingRegistrations = new ArrayList<>();
+        }
+        int users = 0;
+        Long cursor = 0L;
+        List<Object[]> rows;
+        try {
+            while (!(rows = userRepository.findLoginIdentifiersAfter(cursor, PageRequest.of(0, LOAD_PAGE_SIZE))).isEmpty()) {
+                for (Object[] row : rows) {
+                    rebuilt.add((String) row[1], (String) row[2]);
+                }
+                users += rows.size();
+                cursor = (Long) rows.get(rows.size() - 1)[0];
+            }
+        } catch (RuntimeException e) {
+            // Restano i filtri precedenti
+            synchronized (registrationLock) {
+                pendingRegistrations = null;
+            }
+            throw e;
+        }
+
+        synchronized (registrationLock) {
+            for (String[] registration : pendingRegistrations) {
+                rebuilt.add(registration[0], registration[1]);
+            }
+            pendingRegistrations = null;
+            filters = rebuilt;
+        }
+        System.out.println("✅ Availability filters built: " + users + " users, "
+                + (rebuilt.usernames().sizeInBytes() + rebuilt.emails().sizeInBytes()) / 1024 + "KB in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Registra username ed email di un utente salvato (LoginIdentifierListener); durante una ricostruzione
+     * li conserva anche per il nuovo filtro
+     */
+    public void register(User user) {
+        String username = user.getUsernameNormalized();
+        String email = user.getEmailNormalized();
+        synchronized (registrationLock) {
+            Filters current = filters;
+            if (current != null) {
+                current.add(username, email);
+            }
+            if (pendingRegistrations != null) {
+                pendingRegistrations.add(new String[] {username, email});
+            }
+        }
+    }
+
+    public boolean isUsernameAvailable(String username) {
+        String normalized = User.normalizeLoginIdentifier(username);
+        Filters current = filters;
+        if (current != null && !current.usernames().mightContain(normalized)) {
+            return true;
+        }
+        return !userRepository.existsByUsernameNormalized(normalized);
+    }
+
+    public boolean isEmailAvailable(String email) {
+        String normalized = User.normalizeLoginIdentifier(email);
+        Filters current = filters;
+        if (current != null && !current.emails().mightContain(normalized)) {
+            return true;
+        }
+        return !userRepository.existsByEmailNormalized(normalized);
+    }
+
+    /**
+     * Consuma una richiesta di controllo per il client; false se ha superato il limite
+     */
+    public boolean tryAcquire(String clientKey) {
+        return rateLimiter.tryAcquire(clientKey);
+    }
+
+    private record Filters(BloomFilter usernames, BloomFilter emails) {
+
+        void add(String username, String email) {
+            if (username != null) {
+                usernames.put(username);
+            }
+            if (email != null) {
+                emails.put(email);
+            }
+        }
+    }
+}
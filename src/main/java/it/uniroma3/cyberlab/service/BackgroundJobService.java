@@ -0,0 +1,134 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.BackgroundJob;
+import it.uniroma3.cyberlab.entity.BackgroundJob.JobStatus;
+import it.uniroma3.cyberlab.entity.BackgroundJob.JobType;
+import it.uniroma3.cyberlab.repository.BackgroundJobRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.IntSupplier;
+
+/**
+ * Stato persistito dei job in background (creazione, avanzamento, esito)
+ */
+@Service
+@Transactional
+public class BackgroundJobService {
+
+    // Job ripresi per passaggio: gli altri al passaggio successivo
+    private static final int RESUME_BATCH = 20;
+
+    @Autowired
+    private BackgroundJobRepository backgroundJobRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Un job RUNNING senza avanzamenti da questo intervallo e' considerato interrotto
+    @Value("${cyberlab.jobs.stale-after:PT5M}")
+    private Duration staleAfter;
+
+    /**
+     * Crea un job in stato PENDING
+     */
+    public BackgroundJob create(JobType jobType, Long sourceId, Long targetId, Long requestedBy, long totalItems) {
+        BackgroundJob job = new BackgroundJob(jobType, sourceId, targetId, requestedBy);
+        job.setTotalItems(totalItems);
+        return backgroundJobRepository.save(job);
+    }
+
+    @Transactional(readOnly = true)
+    public BackgroundJob findById(Long jobId) {
+        return backgroundJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Job not found"));
+    }
+
+    /**
+     * Job ancora da completare (in attesa o interrotti da un riavvio)
+     */
+    @Transactional(readOnly = true)
+    public List<BackgroundJob> findActiveJobs(JobType jobType) {
+        return backgroundJobRepository.findByJobTypeAndStatusIn(jobType, EnumSet.of(JobStatus.PENDING, JobStatus.RUNNING));
+    }
+
+    /**
+     * Job attivi fermi da piu' di stale-after, da riprendere (il nodo che li eseguiva si e' fermato)
+     */
+    @Transactional(readOnly = true)
+    public List<BackgroundJob> findStaleJobs(JobType jobType) {
+        return backgroundJobRepository.findStaleJobs(jobType, EnumSet.of(JobStatus.PENDING, JobStatus.RUNNING),
+                LocalDateTime.now().minus(staleAfter), PageRequest.of(0, RESUME_BATCH));
+    }
+
+    @Transactional(readOnly = true)
+    public List<BackgroundJob> findRecentJobs(JobType jobType) {
+        return backgroundJobRepository.findTop20ByJobTypeOrderByCreatedDateDesc(jobType);
+    }
+
+    /**
+     * Prende in carico il job (PENDING, o RUNNING ma fermo): false se lo sta gia' eseguendo un altro nodo
+     */
+    public boolean claim(Long jobId) {
+        LocalDateTime now = LocalDateTime.now();
+        return backgroundJobRepository.claim(jobId, JobStatus.PENDING, JobStatus.RUNNING, now.minus(staleAfter), now) == 1;
+    }
+
+    /**
+     * Avanzamento di un blocco: deve essere chiamato nella transazione che ha elaborato il blocco,
+     * cosi' dati e avanzamento vengono confermati insieme
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordProgress(Long jobId, long delta, String phase, Long cursorId) {
+        backgroundJobRepository.recordProgress(jobId, delta, phase, cursorId, LocalDateTime.now());
+    }
+
+    /**
+     * Esegue una fase a blocchi: ogni blocco e il suo avanzamento in una transazione separata,
+     * fino a quando un blocco non elabora piu' nulla. Restituisce gli elementi elaborati
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public long processInChunks(Long jobId, String phase, IntSupplier chunk) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        long processed = 0;
+        while (true) {
+            Integer count = transactionTemplate.execute(status -> {
+                int done = chunk.getAsInt();
+                if (done > 0) {
+                    recordProgress(jobId, done, phase, null);
+                }
+                return done;
+            });
+            if (count == null || count == 0) {
+                return processed;
+            }
+            processed += count;
+        }
+    }
+
+    public void markCompleted(Long jobId, String message) {
+        finish(jobId, JobStatus.COMPLETED, message);
+    }
+
+    public void markFailed(Long jobId, String message) {
+        finish(jobId, JobStatus.FAILED, message);
+    }
+
+    private void finish(Long jobId, JobStatus status, String message) {
+        BackgroundJob job = findById(jobId);
+        job.setStatus(status);
+        job.setMessage(message);
+        job.setFinishedDate(LocalDateTime.now());
+        job.setLastUpdated(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,45 @@
+package it.uniroma3.cyberlab.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Inserimento in blocco di entita' nuove: le insert vengono inviate in batch JDBC da batch_size righe
+ * (gli id arrivano dalle sequenze, quindi Hibernate non deve eseguire una insert per riga per leggere l'id).
+ * Dopo ogni batch il persistence context viene svuotato: le entita' restano con l'id ma diventano detached,
+ * quindi eventuali modifiche ad altre entita' caricate vanno fatte prima di chiamare persistAll.
+ * Contatori e statistiche restano a carico dei servizi che lo usano (CommentService, ReportService, UserProgressService).
+ */
+@Service
+@Transactional
+public class BulkInsertService {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int batchSize;
+
+    /**
+     * Persiste le entita' (nuove, senza id) e ritorna il numero di righe inserite
+     */
+    public <T> int persistAll(List<T> entities) {
+        int size = Math.max(batchSize, 1);
+        int count = 0;
+        for (T entity : entities) {
+            entityManager.persist(entity);
+            if (++count % size == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return count;
+    }
+}
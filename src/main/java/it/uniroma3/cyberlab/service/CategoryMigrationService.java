@@ -0,0 +1,156 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.BackgroundJob;
+import it.uniroma3.cyberlab.entity.BackgroundJob.JobType;
+import it.uniroma3.cyberlab.entity.Category;
+import it.uniroma3.cyberlab.entity.User;
+import it.uniroma3.cyberlab.repository.CategoryRepository;
+import it.uniroma3.cyberlab.repository.LabRepository;
+import it.uniroma3.cyberlab.repository.PostRepository;
+import it.uniroma3.cyberlab.service.ContentVersionService.Region;
+import it.uniroma3.cyberlab.util.TransactionCallbacks;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Spostamento in background di tutti i contenuti di una categoria in un'altra.
+ * Ogni blocco e' un UPDATE set-based nella sua transazione: nessuna entita' caricata in memoria
+ * e lock brevi sulle righe. Il job e' idempotente (sposta solo cio' che e' ancora nella categoria di origine),
+ * quindi se l'applicazione si riavvia viene semplicemente ripreso.
+ * Con piu' nodi: l'avvio blocca le righe delle categorie coinvolte e ogni esecuzione prende in carico il job
+ * con un UPDATE condizionale, quindi un job gira su un solo nodo alla volta.
+ */
+@Service
+public class CategoryMigrationService {
+
+    private static final String PHASE_POSTS = "POSTS";
+    private static final String PHASE_LABS = "LABS";
+
+    @Value("${cyberlab.jobs.category-migration.chunk-size:500}")
+    private int chunkSize;
+
+    @Autowired
+    private BackgroundJobService backgroundJobService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private LabRepository labRepository;
+
+    @Autowired
+    private ContentVersionService contentVersionService;
+
+    @Autowired
+    private PostRankingService postRankingService;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    private TaskExecutor taskExecutor;
+
+    /**
+     * Crea il job e lo avvia in background dopo il commit
+     */
+    @Transactional
+    public BackgroundJob startMigration(Long fromCategoryId, Long toCategoryId, User admin) {
+        if (admin == null || !admin.isAdmin()) {
+            throw new SecurityException("Only admins can move category content");
+        }
+        if (fromCategoryId.equals(toCategoryId)) {
+            throw new IllegalArgumentException("Source and target category must be different");
+        }
+
+        // Lock in ordine di id (niente deadlock): due avvii sulle stesse categorie non superano insieme il controllo
+        Long firstId = Math.min(fromCategoryId, toCategoryId);
+        Long secondId = Math.max(fromCategoryId, toCategoryId);
+        Category first = categoryRepository.findByIdForUpdate(firstId)
+                .orElseThrow(() -> new IllegalArgumentException(
+                        (firstId.equals(fromCategoryId) ? "Source" : "Target") + " category not found"));
+        Category second = categoryRepository.findByIdForUpdate(secondId)
+                .orElseThrow(() -> new IllegalArgumentException(
+                        (secondId.equals(fromCategoryId) ? "Source" : "Target") + " category not found"));
+        Category fromCategory = first.getId().equals(fromCategoryId) ? first : second;
+        Category toCategory = first.getId().equals(fromCategoryId) ? second : first;
+
+        for (BackgroundJob active : backgroundJobService.findActiveJobs(JobType.CATEGORY_MIGRATION)) {
+            if (involves(active, fromCategoryId) || involves(active, toCategoryId)) {
+                throw new IllegalArgumentException("A migration involving these categories is already running (job #"
+                        + active.getId() + ")");
+            }
+        }
+
+        long total = postRepository.countByCategory(fromCategory) + labRepository.countByCategory(fromCategory);
+        BackgroundJob job = backgroundJobService.create(JobType.CATEGORY_MIGRATION,
+                fromCategory.getId(), toCategory.getId(), admin.getId(), total);
+
+        Long jobId = job.getId();
+        TransactionCallbacks.afterCommit(() -> taskExecutor.execute(() -> run(jobId)));
+        System.out.println("Category migration job #" + jobId + " queued: '" + fromCategory.getName()
+                + "' -> '" + toCategory.getName() + "' (" + total + " items)");
+        return job;
+    }
+
+    /**
+     * Riprende i job interrotti da un riavvio (su questo o su un altro nodo): solo quelli fermi da stale-after
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${cyberlab.jobs.resume-interval:60000}",
+               initialDelayString = "${cyberlab.jobs.resume-interval:60000}")
+    public void resumeInterruptedJobs() {
+        for (BackgroundJob job : backgroundJobService.findStaleJobs(JobType.CATEGORY_MIGRATION)) {
+            System.out.println("Resuming category migration job #" + job.getId());
+            Long jobId = job.getId();
+            taskExecutor.execute(() -> run(jobId));
+        }
+    }
+
+    /**
+     * Esecuzione del job: prima i post, poi i lab, poi una sola invalidazione di cache e ranking
+     */
+    void run(Long jobId) {
+        if (!backgroundJobService.claim(jobId)) {
+            System.out.println("Category migration job #" + jobId + " already running elsewhere, skipped");
+            return;
+        }
+        BackgroundJob job = backgroundJobService.findById(jobId);
+        Long fromId = job.getSourceId();
+        Long toId = job.getTargetId();
+        long start = System.currentTimeMillis();
+
+        try {
+
+            long posts = backgroundJobService.processInChunks(jobId, PHASE_POSTS,
+                    () -> postRepository.moveCategoryChunk(fromId, toId, chunkSize));
+            long labs = backgroundJobService.processInChunks(jobId, PHASE_LABS,
+                    () -> labRepository.moveCategoryChunk(fromId, toId, chunkSize));
+
+            // Gli UPDATE nativi non passano dai listener JPA: invalidazione esplicita, una volta sola
+            contentVersionService.markChanged(Region.POSTS);
+            contentVersionService.markChanged(Region.LABS);
+            contentVersionService.markChanged(Region.CATEGORIES);
+            postRankingService.moveCategory(fromId, toId);
+
+            String message = "Moved " + posts + " posts and " + labs + " labs in "
+                    + (System.currentTimeMillis() - start) + "ms";
+            backgroundJobService.markCompleted(jobId, message);
+            System.out.println("✅ Category migration job #" + jobId + ": " + message);
+        } catch (RuntimeException e) {
+            backgroundJobService.markFailed(jobId, e.getMessage());
+            System.out.println("⚠️ Category migration job #" + jobId + " failed: " + e.getMessage());
+        }
+    }
+
+    private static boolean involves(BackgroundJob job, Long categoryId) {
+        return categoryId.equals(job.getSourceId()) || categoryId.equals(job.getTargetId());
+    }
+}
@@ -1,5 +1,6 @@
 package it.uniroma3.cyberlab.service;
 
+import it.uniroma3.cyberlab.entity.BackgroundJob;
 import it.uniroma3.cyberlab.entity.Category;
 import it.uniroma3.cyberlab.entity.Post;
 import it.uniroma3.cyberlab.entity.Lab;
@@ -25,6 +26,9 @@ public class CategoryService {
     
     @Autowired
     private LabRepository labRepository;
+    
+    @Autowired
+    private CategoryMigrationService categoryMigrationService;
 
     /**
      * Crea nuova categoria (solo admin)
@@ -143,29 +147,11 @@ public class CategoryService {
     }
 
     /**
-     * Sposta contenuti in un'altra categoria prima di eliminare
+     * Sposta contenuti in un'altra categoria prima di eliminare.
+     * Lo spostamento avviene in background a blocchi (vedi CategoryMigrationService)
      */
-    public void moveCategoryContent(Long fromCategoryId, Long toCategoryId, User admin) {
-        if (!admin.isAdmin()) {
-            throw new SecurityException("Only admins can move category content");
-        }
-        
-        Category fromCategory = findById(fromCategoryId);
-        Category toCategory = findById(toCategoryId);
-        
-        // Sposta post
-        List<Post> posts = postRepository.findByCategory(fromCategory);
-        for (Post post : posts) {
-            post.setCategory(toCategory);
-        }
-        postRepository.saveAll(posts);
-        
-        // Sposta lab
-        List<Lab> labs = labRepository.findByCategory(fromCategory);
-        for (Lab lab : labs) {
-            lab.setCategory(toCategory);
-        }
-        labRepository.saveAll(labs);
+    public BackgroundJob moveCategoryContent(Long fromCategoryId, Long toCategoryId, User admin) {
+        return categoryMigrationService.startMigration(fromCategoryId, toCategoryId, admin);
     }
 
     /**
@@ -201,12 +187,10 @@ public class CategoryService {
                          labRepository.sumViewsByCategory(category);
         
         // Post più popolare nella categoria
-        List<Post> popularPosts = postRepository.findByCategoryOrderByViewCountDesc(category);
-        Post mostViewedPost = popularPosts.isEmpty() ? null : popularPosts.get(0);
+        Post mostViewedPost = postRepository.findFirstByCategoryOrderByViewCountDesc(category).orElse(null);
         
         // Lab più popolare nella categoria
-        List<Lab> popularLabs = labRepository.findByCategoryOrderByViewCountDesc(category);
-        Lab mostViewedLab = popularLabs.isEmpty() ? null : popularLabs.get(0);
+        Lab mostViewedLab = labRepository.findFirstByCategoryOrderByViewCountDesc(category).orElse(null);
         
         return new CategoryStatistics(category, postsCount, labsCount, totalViews, 
                                     mostViewedPost, mostViewedLab);
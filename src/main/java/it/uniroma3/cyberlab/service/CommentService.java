@@ -6,14 +6,16 @@ import it.uniroma3.cyberlab.entity.User;
 import it.uniroma3.cyberlab.entity.Report;
 import it.uniroma3.cyberlab.repository.CommentRepository;
 import it.uniroma3.cyberlab.repository.PostRepository;
-import it.uniroma3.cyberlab.repository.ReportRepository;
 import it.uniroma3.cyberlab.security.SecurityUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -27,7 +29,19 @@ public class CommentService {
     private PostRepository postRepository;
     
     @Autowired
-    private ReportRepository reportRepository;
+    private ReportService reportService;
+    
+    @Autowired
+    private PostRankingService postRankingService;
+    
+    @Autowired
+    private UserStatsService userStatsService;
+    
+    @Autowired
+    private BulkInsertService bulkInsertService;
+    
+    @Autowired
+    private ContentDeletionService contentDeletionService;
 
     /**
      * Crea nuovo commento
@@ -45,6 +59,10 @@ public class CommentService {
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new IllegalArgumentException("Post not found"));
         
+        if (post.isLocked()) {
+            throw new IllegalArgumentException("This post is locked and no longer accepts comments");
+        }
+        
         Comment newComment = new Comment();
         newComment.setContent(content.trim());
         newComment.setPost(post);
@@ -59,7 +77,59 @@ public class CommentService {
             }
         }
         
-        return commentRepository.save(newComment);
+        Comment savedComment = commentRepository.save(newComment);
+        
+        // Contatori denormalizzati con delta atomici (nessuna lettura del valore corrente)
+        postRepository.adjustCommentCount(postId, 1);
+        if (savedComment.getParentComment() != null) {
+            commentRepository.adjustReplyCount(savedComment.getParentComment().getId(), 1);
+        }
+        postRankingService.recordEvent(postId, PostRankingService.Event.COMMENT);
+        userStatsService.onCommentCreated(author.getId());
+        return savedComment;
+    }
+
+    /**
+     * Inserimento in blocco (import, seed): insert in batch JDBC, poi contatori aggiornati
+     * con un UPDATE per post, per commento padre e per autore invece che uno per commento
+     */
+    public int createComments(List<Comment> comments) {
+        for (Comment comment : comments) {
+            if (comment.getPost() == null || comment.getAuthor() == null) {
+                throw new IllegalArgumentException("Comment must have a post and an author");
+            }
+            if (comment.getContent() == null || comment.getContent().trim().isEmpty()) {
+                throw new IllegalArgumentException("Comment content cannot be empty");
+            }
+            if (comment.getContent().trim().length() > 2000) {
+                throw new IllegalArgumentException("Comment must not exceed 2000 characters");
+            }
+            comment.setContent(comment.getContent().trim());
+        }
+        
+        int inserted = bulkInsertService.persistAll(comments);
+        
+        // Padri inseriti nello stesso blocco: l'id e' noto solo dopo il persist
+        Map<Long, Integer> byPost = new HashMap<>();
+        Map<Long, Integer> byParent = new HashMap<>();
+        Map<Long, Long> byAuthor = new HashMap<>();
+        for (Comment comment : comments) {
+            byPost.merge(comment.getPost().getId(), 1, Integer::sum);
+            if (comment.getParentComment() != null) {
+                byParent.merge(comment.getParentComment().getId(), 1, Integer::sum);
+            }
+            byAuthor.merge(comment.getAuthor().getId(), 1L, Long::sum);
+        }
+        
+        byPost.forEach((postId, count) -> {
+            postRepository.adjustCommentCount(postId, count);
+            for (int i = 0; i < count; i++) {
+                postRankingService.recordEvent(postId, PostRankingService.Event.COMMENT);
+            }
+        });
+        byParent.forEach(commentRepository::adjustReplyCount);
+        userStatsService.onCommentsCreated(byAuthor);
+        return inserted;
     }
 
     /**
@@ -79,24 +149,12 @@ public class CommentService {
         return commentRepository.findTopLevelCommentsByPost(post);
     }
 
-    /**
-     * Trova commenti dell'utente - METODO AGGIUNTO
-     */
-    @Transactional(readOnly = true)
-    public List<Comment> findCommentsByUser(User user) {
-        return commentRepository.findByAuthorOrderByCreatedDateDesc(user);
-    }
-
     /**
      * Trova commenti utente dopo una data - METODO AGGIUNTO
      */
     @Transactional(readOnly = true)
     public List<Comment> findUserCommentsAfter(User user, LocalDateTime date, int limit) {
-        return commentRepository.findByAuthorOrderByCreatedDateDesc(user)
-                .stream()
-                .filter(c -> c.getCreatedDate().isAfter(date))
-                .limit(limit)
-                .toList();
+        return commentRepository.findByAuthorCreatedAfter(user, date, PageRequest.of(0, limit));
     }
 
     /**
@@ -147,8 +205,9 @@ public class CommentService {
             throw new SecurityException("You don't have permission to delete this comment");
         }
         
+        // Risposte e segnalazioni eliminate in blocco, contatori aggiornati a delta
         Long postId = comment.getPost().getId();
-        commentRepository.delete(comment);
+        contentDeletionService.deleteComment(comment);
         return postId;
     }
 
@@ -173,37 +232,16 @@ public class CommentService {
      * Segnala commento - METODO AGGIUNTO
      */
     public void reportComment(Long commentId, User reportedBy, Report.ReportReason reason, String details) {
-        Comment comment = findById(commentId);
-        
-        // Controlla se già segnalato
-        List<Report> existingReports = reportRepository.findByComment(comment);
-        boolean alreadyReported = existingReports.stream()
-                .anyMatch(report -> report.getReportedBy().getId().equals(reportedBy.getId()));
-        
-        if (alreadyReported) {
-            throw new RuntimeException("You have already reported this comment");
-        }
-        
-        // Crea segnalazione
-        Report report = new Report();
-        report.setComment(comment);
-        report.setReportedBy(reportedBy);
-        report.setReason(reason);
-        report.setAdditionalDetails(details);
-        
-        reportRepository.save(report);
-        
-        // Incrementa contatore
-        comment.incrementReportCount();
-        commentRepository.save(comment);
+        // Deduplica e aggregazione nel caso del commento
+        reportService.reportComment(commentId, reportedBy, reason, details);
     }
 
     /**
      * Trova commenti segnalati - METODO AGGIUNTO
      */
     @Transactional(readOnly = true)
-    public List<Comment> findReportedComments() {
-        return commentRepository.findReportedCommentsOrderByReportCount();
+    public List<Comment> findReportedComments(int limit) {
+        return commentRepository.findReportedCommentsOrderByReportCount(PageRequest.of(0, limit));
     }
 
     /**
@@ -227,8 +265,7 @@ public class CommentService {
      */
     @Transactional(readOnly = true)
     public List<Comment> findUserComments(User user, int limit) {
-        List<Comment> comments = commentRepository.findByAuthorOrderByCreatedDateDesc(user);
-        return comments.stream().limit(limit).toList();
+        return commentRepository.findByAuthorOrderByCreatedDateDesc(user, PageRequest.of(0, limit));
     }
 
     /**
@@ -237,8 +274,7 @@ public class CommentService {
     @Transactional(readOnly = true)
     public List<Comment> findRecentComments(int days, int limit) {
         LocalDateTime dateFrom = LocalDateTime.now().minusDays(days);
-        List<Comment> comments = commentRepository.findRecentComments(dateFrom);
-        return comments.stream().limit(limit).toList();
+        return commentRepository.findRecentComments(dateFrom, PageRequest.of(0, limit));
     }
 
     /**
@@ -276,7 +312,7 @@ public class CommentService {
         CommentStatistics stats = new CommentStatistics();
         
         stats.setLikeCount(comment.getLikeCount());
-        stats.setReplyCount(commentRepository.findByParentComment(comment).size());
+        stats.setReplyCount(comment.getReplyCount());
         stats.setReportCount(comment.getReportCount());
         stats.setIsReported(comment.getIsReported());
         stats.setIsEdited(comment.getIsEdited());
@@ -327,7 +363,7 @@ public class CommentService {
      */
     @Transactional(readOnly = true)
     public long countCommentsByPost(Post post) {
-        return commentRepository.countByPost(post);
+        return post.getCommentCount();
     }
 
     /**
@@ -0,0 +1,142 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.Comment;
+import it.uniroma3.cyberlab.entity.Post;
+import it.uniroma3.cyberlab.repository.CommentRepository;
+import it.uniroma3.cyberlab.repository.PostRepository;
+import it.uniroma3.cyberlab.repository.ReportRepository;
+import it.uniroma3.cyberlab.service.ContentVersionService.Region;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Eliminazione di post e commenti con pochi statement set-based, senza caricare risposte e segnalazioni:
+ * - commento: id del sotto-albero con una CTE ricorsiva su parent_comment_id (una query), poi segnalazioni
+ *   e commenti eliminati per blocchi di id
+ * - post: segnalazioni del post e dei suoi commenti, poi i commenti, infine la riga del post.
+ * I commenti vengono eliminati un livello per statement, dal piu' profondo, cosi' il vincolo su parent_comment_id
+ * non dipende dall'ordine in cui il database elimina le righe (H2 lo verifica riga per riga).
+ * Contatori (comment_count, reply_count, statistiche utente) aggiornati con UPDATE a delta; i casi di segnalazione
+ * aperti sui contenuti eliminati vengono chiusi nella stessa transazione e restano come storico.
+ * I permessi li verificano PostService e CommentService.
+ */
+@Service
+@Transactional
+public class ContentDeletionService {
+
+    // Id per DELETE: sotto il limite di parametri di un singolo statement
+    private static final int DELETE_BATCH = 1000;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private ReportService reportService;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    @Autowired
+    private TagService tagService;
+
+    @Autowired
+    private PostRankingService postRankingService;
+
+    @Autowired
+    private ContentVersionService contentVersionService;
+
+    /**
+     * Elimina il post con commenti e segnalazioni; ritorna il numero di commenti eliminati
+     */
+    public int deletePost(Post post) {
+        Long postId = post.getId();
+
+        userStatsService.onCommentsDeleted(commentRepository.countByAuthorForPost(postId));
+        userStatsService.onPostDeleted(post.getAuthor().getId());
+
+        reportService.onPostDeleted(postId);
+        reportRepository.deleteForCommentsOfPost(postId);
+        reportRepository.deleteByPostId(postId);
+        int comments = deleteByDepth(commentRepository.findThreadByDepth(postId));
+
+        // Resta solo la riga del post (con corpo e post_tag): niente collezioni da caricare
+        postRepository.delete(post);
+        tagService.onPostDeleted(postId);
+        postRankingService.removePost(postId);
+        if (comments > 0) {
+            contentVersionService.markChanged(Region.COMMENTS);
+        }
+        return comments;
+    }
+
+    /**
+     * Elimina il commento con tutte le risposte; ritorna il numero di commenti eliminati
+     */
+    public int deleteComment(Comment comment) {
+        Long commentId = comment.getId();
+        Long postId = comment.getPost().getId();
+        Long parentId = comment.getParentComment() != null ? comment.getParentComment().getId() : null;
+
+        List<Object[]> subtree = commentRepository.findSubtreeByDepth(commentId);
+        Map<Long, Long> countsByAuthor = new HashMap<>();
+        List<Long> ids = new ArrayList<>(subtree.size());
+        for (Object[] row : subtree) {
+            ids.add(((Number) row[0]).longValue());
+            countsByAuthor.merge(((Number) row[2]).longValue(), 1L, Long::sum);
+        }
+
+        for (int from = 0; from < ids.size(); from += DELETE_BATCH) {
+            List<Long> batch = ids.subList(from, Math.min(from + DELETE_BATCH, ids.size()));
+            reportService.onCommentsDeleted(batch);
+            reportRepository.deleteByCommentIds(batch);
+        }
+        int deleted = deleteByDepth(subtree);
+
+        postRepository.adjustCommentCount(postId, -deleted);
+        if (parentId != null) {
+            commentRepository.adjustReplyCount(parentId, -1);
+        }
+        userStatsService.onCommentsDeleted(countsByAuthor.entrySet().stream()
+                .map(entry -> new Object[] {entry.getKey(), entry.getValue()})
+                .toList());
+
+        // Le DELETE in blocco non passano dal listener JPA
+        contentVersionService.markChanged(Region.COMMENTS);
+        return deleted;
+    }
+
+    /**
+     * Righe (id, profondita') ordinate dal livello piu' profondo: una DELETE per livello (a blocchi di DELETE_BATCH),
+     * quindi le risposte sono sempre gia' eliminate quando si elimina il padre
+     */
+    private int deleteByDepth(List<Object[]> rows) {
+        int deleted = 0;
+        int depth = -1;
+        List<Long> batch = new ArrayList<>();
+        for (Object[] row : rows) {
+            int rowDepth = ((Number) row[1]).intValue();
+            if (!batch.isEmpty() && (rowDepth != depth || batch.size() == DELETE_BATCH)) {
+                deleted += commentRepository.deleteByIds(batch);
+                batch = new ArrayList<>();
+            }
+            depth = rowDepth;
+            batch.add(((Number) row[0]).longValue());
+        }
+        if (!batch.isEmpty()) {
+            deleted += commentRepository.deleteByIds(batch);
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,171 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.security.SecurityUtils;
+import it.uniroma3.cyberlab.util.TransactionCallbacks;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Versione del modello dei contenuti pubblici, per area.
+ * Ogni modifica a un'entita' incrementa la versione della sua area: cache di frammenti
+ * ed ETag delle pagine anonime dipendono da queste versioni.
+ */
+@Service
+public class ContentVersionService {
+
+    public enum Region {
+        POSTS, COMMENTS, LABS, CATEGORIES, USERS
+    }
+
+    private final Map<Region, AtomicLong> versions = new EnumMap<>(Region.class);
+    private final Map<Region, Long> lastModified = new EnumMap<>(Region.class);
+    private final List<Consumer<Region>> changeListeners = new CopyOnWriteArrayList<>();
+
+    public ContentVersionService() {
+        // Base diversa ad ogni avvio: gli ETag emessi prima di un riavvio non restano validi
+        long epoch = System.currentTimeMillis();
+        long now = Instant.now().toEpochMilli();
+        for (Region region : Region.values()) {
+            versions.put(region, new AtomicLong(epoch));
+            lastModified.put(region, now);
+        }
+    }
+
+    /**
+     * Segnala una modifica all'area, dopo il commit se c'e' una transazione attiva
+     */
+    public void markChanged(Region region) {
+        TransactionCallbacks.afterCommit(() -> bump(region));
+    }
+
+    /**
+     * Registra un listener chiamato ad ogni cambio di versione (es. eviction delle cache)
+     */
+    public void addChangeListener(Consumer<Region> listener) {
+        changeListeners.add(listener);
+    }
+
+    public long getVersion(Region region) {
+        return versions.get(region).get();
+    }
+
+    /**
+     * Impronta delle versioni delle aree indicate
+     */
+    public String fingerprint(Set<Region> regions) {
+        StringBuilder builder = new StringBuilder();
+        for (Region region : Region.values()) {
+            if (regions.contains(region)) {
+                builder.append(region.ordinal()).append('.').append(Long.toHexString(getVersion(region))).append('-');
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Ultima modifica tra le aree indicate (millisecondi epoch)
+     */
+    public long getLastModified(Set<Region> regions) {
+        long result = 0;
+        synchronized (lastModified) {
+            for (Region region : regions) {
+                result = Math.max(result, lastModified.get(region));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * GET condizionale per le pagine anonime: imposta ETag/Last-Modified e ritorna true se il client
+     * puo' usare la sua copia (304). Gli utenti autenticati ricevono sempre la pagina completa.
+     */
+    public boolean checkNotModifiedForAnonymous(ServletWebRequest webRequest, boolean authenticated,
+                                                Set<Region> regions, String variant) {
+        if (authenticated) {
+            return false;
+        }
+        return checkNotModified(webRequest, new ResourceVersion(fingerprint(regions) + variant,
+                getLastModified(regions)), false);
+    }
+
+    /**
+     * GET condizionale per una risorsa con versione nota (es. dettaglio post o lab).
+     * Le risposte per utenti autenticati restano private al browser.
+     */
+    public boolean checkNotModified(ServletWebRequest webRequest, ResourceVersion version, boolean authenticated) {
+        HttpServletResponse response = webRequest.getResponse();
+        if (response != null) {
+            CacheControl cacheControl = authenticated ? CacheControl.noCache().cachePrivate()
+                    : CacheControl.noCache().cachePublic();
+            response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.COOKIE);
+        }
+        return webRequest.checkNotModified("W/\"" + version.getTag() + "\"", version.getLastModified());
+    }
+
+    /**
+     * Identifica chi vede la pagina: anonimo oppure utente + sessione (il token CSRF nei form e' per sessione)
+     */
+    public String viewerKey(HttpServletRequest request) {
+        Long userId = SecurityUtils.getCurrentUserId();
+        if (userId == null) {
+            return "anon";
+        }
+        HttpSession session = request.getSession(false);
+        String sessionPart = session != null ? session.getId() : "";
+        return "u" + userId + "-" + DigestUtils.md5DigestAsHex(sessionPart.getBytes(StandardCharsets.UTF_8)).substring(0, 8);
+    }
+
+    /**
+     * Converte una data del modello in millisecondi epoch (0 se assente)
+     */
+    public static long toEpochMillis(LocalDateTime dateTime) {
+        return dateTime != null ? dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : 0;
+    }
+
+    private void bump(Region region) {
+        versions.get(region).incrementAndGet();
+        synchronized (lastModified) {
+            lastModified.put(region, Instant.now().toEpochMilli());
+        }
+        for (Consumer<Region> listener : changeListeners) {
+            listener.accept(region);
+        }
+    }
+
+    // DTO CLASSES
+
+    /**
+     * Versione di una risorsa: tag per l'ETag (gia' senza virgolette) e ultima modifica
+     */
+    public static class ResourceVersion {
+        private final String tag;
+        private final long lastModified;
+
+        public ResourceVersion(String tag, long lastModified) {
+            this.tag = tag;
+            this.lastModified = lastModified;
+        }
+
+        public String getTag() { return tag; }
+        public long getLastModified() { return lastModified; }
+    }
+}
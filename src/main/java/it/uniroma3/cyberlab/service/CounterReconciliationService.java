@@ -0,0 +1,49 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.repository.CommentRepository;
+import it.uniroma3.cyberlab.repository.PostRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Riallinea i contatori denormalizzati (post.comment_count, comment.reply_count, snapshot user_stats) ai dati reali.
+ * Serve per le derive dovute a cancellazioni in cascata fuori da CommentService (es. eliminazione utente).
+ */
+@Service
+@Transactional
+public class CounterReconciliationService {
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private UserStatsService userStatsService;
+
+    /**
+     * Esecuzione periodica (di default ogni notte alle 3:30)
+     */
+    @Scheduled(cron = "${cyberlab.counters.reconcile-cron:0 30 3 * * *}")
+    public void reconcileScheduled() {
+        reconcile();
+    }
+
+    /**
+     * Corregge i contatori con UPDATE set-based; ritorna il numero di righe corrette
+     */
+    public int reconcile() {
+        long start = System.currentTimeMillis();
+        int posts = postRepository.reconcileCommentCounts();
+        int comments = commentRepository.reconcileReplyCounts();
+        int stats = userStatsService.reconcile();
+        if (posts > 0 || comments > 0 || stats > 0) {
+            System.out.println("⚠️ Counter drift repaired: " + posts + " posts, " + comments + " comments, "
+                    + stats + " user stats in " + (System.currentTimeMillis() - start) + "ms");
+        }
+        return posts + comments + stats;
+    }
+}
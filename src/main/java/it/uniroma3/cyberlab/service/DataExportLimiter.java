@@ -0,0 +1,114 @@
+package it.uniroma3.cyberlab.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Export dei dati personali su un pool dedicato e limitato: ogni download tiene transazione, cursore e connessione
+ * per tutta la durata, quindi non deve occupare l'executor condiviso delle richieste asincrone.
+ * Un posto per export in corso, con un tetto globale e uno per utente; oltre i limiti la richiesta viene rifiutata.
+ *
+ * Il pool non e' registrato come bean: un secondo Executor nel contesto sostituirebbe l'applicationTaskExecutor
+ * configurato da Spring Boot.
+ */
+@Service
+public class DataExportLimiter {
+
+    @Value("${cyberlab.export.max-concurrent:4}")
+    private int maxConcurrent;
+
+    @Value("${cyberlab.export.max-per-user:1}")
+    private int maxPerUser;
+
+    @Value("${cyberlab.export.timeout:PT30M}")
+    private Duration timeout;
+
+    private final Map<Long, Integer> activeByUser = new ConcurrentHashMap<>();
+    private Semaphore slots;
+    private ThreadPoolTaskExecutor executor;
+
+    @PostConstruct
+    void startExecutor() {
+        slots = new Semaphore(maxConcurrent);
+        executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("data-export-");
+        executor.setCorePoolSize(maxConcurrent);
+        executor.setMaxPoolSize(maxConcurrent);
+        // Export gia' limitati dai posti: la coda assorbe solo il passaggio tra un export che finisce e il successivo
+        executor.setQueueCapacity(maxConcurrent);
+        executor.initialize();
+    }
+
+    @PreDestroy
+    void stopExecutor() {
+        executor.shutdown();
+    }
+
+    /**
+     * Posto per un nuovo export dell'utente; null se l'utente o il server hanno gia' troppi export in corso
+     */
+    public Slot tryAcquire(Long userId) {
+        if (!slots.tryAcquire()) {
+            return null;
+        }
+        boolean[] acquired = new boolean[1];
+        activeByUser.compute(userId, (id, active) -> {
+            int current = active != null ? active : 0;
+            if (current >= maxPerUser) {
+                return active;
+            }
+            acquired[0] = true;
+            return current + 1;
+        });
+        if (!acquired[0]) {
+            slots.release();
+            return null;
+        }
+        return new Slot(userId);
+    }
+
+    public AsyncTaskExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Tempo massimo di un download (la risposta asincrona scade dopo questo intervallo)
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    private void release(Long userId) {
+        activeByUser.computeIfPresent(userId, (id, active) -> active > 1 ? active - 1 : null);
+        slots.release();
+    }
+
+    /**
+     * Posto occupato da un export; close() lo libera una sola volta (fine della scrittura o della richiesta)
+     */
+    public final class Slot implements AutoCloseable {
+        private final Long userId;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Slot(Long userId) {
+            this.userId = userId;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(userId);
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package it.uniroma3.cyberlab.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.uniroma3.cyberlab.entity.Comment;
+import it.uniroma3.cyberlab.entity.Post;
+import it.uniroma3.cyberlab.entity.Report;
+import it.uniroma3.cyberlab.entity.UserPreference;
+import it.uniroma3.cyberlab.entity.UserProgress;
+import it.uniroma3.cyberlab.repository.CommentRepository;
+import it.uniroma3.cyberlab.repository.PostRepository;
+import it.uniroma3.cyberlab.repository.ReportRepository;
+import it.uniroma3.cyberlab.repository.UserPreferenceRepository;
+import it.uniroma3.cyberlab.repository.UserProgressRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Export dei dati personali di un utente (post, commenti, progressi, segnalazioni, preferenze)
+ * scritto direttamente sulla risposta: le righe arrivano da Stream dei repository (cursore con fetch size)
+ * e il contesto di persistenza viene svuotato a intervalli, quindi la memoria non dipende dalla quantita' di dati.
+ */
+@Service
+@Transactional(readOnly = true)
+public class DataExportService {
+
+    // Righe dopo le quali si staccano le entita' gia' scritte
+    private static final int CLEAR_INTERVAL = 500;
+
+    public enum Format {
+        NDJSON, CSV, ZIP
+    }
+
+    public enum Section {
+        POSTS("posts", "id", "title", "post_type", "category", "tags", "created_date", "last_modified", "content"),
+        COMMENTS("comments", "id", "post_id", "parent_comment_id", "created_date", "last_modified", "content"),
+        PROGRESS("progress", "lab_id", "lab_title", "status", "started_date", "completed_date", "last_accessed",
+                "time_spent", "completion_percentage", "attempts_count", "notes"),
+        REPORTS("reports", "id", "reason", "status", "post_id", "comment_id", "reported_user_id", "created_date",
+                "additional_details"),
+        PREFERENCES("preferences", "key", "value", "last_modified");
+
+        private final String fileName;
+        private final String[] columns;
+
+        Section(String fileName, String... columns) {
+            this.fileName = fileName;
+            this.columns = columns;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+    }
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private UserProgressRepository userProgressRepository;
+
+    @Autowired
+    private ReportRepository reportRepository;
+
+    @Autowired
+    private UserPreferenceRepository userPreferenceRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * NDJSON: una riga JSON per record con il campo "section", per una sezione o per tutte (section null)
+     */
+    public void exportNdjson(Long userId, Section section, OutputStream out) throws IOException {
+        for (Section current : Section.values()) {
+            if (section != null && current != section) {
+                continue;
+            }
+            writeRows(current, userId, values -> {
+                Map<String, Object> record = new LinkedHashMap<>();
+                record.put("section", current.fileName);
+                for (int i = 0; i < values.length; i++) {
+                    record.put(current.columns[i], values[i]);
+                }
+                out.write(objectMapper.writeValueAsBytes(record));
+                out.write('\n');
+            });
+        }
+        out.flush();
+    }
+
+    /**
+     * CSV di una sezione, con riga di intestazione
+     */
+    public void exportCsv(Long userId, Section section, OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        writeCsv(userId, section, writer);
+        writer.flush();
+    }
+
+    /**
+     * ZIP con un CSV per sezione
+     */
+    public void exportZip(Long userId, OutputStream out) throws IOException {
+        ZipOutputStream zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        Writer writer = new OutputStreamWriter(zip, StandardCharsets.UTF_8);
+        for (Section section : Section.values()) {
+            zip.putNextEntry(new ZipEntry(section.fileName + ".csv"));
+            writeCsv(userId, section, writer);
+            writer.flush();
+            zip.closeEntry();
+        }
+        zip.finish();
+        zip.flush();
+    }
+
+    private void writeCsv(Long userId, Section section, Writer writer) throws IOException {
+        writeCsvLine(writer, section.columns);
+        writeRows(section, userId, values -> writeCsvLine(writer, values));
+    }
+
+    private void writeRows(Section section, Long userId, RowWriter rowWriter) throws IOException {
+        switch (section) {
+            case POSTS -> drain(postRepository.streamByAuthorForExport(userId), this::postRow, rowWriter);
+            case COMMENTS -> drain(commentRepository.streamByAuthorForExport(userId), this::commentRow, rowWriter);
+            case PROGRESS -> drain(userProgressRepository.streamByUserForExport(userId), this::progressRow, rowWriter);
+            case REPORTS -> drain(reportRepository.streamByReporterForExport(userId), this::reportRow, rowWriter);
+            // Una riga per chiave di preferenza: insieme piccolo e limitato
+            case PREFERENCES -> drain(userPreferenceRepository.findByUserId(userId).stream(), this::preferenceRow, rowWriter);
+        }
+    }
+
+    private <T> void drain(Stream<T> rows, Function<T, Object[]> mapper, RowWriter rowWriter) throws IOException {
+        try (rows) {
+            Iterator<T> iterator = rows.iterator();
+            int count = 0;
+            while (iterator.hasNext()) {
+                rowWriter.write(mapper.apply(iterator.next()));
+                if (++count % CLEAR_INTERVAL == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+        entityManager.clear();
+    }
+
+    private Object[] postRow(Post post) {
+        return new Object[] {
+            post.getId(), post.getTitle(), post.getPostType(), post.getCategory().getName(), post.getTags(),
+            post.getCreatedDate(), post.getLastModified(), post.getBody() != null ? post.getBody().getContent() : null
+        };
+    }
+
+    // Gli id delle associazioni LAZY si leggono dal proxy senza query
+    private Object[] commentRow(Comment comment) {
+        return new Object[] {
+            comment.getId(), comment.getPost().getId(),
+            comment.getParentComment() != null ? comment.getParentComment().getId() : null,
+            comment.getCreatedDate(), comment.getLastModified(), comment.getContent()
+        };
+    }
+
+    private Object[] progressRow(UserProgress progress) {
+        return new Object[] {
+            progress.getLab().getId(), progress.getLab().getTitle(), progress.getStatus(), progress.getStartedDate(),
+            progress.getCompletedDate(), progress.getLastAccessed(), progress.getTimeSpent(),
+            progress.getCompletionPercentage(), progress.getAttemptsCount(), progress.getNotes()
+        };
+    }
+
+    private Object[] reportRow(Report report) {
+        return new Object[] {
+            report.getId(), report.getReason(), report.getStatus(),
+            report.getPost() != null ? report.getPost().getId() : null,
+            report.getComment() != null ? report.getComment().getId() : null,
+            report.getReportedUser() != null ? report.getReportedUser().getId() : null,
+            report.getCreatedDate(), report.getAdditionalDetails()
+        };
+    }
+
+    private Object[] preferenceRow(UserPreference preference) {
+        return new Object[] {preference.getKey(), preference.getValue(), preference.getLastModified()};
+    }
+
+    private static void writeCsvLine(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(csvValue(values[i]));
+        }
+        writer.write("\r\n");
+    }
+
+    private static String csvValue(Object value) {
+        if (value == null) {
+            return "";
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return value.toString();
+        }
+        String text = value instanceof Enum<?> enumValue ? enumValue.name() : value.toString();
+        // Niente formule quando il file viene aperto in un foglio di calcolo (anche dopo tab o ritorno a capo iniziali)
+        if (!text.isEmpty() && "=+-@\t\r".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+
+    @FunctionalInterface
+    private interface RowWriter {
+        void write(Object[] values) throws IOException;
+    }
+}
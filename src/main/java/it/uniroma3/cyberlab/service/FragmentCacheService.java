@@ -0,0 +1,114 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.service.ContentVersionService.Region;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.context.WebContext;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.spring6.expression.ThymeleafEvaluationContext;
+import org.thymeleaf.web.servlet.JakartaServletWebApplication;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache dei frammenti Thymeleaf gia' renderizzati (sidebar categorie, lab popolari, contatori...).
+ * La chiave contiene frammento, locale, stato di autenticazione e versioni delle aree da cui dipende;
+ * quando un'area cambia i frammenti collegati vengono rimossi.
+ */
+@Service
+public class FragmentCacheService {
+
+    @Autowired
+    private SpringTemplateEngine templateEngine;
+
+    @Autowired
+    private ContentVersionService contentVersionService;
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    @Autowired(required = false)
+    @Qualifier("mvcConversionService")
+    private ConversionService conversionService;
+
+    private final Map<String, CachedFragment> cache = new ConcurrentHashMap<>();
+
+    private volatile JakartaServletWebApplication webApplication;
+
+    @PostConstruct
+    void registerEviction() {
+        contentVersionService.addChangeListener(this::evict);
+    }
+
+    /**
+     * Ritorna l'HTML del frammento dalla cache o lo renderizza caricando le variabili.
+     * Il supplier viene chiamato solo in caso di miss, quindi le query sono evitate sui hit.
+     */
+    public String render(String template, String fragment, Set<Region> dependsOn, String variant,
+                         HttpServletRequest request, HttpServletResponse response,
+                         Supplier<Map<String, Object>> variables) {
+        Locale locale = LocaleContextHolder.getLocale();
+        String fingerprint = contentVersionService.fingerprint(dependsOn);
+        String key = template + "::" + fragment + "|" + locale + "|" + variant + "|" + fingerprint;
+
+        CachedFragment cached = cache.get(key);
+        if (cached != null) {
+            return cached.html();
+        }
+
+        String html = renderFragment(template, fragment, locale, request, response, variables.get());
+        cache.put(key, new CachedFragment(html, dependsOn));
+
+        // Se i dati sono cambiati durante il render la voce e' gia' obsoleta
+        if (!fingerprint.equals(contentVersionService.fingerprint(dependsOn))) {
+            cache.remove(key);
+        }
+        return html;
+    }
+
+    /**
+     * Numero di frammenti attualmente in cache
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    public void clear() {
+        cache.clear();
+    }
+
+    private void evict(Region region) {
+        cache.values().removeIf(fragment -> fragment.dependsOn().contains(region));
+    }
+
+    private String renderFragment(String template, String fragment, Locale locale,
+                                  HttpServletRequest request, HttpServletResponse response,
+                                  Map<String, Object> variables) {
+        WebContext context = new WebContext(webApplication(request).buildExchange(request, response), locale);
+        context.setVariables(variables);
+        context.setVariable(ThymeleafEvaluationContext.THYMELEAF_EVALUATION_CONTEXT_CONTEXT_VARIABLE_NAME,
+                new ThymeleafEvaluationContext(applicationContext, conversionService));
+        return templateEngine.process(template, Set.of(fragment), context);
+    }
+
+    private JakartaServletWebApplication webApplication(HttpServletRequest request) {
+        if (webApplication == null) {
+            webApplication = JakartaServletWebApplication.buildApplication(request.getServletContext());
+        }
+        return webApplication;
+    }
+
+    private record CachedFragment(String html, Set<Region> dependsOn) {
+    }
+}
@@ -0,0 +1,662 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.LabAnalytics;
+import it.uniroma3.cyberlab.entity.UserProgress;
+import it.uniroma3.cyberlab.entity.UserProgress.ProgressStatus;
+import it.uniroma3.cyberlab.repository.LabAnalyticsRepository;
+import it.uniroma3.cyberlab.repository.LabRepository;
+import it.uniroma3.cyberlab.repository.UserProgressRepository;
+import it.uniroma3.cyberlab.service.UserStatsService.ProgressState;
+import it.uniroma3.cyberlab.util.TransactionCallbacks;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Statistiche per lab (completamenti, distribuzione dei tempi, tentativi, punti di abbandono, completamenti piu' veloci)
+ * aggiornate ad ogni modifica di un progresso, senza scansioni di user_progress.
+ *
+ * I tempi sono in un istogramma a bucket fissi (mediana e p90 stimati per interpolazione nel bucket):
+ * a differenza di t-digest supporta anche la rimozione, necessaria quando un progresso viene azzerato o eliminato.
+ * La riga di lab_analytics e' il riferimento: la modifica di un progresso la aggiorna sotto lock di riga nella
+ * stessa transazione, cosi' piu' nodi non si sovrascrivono e una ricostruzione (anch'essa sotto lock) non perde
+ * modifiche concorrenti. In memoria c'e' solo una copia delle righe, ricaricata quando cambia la revisione.
+ */
+@Service
+public class LabAnalyticsService {
+
+    // Limite inferiore (minuti) di ogni bucket dei tempi; l'ultimo bucket e' aperto
+    static final int[] TIME_BOUNDS = {0, 5, 10, 15, 20, 30, 45, 60, 90, 120, 180, 240, 360, 480, 720, 1440};
+
+    // Tentativi 0..9 e "10+"
+    static final int ATTEMPT_BUCKETS = 11;
+
+    // Decili della percentuale raggiunta da chi abbandona
+    static final int DROP_OFF_BUCKETS = 10;
+
+    private static final Comparator<Fast> BY_TIME = Comparator
+            .comparingLong(Fast::minutes)
+            .thenComparingLong(Fast::progressId);
+
+    @Value("${cyberlab.analytics.top-k:10}")
+    private int topK;
+
+    @Autowired
+    private LabAnalyticsRepository labAnalyticsRepository;
+
+    @Autowired
+    private UserProgressRepository userProgressRepository;
+
+    @Autowired
+    private LabRepository labRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Copia delle righe salvate, per revisione
+    private final Map<Long, Aggregate> aggregates = new ConcurrentHashMap<>();
+
+    /**
+     * Carica gli aggregati salvati; i lab senza riga vengono costruiti da user_progress
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        int rebuilt = 0;
+
+        for (LabAnalytics stored : labAnalyticsRepository.findAll()) {
+            cache(stored.getLabId(), decode(stored));
+        }
+        for (Long labId : labRepository.findAllIds()) {
+            if (!aggregates.containsKey(labId)) {
+                rebuild(labId);
+                rebuilt++;
+            }
+        }
+
+        System.out.println("✅ Lab analytics loaded: " + aggregates.size() + " labs (" + rebuilt + " rebuilt) in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Applica la modifica di un progresso (after null = progresso eliminato) alla riga del lab,
+     * nella transazione che modifica il progresso
+     */
+    @Transactional
+    public void onProgressChanged(ProgressState before, UserProgress after) {
+        ProgressState current = UserStatsService.capture(after);
+        Long labId = current.getLabId() != null ? current.getLabId() : before.getLabId();
+        if (labId == null || sameState(before, current)) {
+            return;
+        }
+
+        LabAnalytics stored = lockRow(labId);
+        Aggregate aggregate = decode(stored);
+        apply(aggregate, before, current);
+        write(stored, aggregate);
+        TransactionCallbacks.afterCommit(() -> refresh(labId));
+    }
+
+    /**
+     * Progressi modificati in blocco (es. cancellazione account): i lab indicati vengono ricostruiti dopo il commit
+     */
+    public void invalidate(Collection<Long> labIds) {
+        List<Long> ids = new ArrayList<>(labIds);
+        TransactionCallbacks.afterCommit(() -> ids.forEach(this::rebuild));
+    }
+
+    /**
+     * Lab eliminato: via la riga salvata e lo stato in memoria
+     */
+    public void removeLab(Long labId) {
+        labAnalyticsRepository.deleteById(labId);
+        TransactionCallbacks.afterCommit(() -> aggregates.remove(labId));
+    }
+
+    /**
+     * Statistiche del lab (nessuna query se l'aggregato e' gia' in memoria)
+     */
+    public LabAnalyticsSummary getSummary(Long labId) {
+        Aggregate aggregate = aggregate(labId);
+        List<Fast> fastest = fastest(labId, aggregate);
+        synchronized (aggregate) {
+            return new LabAnalyticsSummary(labId, aggregate, fastest);
+        }
+    }
+
+    /**
+     * Completamenti piu' veloci: dal top-K in memoria, oltre la sua capacita' con una query limitata
+     */
+    @Transactional(readOnly = true)
+    public List<UserProgress> getFastestCompletions(Long labId, int limit) {
+        if (limit > topK) {
+            return userProgressRepository.findFastestCompletionsByLab(labId, PageRequest.of(0, limit));
+        }
+
+        List<Fast> fastest = fastest(labId, aggregate(labId));
+        List<Long> ids = new ArrayList<>();
+        for (Fast fast : fastest) {
+            if (ids.size() == limit) {
+                break;
+            }
+            ids.add(fast.progressId());
+        }
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<Long, UserProgress> byId = new HashMap<>();
+        for (UserProgress progress : userProgressRepository.findAllById(ids)) {
+            byId.put(progress.getId(), progress);
+        }
+        List<UserProgress> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            UserProgress progress = byId.get(id);
+            if (progress != null) {
+                result.add(progress);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Revisione salvata dell'aggregato, per l'ETag della pagina del lab (uguale su tutti i nodi)
+     */
+    public long getVersion(Long labId) {
+        return aggregate(labId).revision;
+    }
+
+    /**
+     * Ricarica le righe modificate da altri nodi (confronto delle revisioni, poi lettura per chiave)
+     */
+    @Scheduled(fixedDelayString = "${cyberlab.analytics.refresh-interval:30000}",
+               initialDelayString = "${cyberlab.analytics.refresh-interval:30000}")
+    public void refreshChanged() {
+        List<Long> changed = new ArrayList<>();
+        for (Object[] row : labAnalyticsRepository.findRevisions()) {
+            Long labId = (Long) row[0];
+            Aggregate cached = aggregates.get(labId);
+            if (cached == null || cached.revision != number(row[1])) {
+                changed.add(labId);
+            }
+        }
+        if (!changed.isEmpty()) {
+            for (LabAnalytics stored : labAnalyticsRepository.findAllById(changed)) {
+                cache(stored.getLabId(), decode(stored));
+            }
+        }
+    }
+
+    /**
+     * Ricostruzione notturna dai dati reali (corregge eventuali derive, es. modifiche fatte con SQL diretto)
+     */
+    @Scheduled(cron = "${cyberlab.analytics.rebuild-cron:0 45 3 * * *}")
+    public void rebuildAll() {
+        long start = System.currentTimeMillis();
+        List<Long> labIds = labRepository.findAllIds();
+        for (Long labId : labIds) {
+            rebuild(labId);
+        }
+        aggregates.keySet().retainAll(labIds);
+        System.out.println("Lab analytics rebuilt for " + labIds.size() + " labs in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    // =============================================================================
+    // AGGIORNAMENTO
+    // =============================================================================
+
+    /**
+     * Riga del lab bloccata fino al commit; se manca viene prima creata (e costruita) in una transazione separata
+     */
+    private LabAnalytics lockRow(Long labId) {
+        return labAnalyticsRepository.findByIdForUpdate(labId).orElseGet(() -> {
+            createRow(labId);
+            return labAnalyticsRepository.findByIdForUpdate(labId)
+                    .orElseThrow(() -> new IllegalStateException("Lab analytics not found for lab " + labId));
+        });
+    }
+
+    /**
+     * Nuova riga costruita da user_progress. Le modifiche non ancora confermate non sono nel conteggio
+     * e vengono applicate dopo, sotto lock; con due creazioni contemporanee il vincolo di chiave ne scarta una
+     */
+    private void createRow(Long labId) {
+        TransactionTemplate transactionTemplate = requiresNew();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!labAnalyticsRepository.existsById(labId)) {
+                    LabAnalytics stored = new LabAnalytics(labId);
+                    write(stored, compute(labId));
+                    labAnalyticsRepository.save(stored);
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Creata nel frattempo da un'altra richiesta
+        }
+    }
+
+    /**
+     * Ricalcolo completo sotto lock di riga: le modifiche confermate prima del lock sono nel conteggio,
+     * quelle successive attendono e si applicano al risultato
+     */
+    private void rebuild(Long labId) {
+        createRow(labId);
+        Aggregate rebuilt = requiresNew().execute(status -> {
+            LabAnalytics stored = labAnalyticsRepository.findByIdForUpdate(labId).orElse(null);
+            if (stored == null) {
+                return null;
+            }
+            Aggregate aggregate = compute(labId);
+            write(stored, aggregate);
+            return aggregate;
+        });
+        if (rebuilt != null) {
+            cache(labId, rebuilt);
+        }
+    }
+
+    /**
+     * Ricarica la riga del lab dopo una modifica confermata da questo nodo
+     */
+    private void refresh(Long labId) {
+        requiresNew().executeWithoutResult(status ->
+                labAnalyticsRepository.findById(labId).ifPresent(stored -> cache(labId, decode(stored))));
+    }
+
+    // Transazione separata: anche dai callback dopo il commit, dove la transazione originale e' gia' conclusa
+    private TransactionTemplate requiresNew() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return transactionTemplate;
+    }
+
+    /**
+     * Sostituisce la copia in memoria solo con una revisione piu' recente
+     */
+    private void cache(Long labId, Aggregate aggregate) {
+        aggregates.merge(labId, aggregate, (cached, loaded) -> loaded.revision >= cached.revision ? loaded : cached);
+    }
+
+    private void apply(Aggregate aggregate, ProgressState before, ProgressState after) {
+        if (!before.isNone()) {
+            add(aggregate, before.getStatus(), before.getTimeSpent(), before.getAttemptsCount(),
+                    before.getCompletionPercentage(), -1);
+            if (before.getStatus() == ProgressStatus.COMPLETED
+                    && aggregate.fastest.remove(new Fast(before.getProgressId(), before.getTimeSpent()))) {
+                aggregate.fastestComplete = false;
+            }
+        }
+        if (!after.isNone()) {
+            add(aggregate, after.getStatus(), after.getTimeSpent(), after.getAttemptsCount(),
+                    after.getCompletionPercentage(), 1);
+            if (after.getStatus() == ProgressStatus.COMPLETED) {
+                offerFastest(aggregate, new Fast(after.getProgressId(), after.getTimeSpent()));
+            }
+        }
+    }
+
+    private static void add(Aggregate aggregate, ProgressStatus status, long timeSpent, long attempts,
+                            long completion, long weight) {
+        aggregate.total += weight;
+        aggregate.timeSum += timeSpent * weight;
+        aggregate.completionSum += completion * weight;
+
+        switch (status) {
+            case IN_PROGRESS -> aggregate.inProgress += weight;
+            case COMPLETED -> {
+                aggregate.completed += weight;
+                aggregate.time[timeBucket(timeSpent)] += weight;
+            }
+            case ABANDONED -> {
+                aggregate.abandoned += weight;
+                aggregate.dropOff[dropOffBucket(completion)] += weight;
+            }
+            default -> { }
+        }
+        if (status != ProgressStatus.NOT_STARTED) {
+            aggregate.attempts[(int) Math.min(Math.max(attempts, 0), ATTEMPT_BUCKETS - 1)] += weight;
+        }
+    }
+
+    /**
+     * Inserimento nel top-K: finche' e' completo resta esatto senza query
+     */
+    private void offerFastest(Aggregate aggregate, Fast fast) {
+        if (!aggregate.fastestComplete) {
+            return;
+        }
+        aggregate.fastest.add(fast);
+        if (aggregate.fastest.size() > topK) {
+            aggregate.fastest.pollLast();
+        }
+    }
+
+    /**
+     * Top-K del lab; se un elemento ne e' uscito viene ricaricato con una query limitata
+     */
+    private List<Fast> fastest(Long labId, Aggregate aggregate) {
+        synchronized (aggregate) {
+            if (aggregate.fastestComplete || aggregate.fastest.size() >= Math.min(topK, aggregate.completed)) {
+                return new ArrayList<>(aggregate.fastest);
+            }
+        }
+        TreeSet<Fast> loaded = loadFastest(labId);
+        synchronized (aggregate) {
+            aggregate.fastest.clear();
+            aggregate.fastest.addAll(loaded);
+            aggregate.fastestComplete = true;
+            return new ArrayList<>(aggregate.fastest);
+        }
+    }
+
+    /**
+     * Copia in memoria; al primo accesso letta dalla riga salvata (o costruita se il lab non ne ha una)
+     */
+    private Aggregate aggregate(Long labId) {
+        Aggregate aggregate = aggregates.get(labId);
+        if (aggregate != null) {
+            return aggregate;
+        }
+        LabAnalytics stored = requiresNew().execute(status -> labAnalyticsRepository.findById(labId).orElse(null));
+        if (stored != null) {
+            cache(labId, decode(stored));
+        } else {
+            rebuild(labId);
+        }
+        aggregate = aggregates.get(labId);
+        return aggregate != null ? aggregate : new Aggregate();
+    }
+
+    /**
+     * Aggregato calcolato da user_progress con una sola query raggruppata
+     */
+    private Aggregate compute(Long labId) {
+        Aggregate aggregate = new Aggregate();
+        for (Object[] row : userProgressRepository.aggregateByLab(labId)) {
+            add(aggregate, (ProgressStatus) row[0], number(row[1]), number(row[2]), number(row[3]), number(row[4]));
+        }
+        aggregate.fastest.addAll(loadFastest(labId));
+        aggregate.fastestComplete = true;
+        return aggregate;
+    }
+
+    private TreeSet<Fast> loadFastest(Long labId) {
+        TreeSet<Fast> fastest = new TreeSet<>(BY_TIME);
+        for (UserProgress progress : userProgressRepository.findFastestCompletionsByLab(labId, PageRequest.of(0, topK))) {
+            fastest.add(new Fast(progress.getId(), number(progress.getTimeSpent())));
+        }
+        return fastest;
+    }
+
+    private static boolean sameState(ProgressState before, ProgressState after) {
+        return before.getStatus() == after.getStatus()
+                && before.getTimeSpent() == after.getTimeSpent()
+                && before.getAttemptsCount() == after.getAttemptsCount()
+                && before.getCompletionPercentage() == after.getCompletionPercentage();
+    }
+
+    static int timeBucket(long minutes) {
+        for (int i = TIME_BOUNDS.length - 1; i > 0; i--) {
+            if (minutes >= TIME_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    static int dropOffBucket(long completion) {
+        return (int) Math.min(Math.max(completion, 0) / 10, DROP_OFF_BUCKETS - 1);
+    }
+
+    /**
+     * Quantile stimato dall'istogramma dei tempi (interpolazione lineare dentro il bucket)
+     */
+    static int percentile(long[] histogram, double quantile) {
+        long total = 0;
+        for (long count : histogram) {
+            total += count;
+        }
+        if (total <= 0) {
+            return 0;
+        }
+
+        double rank = quantile * total;
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] <= 0) {
+                continue;
+            }
+            if (seen + histogram[i] >= rank) {
+                if (i == TIME_BOUNDS.length - 1) {
+                    return TIME_BOUNDS[i];
+                }
+                double fraction = (rank - seen) / histogram[i];
+                return (int) Math.round(TIME_BOUNDS[i] + (TIME_BOUNDS[i + 1] - TIME_BOUNDS[i]) * fraction);
+            }
+            seen += histogram[i];
+        }
+        return TIME_BOUNDS[TIME_BOUNDS.length - 1];
+    }
+
+    // =============================================================================
+    // FORMATO SALVATO
+    // =============================================================================
+
+    private Aggregate decode(LabAnalytics stored) {
+        Aggregate aggregate = new Aggregate();
+        aggregate.total = stored.getTotalCount();
+        aggregate.inProgress = stored.getInProgressCount();
+        aggregate.completed = stored.getCompletedCount();
+        aggregate.abandoned = stored.getAbandonedCount();
+        aggregate.timeSum = stored.getTimeSum();
+        aggregate.completionSum = stored.getCompletionSum();
+        decodeHistogram(stored.getTimeHistogram(), aggregate.time);
+        decodeHistogram(stored.getAttemptsHistogram(), aggregate.attempts);
+        decodeHistogram(stored.getDropOffHistogram(), aggregate.dropOff);
+
+        if (stored.getFastest() != null && !stored.getFastest().isEmpty()) {
+            for (String pair : stored.getFastest().split(",")) {
+                String[] idAndTime = pair.split(":");
+                if (idAndTime.length == 2) {
+                    aggregate.fastest.add(new Fast(Long.parseLong(idAndTime[0]), Long.parseLong(idAndTime[1])));
+                }
+            }
+        }
+        while (aggregate.fastest.size() > topK) {
+            aggregate.fastest.pollLast();
+        }
+        // Con un top-K salvato piu' piccolo (es. capacita' aumentata) viene ricaricato alla prima lettura
+        aggregate.fastestComplete = aggregate.fastest.size() >= Math.min(topK, aggregate.completed);
+        aggregate.revision = stored.getRevision();
+        return aggregate;
+    }
+
+    /**
+     * Scrive l'aggregato nella riga (gestita: salvata al commit) e ne incrementa la revisione
+     */
+    private static void write(LabAnalytics stored, Aggregate aggregate) {
+        synchronized (aggregate) {
+            stored.setTotalCount(aggregate.total);
+            stored.setInProgressCount(aggregate.inProgress);
+            stored.setCompletedCount(aggregate.completed);
+            stored.setAbandonedCount(aggregate.abandoned);
+            stored.setTimeSum(aggregate.timeSum);
+            stored.setCompletionSum(aggregate.completionSum);
+            stored.setTimeHistogram(encodeHistogram(aggregate.time));
+            stored.setAttemptsHistogram(encodeHistogram(aggregate.attempts));
+            stored.setDropOffHistogram(encodeHistogram(aggregate.dropOff));
+
+            StringBuilder fastest = new StringBuilder();
+            for (Fast fast : aggregate.fastest) {
+                if (fastest.length() > 0) {
+                    fastest.append(',');
+                }
+                fastest.append(fast.progressId()).append(':').append(fast.minutes());
+            }
+            stored.setFastest(fastest.toString());
+        }
+        stored.setRevision(stored.getRevision() + 1);
+        stored.setLastUpdated(LocalDateTime.now());
+        aggregate.revision = stored.getRevision();
+    }
+
+    private static String encodeHistogram(long[] histogram) {
+        StringBuilder encoded = new StringBuilder();
+        for (int i = 0; i < histogram.length; i++) {
+            if (i > 0) {
+                encoded.append(',');
+            }
+            encoded.append(histogram[i]);
+        }
+        return encoded.toString();
+    }
+
+    private static void decodeHistogram(String encoded, long[] target) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        String[] values = encoded.split(",");
+        for (int i = 0; i < values.length && i < target.length; i++) {
+            target[i] = Long.parseLong(values[i].trim());
+        }
+    }
+
+    private static long number(Object value) {
+        return value != null ? ((Number) value).longValue() : 0;
+    }
+
+
+    private static final class Aggregate {
+        private long total;
+        private long inProgress;
+        private long completed;
+        private long abandoned;
+        private long timeSum;
+        private long completionSum;
+        private final long[] time = new long[TIME_BOUNDS.length];
+        private final long[] attempts = new long[ATTEMPT_BUCKETS];
+        private final long[] dropOff = new long[DROP_OFF_BUCKETS];
+        private final TreeSet<Fast> fastest = new TreeSet<>(BY_TIME);
+        // false quando un elemento e' uscito dal top-K e potrebbe mancare un completamento fuori classifica
+        private boolean fastestComplete = true;
+        private long revision;
+    }
+
+    private record Fast(long progressId, long minutes) {}
+
+    // =============================================================================
+    // DTO CLASSES
+    // =============================================================================
+
+    /**
+     * Statistiche di un lab per pagina del lab e pannello admin
+     */
+    public static class LabAnalyticsSummary {
+        private final Long labId;
+        private final long totalUsers;
+        private final long inProgress;
+        private final long completions;
+        private final long abandoned;
+        private final double completionRate;
+        private final int averageTime;
+        private final int averageCompletion;
+        private final int medianTime;
+        private final int p90Time;
+        private final List<Bucket> timeDistribution = new ArrayList<>();
+        private final List<Bucket> attemptsDistribution = new ArrayList<>();
+        private final List<Bucket> dropOff = new ArrayList<>();
+        private final List<FastCompletion> fastest = new ArrayList<>();
+
+        private LabAnalyticsSummary(Long labId, Aggregate aggregate, List<Fast> fastest) {
+            this.labId = labId;
+            this.totalUsers = aggregate.total;
+            this.inProgress = aggregate.inProgress;
+            this.completions = aggregate.completed;
+            this.abandoned = aggregate.abandoned;
+            this.completionRate = aggregate.total > 0 ? (double) aggregate.completed / aggregate.total * 100 : 0;
+            this.averageTime = aggregate.total > 0 ? (int) (aggregate.timeSum / aggregate.total) : 0;
+            this.averageCompletion = aggregate.total > 0 ? (int) (aggregate.completionSum / aggregate.total) : 0;
+            this.medianTime = percentile(aggregate.time, 0.5);
+            this.p90Time = percentile(aggregate.time, 0.9);
+
+            for (int i = 0; i < aggregate.time.length; i++) {
+                String label = i == TIME_BOUNDS.length - 1
+                        ? TIME_BOUNDS[i] + "+ min"
+                        : TIME_BOUNDS[i] + "-" + TIME_BOUNDS[i + 1] + " min";
+                timeDistribution.add(new Bucket(label, aggregate.time[i]));
+            }
+            for (int i = 0; i < aggregate.attempts.length; i++) {
+                attemptsDistribution.add(new Bucket(i == ATTEMPT_BUCKETS - 1 ? i + "+" : String.valueOf(i),
+                        aggregate.attempts[i]));
+            }
+            for (int i = 0; i < aggregate.dropOff.length; i++) {
+                dropOff.add(new Bucket((i * 10) + "-" + (i * 10 + 9) + "%", aggregate.dropOff[i]));
+            }
+            for (Fast fast : fastest) {
+                this.fastest.add(new FastCompletion(fast.progressId(), fast.minutes()));
+            }
+        }
+
+        // Getters
+        public Long getLabId() { return labId; }
+        public long getTotalUsers() { return totalUsers; }
+        public long getInProgress() { return inProgress; }
+        public long getCompletions() { return completions; }
+        public long getAbandoned() { return abandoned; }
+        public double getCompletionRate() { return completionRate; }
+        public int getAverageTime() { return averageTime; }
+        public int getAverageCompletion() { return averageCompletion; }
+        public int getMedianTime() { return medianTime; }
+        public int getP90Time() { return p90Time; }
+        public List<Bucket> getTimeDistribution() { return timeDistribution; }
+        public List<Bucket> getAttemptsDistribution() { return attemptsDistribution; }
+        public List<Bucket> getDropOff() { return dropOff; }
+        public List<FastCompletion> getFastest() { return fastest; }
+    }
+
+    public static class Bucket {
+        private final String label;
+        private final long count;
+
+        public Bucket(String label, long count) {
+            this.label = label;
+            this.count = count;
+        }
+
+        public String getLabel() { return label; }
+        public long getCount() { return count; }
+    }
+
+    public static class FastCompletion {
+        private final long progressId;
+        private final long minutes;
+
+        public FastCompletion(long progressId, long minutes) {
+            this.progressId = progressId;
+            this.minutes = minutes;
+        }
+
+        public long getProgressId() { return progressId; }
+        public long getMinutes() { return minutes; }
+    }
+}
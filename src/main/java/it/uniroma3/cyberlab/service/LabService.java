@@ -1,28 +1,38 @@
 package it.uniroma3.cyberlab.service;
 
 import it.uniroma3.cyberlab.entity.Lab;
+import it.uniroma3.cyberlab.entity.LabContent;
 import it.uniroma3.cyberlab.entity.User;
 import it.uniroma3.cyberlab.entity.Category;
 import it.uniroma3.cyberlab.entity.UserProgress;
+import it.uniroma3.cyberlab.entity.UserStats;
 import it.uniroma3.cyberlab.repository.LabRepository;
 import it.uniroma3.cyberlab.repository.UserProgressRepository;
 import it.uniroma3.cyberlab.repository.CategoryRepository;
 import it.uniroma3.cyberlab.security.SecurityUtils;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.Map;
-import java.util.HashMap;
 
 @Service
 @Transactional
 public class LabService {
 
+    /**
+     * Tetto delle liste "tutti i lab" di un utente: un progresso per lab del catalogo, che resta molto piu' piccolo
+     */
+    public static final int MAX_LABS_PER_USER = 500;
+
     @Autowired
     private LabRepository labRepository;
     
@@ -31,6 +41,15 @@ public class LabService {
     
     @Autowired
     private CategoryRepository categoryRepository;
+    
+    @Autowired
+    private UserStatsService userStatsService;
+    
+    @Autowired
+    private LabAnalyticsService labAnalyticsService;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
 
     /**
      * Trova lab per ID
@@ -46,47 +65,85 @@ public class LabService {
      */
     @Transactional
     public Lab findByIdAndIncrementViews(Long id) {
-        Lab lab = labRepository.findById(id)
+        // Incremento con UPDATE diretto: non sporca l'entita' e non invalida le cache dei contenuti.
+        // Se il lab non e' visibile l'eccezione annulla anche l'incremento.
+        recordView(id);
+        
+        Lab lab = labRepository.findWithContentById(id)
                 .orElseThrow(() -> new RuntimeException("Lab not found"));
         
         if (!lab.getIsPublished() && !SecurityUtils.isAdmin()) {
             throw new RuntimeException("Lab not available");
         }
         
-        lab.incrementViewCount();
-        labRepository.save(lab);
         return lab;
     }
 
     /**
-     * Trova lab pubblicati con filtri
+     * Registra una visualizzazione senza caricare il lab
+     */
+    @Transactional
+    public void recordView(Long id) {
+        labRepository.incrementViewCount(id);
+    }
+
+    /**
+     * Versione della pagina di dettaglio per il GET condizionale (null se il lab non esiste
+     * o non e' visibile). Per gli utenti autenticati include lo stato del loro progresso.
      */
     @Transactional(readOnly = true)
-    public List<Lab> findPublishedLabs(Category category, Lab.Difficulty difficulty, int page, int size) {
-        PageRequest pageRequest = PageRequest.of(page, size);
-        
-        if (category != null && difficulty != null) {
-            return labRepository.findByCategoryAndDifficultyAndIsPublishedTrue(category, difficulty);
-        } else if (category != null) {
-            return labRepository.findByCategoryAndIsPublishedTrueOrderByCreatedDateDesc(category);
-        } else if (difficulty != null) {
-            return labRepository.findByDifficultyAndIsPublishedTrueOrderByCreatedDateDesc(difficulty);
-        } else {
-            return labRepository.findByIsPublishedTrue(pageRequest).getContent();
+    public ContentVersionService.ResourceVersion getLabPageVersion(Long id, Long userId, String viewerKey,
+                                                                   String labsVersion) {
+        List<Object[]> rows = labRepository.findPageVersionById(id);
+        if (rows.isEmpty()) {
+            return null;
         }
+        
+        Object[] row = rows.get(0);
+        if (!Boolean.TRUE.equals(row[1]) && !SecurityUtils.isAdmin()) {
+            return null;
+        }
+        long labModified = ContentVersionService.toEpochMillis((LocalDateTime) row[0]);
+        long lastModified = labModified;
+        
+        StringBuilder tag = new StringBuilder("lab-").append(id).append('-').append(Long.toHexString(labModified));
+        if (userId != null) {
+            List<Object[]> progress = userProgressRepository.findPageVersionByUserAndLab(userId, id);
+            if (!progress.isEmpty()) {
+                Object[] p = progress.get(0);
+                long accessed = ContentVersionService.toEpochMillis((LocalDateTime) p[0]);
+                tag.append("-p").append(Long.toHexString(accessed)).append('.').append(p[1]).append('.').append(p[2]);
+                lastModified = Math.max(lastModified, accessed);
+            }
+        }
+        // Statistiche della community mostrate nella pagina
+        tag.append("-a").append(Long.toHexString(labAnalyticsService.getVersion(id)));
+        tag.append('-').append(labsVersion).append(viewerKey);
+        return new ContentVersionService.ResourceVersion(tag.toString(), lastModified);
     }
 
     /**
-     * Ottiene mappa progresso utente per lista lab
+     * Lab pubblicati con filtri opzionali (paginazione sempre sul database)
      */
     @Transactional(readOnly = true)
-    public Map<Long, UserProgress> getUserProgressMap(User user) {
-        Map<Long, UserProgress> progressMap = new HashMap<>();
-        List<UserProgress> userProgress = userProgressRepository.findByUser(user);
-        for (UserProgress progress : userProgress) {
-            progressMap.put(progress.getLab().getId(), progress);
-        }
-        return progressMap;
+    public List<Lab> findPublishedLabs(Category category, Lab.Difficulty difficulty, int page, int size) {
+        return findCatalog(category, difficulty, true, null, null, null, page, size)
+                .map(LabCatalogItem::getLab)
+                .getContent();
+    }
+
+    /**
+     * Catalogo lab con qualunque combinazione di filtri e il progresso dell'utente (se presente)
+     * nella stessa query; progress filtra per stato dell'utente (NOT_STARTED = mai iniziato)
+     */
+    @Transactional(readOnly = true)
+    public Page<LabCatalogItem> findCatalog(Category category, Lab.Difficulty difficulty, Boolean published,
+                                            String search, UserProgress.ProgressStatus progress, User user,
+                                            int page, int size) {
+        return labRepository.findCatalog(category != null ? category.getId() : null, difficulty, published,
+                        search, progress, user != null ? user.getId() : null,
+                        PageRequest.of(Math.max(page, 0), size))
+                .map(row -> new LabCatalogItem((Lab) row[0], (UserProgress) row[1]));
     }
 
     /**
@@ -114,11 +171,7 @@ public class LabService {
      */
     @Transactional(readOnly = true)
     public List<UserProgress> getUserInProgressLabs(User user, int limit) {
-        List<UserProgress> inProgress = userProgressRepository.findInProgressByUser(user);
-        if (limit > 0 && inProgress.size() > limit) {
-            return inProgress.subList(0, limit);
-        }
-        return inProgress;
+        return userProgressRepository.findInProgressByUser(user, limitOf(limit));
     }
 
     /**
@@ -126,11 +179,7 @@ public class LabService {
      */
     @Transactional(readOnly = true)
     public List<UserProgress> getUserCompletedLabs(User user, int limit) {
-        List<UserProgress> completed = userProgressRepository.findCompletedByUser(user);
-        if (limit > 0 && completed.size() > limit) {
-            return completed.subList(0, limit);
-        }
-        return completed;
+        return userProgressRepository.findCompletedByUser(user, limitOf(limit));
     }
 
     /**
@@ -142,14 +191,11 @@ public class LabService {
     }
 
     /**
-     * Lab non ancora iniziati dall'utente
+     * Lab non ancora iniziati dall'utente (al massimo MAX_LABS_PER_USER)
      */
     @Transactional(readOnly = true)
     public List<Lab> getNotStartedLabs(User user) {
-        List<Lab> allLabs = labRepository.findByIsPublishedTrue();
-        return allLabs.stream()
-                .filter(lab -> !userProgressRepository.existsByUserAndLab(user, lab))
-                .toList();
+        return labRepository.findNotStartedByUser(user, PageRequest.of(0, MAX_LABS_PER_USER));
     }
 
     /**
@@ -165,11 +211,7 @@ public class LabService {
      */
     @Transactional(readOnly = true)
     public List<Lab> getRecommendedLabs(User user, int limit) {
-        List<Lab> allLabs = labRepository.findByIsPublishedTrue();
-        return allLabs.stream()
-                .filter(lab -> !userProgressRepository.existsByUserAndLab(user, lab))
-                .limit(limit)
-                .toList();
+        return labRepository.findNotStartedByUser(user, PageRequest.of(0, limit));
     }
 
     /**
@@ -177,8 +219,8 @@ public class LabService {
      */
     @Transactional(readOnly = true)
     public List<Lab> getBeginnerLabs(int limit) {
-        return labRepository.findByDifficultyAndIsPublishedTrueOrderByCreatedDateDesc(Lab.Difficulty.BEGINNER)
-                .stream().limit(limit).toList();
+        return labRepository.findByDifficultyAndIsPublishedTrueOrderByCreatedDateDesc(Lab.Difficulty.BEGINNER,
+                PageRequest.of(0, limit));
     }
 
     /**
@@ -264,17 +306,11 @@ public class LabService {
     }
 
     /**
-     * Conteggio totale completamenti - IMPLEMENTAZIONE FALLBACK
+     * Conteggio totale completamenti
      */
     @Transactional(readOnly = true)
     public long getTotalCompletionsCount() {
-        try {
-            // Prova a usare il metodo del repository se esiste
-            return userProgressRepository.countCompletedLabs();
-        } catch (Exception e) {
-            // Fallback: conta manualmente i lab completati
-            return userProgressRepository.findByStatus(UserProgress.ProgressStatus.COMPLETED).size();
-        }
+        return userProgressRepository.countCompletedLabs();
     }
 
     /**
@@ -358,10 +394,44 @@ public class LabService {
     public String deleteLab(Long labId) {
         Lab lab = findById(labId);
         String labTitle = lab.getTitle();
+        // I progressi spariscono in cascata con il lab: gli snapshot dei loro utenti vanno ricostruiti
+        userStatsService.invalidateForLab(labId);
         labRepository.delete(lab);
+        labAnalyticsService.removeLab(labId);
         return labTitle;
     }
 
+    /**
+     * Migrazione: sposta in lab_content un blocco di teorie/esercizi/soluzioni rimasti nelle vecchie colonne
+     * di lab, poi svuota quelle colonne. Ritorna il numero di lab spostati (0 a fine migrazione)
+     */
+    @SuppressWarnings("unchecked")
+    public int migrateLegacyContentChunk(int limit) {
+        List<Object[]> rows = entityManager.createNativeQuery(
+                "SELECT id, theory, exercise, solution FROM lab WHERE content_id IS NULL " +
+                "AND (theory IS NOT NULL OR exercise IS NOT NULL) ORDER BY id")
+                .setMaxResults(limit)
+                .getResultList();
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        
+        List<Long> labIds = new ArrayList<>();
+        for (Object[] row : rows) {
+            Long labId = ((Number) row[0]).longValue();
+            Lab lab = labRepository.findById(labId)
+                    .orElseThrow(() -> new RuntimeException("Lab not found"));
+            lab.setContent(new LabContent((String) row[1], (String) row[2], (String) row[3]));
+            labIds.add(labId);
+        }
+        entityManager.flush();
+        
+        entityManager.createNativeQuery("UPDATE lab SET theory = NULL, exercise = NULL, solution = NULL WHERE id IN :ids")
+                .setParameter("ids", labIds)
+                .executeUpdate();
+        return rows.size();
+    }
+
     /**
      * Statistiche lab generali
      */
@@ -380,14 +450,13 @@ public class LabService {
     @Transactional(readOnly = true)
     public UserLabStatistics getUserLabStatistics(User user) {
         long totalLabs = labRepository.countPublishedLabs();
-        long completedLabs = userProgressRepository.countCompletedByUser(user);
-        long inProgressLabs = userProgressRepository.countInProgressByUser(user);
+        UserStats snapshot = userStatsService.getStats(user.getId());
+        long completedLabs = snapshot.getLabsCompleted();
+        long inProgressLabs = snapshot.getLabsInProgress();
         long notStartedLabs = totalLabs - completedLabs - inProgressLabs;
         
-        Long totalTimeSpent = userProgressRepository.findTotalTimeSpentByUser(user);
-        
         return new UserLabStatistics(totalLabs, completedLabs, inProgressLabs, 
-                                    notStartedLabs, totalTimeSpent != null ? totalTimeSpent : 0);
+                                    notStartedLabs, snapshot.getTotalTimeSpent());
     }
 
     /**
@@ -417,17 +486,22 @@ public class LabService {
         Optional<UserProgress> existingProgress = userProgressRepository.findByUserAndLab(user, lab);
         if (existingProgress.isPresent()) {
             UserProgress progress = existingProgress.get();
+            UserStatsService.ProgressState before = UserStatsService.capture(progress);
             progress.setLastAccessed(LocalDateTime.now());
             if (progress.isNotStarted()) {
                 progress.startLab();
             }
-            return userProgressRepository.save(progress);
+            UserProgress saved = userProgressRepository.save(progress);
+            progressChanged(user.getId(), before, saved);
+            return saved;
         }
         
         // Crea nuovo progresso
         UserProgress newProgress = new UserProgress(user, lab);
         newProgress.startLab();
-        return userProgressRepository.save(newProgress);
+        UserProgress saved = userProgressRepository.save(newProgress);
+        progressChanged(user.getId(), UserStatsService.ProgressState.NONE, saved);
+        return saved;
     }
 
     /**
@@ -441,6 +515,7 @@ public class LabService {
         UserProgress progress = userProgressRepository.findByUserAndLab(user, lab)
                 .orElseThrow(() -> new IllegalArgumentException("Progress not found"));
         
+        UserStatsService.ProgressState before = UserStatsService.capture(progress);
         progress.setCompletionPercentage(percentage);
         progress.addTimeSpent(timeSpent);
         progress.setLastAccessed(LocalDateTime.now());
@@ -456,7 +531,9 @@ public class LabService {
             labRepository.save(lab);
         }
         
-        return userProgressRepository.save(progress);
+        UserProgress saved = userProgressRepository.save(progress);
+        progressChanged(user.getId(), before, saved);
+        return saved;
     }
 
     /**
@@ -475,10 +552,46 @@ public class LabService {
         return user != null && user.isAdmin();
     }
 
+    /**
+     * Propaga la modifica di un progresso a snapshot utente e statistiche del lab
+     */
+    private void progressChanged(Long userId, UserStatsService.ProgressState before, UserProgress after) {
+        userStatsService.onProgressChanged(userId, before, after);
+        labAnalyticsService.onProgressChanged(before, after);
+    }
+
+    /**
+     * Limite per i progressi di un utente (limit <= 0: tutti, fino a MAX_LABS_PER_USER)
+     */
+    private static Pageable limitOf(int limit) {
+        return PageRequest.of(0, limit > 0 ? Math.min(limit, MAX_LABS_PER_USER) : MAX_LABS_PER_USER);
+    }
+
     // =============================================================================
     // DTO CLASSES
     // =============================================================================
 
+    /**
+     * DTO per una voce del catalogo: lab e progresso dell'utente corrente (null se mai iniziato)
+     */
+    public static class LabCatalogItem {
+        private final Lab lab;
+        private final UserProgress progress;
+        
+        public LabCatalogItem(Lab lab, UserProgress progress) {
+            this.lab = lab;
+            this.progress = progress;
+        }
+        
+        // Getters
+        public Lab getLab() { return lab; }
+        public UserProgress getProgress() { return progress; }
+        
+        public UserProgress.ProgressStatus getStatus() {
+            return progress != null ? progress.getStatus() : UserProgress.ProgressStatus.NOT_STARTED;
+        }
+    }
+
     /**
      * DTO per statistiche lab generali
      */
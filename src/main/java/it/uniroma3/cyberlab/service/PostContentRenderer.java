@@ -0,0 +1,249 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.Post;
+import org.commonmark.node.Code;
+import org.commonmark.node.FencedCodeBlock;
+import org.commonmark.node.IndentedCodeBlock;
+import org.commonmark.node.Link;
+import org.commonmark.node.Node;
+import org.commonmark.parser.Parser;
+import org.commonmark.renderer.NodeRenderer;
+import org.commonmark.renderer.html.HtmlNodeRendererContext;
+import org.commonmark.renderer.html.HtmlRenderer;
+import org.commonmark.renderer.html.HtmlWriter;
+import org.commonmark.renderer.text.TextContentRenderer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rendering del contenuto dei post, eseguito alla creazione/modifica (PostService) e salvato:
+ * estratto in testo semplice per le liste, HTML per la pagina del post, hash del markdown.
+ * L'HTML e' sicuro per th:utext: l'HTML scritto dall'utente viene escapato, i link accettano solo
+ * protocolli sicuri (niente javascript:) e i blocchi di codice sono colorati lato server con span a classi fisse.
+ */
+@Service
+public class PostContentRenderer {
+
+    public static final int EXCERPT_LENGTH = 280;
+
+    private final Parser parser = Parser.builder().build();
+
+    private final HtmlRenderer htmlRenderer = HtmlRenderer.builder()
+            .escapeHtml(true)
+            .sanitizeUrls(true)
+            .attributeProviderFactory(context -> (node, tagName, attributes) -> {
+                if (node instanceof Link) {
+                    attributes.put("rel", "nofollow noopener");
+                }
+            })
+            .nodeRendererFactory(CodeBlockRenderer::new)
+            .build();
+
+    private final TextContentRenderer textRenderer = TextContentRenderer.builder().build();
+
+    /**
+     * Aggiorna estratto, HTML e hash del post; ritorna false se il markdown non e' cambiato
+     * (stesso hash e rendering gia' presente)
+     */
+    public boolean render(Post post) {
+        String content = post.getContent() != null ? post.getContent() : "";
+        String hash = hash(content);
+        if (hash.equals(post.getContentHash()) && post.getExcerpt() != null && post.getContentHtml() != null) {
+            return false;
+        }
+
+        Node document = parser.parse(content);
+        post.getBody().setContentHtml(htmlRenderer.render(document));
+        post.setExcerpt(excerpt(textRenderer.render(document)));
+        post.setContentHash(hash);
+        return true;
+    }
+
+    static String excerpt(String text) {
+        String plain = text.replaceAll("\\s+", " ").trim();
+        if (plain.length() <= EXCERPT_LENGTH) {
+            return plain;
+        }
+        int cut = plain.lastIndexOf(' ', EXCERPT_LENGTH - 3);
+        return plain.substring(0, cut > EXCERPT_LENGTH / 2 ? cut : EXCERPT_LENGTH - 3) + "...";
+    }
+
+    static String hash(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // ========== EVIDENZIAZIONE DEL CODICE ==========
+
+    /**
+     * Blocchi di codice: pre/code con classe language-x e token in span tok-kw, tok-str, tok-com, tok-num.
+     * Il testo passa sempre da HtmlWriter.text (escape), solo gli span sono scritti come HTML.
+     */
+    private static class CodeBlockRenderer implements NodeRenderer {
+
+        private final HtmlWriter html;
+
+        CodeBlockRenderer(HtmlNodeRendererContext context) {
+            this.html = context.getWriter();
+        }
+
+        @Override
+        public Set<Class<? extends Node>> getNodeTypes() {
+            return Set.of(FencedCodeBlock.class, IndentedCodeBlock.class);
+        }
+
+        @Override
+        public void render(Node node) {
+            String language = null;
+            String code;
+            if (node instanceof FencedCodeBlock fenced) {
+                String info = fenced.getInfo() != null ? fenced.getInfo().trim() : "";
+                language = info.isEmpty() ? null : info.split("\\s+")[0].toLowerCase(Locale.ROOT);
+                code = fenced.getLiteral();
+            } else {
+                code = ((IndentedCodeBlock) node).getLiteral();
+            }
+
+            Syntax syntax = language != null ? Syntax.of(language) : null;
+            Map<String, String> codeAttributes = new HashMap<>();
+            if (language != null && language.matches("[a-z0-9+#_-]{1,20}")) {
+                codeAttributes.put("class", "language-" + language);
+            }
+
+            html.line();
+            html.tag("pre");
+            html.tag("code", codeAttributes);
+            if (syntax != null) {
+                highlight(code, syntax);
+            } else {
+                html.text(code);
+            }
+            html.tag("/code");
+            html.tag("/pre");
+            html.line();
+        }
+
+        private void highlight(String code, Syntax syntax) {
+            int i = 0;
+            int plainStart = 0;
+            int length = code.length();
+            while (i < length) {
+                char c = code.charAt(i);
+                int end = -1;
+                String kind = null;
+
+                if (syntax.lineComment != null && code.startsWith(syntax.lineComment, i)) {
+                    end = code.indexOf('\n', i);
+                    end = end < 0 ? length : end;
+                    kind = "tok-com";
+                } else if (syntax.blockComments && code.startsWith("/*", i)) {
+                    end = code.indexOf("*/", i + 2);
+                    end = end < 0 ? length : end + 2;
+                    kind = "tok-com";
+                } else if (syntax.quotes.indexOf(c) >= 0) {
+                    end = i + 1;
+                    while (end < length && code.charAt(end) != c && code.charAt(end) != '\n') {
+                        end += code.charAt(end) == '\\' ? 2 : 1;
+                    }
+                    end = Math.min(end + 1, length);
+                    kind = "tok-str";
+                } else if (Character.isDigit(c) && (i == 0 || !isWordChar(code.charAt(i - 1)))) {
+                    end = i;
+                    while (end < length && (Character.isLetterOrDigit(code.charAt(end)) || code.charAt(end) == '.')) {
+                        end++;
+                    }
+                    kind = "tok-num";
+                } else if (isWordStart(c) && (i == 0 || !isWordChar(code.charAt(i - 1)))) {
+                    end = i;
+                    while (end < length && isWordChar(code.charAt(end))) {
+                        end++;
+                    }
+                    if (!syntax.isKeyword(code.substring(i, end))) {
+                        i = end;
+                        continue;
+                    }
+                    kind = "tok-kw";
+                }
+
+                if (kind == null) {
+                    i++;
+                    continue;
+                }
+                if (plainStart < i) {
+                    html.text(code.substring(plainStart, i));
+                }
+                html.raw("<span class=\"" + kind + "\">");
+                html.text(code.substring(i, end));
+                html.raw("</span>");
+                i = end;
+                plainStart = end;
+            }
+            if (plainStart < length) {
+                html.text(code.substring(plainStart));
+            }
+        }
+
+        private static boolean isWordStart(char c) {
+            return Character.isLetter(c) || c == '_' || c == '$';
+        }
+
+        private static boolean isWordChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+        }
+    }
+
+    /**
+     * Regole minime di un linguaggio: commenti, delimitatori di stringa e parole chiave
+     */
+    private record Syntax(String lineComment, boolean blockComments, String quotes,
+                          Set<String> keywords, boolean caseInsensitive) {
+
+        private static final Set<String> C_LIKE = Set.of("if", "else", "for", "while", "do", "return", "break",
+                "continue", "switch", "case", "default", "struct", "int", "char", "void", "long", "short",
+                "unsigned", "const", "static", "sizeof", "typedef", "include", "define", "null", "NULL",
+                "true", "false", "new", "class", "public", "private", "protected", "import", "package",
+                "try", "catch", "finally", "throw", "throws", "extends", "implements", "final", "boolean",
+                "byte", "double", "float", "this", "super", "var", "let", "function", "async", "await",
+                "typeof", "instanceof", "undefined", "echo", "foreach", "as");
+
+        private static final Set<String> PYTHON = Set.of("def", "class", "return", "if", "elif", "else",
+                "for", "while", "in", "not", "and", "or", "is", "import", "from", "as", "try", "except",
+                "finally", "raise", "with", "lambda", "yield", "pass", "break", "continue", "None", "True",
+                "False", "self", "global", "async", "await");
+
+        private static final Set<String> SHELL = Set.of("if", "then", "else", "elif", "fi", "for", "while",
+                "do", "done", "case", "esac", "in", "function", "return", "export", "local", "echo", "sudo");
+
+        private static final Set<String> SQL = Set.of("select", "from", "where", "and", "or", "not", "insert",
+                "into", "values", "update", "set", "delete", "union", "all", "join", "on", "order", "by",
+                "group", "having", "limit", "null", "like", "drop", "table", "create", "as", "exec", "sleep");
+
+        static Syntax of(String language) {
+            return switch (language) {
+                case "java", "c", "cpp", "c++", "cs", "csharp", "js", "javascript", "ts", "typescript", "go", "rust" ->
+                        new Syntax("//", true, "\"'`", C_LIKE, false);
+                case "php" -> new Syntax("//", true, "\"'", C_LIKE, false);
+                case "python", "py" -> new Syntax("#", false, "\"'", PYTHON, false);
+                case "bash", "sh", "shell", "zsh" -> new Syntax("#", false, "\"'", SHELL, false);
+                case "sql" -> new Syntax("--", true, "'\"", SQL, true);
+                default -> null;
+            };
+        }
+
+        boolean isKeyword(String word) {
+            return keywords.contains(caseInsensitive ? word.toLowerCase(Locale.ROOT) : word);
+        }
+    }
+}
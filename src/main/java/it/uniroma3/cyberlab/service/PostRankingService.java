@@ -0,0 +1,486 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.Post;
+import it.uniroma3.cyberlab.repository.PostRepository;
+import it.uniroma3.cyberlab.util.TransactionCallbacks;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ranking "hot" dei post: punteggio con decadimento esponenziale nel tempo, aggiornato ad ogni evento
+ * (visualizzazione, like, commento, segnalazione) e top-K in memoria globale e per categoria.
+ *
+ * Il punteggio e' tenuto in scala logaritmica rispetto a un'epoca fissa:
+ * score = ln(somma dei pesi * e^((t_evento - epoca) / tau)).
+ * Cosi' il decadimento non richiede di ricalcolare nulla: un evento piu' recente pesa di piu' di uno vecchio
+ * e l'ordine tra due post non cambia finche' non arrivano nuovi eventi.
+ *
+ * Quando un post esce dal top-K o il suo punteggio scende, i post fuori classifica potrebbero superarlo:
+ * il riempimento richiede una scansione di tutti i punteggi, quindi non avviene sul thread della richiesta
+ * ma in un unico passaggio periodico per tutte le classifiche in attesa.
+ */
+@Service
+public class PostRankingService {
+
+    public enum Event {
+        CREATE(20), VIEW(1), LIKE(5), COMMENT(10), REPORT(-15);
+
+        private final double weight;
+
+        Event(double weight) {
+            this.weight = weight;
+        }
+
+        public double getWeight() {
+            return weight;
+        }
+    }
+
+    // 2024-01-01T00:00:00Z
+    private static final long EPOCH_MILLIS = 1704067200000L;
+
+    // Punteggio "nullo" (post sommerso dalle segnalazioni): finito, per poterlo salvare sul database
+    private static final double MIN_SCORE = -1.0e6;
+
+    private static final Comparator<Ranked> BY_SCORE = Comparator
+            .comparingDouble(Ranked::score)
+            .thenComparingLong(Ranked::postId);
+
+    @Value("${cyberlab.ranking.half-life:PT12H}")
+    private Duration halfLife;
+
+    @Value("${cyberlab.ranking.top-k:200}")
+    private int globalCapacity;
+
+    @Value("${cyberlab.ranking.category-top-k:50}")
+    private int categoryCapacity;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Long, TopK> byCategory = new ConcurrentHashMap<>();
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    // Classifiche da riempire al prossimo passaggio di refillPending
+    private final AtomicBoolean globalRefill = new AtomicBoolean();
+    private final Set<Long> categoryRefills = ConcurrentHashMap.newKeySet();
+    private volatile TopK global = new TopK(200);
+    private volatile boolean ready = false;
+
+    /**
+     * Carica i punteggi salvati; i post senza punteggio vengono stimati dai contatori esistenti
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.currentTimeMillis();
+        int seeded = 0;
+
+        entries.clear();
+        byCategory.clear();
+        global = new TopK(globalCapacity);
+
+        for (Object[] row : postRepository.findRankingSeeds()) {
+            Long postId = (Long) row[0];
+            Long categoryId = (Long) row[1];
+            Double stored = (Double) row[2];
+
+            double score;
+            if (stored != null) {
+                score = stored;
+            } else {
+                long created = toMillis((LocalDateTime) row[3]);
+                score = seedScore(created, number(row[4]), number(row[5]), number(row[6]), number(row[7]));
+                dirty.add(postId);
+                seeded++;
+            }
+            Entry entry = new Entry(postId, categoryId, score);
+            entries.put(postId, entry);
+            offer(entry);
+        }
+
+        ready = true;
+        System.out.println("✅ Post ranking loaded: " + entries.size() + " posts (" + seeded + " seeded) in "
+                + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Registra un evento sul post (applicato dopo il commit della transazione corrente)
+     */
+    public void recordEvent(Long postId, Event event) {
+        long now = System.currentTimeMillis();
+        TransactionCallbacks.afterCommit(() -> apply(postId, event.getWeight(), now));
+    }
+
+    /**
+     * Nuovo post: entra nel ranking con il peso di creazione
+     */
+    public void registerPost(Long postId, Long categoryId, LocalDateTime createdDate) {
+        long created = toMillis(createdDate);
+        TransactionCallbacks.afterCommit(() -> {
+            Entry entry = new Entry(postId, categoryId, term(Event.CREATE.getWeight(), created));
+            entries.put(postId, entry);
+            dirty.add(postId);
+            offer(entry);
+        });
+    }
+
+    public void moveToCategory(Long postId, Long categoryId) {
+        TransactionCallbacks.afterCommit(() -> {
+            Entry entry = entries.get(postId);
+            if (entry == null || categoryId.equals(entry.categoryId)) {
+                return;
+            }
+            synchronized (entry) {
+                Long oldCategory = entry.categoryId;
+                entry.categoryId = categoryId;
+                removeFromCategory(oldCategory, postId);
+                category(categoryId).offer(postId, entry.score);
+            }
+        });
+    }
+
+    /**
+     * Tutti i post di una categoria passano a un'altra (migrazione di categoria).
+     * I post spostati entrano direttamente nella classifica di destinazione, creata se nessuno l'ha ancora letta:
+     * il riempimento periodico aggiorna solo le classifiche esistenti
+     */
+    public void moveCategory(Long fromCategoryId, Long toCategoryId) {
+        TransactionCallbacks.afterCommit(() -> {
+            TopK target = category(toCategoryId);
+            for (Entry entry : entries.values()) {
+                synchronized (entry) {
+                    if (fromCategoryId.equals(entry.categoryId)) {
+                        entry.categoryId = toCategoryId;
+                        target.offer(entry.postId, entry.score);
+                    }
+                }
+            }
+            byCategory.remove(fromCategoryId);
+            categoryRefills.remove(fromCategoryId);
+        });
+    }
+
+    public void removePost(Long postId) {
+        TransactionCallbacks.afterCommit(() -> {
+            Entry entry = entries.remove(postId);
+            dirty.remove(postId);
+            if (entry == null) {
+                return;
+            }
+            if (global.remove(postId)) {
+                globalRefill.set(true);
+            }
+            removeFromCategory(entry.categoryId, postId);
+        });
+    }
+
+    /**
+     * Id dei post piu' "caldi", globali o della categoria indicata
+     */
+    public List<Long> getTrendingPostIds(Long categoryId, int offset, int limit) {
+        TopK topK = categoryId != null ? byCategory.get(categoryId) : global;
+        return topK != null ? topK.top(offset, limit) : Collections.emptyList();
+    }
+
+    /**
+     * Numero di post nella classifica (limitato alla capacita' del top-K)
+     */
+    public int getTrendingSize(Long categoryId) {
+        TopK topK = categoryId != null ? byCategory.get(categoryId) : global;
+        return topK != null ? topK.size() : 0;
+    }
+
+    /**
+     * Impronta dei primi post in classifica, per ETag e cache dei frammenti
+     */
+    public String signature(Long categoryId, int limit) {
+        return Integer.toHexString(getTrendingPostIds(categoryId, 0, limit).hashCode());
+    }
+
+    /**
+     * Post in classifica nell'ordine del ranking
+     */
+    @Transactional(readOnly = true)
+    public List<Post> findTrendingPosts(Long categoryId, int offset, int limit) {
+        List<Long> ids = getTrendingPostIds(categoryId, offset, limit);
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Post> byId = new HashMap<>();
+        for (Post post : postRepository.findAllById(ids)) {
+            byId.put(post.getId(), post);
+        }
+        List<Post> posts = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Post post = byId.get(id);
+            if (post != null) {
+                posts.add(post);
+            }
+        }
+        return posts;
+    }
+
+    /**
+     * Punteggio attuale del post (scala lineare, decaduto ad ora)
+     */
+    public double getHotScore(Long postId) {
+        Entry entry = entries.get(postId);
+        if (entry == null) {
+            return 0;
+        }
+        return Math.exp(entry.score - (System.currentTimeMillis() - EPOCH_MILLIS) / tauMillis());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Salva periodicamente i punteggi modificati, per ripartire senza ricalcolo
+     */
+    @Scheduled(fixedDelayString = "${cyberlab.ranking.flush-interval:60000}",
+               initialDelayString = "${cyberlab.ranking.flush-interval:60000}")
+    public void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        List<Long> ids = new ArrayList<>(dirty);
+        dirty.removeAll(ids);
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                for (Long id : ids) {
+                    Entry entry = entries.get(id);
+                    if (entry != null) {
+                        postRepository.updateHotScore(id, entry.score);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            dirty.addAll(ids);
+            System.out.println("Error flushing post ranking: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Riempie le classifiche che hanno perso posizioni: una sola scansione dei punteggi per tutte
+     */
+    @Scheduled(fixedDelayString = "${cyberlab.ranking.refill-interval:5000}")
+    public void refillPending() {
+        boolean refillGlobal = globalRefill.getAndSet(false);
+        Map<Long, TopK> categories = new HashMap<>();
+        for (Long categoryId : new ArrayList<>(categoryRefills)) {
+            categoryRefills.remove(categoryId);
+            TopK topK = byCategory.get(categoryId);
+            if (topK != null) {
+                categories.put(categoryId, topK);
+            }
+        }
+        if (!refillGlobal && categories.isEmpty()) {
+            return;
+        }
+        TopK currentGlobal = global;
+        for (Entry entry : entries.values()) {
+            if (refillGlobal) {
+                currentGlobal.offerIfAbsent(entry.postId, entry.score);
+            }
+            TopK category = categories.get(entry.categoryId);
+            if (category != null) {
+                category.offerIfAbsent(entry.postId, entry.score);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void apply(Long postId, double weight, long timeMillis) {
+        Entry entry = entries.get(postId);
+        if (entry == null) {
+            return;
+        }
+        double score;
+        synchronized (entry) {
+            double term = term(weight, timeMillis);
+            entry.score = weight >= 0 ? logAddExp(entry.score, term) : logSubExp(entry.score, term);
+            score = entry.score;
+        }
+        dirty.add(postId);
+
+        if (weight >= 0) {
+            offer(entry);
+        } else {
+            // Un punteggio che scende puo' essere superato da post fuori dal top-K: riempimento al prossimo passaggio
+            if (global.remove(postId)) {
+                global.offer(postId, score);
+                globalRefill.set(true);
+            }
+            TopK category = byCategory.get(entry.categoryId);
+            if (category != null && category.remove(postId)) {
+                category.offer(postId, score);
+                categoryRefills.add(entry.categoryId);
+            }
+        }
+    }
+
+    private void offer(Entry entry) {
+        global.offer(entry.postId, entry.score);
+        category(entry.categoryId).offer(entry.postId, entry.score);
+    }
+
+    private void removeFromCategory(Long categoryId, Long postId) {
+        TopK category = byCategory.get(categoryId);
+        if (category != null && category.remove(postId)) {
+            categoryRefills.add(categoryId);
+        }
+    }
+
+    private TopK category(Long categoryId) {
+        return byCategory.computeIfAbsent(categoryId, id -> new TopK(categoryCapacity));
+    }
+
+    private double seedScore(long created, long views, long likes, long comments, long reports) {
+        double positive = Event.CREATE.getWeight() + views * Event.VIEW.getWeight()
+                + likes * Event.LIKE.getWeight() + comments * Event.COMMENT.getWeight();
+        double score = term(positive, created);
+        if (reports > 0) {
+            score = logSubExp(score, term(-reports * Event.REPORT.getWeight(), created));
+        }
+        return score;
+    }
+
+    private double term(double weight, long timeMillis) {
+        return Math.log(Math.abs(weight)) + (timeMillis - EPOCH_MILLIS) / tauMillis();
+    }
+
+    private double tauMillis() {
+        return halfLife.toMillis() / Math.log(2);
+    }
+
+    private static double logAddExp(double a, double b) {
+        double max = Math.max(a, b);
+        return max + Math.log1p(Math.exp(Math.min(a, b) - max));
+    }
+
+    private static double logSubExp(double a, double b) {
+        if (b >= a) {
+            return MIN_SCORE;
+        }
+        return a + Math.log1p(-Math.exp(b - a));
+    }
+
+    private static long toMillis(LocalDateTime dateTime) {
+        return dateTime != null
+                ? dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+    }
+
+    private static long number(Object value) {
+        return value != null ? ((Number) value).longValue() : 0;
+    }
+
+
+    private static final class Entry {
+        private final Long postId;
+        private volatile Long categoryId;
+        private volatile double score;
+
+        private Entry(Long postId, Long categoryId, double score) {
+            this.postId = postId;
+            this.categoryId = categoryId;
+            this.score = score;
+        }
+    }
+
+    private record Ranked(long postId, double score) {}
+
+    /**
+     * Top-K limitato: il minimo e' sempre il primo elemento, l'inserimento costa O(log K)
+     */
+    private static final class TopK {
+        private final int capacity;
+        private final TreeSet<Ranked> ranking = new TreeSet<>(BY_SCORE);
+        private final Map<Long, Ranked> members = new HashMap<>();
+
+        private TopK(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void offer(Long postId, double score) {
+            Ranked previous = members.remove(postId);
+            if (previous != null) {
+                ranking.remove(previous);
+            }
+            insert(postId, score);
+        }
+
+        synchronized void offerIfAbsent(Long postId, double score) {
+            if (!members.containsKey(postId)) {
+                insert(postId, score);
+            }
+        }
+
+        synchronized boolean remove(Long postId) {
+            Ranked previous = members.remove(postId);
+            return previous != null && ranking.remove(previous);
+        }
+
+        synchronized List<Long> top(int offset, int limit) {
+            List<Long> result = new ArrayList<>(Math.min(limit, ranking.size()));
+            Iterator<Ranked> iterator = ranking.descendingIterator();
+            int index = 0;
+            while (iterator.hasNext() && result.size() < limit) {
+                Ranked ranked = iterator.next();
+                if (index++ >= offset) {
+                    result.add(ranked.postId());
+                }
+            }
+            return result;
+        }
+
+        synchronized int size() {
+            return ranking.size();
+        }
+
+        private void insert(Long postId, double score) {
+            if (ranking.size() >= capacity) {
+                Ranked lowest = ranking.first();
+                if (BY_SCORE.compare(new Ranked(postId, score), lowest) <= 0) {
+                    return;
+                }
+                ranking.pollFirst();
+                members.remove(lowest.postId());
+            }
+            Ranked ranked = new Ranked(postId, score);
+            ranking.add(ranked);
+            members.put(postId, ranked);
+        }
+    }
+}
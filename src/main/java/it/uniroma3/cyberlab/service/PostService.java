@@ -1,15 +1,20 @@
 package it.uniroma3.cyberlab.service;
 
 import it.uniroma3.cyberlab.entity.Post;
+import it.uniroma3.cyberlab.entity.PostBody;
 import it.uniroma3.cyberlab.entity.User;
 import it.uniroma3.cyberlab.entity.Category;
-import it.uniroma3.cyberlab.entity.Comment;
 import it.uniroma3.cyberlab.repository.PostRepository;
 import it.uniroma3.cyberlab.repository.CommentRepository;
 import it.uniroma3.cyberlab.repository.CategoryRepository;
 import it.uniroma3.cyberlab.security.SecurityUtils;
+import it.uniroma3.cyberlab.util.GroupedCounts;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,6 +28,9 @@ import java.util.HashMap;
 @Transactional
 public class PostService {
 
+    // Risultati massimi di una ricerca testuale
+    public static final int SEARCH_LIMIT = 50;
+
     @Autowired
     private PostRepository postRepository;
     
@@ -31,6 +39,27 @@ public class PostService {
     
     @Autowired
     private CategoryRepository categoryRepository;
+    
+    @Autowired
+    private TagService tagService;
+    
+    @Autowired
+    private TagIndexService tagIndexService;
+    
+    @Autowired
+    private PostRankingService postRankingService;
+    
+    @Autowired
+    private UserStatsService userStatsService;
+    
+    @Autowired
+    private PostContentRenderer postContentRenderer;
+    
+    @Autowired
+    private ContentDeletionService contentDeletionService;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
 
     /**
      * Crea nuovo post
@@ -79,8 +108,12 @@ public class PostService {
         post.setLastModified(LocalDateTime.now());
         post.setViewCount(0L);
         post.setLikeCount(0L);
+        postContentRenderer.render(post);
         
         Post savedPost = postRepository.save(post);
+        tagService.syncPostTags(savedPost);
+        postRankingService.registerPost(savedPost.getId(), category.getId(), savedPost.getCreatedDate());
+        userStatsService.onPostCreated(author.getId());
         System.out.println("Post saved successfully with ID: " + savedPost.getId());
         
         return savedPost;
@@ -106,10 +139,14 @@ public class PostService {
         // Aggiorna campi
         post.setTitle(title.trim());
         post.setContent(content.trim());
+        // Rendering solo se il markdown e' cambiato (hash)
+        postContentRenderer.render(post);
         post.setPostType(postType != null ? postType : post.getPostType());
         post.setTags(tags != null ? tags.trim() : null);
         post.setCategory(category);
         post.setLastModified(LocalDateTime.now());
+        tagService.syncPostTags(post);
+        postRankingService.moveToCategory(post.getId(), category.getId());
         
         return postRepository.save(post);
     }
@@ -126,7 +163,8 @@ public class PostService {
         }
         
         String postTitle = post.getTitle();
-        postRepository.delete(post);
+        // Commenti e segnalazioni eliminati in blocco; il caso resta come storico (contatori e motivi)
+        contentDeletionService.deletePost(post);
         return postTitle;
     }
 
@@ -144,12 +182,40 @@ public class PostService {
      */
     @Transactional
     public Post findByIdAndIncrementViews(Long id) {
-        Post post = postRepository.findById(id)
+        // Incremento con UPDATE diretto: non sporca l'entita' e non invalida le cache dei contenuti
+        recordView(id);
+        return postRepository.findWithBodyById(id)
                 .orElseThrow(() -> new RuntimeException("Post not found"));
+    }
+
+    /**
+     * Registra una visualizzazione senza caricare il post
+     */
+    public void recordView(Long id) {
+        postRepository.incrementViewCount(id);
+        postRankingService.recordEvent(id, PostRankingService.Event.VIEW);
+    }
+
+    /**
+     * Versione della pagina di dettaglio per il GET condizionale (null se il post non esiste).
+     * Dipende da post, commenti, post correlati e da chi guarda la pagina.
+     */
+    @Transactional(readOnly = true)
+    public ContentVersionService.ResourceVersion getPostPageVersion(Long id, String viewerKey, String postsVersion) {
+        List<Object[]> rows = postRepository.findPageVersionById(id);
+        if (rows.isEmpty()) {
+            return null;
+        }
         
-        post.incrementViewCount();
-        postRepository.save(post);
-        return post;
+        Object[] row = rows.get(0);
+        long postModified = ContentVersionService.toEpochMillis((LocalDateTime) row[0]);
+        long commentCount = row[1] != null ? ((Number) row[1]).longValue() : 0;
+        long commentModified = ContentVersionService.toEpochMillis((LocalDateTime) row[2]);
+        
+        String tag = "post-" + id + "-" + Long.toHexString(postModified)
+                + "-c" + commentCount + "." + Long.toHexString(commentModified)
+                + "-" + postsVersion + viewerKey;
+        return new ContentVersionService.ResourceVersion(tag, Math.max(postModified, commentModified));
     }
 
     /**
@@ -157,32 +223,22 @@ public class PostService {
      */
     @Transactional(readOnly = true)
     public List<Post> findPostsWithFilters(Category category, Post.PostType type, int page, int size) {
-        List<Post> posts = new ArrayList<>();
-        
         try {
+            // Filtri, ordinamento e pagina nella query
+            PageRequest pageRequest = PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "createdDate"));
+            Page<Post> posts;
             if (category != null && type != null) {
-                posts = postRepository.findByCategoryAndPostType(category, type);
+                posts = postRepository.findByCategoryAndPostType(category, type, pageRequest);
             } else if (category != null) {
-                posts = postRepository.findByCategoryOrderByCreatedDateDesc(category);
+                posts = postRepository.findByCategory(category, pageRequest);
             } else if (type != null) {
-                posts = postRepository.findByPostType(type);
+                posts = postRepository.findByPostType(type, pageRequest);
             } else {
-                // Se non ci sono filtri, prendi tutti i post recenti
-                posts = postRepository.findAll();
-                posts.sort((p1, p2) -> p2.getCreatedDate().compareTo(p1.getCreatedDate()));
+                posts = postRepository.findAll(pageRequest);
             }
             
-            System.out.println("PostService.findPostsWithFilters - Found " + posts.size() + " posts");
-            
-            // Paginazione manuale
-            int start = page * size;
-            int end = Math.min(start + size, posts.size());
-            
-            if (start < posts.size()) {
-                return posts.subList(start, end);
-            } else {
-                return new ArrayList<>();
-            }
+            System.out.println("PostService.findPostsWithFilters - Found " + posts.getTotalElements() + " posts");
+            return posts.getContent();
             
         } catch (Exception e) {
             System.out.println("Error in findPostsWithFilters: " + e.getMessage());
@@ -192,16 +248,37 @@ public class PostService {
     }
 
     /**
-     * Trova post correlati
+     * Trova post correlati: prima per tag condivisi (indice dei tag),
+     * poi completa con i piu' recenti della stessa categoria
      */
     @Transactional(readOnly = true)
     public List<Post> findRelatedPosts(Post post, int limit) {
         try {
-            List<Post> relatedPosts = postRepository.findByCategoryOrderByCreatedDateDesc(post.getCategory());
-            return relatedPosts.stream()
-                    .filter(p -> !p.getId().equals(post.getId()))
-                    .limit(limit)
-                    .toList();
+            List<Post> relatedPosts = new ArrayList<>(limit);
+            List<Long> relatedIds = tagIndexService.findRelatedPostIds(post.getId(), limit);
+            if (!relatedIds.isEmpty()) {
+                Map<Long, Post> byId = new HashMap<>();
+                postRepository.findAllById(relatedIds).forEach(p -> byId.put(p.getId(), p));
+                for (Long relatedId : relatedIds) {
+                    Post related = byId.get(relatedId);
+                    if (related != null) {
+                        relatedPosts.add(related);
+                    }
+                }
+            }
+            
+            if (relatedPosts.size() < limit) {
+                PageRequest pageRequest = PageRequest.of(0, limit + relatedPosts.size() + 1);
+                for (Post p : postRepository.findByCategoryOrderByCreatedDateDesc(post.getCategory(), pageRequest)) {
+                    if (relatedPosts.size() >= limit) {
+                        break;
+                    }
+                    if (!p.getId().equals(post.getId()) && !relatedPosts.contains(p)) {
+                        relatedPosts.add(p);
+                    }
+                }
+            }
+            return relatedPosts;
         } catch (Exception e) {
             System.out.println("Error finding related posts: " + e.getMessage());
             return new ArrayList<>();
@@ -214,16 +291,8 @@ public class PostService {
     @Transactional(readOnly = true)
     public List<Post> findPostsByCategory(Category category, int page, int size) {
         try {
-            List<Post> posts = postRepository.findByCategoryOrderByCreatedDateDesc(category);
-            
-            int start = page * size;
-            int end = Math.min(start + size, posts.size());
-            
-            if (start < posts.size()) {
-                return posts.subList(start, end);
-            } else {
-                return new ArrayList<>();
-            }
+            return postRepository.findByCategoryOrderByCreatedDateDesc(category, PageRequest.of(page, size))
+                    .getContent();
         } catch (Exception e) {
             System.out.println("Error finding posts by category: " + e.getMessage());
             return new ArrayList<>();
@@ -254,9 +323,10 @@ public class PostService {
         
         try {
             if (category != null) {
-                return postRepository.searchPostsInCategory(searchTerm.trim(), category);
+                return postRepository.searchPostsInCategory(searchTerm.trim(), category,
+                        PageRequest.of(0, SEARCH_LIMIT));
             } else {
-                return postRepository.searchPosts(searchTerm.trim());
+                return postRepository.searchPosts(searchTerm.trim(), PageRequest.of(0, SEARCH_LIMIT));
             }
         } catch (Exception e) {
             System.out.println("Error searching posts: " + e.getMessage());
@@ -285,8 +355,7 @@ public class PostService {
     public List<Post> getRecentPosts(int limit) {
         try {
             LocalDateTime oneMonthAgo = LocalDateTime.now().minusMonths(1);
-            List<Post> posts = postRepository.findRecentPosts(oneMonthAgo);
-            return posts.stream().limit(limit).toList();
+            return postRepository.findRecentPosts(oneMonthAgo, PageRequest.of(0, limit));
         } catch (Exception e) {
             System.out.println("Error getting recent posts: " + e.getMessage());
             return new ArrayList<>();
@@ -299,11 +368,7 @@ public class PostService {
     @Transactional(readOnly = true)
     public List<Post> findUserPosts(User user, int limit) {
         try {
-            List<Post> posts = postRepository.findByAuthorOrderByCreatedDateDesc(user);
-            if (limit > 0) {
-                return posts.stream().limit(limit).toList();
-            }
-            return posts;
+            return postRepository.findByAuthorOrderByCreatedDateDesc(user, PageRequest.of(0, limit));
         } catch (Exception e) {
             System.out.println("Error finding user posts: " + e.getMessage());
             return new ArrayList<>();
@@ -344,8 +409,7 @@ public class PostService {
     public List<Post> findRecentPosts(int days, int limit) {
         try {
             LocalDateTime dateFrom = LocalDateTime.now().minusDays(days);
-            List<Post> posts = postRepository.findRecentPosts(dateFrom);
-            return posts.stream().limit(limit).toList();
+            return postRepository.findRecentPosts(dateFrom, PageRequest.of(0, limit));
         } catch (Exception e) {
             System.out.println("Error finding recent posts: " + e.getMessage());
             return new ArrayList<>();
@@ -372,8 +436,7 @@ public class PostService {
     @Transactional(readOnly = true)
     public List<Post> findFeaturedPosts(int limit) {
         try {
-            List<Post> featured = postRepository.findFeaturedAndPinnedPosts();
-            return featured.stream().limit(limit).toList();
+            return postRepository.findFeaturedAndPinnedPosts(PageRequest.of(0, limit));
         } catch (Exception e) {
             System.out.println("Error finding featured posts: " + e.getMessage());
             return new ArrayList<>();
@@ -395,7 +458,7 @@ public class PostService {
                 return new ArrayList<>();
             }
             
-            return postRepository.searchPostsInCategory(searchTerm.trim(), category);
+            return postRepository.searchPostsInCategory(searchTerm.trim(), category, PageRequest.of(0, SEARCH_LIMIT));
         } catch (Exception e) {
             System.out.println("Error searching posts in category: " + e.getMessage());
             return new ArrayList<>();
@@ -413,6 +476,7 @@ public class PostService {
             // Implementazione semplificata - in un sistema reale useresti una tabella separata
             post.incrementLikeCount();
             postRepository.save(post);
+            postRankingService.recordEvent(postId, PostRankingService.Event.LIKE);
             
             return new PostLikeResult(true, post.getLikeCount());
         } catch (Exception e) {
@@ -461,15 +525,11 @@ public class PostService {
             
             stats.setViewCount(post.getViewCount());
             stats.setLikeCount(post.getLikeCount());
-            stats.setCommentCount(commentRepository.countByPost(post));
+            stats.setCommentCount(post.getCommentCount());
             
             // Commenti recenti (ultima settimana)
             LocalDateTime oneWeekAgo = LocalDateTime.now().minusWeeks(1);
-            List<Comment> recentComments = commentRepository.findByPostOrderByCreatedDateDesc(post)
-                    .stream()
-                    .filter(c -> c.getCreatedDate().isAfter(oneWeekAgo))
-                    .toList();
-            stats.setRecentCommentCount(recentComments.size());
+            stats.setRecentCommentCount(commentRepository.countByPostCreatedAfter(post, oneWeekAgo));
             
             return stats;
         } catch (Exception e) {
@@ -524,13 +584,10 @@ public class PostService {
         try {
             GlobalPostStatistics stats = new GlobalPostStatistics();
             
-            stats.setTotalPosts(postRepository.count());
-            
-            // Post per tipo
-            for (Post.PostType type : Post.PostType.values()) {
-                long count = postRepository.findByPostType(type).size();
-                stats.getPostsByType().put(type, count);
-            }
+            // Post per tipo (una query), il totale e' la somma
+            Map<Post.PostType, Long> postsByType = postRepository.countPerPostType();
+            stats.getPostsByType().putAll(postsByType);
+            stats.setTotalPosts(GroupedCounts.sum(postsByType));
             
             // Post dell'ultimo mese
             LocalDateTime oneMonthAgo = LocalDateTime.now().minusMonths(1);
@@ -543,6 +600,51 @@ public class PostService {
         }
     }
 
+    /**
+     * Migrazione: sposta un blocco di post dalla vecchia colonna post.content a post_body.
+     * Ritorna il numero di post spostati (0 = finito); il rendering lo fa renderPendingChunk.
+     */
+    @SuppressWarnings("unchecked")
+    public int migrateLegacyContentChunk(int limit) {
+        List<Object[]> rows = entityManager.createNativeQuery(
+                "SELECT id, content FROM post WHERE body_id IS NULL AND content IS NOT NULL ORDER BY id")
+                .setMaxResults(limit)
+                .getResultList();
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        List<Long> postIds = new ArrayList<>();
+        for (Object[] row : rows) {
+            Long postId = ((Number) row[0]).longValue();
+            Post post = postRepository.findById(postId)
+                    .orElseThrow(() -> new RuntimeException("Post not found"));
+            post.setBody(new PostBody((String) row[1]));
+            postIds.add(postId);
+        }
+        entityManager.flush();
+
+        entityManager.createNativeQuery("UPDATE post SET content = NULL WHERE id IN :ids")
+                .setParameter("ids", postIds)
+                .executeUpdate();
+        return rows.size();
+    }
+
+    /**
+     * Backfill: calcola estratto, HTML e hash per un blocco di post che non li hanno ancora.
+     * Ritorna l'ultimo id elaborato (null = finito)
+     */
+    public Long renderPendingChunk(Long afterId, int limit) {
+        List<Post> posts = postRepository.findPostsToRender(afterId, PageRequest.of(0, limit));
+        if (posts.isEmpty()) {
+            return null;
+        }
+        for (Post post : posts) {
+            postContentRenderer.render(post);
+        }
+        return posts.get(posts.size() - 1).getId();
+    }
+
     /**
      * Verifica se l'utente può modificare il post
      */
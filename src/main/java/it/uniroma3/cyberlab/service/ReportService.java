@@ -1,24 +1,58 @@
 package it.uniroma3.cyberlab.service;
 
 import it.uniroma3.cyberlab.entity.*;
+import it.uniroma3.cyberlab.entity.ReportCase.TargetType;
+import it.uniroma3.cyberlab.repository.ReportCaseRepository;
 import it.uniroma3.cyberlab.repository.ReportRepository;
 import it.uniroma3.cyberlab.repository.PostRepository;
 import it.uniroma3.cyberlab.repository.CommentRepository;
 import it.uniroma3.cyberlab.repository.UserRepository;
+import it.uniroma3.cyberlab.service.ContentVersionService.Region;
+import it.uniroma3.cyberlab.util.GroupedCounts;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 
+/**
+ * Segnalazioni raggruppate in casi: un caso per contenuto segnalato, una segnalazione per utente.
+ * Le nuove segnalazioni prendono il lock sulla riga del caso, aggiornano contatori e istogramma
+ * e valutano la soglia di blocco automatico dei post; gli admin chiudono il caso in blocco.
+ */
 @Service
 @Transactional
 public class ReportService {
 
+    private static final List<Report.ReportStatus> OPEN_STATUSES = List.of(
+            Report.ReportStatus.PENDING, Report.ReportStatus.UNDER_REVIEW, Report.ReportStatus.ESCALATED);
+
+    private static final String CONTENT_DELETED = "Content deleted";
+
     @Autowired
     private ReportRepository reportRepository;
     
+    @Autowired
+    private ReportCaseRepository reportCaseRepository;
+    
     @Autowired
     private PostRepository postRepository;
     
@@ -27,32 +61,43 @@ public class ReportService {
     
     @Autowired
     private UserRepository userRepository;
+    
+    @Autowired
+    private PostRankingService postRankingService;
+    
+    @Autowired
+    private ContentVersionService contentVersionService;
+    
+    @Autowired
+    private BulkInsertService bulkInsertService;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Value("${cyberlab.reports.auto-lock-threshold:5}")
+    private int autoLockThreshold;
 
     /**
-     * Crea segnalazione per post
+     * Crea segnalazione per post (al superamento della soglia il post viene bloccato)
      */
     public Report reportPost(Long postId, User reportedBy, Report.ReportReason reason, String details) {
         Post post = postRepository.findById(postId)
                 .orElseThrow(() -> new RuntimeException("Post not found"));
         
-        // Controlla se già segnalato da questo utente
-        boolean alreadyReported = reportRepository.existsByPostAndReportedBy(post, reportedBy);
-        if (alreadyReported) {
-            throw new RuntimeException("You have already reported this post");
+        if (post.isOwnedBy(reportedBy)) {
+            throw new RuntimeException("You cannot report your own post");
         }
         
-        Report report = new Report();
-        report.setPost(post);
-        report.setReportedBy(reportedBy);
-        report.setReason(reason);
+        Report report = new Report(post, reportedBy, reason);
         report.setAdditionalDetails(details);
-        report.setStatus(Report.ReportStatus.PENDING);
         
-        Report savedReport = reportRepository.save(report);
+        ReportCase reportCase = lockCase(TargetType.POST, postId);
+        Report savedReport = fileReport(reportCase, report, "post");
         
-        // Incrementa contatore segnalazioni nel post
-        post.incrementReportCount();
-        postRepository.save(post);
+        // Contatore sul post con UPDATE atomico: il post caricato non viene riscritto
+        postRepository.adjustReportCount(postId, 1);
+        postRankingService.recordEvent(postId, PostRankingService.Event.REPORT);
+        applyAutoLock(reportCase, post);
         
         return savedReport;
     }
@@ -64,24 +109,16 @@ public class ReportService {
         Comment comment = commentRepository.findById(commentId)
                 .orElseThrow(() -> new RuntimeException("Comment not found"));
         
-        // Controlla se già segnalato da questo utente
-        boolean alreadyReported = reportRepository.existsByCommentAndReportedBy(comment, reportedBy);
-        if (alreadyReported) {
-            throw new RuntimeException("You have already reported this comment");
+        if (comment.isOwnedBy(reportedBy)) {
+            throw new RuntimeException("You cannot report your own comment");
         }
         
-        Report report = new Report();
-        report.setComment(comment);
-        report.setReportedBy(reportedBy);
-        report.setReason(reason);
-        report.setAdditionalDetails(details);
-        report.setStatus(Report.ReportStatus.PENDING);
+        Report report = new Report(comment, reportedBy, reason, details);
         
-        Report savedReport = reportRepository.save(report);
+        ReportCase reportCase = lockCase(TargetType.COMMENT, commentId);
+        Report savedReport = fileReport(reportCase, report, "comment");
         
-        // Incrementa contatore segnalazioni nel commento
-        comment.incrementReportCount();
-        commentRepository.save(comment);
+        commentRepository.adjustReportCount(commentId, 1);
         
         return savedReport;
     }
@@ -98,20 +135,396 @@ public class ReportService {
             throw new RuntimeException("You cannot report yourself");
         }
         
-        // Controlla se già segnalato da questo utente
-        boolean alreadyReported = reportRepository.existsByReportedUserAndReportedBy(reportedUser, reportedBy);
-        if (alreadyReported) {
-            throw new RuntimeException("You have already reported this user");
+        Report report = new Report(reportedUser, reportedBy, reason);
+        report.setAdditionalDetails(details);
+        
+        ReportCase reportCase = lockCase(TargetType.USER, userId);
+        return fileReport(reportCase, report, "user");
+    }
+
+    /**
+     * Segnalazioni in blocco (es. import): un lock e una query per i doppioni per ogni caso, insert in batch JDBC
+     * e contatori dei contenuti aggiornati con un UPDATE per contenuto. Doppioni e segnalazioni sui propri
+     * contenuti vengono scartati; ritorna il numero di segnalazioni inserite
+     */
+    public int fileReports(List<Report> reports) {
+        // Casi bloccati sempre nello stesso ordine (tipo, id): niente deadlock tra import concorrenti
+        Map<TargetType, TreeMap<Long, List<Report>>> byTarget = new EnumMap<>(TargetType.class);
+        for (Report report : reports) {
+            User reportedBy = report.getReportedBy();
+            if (reportedBy == null || report.getReason() == null) {
+                throw new IllegalArgumentException("Report must have a reporter and a reason");
+            }
+            
+            TargetType targetType;
+            Long targetId;
+            boolean ownContent;
+            if (report.getPost() != null) {
+                targetType = TargetType.POST;
+                targetId = report.getPost().getId();
+                ownContent = report.getPost().isOwnedBy(reportedBy);
+            } else if (report.getComment() != null) {
+                targetType = TargetType.COMMENT;
+                targetId = report.getComment().getId();
+                ownContent = report.getComment().isOwnedBy(reportedBy);
+            } else if (report.getReportedUser() != null) {
+                targetType = TargetType.USER;
+                targetId = report.getReportedUser().getId();
+                ownContent = targetId.equals(reportedBy.getId());
+            } else {
+                throw new IllegalArgumentException("Report must target a post, a comment or a user");
+            }
+            
+            if (!ownContent) {
+                byTarget.computeIfAbsent(targetType, type -> new TreeMap<>())
+                        .computeIfAbsent(targetId, id -> new ArrayList<>()).add(report);
+            }
         }
         
-        Report report = new Report();
-        report.setReportedUser(reportedUser);
-        report.setReportedBy(reportedBy);
-        report.setReason(reason);
-        report.setAdditionalDetails(details);
+        List<Report> toInsert = new ArrayList<>();
+        for (Map.Entry<TargetType, TreeMap<Long, List<Report>>> typeEntry : byTarget.entrySet()) {
+            TargetType targetType = typeEntry.getKey();
+            for (Map.Entry<Long, List<Report>> targetEntry : typeEntry.getValue().entrySet()) {
+                Long targetId = targetEntry.getKey();
+                List<Report> targetReports = targetEntry.getValue();
+                
+                ReportCase reportCase = lockCase(targetType, targetId);
+                Set<Long> reporters = new HashSet<>(reportRepository.findReporterIdsForCase(reportCase.getId(),
+                        targetReports.stream().map(report -> report.getReportedBy().getId()).toList()));
+                
+                int filed = 0;
+                for (Report report : targetReports) {
+                    if (!reporters.add(report.getReportedBy().getId())) {
+                        continue;
+                    }
+                    report.setReportCase(reportCase);
+                    report.setStatus(Report.ReportStatus.PENDING);
+                    reportCase.addReport(report.getReason(), report.getCreatedDate());
+                    toInsert.add(report);
+                    filed++;
+                }
+                if (filed == 0) {
+                    continue;
+                }
+                
+                if (targetType == TargetType.POST) {
+                    postRepository.adjustReportCount(targetId, filed);
+                    for (int i = 0; i < filed; i++) {
+                        postRankingService.recordEvent(targetId, PostRankingService.Event.REPORT);
+                    }
+                    applyAutoLock(reportCase, targetReports.get(0).getPost());
+                } else if (targetType == TargetType.COMMENT) {
+                    commentRepository.adjustReportCount(targetId, filed);
+                }
+            }
+        }
+        
+        // I casi vanno aggiornati prima: persistAll svuota il persistence context dopo ogni batch
+        return bulkInsertService.persistAll(toInsert);
+    }
+
+    /**
+     * Aggiunge la segnalazione al caso (gia' bloccato): una sola per utente
+     */
+    private Report fileReport(ReportCase reportCase, Report report, String targetName) {
+        if (reportRepository.existsByReportCaseIdAndReportedById(reportCase.getId(), report.getReportedBy().getId())) {
+            throw new RuntimeException("You have already reported this " + targetName);
+        }
+        
+        report.setReportCase(reportCase);
         report.setStatus(Report.ReportStatus.PENDING);
+        Report savedReport = reportRepository.save(report);
         
-        return reportRepository.save(report);
+        reportCase.addReport(report.getReason(), savedReport.getCreatedDate());
+        return savedReport;
+    }
+
+    /**
+     * Caso del contenuto con lock in scrittura, creato in una transazione separata se non esiste
+     */
+    private ReportCase lockCase(TargetType targetType, Long targetId) {
+        Optional<ReportCase> existing = reportCaseRepository.findByTargetForUpdate(targetType, targetId);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+        
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    reportCaseRepository.save(new ReportCase(targetType, targetId)));
+        } catch (DataIntegrityViolationException e) {
+            // Creato nel frattempo da un'altra segnalazione sullo stesso contenuto
+        }
+        return reportCaseRepository.findByTargetForUpdate(targetType, targetId)
+                .orElseThrow(() -> new RuntimeException("Report case not found"));
+    }
+
+    /**
+     * Blocca il post quando le segnalazioni aperte raggiungono la soglia (0 = disattivato)
+     */
+    private void applyAutoLock(ReportCase reportCase, Post post) {
+        if (autoLockThreshold <= 0 || reportCase.isAutoLocked() || post.isLocked()
+                || reportCase.getOpenReports() < autoLockThreshold) {
+            return;
+        }
+        postRepository.updateLocked(post.getId(), true);
+        reportCase.setAutoLocked(true);
+        contentVersionService.markChanged(Region.POSTS);
+        System.out.println("⚠️ Post " + post.getId() + " locked automatically after "
+                + reportCase.getOpenReports() + " reports");
+    }
+
+    // =============================================================================
+    // CASI
+    // =============================================================================
+
+    /**
+     * Trova caso per ID
+     */
+    @Transactional(readOnly = true)
+    public ReportCase findCaseById(Long caseId) {
+        return reportCaseRepository.findById(caseId)
+                .orElseThrow(() -> new RuntimeException("Report case not found"));
+    }
+
+    /**
+     * Coda dei casi: OPEN (default), ALL o uno stato specifico
+     */
+    @Transactional(readOnly = true)
+    public Page<ReportCase> findCases(String statusFilter, Pageable pageable) {
+        return reportCaseRepository.findQueue(parseStatusFilter(statusFilter), pageable);
+    }
+
+    /**
+     * Ultime segnalazioni di un caso (pagina)
+     */
+    @Transactional(readOnly = true)
+    public Page<Report> findCaseReports(Long caseId, Pageable pageable) {
+        return reportRepository.findByCaseId(caseId, pageable);
+    }
+
+    /**
+     * Risolve il caso: tutte le segnalazioni aperte vengono chiuse in un solo UPDATE
+     */
+    public ReportCase resolveCase(Long caseId, User admin, String resolution) {
+        if (!admin.isAdmin()) {
+            throw new SecurityException("Only admins can resolve reports");
+        }
+        
+        ReportCase reportCase = lockCaseById(caseId);
+        reportRepository.closeOpenReports(caseId, Report.ReportStatus.RESOLVED, admin, resolution, LocalDateTime.now());
+        reportCase.close(Report.ReportStatus.RESOLVED, admin, resolution);
+        return reportCase;
+    }
+
+    /**
+     * Rifiuta il caso: contatori del contenuto azzerati e blocco automatico rimosso
+     */
+    public ReportCase dismissCase(Long caseId, User admin, String reason) {
+        if (!admin.isAdmin()) {
+            throw new SecurityException("Only admins can dismiss reports");
+        }
+        
+        ReportCase reportCase = lockCaseById(caseId);
+        int openReports = reportCase.getOpenReports();
+        reportRepository.closeOpenReports(caseId, Report.ReportStatus.DISMISSED, admin, reason, LocalDateTime.now());
+        
+        if (openReports > 0) {
+            if (reportCase.getTargetType() == TargetType.POST) {
+                postRepository.adjustReportCount(reportCase.getTargetId(), -openReports);
+            } else if (reportCase.getTargetType() == TargetType.COMMENT) {
+                commentRepository.adjustReportCount(reportCase.getTargetId(), -openReports);
+            }
+        }
+        if (reportCase.isAutoLocked() && reportCase.getTargetType() == TargetType.POST) {
+            postRepository.updateLocked(reportCase.getTargetId(), false);
+            reportCase.setAutoLocked(false);
+            contentVersionService.markChanged(Region.POSTS);
+        }
+        
+        reportCase.close(Report.ReportStatus.DISMISSED, admin, reason);
+        return reportCase;
+    }
+
+    /**
+     * Porta il caso all'attenzione di un livello superiore (resta aperto)
+     */
+    public ReportCase escalateCase(Long caseId, User admin, String notes) {
+        if (!admin.isAdmin()) {
+            throw new SecurityException("Only admins can escalate reports");
+        }
+        
+        ReportCase reportCase = lockCaseById(caseId);
+        if (!reportCase.isOpen()) {
+            throw new RuntimeException("Report case is already closed");
+        }
+        reportRepository.escalateOpenReports(caseId, admin, notes, LocalDateTime.now());
+        reportCase.setStatus(Report.ReportStatus.ESCALATED);
+        return reportCase;
+    }
+
+    /**
+     * Statistiche dei casi
+     */
+    @Transactional(readOnly = true)
+    public CaseStatistics getCaseStatistics() {
+        Map<Report.ReportStatus, Long> counts = reportCaseRepository.countPerStatus();
+        long open = OPEN_STATUSES.stream().mapToLong(counts::get).sum();
+        return new CaseStatistics(GroupedCounts.sum(counts), open,
+                counts.get(Report.ReportStatus.RESOLVED),
+                counts.get(Report.ReportStatus.DISMISSED));
+    }
+
+    /**
+     * Riepiloghi per la coda: i contenuti segnalati vengono caricati con una query per tipo
+     */
+    @Transactional(readOnly = true)
+    public List<CaseSummary> summarize(List<ReportCase> cases) {
+        Map<TargetType, Set<Long>> idsByType = new EnumMap<>(TargetType.class);
+        for (ReportCase reportCase : cases) {
+            idsByType.computeIfAbsent(reportCase.getTargetType(), type -> new HashSet<>()).add(reportCase.getTargetId());
+        }
+        
+        Map<Long, Post> posts = new HashMap<>();
+        postRepository.findAllById(idsByType.getOrDefault(TargetType.POST, Set.of()))
+                .forEach(post -> posts.put(post.getId(), post));
+        Map<Long, Comment> comments = new HashMap<>();
+        commentRepository.findAllById(idsByType.getOrDefault(TargetType.COMMENT, Set.of()))
+                .forEach(comment -> comments.put(comment.getId(), comment));
+        Map<Long, User> users = new HashMap<>();
+        userRepository.findAllById(idsByType.getOrDefault(TargetType.USER, Set.of()))
+                .forEach(user -> users.put(user.getId(), user));
+        
+        List<CaseSummary> summaries = new ArrayList<>(cases.size());
+        for (ReportCase reportCase : cases) {
+            Long targetId = reportCase.getTargetId();
+            String label = "Deleted content";
+            String contentUrl = null;
+            switch (reportCase.getTargetType()) {
+                case POST -> {
+                    Post post = posts.get(targetId);
+                    if (post != null) {
+                        label = "Post: " + post.getTitle();
+                        contentUrl = "/posts/" + targetId;
+                    }
+                }
+                case COMMENT -> {
+                    Comment comment = comments.get(targetId);
+                    if (comment != null) {
+                        String content = comment.getContent();
+                        label = "Comment: " + (content.length() > 80 ? content.substring(0, 80) + "..." : content);
+                        contentUrl = "/posts/" + comment.getPost().getId() + "#comment-" + targetId;
+                    }
+                }
+                case USER -> {
+                    User user = users.get(targetId);
+                    if (user != null) {
+                        label = "User: " + user.getUsername();
+                    }
+                }
+            }
+            summaries.add(new CaseSummary(reportCase, label, contentUrl));
+        }
+        return summaries;
+    }
+
+    /**
+     * Segnalazioni in eliminazione (es. cancellazione account): i casi coinvolti vengono aggiornati,
+     * con i lock presi in ordine di id
+     */
+    public void onReportsDeleted(Collection<Long> reportIds) {
+        Map<Long, List<Object[]>> entriesByCase = new TreeMap<>();
+        for (Object[] row : reportRepository.findCaseEntriesForIds(reportIds)) {
+            entriesByCase.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add(row);
+        }
+        
+        for (Map.Entry<Long, List<Object[]>> entry : entriesByCase.entrySet()) {
+            reportCaseRepository.findByIdForUpdate(entry.getKey()).ifPresent(reportCase -> {
+                for (Object[] row : entry.getValue()) {
+                    reportCase.removeReport((Report.ReportReason) row[1],
+                            ReportCase.isOpenStatus((Report.ReportStatus) row[2]));
+                }
+            });
+        }
+    }
+
+    /**
+     * Post eliminato con i commenti e le segnalazioni: i casi aperti sul post e sui suoi commenti vengono chiusi.
+     * Va chiamato prima di eliminare i commenti
+     */
+    public void onPostDeleted(Long postId) {
+        LocalDateTime now = LocalDateTime.now();
+        reportCaseRepository.closeOpenForTargets(TargetType.POST, List.of(postId), CONTENT_DELETED, now);
+        reportCaseRepository.closeOpenForCommentsOfPost(postId, CONTENT_DELETED, now);
+    }
+    
+    /**
+     * Commenti eliminati con le segnalazioni: i casi aperti su di essi vengono chiusi
+     */
+    public void onCommentsDeleted(Collection<Long> commentIds) {
+        reportCaseRepository.closeOpenForTargets(TargetType.COMMENT, commentIds, CONTENT_DELETED, LocalDateTime.now());
+    }
+
+    /**
+     * Account cancellato: il caso sull'utente sparisce, i casi gestiti perdono il riferimento all'admin
+     */
+    public void onUserErased(Long userId) {
+        reportCaseRepository.deleteByTarget(TargetType.USER, userId);
+        reportCaseRepository.clearResolver(userId);
+    }
+
+    /**
+     * Migrazione: assegna ai casi un blocco di segnalazioni precedenti; i doppioni dello stesso utente
+     * vengono rifiutati. Ritorna il cursore per il blocco successivo, null a fine migrazione
+     */
+    public Long migrateLegacyChunk(Long afterId, int limit) {
+        List<Report> reports = reportRepository.findWithoutCaseAfter(afterId, PageRequest.of(0, limit));
+        if (reports.isEmpty()) {
+            return null;
+        }
+        
+        for (Report report : reports) {
+            ReportCase reportCase;
+            if (report.getPost() != null) {
+                reportCase = lockCase(TargetType.POST, report.getPost().getId());
+            } else if (report.getComment() != null) {
+                reportCase = lockCase(TargetType.COMMENT, report.getComment().getId());
+            } else if (report.getReportedUser() != null) {
+                reportCase = lockCase(TargetType.USER, report.getReportedUser().getId());
+            } else {
+                continue;
+            }
+            
+            if (reportRepository.existsByReportCaseIdAndReportedById(reportCase.getId(), report.getReportedBy().getId())) {
+                if (ReportCase.isOpenStatus(report.getStatus())) {
+                    report.dismiss(null, "Duplicate report");
+                }
+                continue;
+            }
+            report.setReportCase(reportCase);
+            reportCase.attachExisting(report);
+        }
+        return reports.get(reports.size() - 1).getId();
+    }
+
+    private ReportCase lockCaseById(Long caseId) {
+        return reportCaseRepository.findByIdForUpdate(caseId)
+                .orElseThrow(() -> new RuntimeException("Report case not found"));
+    }
+
+    private static List<Report.ReportStatus> parseStatusFilter(String statusFilter) {
+        if (statusFilter == null || statusFilter.isBlank() || "OPEN".equalsIgnoreCase(statusFilter)) {
+            return OPEN_STATUSES;
+        }
+        if ("ALL".equalsIgnoreCase(statusFilter)) {
+            return List.of(Report.ReportStatus.values());
+        }
+        try {
+            return List.of(Report.ReportStatus.valueOf(statusFilter.toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            return OPEN_STATUSES;
+        }
     }
 
     /**
@@ -133,10 +546,11 @@ public class ReportService {
         
         Report report = findById(reportId);
         
-        report.setStatus(Report.ReportStatus.RESOLVED);
-        report.setResolvedBy(admin);
-        report.setResolution(resolution);
-        report.setResolvedDate(LocalDateTime.now());
+        // Le segnalazioni si gestiscono per caso: si chiudono anche quelle degli altri utenti
+        if (report.getReportCase() != null) {
+            resolveCase(report.getReportCase().getId(), admin, resolution);
+        }
+        report.resolve(admin, resolution);
         
         return reportRepository.save(report);
     }
@@ -151,10 +565,28 @@ public class ReportService {
         
         Report report = findById(reportId);
         
-        report.setStatus(Report.ReportStatus.DISMISSED);
-        report.setResolvedBy(admin);
-        report.setResolution(reason);
-        report.setResolvedDate(LocalDateTime.now());
+        if (report.getReportCase() != null) {
+            dismissCase(report.getReportCase().getId(), admin, reason);
+        }
+        report.dismiss(admin, reason);
+        
+        return reportRepository.save(report);
+    }
+
+    /**
+     * Escalate segnalazione (e del suo caso)
+     */
+    public Report escalateReport(Long reportId, User admin, String notes) {
+        if (!admin.isAdmin()) {
+            throw new SecurityException("Only admins can escalate reports");
+        }
+        
+        Report report = findById(reportId);
+        
+        if (report.getReportCase() != null) {
+            escalateCase(report.getReportCase().getId(), admin, notes);
+        }
+        report.escalate(admin, notes);
         
         return reportRepository.save(report);
     }
@@ -163,32 +595,32 @@ public class ReportService {
      * Trova segnalazioni in sospeso
      */
     @Transactional(readOnly = true)
-    public List<Report> findPendingReports() {
-        return reportRepository.findByStatusOrderByCreatedDateAsc(Report.ReportStatus.PENDING);
+    public List<Report> findPendingReports(int limit) {
+        return reportRepository.findByStatusOrderByCreatedDateAsc(Report.ReportStatus.PENDING, PageRequest.of(0, limit));
     }
 
     /**
      * Trova segnalazioni per stato
      */
     @Transactional(readOnly = true)
-    public List<Report> findReportsByStatus(Report.ReportStatus status) {
-        return reportRepository.findByStatusOrderByCreatedDateDesc(status);
+    public List<Report> findReportsByStatus(Report.ReportStatus status, int limit) {
+        return reportRepository.findByStatusOrderByCreatedDateDesc(status, PageRequest.of(0, limit));
     }
 
     /**
      * Trova segnalazioni per utente (che ha fatto le segnalazioni)
      */
     @Transactional(readOnly = true)
-    public List<Report> findReportsByUser(User user) {
-        return reportRepository.findByReportedByOrderByCreatedDateDesc(user);
+    public List<Report> findReportsByUser(User user, int limit) {
+        return reportRepository.findByReportedByOrderByCreatedDateDesc(user, PageRequest.of(0, limit));
     }
 
     /**
      * Trova segnalazioni contro un utente
      */
     @Transactional(readOnly = true)
-    public List<Report> findReportsAgainstUser(User user) {
-        return reportRepository.findByReportedUserOrderByCreatedDateDesc(user);
+    public List<Report> findReportsAgainstUser(User user, int limit) {
+        return reportRepository.findByReportedUserOrderByCreatedDateDesc(user, PageRequest.of(0, limit));
     }
 
     /**
@@ -200,6 +632,7 @@ public class ReportService {
         }
         
         Report report = findById(reportId);
+        onReportsDeleted(List.of(reportId));
         reportRepository.delete(report);
     }
 
@@ -208,12 +641,12 @@ public class ReportService {
      */
     @Transactional(readOnly = true)
     public ReportStatistics getReportStatistics() {
-        long totalReports = reportRepository.count();
-        long pendingReports = reportRepository.countByStatus(Report.ReportStatus.PENDING);
-        long resolvedReports = reportRepository.countByStatus(Report.ReportStatus.RESOLVED);
-        long dismissedReports = reportRepository.countByStatus(Report.ReportStatus.DISMISSED);
+        Map<Report.ReportStatus, Long> counts = reportRepository.countPerStatus();
         
-        return new ReportStatistics(totalReports, pendingReports, resolvedReports, dismissedReports);
+        return new ReportStatistics(GroupedCounts.sum(counts),
+                counts.get(Report.ReportStatus.PENDING),
+                counts.get(Report.ReportStatus.RESOLVED),
+                counts.get(Report.ReportStatus.DISMISSED));
     }
 
     /**
@@ -236,8 +669,7 @@ public class ReportService {
     @Transactional(readOnly = true)
     public List<Report> findRecentReports(int days, int limit) {
         LocalDateTime dateFrom = LocalDateTime.now().minusDays(days);
-        List<Report> reports = reportRepository.findByCreatedDateAfterOrderByCreatedDateDesc(dateFrom);
-        return reports.stream().limit(limit).toList();
+        return reportRepository.findByCreatedDateAfterOrderByCreatedDateDesc(dateFrom, PageRequest.of(0, limit));
     }
 
     /**
@@ -308,4 +740,57 @@ public class ReportService {
         public long getReportsThisWeek() { return reportsThisWeek; }
         public long getReportsThisMonth() { return reportsThisMonth; }
     }
-}
\ No newline at end of file
+
+    /**
+     * DTO per statistiche dei casi
+     */
+    public static class CaseStatistics {
+        private final long totalCases;
+        private final long openCases;
+        private final long resolvedCases;
+        private final long dismissedCases;
+        
+        public CaseStatistics(long totalCases, long openCases, long resolvedCases, long dismissedCases) {
+            this.totalCases = totalCases;
+            this.openCases = openCases;
+            this.resolvedCases = resolvedCases;
+            this.dismissedCases = dismissedCases;
+        }
+        
+        // Getters
+        public long getTotalCases() { return totalCases; }
+        public long getOpenCases() { return openCases; }
+        public long getResolvedCases() { return resolvedCases; }
+        public long getDismissedCases() { return dismissedCases; }
+    }
+
+    /**
+     * DTO per la coda di moderazione: caso, contenuto segnalato e istogramma dei motivi
+     */
+    public static class CaseSummary {
+        private final ReportCase reportCase;
+        private final String targetLabel;
+        private final String contentUrl;
+        private final Map<Report.ReportReason, Integer> reasonHistogram;
+        
+        public CaseSummary(ReportCase reportCase, String targetLabel, String contentUrl) {
+            this.reportCase = reportCase;
+            this.targetLabel = targetLabel;
+            this.contentUrl = contentUrl;
+            this.reasonHistogram = reportCase.getReasonHistogram();
+        }
+        
+        // Getters
+        public ReportCase getReportCase() { return reportCase; }
+        public String getTargetLabel() { return targetLabel; }
+        public String getContentUrl() { return contentUrl; }
+        public Map<Report.ReportReason, Integer> getReasonHistogram() { return reasonHistogram; }
+        
+        public Report.ReportReason getTopReason() {
+            return reasonHistogram.entrySet().stream()
+                    .max(Map.Entry.comparingByValue())
+                    .map(Map.Entry::getKey)
+                    .orElse(null);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package it.uniroma3.cyberlab.service;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+
+/**
+ * Elimina le sessioni scadute dalla tabella spring_session a blocchi, una transazione breve per blocco,
+ * invece della singola DELETE di Spring Session (disattivata con spring.session.jdbc.cleanup-cron=-)
+ * che dopo un picco di sessioni blocca la tabella a lungo. Gli attributi seguono con ON DELETE CASCADE.
+ * Con Redis (profilo session-redis) la scadenza la gestisce Redis e qui non si fa nulla.
+ * Niente @Transactional di classe: ogni DELETE e' una transazione a se'.
+ */
+@Service
+public class SessionCleanupService {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private ObjectProvider<JdbcIndexedSessionRepository> jdbcSessionRepository;
+
+    @Value("${spring.session.jdbc.table-name:SPRING_SESSION}")
+    private String tableName;
+
+    @Value("${cyberlab.sessions.cleanup-batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Esecuzione periodica (di default ogni minuto, come la pulizia standard di Spring Session)
+     */
+    @Scheduled(cron = "${cyberlab.sessions.cleanup-cron:0 * * * * *}")
+    public void cleanupScheduled() {
+        if (jdbcSessionRepository.getIfAvailable() == null) {
+            return;
+        }
+        int deleted = cleanupExpiredSessions(System.currentTimeMillis());
+        if (deleted > 0) {
+            System.out.println("✅ Expired sessions removed: " + deleted);
+        }
+    }
+
+    /**
+     * Elimina le sessioni con expiry_time precedente a now; ritorna il numero di sessioni eliminate
+     */
+    public int cleanupExpiredSessions(long now) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        String sql = "DELETE FROM " + tableName + " WHERE PRIMARY_ID IN (SELECT PRIMARY_ID FROM " + tableName
+                + " WHERE EXPIRY_TIME < ? LIMIT ?)";
+
+        int total = 0;
+        int deleted;
+        do {
+            deleted = jdbcTemplate.update(sql, now, batchSize);
+            total += deleted;
+        } while (deleted == batchSize);
+        return total;
+    }
+}
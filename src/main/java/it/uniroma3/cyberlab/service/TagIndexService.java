@@ -0,0 +1,246 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.repository.TagRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Indice in memoria dei tag: post per tag, tag per post e co-occorrenze tra coppie di tag.
+ * Costruito all'avvio dalla tabella post_tag e aggiornato da TagService dopo ogni commit.
+ */
+@Service
+public class TagIndexService {
+
+    // Tag molto diffusi non discriminano tra i post: oltre questa soglia non vengono scansionati
+    private static final int MAX_POSTINGS_SCAN = 5000;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    // Un'unica istanza per nome di tag, condivisa da indice, entita' e servizi
+    private final Map<String, String> names = new ConcurrentHashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Set<Long>> postsByTag = new HashMap<>();
+    private final Map<Long, Set<String>> tagsByPost = new HashMap<>();
+    private final Map<String, Map<String, Integer>> cooccurrence = new HashMap<>();
+    private volatile boolean ready = false;
+
+    /**
+     * Carica l'indice dopo l'avvio (e dopo le migrazioni)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        List<Object[]> pairs = tagRepository.findAllPostTagPairs();
+
+        Map<Long, Set<String>> loaded = new HashMap<>();
+        for (Object[] row : pairs) {
+            Long postId = (Long) row[0];
+            String name = (String) row[2];
+            loaded.computeIfAbsent(postId, id -> new HashSet<>()).add(intern(name));
+        }
+
+        lock.writeLock().lock();
+        try {
+            postsByTag.clear();
+            tagsByPost.clear();
+            cooccurrence.clear();
+            loaded.forEach(this::addPostLocked);
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        System.out.println("✅ Tag index built: " + loaded.size() + " posts, " + postsByTag.size()
+                + " tags in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    /**
+     * Sostituisce i tag di un post nell'indice
+     */
+    public void updatePost(Long postId, Collection<String> tags) {
+        lock.writeLock().lock();
+        try {
+            removePostLocked(postId);
+            if (!tags.isEmpty()) {
+                addPostLocked(postId, new HashSet<>(tags));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void removePost(Long postId) {
+        lock.writeLock().lock();
+        try {
+            removePostLocked(postId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Istanza canonica del nome di tag (gia' normalizzato). Solo per i tag salvati:
+     * le ricerche usano lookup, altrimenti ogni URL inventato resterebbe in memoria.
+     */
+    public String intern(String name) {
+        String existing = names.putIfAbsent(name, name);
+        return existing != null ? existing : name;
+    }
+
+    /**
+     * Istanza canonica se il tag e' noto, altrimenti il nome stesso (senza registrarlo)
+     */
+    public String lookup(String name) {
+        String existing = names.get(name);
+        return existing != null ? existing : name;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Post correlati ordinati per tag condivisi, pesati con l'IDF del tag
+     * (un tag raro in comune conta piu' di uno diffuso). A parita' di punteggio vince il post piu' recente.
+     */
+    public List<Long> findRelatedPostIds(Long postId, int limit) {
+        lock.readLock().lock();
+        try {
+            Set<String> tags = tagsByPost.get(postId);
+            if (tags == null || limit <= 0) {
+                return Collections.emptyList();
+            }
+
+            double totalPosts = tagsByPost.size();
+            Map<Long, Double> scores = new HashMap<>();
+            for (String tag : tags) {
+                Set<Long> postings = postsByTag.get(tag);
+                if (postings == null || postings.size() <= 1 || postings.size() > MAX_POSTINGS_SCAN) {
+                    continue;
+                }
+                double idf = Math.log(1.0 + totalPosts / postings.size());
+                for (Long other : postings) {
+                    if (!other.equals(postId)) {
+                        scores.merge(other, idf, Double::sum);
+                    }
+                }
+            }
+            return topByScore(scores, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Tag che compaiono piu' spesso insieme al tag dato
+     */
+    public List<String> findRelatedTags(String tag, int limit) {
+        lock.readLock().lock();
+        try {
+            Map<String, Integer> counts = cooccurrence.get(tag);
+            if (counts == null || limit <= 0) {
+                return Collections.emptyList();
+            }
+            PriorityQueue<Map.Entry<String, Integer>> top = new PriorityQueue<>(
+                    (a, b) -> a.getValue().equals(b.getValue())
+                            ? b.getKey().compareTo(a.getKey()) : Integer.compare(a.getValue(), b.getValue()));
+            for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+                top.offer(entry);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+            List<String> result = new ArrayList<>(top.size());
+            while (!top.isEmpty()) {
+                result.add(top.poll().getKey());
+            }
+            Collections.reverse(result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int countPosts(String tag) {
+        lock.readLock().lock();
+        try {
+            Set<Long> postings = postsByTag.get(tag);
+            return postings != null ? postings.size() : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void addPostLocked(Long postId, Set<String> tags) {
+        tagsByPost.put(postId, tags);
+        for (String tag : tags) {
+            postsByTag.computeIfAbsent(tag, t -> new HashSet<>()).add(postId);
+            for (String other : tags) {
+                if (!other.equals(tag)) {
+                    cooccurrence.computeIfAbsent(tag, t -> new HashMap<>()).merge(other, 1, Integer::sum);
+                }
+            }
+        }
+    }
+
+    private void removePostLocked(Long postId) {
+        Set<String> tags = tagsByPost.remove(postId);
+        if (tags == null) {
+            return;
+        }
+        for (String tag : tags) {
+            Set<Long> postings = postsByTag.get(tag);
+            if (postings != null) {
+                postings.remove(postId);
+                if (postings.isEmpty()) {
+                    postsByTag.remove(tag);
+                }
+            }
+            Map<String, Integer> counts = cooccurrence.get(tag);
+            if (counts != null) {
+                for (String other : tags) {
+                    if (!other.equals(tag)) {
+                        counts.computeIfPresent(other, (key, count) -> count > 1 ? count - 1 : null);
+                    }
+                }
+                if (counts.isEmpty()) {
+                    cooccurrence.remove(tag);
+                }
+            }
+        }
+    }
+
+    private static List<Long> topByScore(Map<Long, Double> scores, int limit) {
+        PriorityQueue<Map.Entry<Long, Double>> top = new PriorityQueue<>(
+                (a, b) -> a.getValue().equals(b.getValue())
+                        ? Long.compare(a.getKey(), b.getKey()) : Double.compare(a.getValue(), b.getValue()));
+        for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+            top.offer(entry);
+            if (top.size() > limit) {
+                top.poll();
+            }
+        }
+        List<Long> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) {
+            result.add(top.poll().getKey());
+        }
+        Collections.reverse(result);
+        return result;
+    }
+}
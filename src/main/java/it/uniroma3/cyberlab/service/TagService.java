@@ -0,0 +1,182 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.Post;
+import it.uniroma3.cyberlab.entity.Tag;
+import it.uniroma3.cyberlab.repository.PostRepository;
+import it.uniroma3.cyberlab.repository.TagRepository;
+import it.uniroma3.cyberlab.util.TransactionCallbacks;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tag normalizzati dei post: parsing della colonna tags, tabella tag / post_tag e indice in memoria
+ */
+@Service
+@Transactional
+public class TagService {
+
+    public static final int MAX_TAG_LENGTH = 50;
+    public static final int MAX_TAGS_PER_POST = 20;
+
+    @Autowired
+    private TagRepository tagRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private TagIndexService tagIndexService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Forma canonica di un tag: senza '#', spazi compattati, minuscolo. Null se vuoto.
+     * Solo lettura: riusa l'istanza dell'indice se il tag esiste, senza aggiungerne di nuove.
+     */
+    public String normalize(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        String name = raw.trim();
+        while (name.startsWith("#")) {
+            name = name.substring(1).trim();
+        }
+        name = name.replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        if (name.isEmpty()) {
+            return null;
+        }
+        if (name.length() > MAX_TAG_LENGTH) {
+            name = name.substring(0, MAX_TAG_LENGTH).trim();
+        }
+        return tagIndexService.lookup(name);
+    }
+
+    /**
+     * Tag normalizzati e senza duplicati dalla stringa separata da virgole (percorso di scrittura: nomi internati)
+     */
+    public Set<String> parseTags(String tags) {
+        Set<String> names = new LinkedHashSet<>();
+        if (tags == null || tags.isBlank()) {
+            return names;
+        }
+        for (String raw : tags.split(",")) {
+            String name = normalize(raw);
+            if (name != null) {
+                names.add(tagIndexService.intern(name));
+                if (names.size() == MAX_TAGS_PER_POST) {
+                    break;
+                }
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Allinea post_tag alla colonna tags del post e aggiorna l'indice dopo il commit
+     */
+    public void syncPostTags(Post post) {
+        Set<String> names = parseTags(post.getTags());
+        Map<String, Tag> resolved = resolveTags(names);
+
+        post.getTagSet().removeIf(tag -> !names.contains(tag.getName()));
+        post.getTagSet().addAll(resolved.values());
+
+        Long postId = post.getId();
+        List<String> indexed = new ArrayList<>(names);
+        TransactionCallbacks.afterCommit(() -> tagIndexService.updatePost(postId, indexed));
+    }
+
+    /**
+     * Da chiamare quando un post viene eliminato (le righe di post_tag le rimuove Hibernate)
+     */
+    public void onPostDeleted(Long postId) {
+        TransactionCallbacks.afterCommit(() -> tagIndexService.removePost(postId));
+    }
+
+    /**
+     * Post con il tag indicato, dal piu' recente
+     */
+    @Transactional(readOnly = true)
+    public Page<Post> findPostsByTag(String tag, int page, int size) {
+        String name = normalize(tag);
+        if (name == null) {
+            return Page.empty(PageRequest.of(page, size));
+        }
+        return postRepository.findByTagName(name, PageRequest.of(page, size));
+    }
+
+    @Transactional(readOnly = true)
+    public List<String> findRelatedTags(String tag, int limit) {
+        String name = normalize(tag);
+        return name != null ? tagIndexService.findRelatedTags(name, limit) : new ArrayList<>();
+    }
+
+    /**
+     * Backfill di post_tag dalla colonna tags per un blocco di post dopo afterId.
+     * Ritorna l'ultimo id elaborato, null quando non ci sono altri post da migrare.
+     */
+    public Long backfillChunk(Long afterId, int size) {
+        List<Post> posts = postRepository.findPostsWithUnindexedTags(afterId, PageRequest.of(0, size));
+        if (posts.isEmpty()) {
+            return null;
+        }
+        for (Post post : posts) {
+            syncPostTags(post);
+        }
+        return posts.get(posts.size() - 1).getId();
+    }
+
+    private Map<String, Tag> resolveTags(Set<String> names) {
+        Map<String, Tag> resolved = new HashMap<>();
+        if (names.isEmpty()) {
+            return resolved;
+        }
+        for (Tag tag : tagRepository.findByNameIn(names)) {
+            resolved.put(tag.getName(), tag);
+        }
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            if (!resolved.containsKey(name)) {
+                createTag(name);
+                missing.add(name);
+            }
+        }
+        if (!missing.isEmpty()) {
+            for (Tag tag : tagRepository.findByNameIn(missing)) {
+                resolved.put(tag.getName(), tag);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Nuovo tag in una transazione separata: se due richieste lo creano insieme
+     * il vincolo univoco ne scarta una e l'altra riga viene riletta
+     */
+    private void createTag(String name) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transactionTemplate.executeWithoutResult(status -> tagRepository.save(new Tag(name)));
+        } catch (DataIntegrityViolationException e) {
+            // Creato nel frattempo da un'altra richiesta
+            tagRepository.findByName(name).orElseThrow(() -> e);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.User;
+import it.uniroma3.cyberlab.entity.UserPreference;
+import it.uniroma3.cyberlab.repository.UserPreferenceRepository;
+import it.uniroma3.cyberlab.repository.UserRepository;
+import it.uniroma3.cyberlab.util.TransactionCallbacks;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Preferenze utente su tabella dedicata, con cache per utente:
+ * la mappa viene letta dal DB al primo accesso e invalidata solo quando l'utente salva
+ */
+@Service
+@Transactional
+public class UserPreferenceService {
+
+    private static final int MAX_CACHED_USERS = 5000;
+    private static final int MAX_KEY_LENGTH = 60;
+    private static final int MAX_VALUE_LENGTH = 255;
+
+    private static final String PREFERENCES_MARKER = "[Preferences]";
+    private static final String AVATAR_MARKER = "[Avatar]";
+
+    public static final Map<String, String> DEFAULTS;
+    static {
+        Map<String, String> defaults = new LinkedHashMap<>();
+        defaults.put("Email Notifications", "enabled");
+        defaults.put("Lab Completion Notifications", "enabled");
+        defaults.put("Weekly Digest", "disabled");
+        defaults.put("Theme", "dark");
+        defaults.put("Language", "en");
+        defaults.put("Timezone", "Europe/Rome");
+        DEFAULTS = Collections.unmodifiableMap(defaults);
+    }
+
+    @Autowired
+    private UserPreferenceRepository userPreferenceRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    // LRU per utente: mappe immutabili, gia' completate con i default
+    private final Map<Long, Map<String, String>> cache = Collections.synchronizedMap(
+            new LinkedHashMap<>(256, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Map<String, String>> eldest) {
+                    return size() > MAX_CACHED_USERS;
+                }
+            });
+
+    // Incrementata a ogni invalidazione: una lettura iniziata prima non finisce in cache
+    private long generation = 0;
+
+    /**
+     * Preferenze dell'utente (valori salvati + default)
+     */
+    @Transactional(readOnly = true)
+    public Map<String, String> getPreferences(Long userId) {
+        long observed;
+        synchronized (cache) {
+            Map<String, String> cached = cache.get(userId);
+            if (cached != null) {
+                return cached;
+            }
+            observed = generation;
+        }
+
+        Map<String, String> preferences = new LinkedHashMap<>(DEFAULTS);
+        for (UserPreference preference : userPreferenceRepository.findByUserId(userId)) {
+            preferences.put(preference.getKey(), preference.getValue());
+        }
+        Map<String, String> loaded = Collections.unmodifiableMap(preferences);
+        synchronized (cache) {
+            // Un salvataggio concorrente puo' aver invalidato la cache dopo la nostra lettura
+            if (generation == observed) {
+                cache.put(userId, loaded);
+            }
+        }
+        return loaded;
+    }
+
+    @Transactional(readOnly = true)
+    public String getPreference(Long userId, String key) {
+        return getPreferences(userId).get(key);
+    }
+
+    /**
+     * Preferenze on/off ("enabled"/"disabled", "true"/"false")
+     */
+    @Transactional(readOnly = true)
+    public boolean isEnabled(Long userId, String key) {
+        String value = getPreference(userId, key);
+        return "enabled".equalsIgnoreCase(value) || "true".equalsIgnoreCase(value);
+    }
+
+    /**
+     * Salva le preferenze indicate (upsert per chiave, le altre restano invariate)
+     */
+    public void updatePreferences(User user, Map<String, ?> preferences) {
+        Map<String, UserPreference> existing = new HashMap<>();
+        for (UserPreference preference : userPreferenceRepository.findByUserId(user.getId())) {
+            existing.put(preference.getKey(), preference);
+        }
+
+        for (Map.Entry<String, ?> entry : preferences.entrySet()) {
+            String key = normalizeKey(entry.getKey());
+            if (key == null) {
+                continue;
+            }
+            String value = normalizeValue(entry.getValue());
+
+            UserPreference preference = existing.get(key);
+            if (preference == null) {
+                preference = new UserPreference(user, key, value);
+                existing.put(key, preference);
+            } else if (!Objects.equals(preference.getValue(), value)) {
+                preference.setValue(value);
+                preference.setLastModified(LocalDateTime.now());
+            } else {
+                continue;
+            }
+            userPreferenceRepository.save(preference);
+        }
+
+        Long userId = user.getId();
+        evict(userId);
+        TransactionCallbacks.afterCommit(() -> evict(userId));
+    }
+
+    public void evict(Long userId) {
+        synchronized (cache) {
+            generation++;
+            cache.remove(userId);
+        }
+    }
+
+    /**
+     * Migrazione di un blocco di utenti con [Preferences]/[Avatar] ancora dentro profileInfo.
+     * Restituisce l'ultimo id elaborato, o null se non c'e' piu' nulla da migrare
+     */
+    public Long migrateEmbeddedChunk(Long afterId, int size) {
+        List<User> users = userRepository.findUsersWithEmbeddedProfileData(afterId, PageRequest.of(0, size));
+        if (users.isEmpty()) {
+            return null;
+        }
+
+        for (User user : users) {
+            String profileInfo = user.getProfileInfo();
+            StringBuilder remaining = new StringBuilder();
+            Map<String, String> embedded = new LinkedHashMap<>();
+            String avatar = null;
+
+            for (String line : profileInfo.split("\n")) {
+                String trimmed = line.trim();
+                if (trimmed.startsWith(PREFERENCES_MARKER)) {
+                    embedded.putAll(parseEmbeddedPreferences(trimmed.substring(PREFERENCES_MARKER.length())));
+                } else if (trimmed.startsWith(AVATAR_MARKER)) {
+                    avatar = trimmed.substring(AVATAR_MARKER.length()).trim();
+                } else {
+                    if (remaining.length() > 0) {
+                        remaining.append("\n");
+                    }
+                    remaining.append(line);
+                }
+            }
+
+            // Le righe gia' presenti in tabella hanno la precedenza sul vecchio formato
+            Map<String, String> missing = new LinkedHashMap<>();
+            Map<String, String> stored = new HashMap<>();
+            for (UserPreference preference : userPreferenceRepository.findByUserId(user.getId())) {
+                stored.put(preference.getKey(), preference.getValue());
+            }
+            embedded.forEach((key, value) -> {
+                if (!stored.containsKey(key)) {
+                    missing.put(key, value);
+                }
+            });
+            if (!missing.isEmpty()) {
+                updatePreferences(user, missing);
+            }
+
+            if (user.getAvatar() == null && avatar != null && !avatar.isEmpty()) {
+                user.setAvatar(avatar);
+            }
+            String cleaned = remaining.toString().trim();
+            user.setProfileInfo(cleaned.isEmpty() ? null : cleaned);
+            userRepository.save(user);
+        }
+        return users.get(users.size() - 1).getId();
+    }
+
+    /**
+     * Parsing del vecchio formato "chiave: valore; chiave: valore; "
+     */
+    static Map<String, String> parseEmbeddedPreferences(String serialized) {
+        Map<String, String> preferences = new LinkedHashMap<>();
+        for (String pair : serialized.split(";")) {
+            String[] keyValue = pair.split(":", 2);
+            if (keyValue.length == 2) {
+                String key = normalizeKey(keyValue[0]);
+                if (key != null) {
+                    preferences.put(key, normalizeValue(keyValue[1]));
+                }
+            }
+        }
+        return preferences;
+    }
+
+    private static String normalizeKey(String key) {
+        if (key == null || key.trim().isEmpty()) {
+            return null;
+        }
+        String trimmed = key.trim();
+        return trimmed.length() > MAX_KEY_LENGTH ? trimmed.substring(0, MAX_KEY_LENGTH) : trimmed;
+    }
+
+    private static String normalizeValue(Object value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.toString().trim();
+        return trimmed.length() > MAX_VALUE_LENGTH ? trimmed.substring(0, MAX_VALUE_LENGTH) : trimmed;
+    }
+}
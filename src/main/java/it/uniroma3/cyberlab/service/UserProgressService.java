@@ -1,12 +1,15 @@
 package it.uniroma3.cyberlab.service;
 
 import it.uniroma3.cyberlab.entity.UserProgress;
+import it.uniroma3.cyberlab.entity.UserStats;
 import it.uniroma3.cyberlab.entity.User;
 import it.uniroma3.cyberlab.entity.Lab;
 import it.uniroma3.cyberlab.repository.UserProgressRepository;
 import it.uniroma3.cyberlab.repository.LabRepository;
 import it.uniroma3.cyberlab.repository.UserRepository;
+import it.uniroma3.cyberlab.util.GroupedCounts;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -14,7 +17,9 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,6 +34,15 @@ public class UserProgressService {
     
     @Autowired
     private UserRepository userRepository;
+    
+    @Autowired
+    private UserStatsService userStatsService;
+    
+    @Autowired
+    private LabAnalyticsService labAnalyticsService;
+    
+    @Autowired
+    private BulkInsertService bulkInsertService;
 
     /**
      * Inizia un lab per l'utente
@@ -45,18 +59,50 @@ public class UserProgressService {
         Optional<UserProgress> existing = userProgressRepository.findByUserAndLab(user, lab);
         if (existing.isPresent()) {
             UserProgress progress = existing.get();
+            UserStatsService.ProgressState before = UserStatsService.capture(progress);
             if (progress.isNotStarted()) {
                 progress.startLab();
-                userProgressRepository.save(progress);
             }
             progress.setLastAccessed(LocalDateTime.now());
-            return userProgressRepository.save(progress);
+            UserProgress saved = userProgressRepository.save(progress);
+            progressChanged(user.getId(), before, saved);
+            return saved;
         }
         
         // Crea nuovo progresso
         UserProgress newProgress = new UserProgress(user, lab);
         newProgress.startLab();
-        return userProgressRepository.save(newProgress);
+        UserProgress saved = userProgressRepository.save(newProgress);
+        progressChanged(user.getId(), UserStatsService.ProgressState.NONE, saved);
+        return saved;
+    }
+
+    /**
+     * Inserimento in blocco (backfill, import): insert in batch JDBC, contatori dei completamenti con un UPDATE
+     * per lab, snapshot utente e statistiche dei lab coinvolti ricostruiti invece di un delta per progresso.
+     * Le coppie (utente, lab) devono essere nuove: un doppione fa fallire tutto l'inserimento (vincolo unico)
+     */
+    public int importProgress(List<UserProgress> progressList) {
+        Set<Long> userIds = new HashSet<>();
+        Set<Long> labIds = new HashSet<>();
+        Map<Long, Long> completionsByLab = new HashMap<>();
+        for (UserProgress progress : progressList) {
+            if (progress.getUser() == null || progress.getLab() == null) {
+                throw new IllegalArgumentException("Progress must have a user and a lab");
+            }
+            userIds.add(progress.getUser().getId());
+            labIds.add(progress.getLab().getId());
+            if (progress.isCompleted()) {
+                completionsByLab.merge(progress.getLab().getId(), 1L, Long::sum);
+            }
+        }
+        
+        int inserted = bulkInsertService.persistAll(progressList);
+        
+        completionsByLab.forEach(labRepository::adjustCompletionCount);
+        userStatsService.invalidate(userIds);
+        labAnalyticsService.invalidate(labIds);
+        return inserted;
     }
 
     /**
@@ -72,6 +118,7 @@ public class UserProgressService {
             throw new IllegalArgumentException("Completion percentage must be between 0 and 100");
         }
         
+        UserStatsService.ProgressState before = UserStatsService.capture(progress);
         progress.setCompletionPercentage(completionPercentage);
         progress.setLastAccessed(LocalDateTime.now());
         
@@ -93,7 +140,9 @@ public class UserProgressService {
             labRepository.save(lab);
         }
         
-        return userProgressRepository.save(progress);
+        UserProgress saved = userProgressRepository.save(progress);
+        progressChanged(saved.getUser().getId(), before, saved);
+        return saved;
     }
 
     /**
@@ -122,8 +171,11 @@ public class UserProgressService {
             throw new SecurityException("You can only abandon your own lab progress");
         }
         
+        UserStatsService.ProgressState before = UserStatsService.capture(progress);
         progress.abandonLab();
-        return userProgressRepository.save(progress);
+        UserProgress saved = userProgressRepository.save(progress);
+        progressChanged(user.getId(), before, saved);
+        return saved;
     }
 
     /**
@@ -142,9 +194,12 @@ public class UserProgressService {
             throw new RuntimeException("Lab is not in abandoned state");
         }
         
+        UserStatsService.ProgressState before = UserStatsService.capture(progress);
         progress.setStatus(UserProgress.ProgressStatus.IN_PROGRESS);
         progress.setLastAccessed(LocalDateTime.now());
-        return userProgressRepository.save(progress);
+        UserProgress saved = userProgressRepository.save(progress);
+        progressChanged(user.getId(), before, saved);
+        return saved;
     }
 
     /**
@@ -173,19 +228,19 @@ public class UserProgressService {
     }
 
     /**
-     * Trova lab completati dall'utente
+     * Trova lab completati dall'utente (al massimo LabService.MAX_LABS_PER_USER)
      */
     @Transactional(readOnly = true)
     public List<UserProgress> findCompletedLabs(User user) {
-        return userProgressRepository.findCompletedByUser(user);
+        return userProgressRepository.findCompletedByUser(user, PageRequest.of(0, LabService.MAX_LABS_PER_USER));
     }
 
     /**
-     * Trova lab in corso dell'utente
+     * Trova lab in corso dell'utente (al massimo LabService.MAX_LABS_PER_USER)
      */
     @Transactional(readOnly = true)
     public List<UserProgress> findInProgressLabs(User user) {
-        return userProgressRepository.findInProgressByUser(user);
+        return userProgressRepository.findInProgressByUser(user, PageRequest.of(0, LabService.MAX_LABS_PER_USER));
     }
 
     /**
@@ -209,16 +264,17 @@ public class UserProgressService {
      * Trova progressi per lab
      */
     @Transactional(readOnly = true)
-    public List<UserProgress> findProgressByLab(Lab lab) {
-        return userProgressRepository.findByLabOrderByCompletionPercentageDesc(lab);
+    public List<UserProgress> findProgressByLab(Lab lab, int limit) {
+        return userProgressRepository.findByLabOrderByCompletionPercentageDesc(lab, PageRequest.of(0, limit));
     }
 
     /**
      * Trova progressi completati per lab
      */
     @Transactional(readOnly = true)
-    public List<UserProgress> findCompletedProgressByLab(Lab lab) {
-        return userProgressRepository.findByLabAndStatus(lab, UserProgress.ProgressStatus.COMPLETED);
+    public List<UserProgress> findCompletedProgressByLab(Lab lab, int limit) {
+        return userProgressRepository.findByLabAndStatusOrderByCompletedDateDesc(lab,
+                UserProgress.ProgressStatus.COMPLETED, PageRequest.of(0, limit));
     }
 
     /**
@@ -235,21 +291,11 @@ public class UserProgressService {
      */
     @Transactional(readOnly = true)
     public UserProgressStatistics getUserStatistics(User user) {
-        long totalStarted = userProgressRepository.countDistinctLabsByUser(user);
-        long completed = userProgressRepository.countCompletedByUser(user);
-        long inProgress = userProgressRepository.countInProgressByUser(user);
-        long abandoned = userProgressRepository.findByUserAndStatus(user, UserProgress.ProgressStatus.ABANDONED).size();
-        long totalTimeSpent = getTotalTimeSpent(user);
+        UserStats snapshot = userStatsService.getStats(user.getId());
         
-        // Percentuale completamento media
-        List<UserProgress> allProgress = userProgressRepository.findByUser(user);
-        double averageCompletion = allProgress.stream()
-                .mapToInt(UserProgress::getCompletionPercentage)
-                .average()
-                .orElse(0.0);
-        
-        return new UserProgressStatistics(totalStarted, completed, inProgress, abandoned, 
-                                        totalTimeSpent, averageCompletion);
+        return new UserProgressStatistics(snapshot.getLabsStarted(), snapshot.getLabsCompleted(),
+                                        snapshot.getLabsInProgress(), snapshot.getLabsAbandoned(),
+                                        snapshot.getTotalTimeSpent(), snapshot.getAverageCompletion());
     }
 
     /**
@@ -257,17 +303,11 @@ public class UserProgressService {
      */
     @Transactional(readOnly = true)
     public LabProgressStatistics getLabStatistics(Lab lab) {
-        long totalUsers = userProgressRepository.countDistinctUsersByLab(lab);
-        long completions = userProgressRepository.countCompletedByLab(lab);
-        
-        Double avgTime = userProgressRepository.findAverageTimeSpentByLab(lab);
-        Double avgCompletion = userProgressRepository.findAverageCompletionByLab(lab);
+        LabAnalyticsService.LabAnalyticsSummary summary = labAnalyticsService.getSummary(lab.getId());
         
-        double completionRate = totalUsers > 0 ? (double) completions / totalUsers * 100 : 0;
-        
-        return new LabProgressStatistics(totalUsers, completions, completionRate,
-                                       avgTime != null ? avgTime.intValue() : 0,
-                                       avgCompletion != null ? avgCompletion.intValue() : 0);
+        return new LabProgressStatistics(summary.getTotalUsers(), summary.getCompletions(),
+                                       summary.getCompletionRate(), summary.getAverageTime(),
+                                       summary.getAverageCompletion());
     }
 
     /**
@@ -275,9 +315,8 @@ public class UserProgressService {
      */
     @Transactional(readOnly = true)
     public List<UserLeaderboard> getCompletionLeaderboard(int limit) {
-        List<Object[]> results = userProgressRepository.findUsersByCompletedLabsCount();
+        List<Object[]> results = userProgressRepository.findUsersByCompletedLabsCount(PageRequest.of(0, limit));
         return results.stream()
-                .limit(limit)
                 .map(result -> new UserLeaderboard((User) result[0], ((Number) result[1]).longValue()))
                 .collect(Collectors.toList());
     }
@@ -287,9 +326,8 @@ public class UserProgressService {
      */
     @Transactional(readOnly = true)
     public List<UserTimeLeaderboard> getTimeLeaderboard(int limit) {
-        List<Object[]> results = userProgressRepository.findUsersByTotalTimeSpent();
+        List<Object[]> results = userProgressRepository.findUsersByTotalTimeSpent(PageRequest.of(0, limit));
         return results.stream()
-                .limit(limit)
                 .map(result -> new UserTimeLeaderboard((User) result[0], ((Number) result[1]).longValue()))
                 .collect(Collectors.toList());
     }
@@ -307,8 +345,7 @@ public class UserProgressService {
      */
     @Transactional(readOnly = true)
     public List<UserProgress> getFastestCompletions(Lab lab, int limit) {
-        return userProgressRepository.findFastestCompletionsByLab(lab)
-                .stream().limit(limit).toList();
+        return labAnalyticsService.getFastestCompletions(lab.getId(), limit);
     }
 
     /**
@@ -337,6 +374,7 @@ public class UserProgressService {
             throw new SecurityException("You can only delete your own progress or be an admin");
         }
         
+        progressChanged(progress.getUser().getId(), UserStatsService.capture(progress), null);
         userProgressRepository.delete(progress);
     }
 
@@ -351,6 +389,7 @@ public class UserProgressService {
             throw new SecurityException("You can only reset your own lab progress");
         }
         
+        UserStatsService.ProgressState before = UserStatsService.capture(progress);
         progress.setCompletionPercentage(0);
         
         // CORREZIONE: gestisce sia Long che Integer per timeSpent
@@ -368,7 +407,9 @@ public class UserProgressService {
         progress.setCompletedDate(null);
         progress.setLastAccessed(LocalDateTime.now());
         
-        return userProgressRepository.save(progress);
+        UserProgress saved = userProgressRepository.save(progress);
+        progressChanged(user.getId(), before, saved);
+        return saved;
     }
 
     /**
@@ -377,37 +418,31 @@ public class UserProgressService {
     @Transactional(readOnly = true)
     public List<UserProgress> getRecentCompletions(int days, int limit) {
         LocalDateTime dateFrom = LocalDateTime.now().minusDays(days);
-        return userProgressRepository.findByCompletedDateAfter(dateFrom)
-                .stream().limit(limit).toList();
+        return userProgressRepository.findByCompletedDateAfterOrderByCompletedDateDesc(dateFrom, PageRequest.of(0, limit));
     }
 
     /**
-     * Statistiche globali progresso - VERSIONE CON FALLBACK
+     * Statistiche globali progresso: una query GROUP BY per gli stati, il totale e' la somma
      */
     @Transactional(readOnly = true)
     public GlobalProgressStatistics getGlobalStatistics() {
-        long totalProgress = userProgressRepository.count();
-        long totalCompleted;
-        long totalInProgress;
-        long totalAbandoned;
-        
-        try {
-            // Prova a usare i metodi con @Query
-            totalCompleted = userProgressRepository.countByStatus(UserProgress.ProgressStatus.COMPLETED);
-            totalInProgress = userProgressRepository.countByStatus(UserProgress.ProgressStatus.IN_PROGRESS);
-            totalAbandoned = userProgressRepository.countByStatus(UserProgress.ProgressStatus.ABANDONED);
-        } catch (Exception e) {
-            // Fallback: usa i metodi findByStatus esistenti
-            totalCompleted = userProgressRepository.findByStatus(UserProgress.ProgressStatus.COMPLETED).size();
-            totalInProgress = userProgressRepository.findByStatus(UserProgress.ProgressStatus.IN_PROGRESS).size();
-            totalAbandoned = userProgressRepository.findByStatus(UserProgress.ProgressStatus.ABANDONED).size();
-        }
+        Map<UserProgress.ProgressStatus, Long> counts = userProgressRepository.countPerStatus();
         
         LocalDateTime oneWeekAgo = LocalDateTime.now().minusWeeks(1);
-        long recentActivity = userProgressRepository.findByLastAccessedAfter(oneWeekAgo).size();
+        long recentActivity = userProgressRepository.countByLastAccessedAfter(oneWeekAgo);
         
-        return new GlobalProgressStatistics(totalProgress, totalCompleted, totalInProgress, 
-                                          totalAbandoned, recentActivity);
+        return new GlobalProgressStatistics(GroupedCounts.sum(counts),
+                                          counts.get(UserProgress.ProgressStatus.COMPLETED),
+                                          counts.get(UserProgress.ProgressStatus.IN_PROGRESS),
+                                          counts.get(UserProgress.ProgressStatus.ABANDONED), recentActivity);
+    }
+
+    /**
+     * Propaga la modifica di un progresso a snapshot utente e statistiche del lab
+     */
+    private void progressChanged(Long userId, UserStatsService.ProgressState before, UserProgress after) {
+        userStatsService.onProgressChanged(userId, before, after);
+        labAnalyticsService.onProgressChanged(before, after);
     }
 
     // =============================================================================
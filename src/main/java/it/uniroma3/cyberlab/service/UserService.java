@@ -1,12 +1,18 @@
 package it.uniroma3.cyberlab.service;
 
+import it.uniroma3.cyberlab.entity.BackgroundJob;
 import it.uniroma3.cyberlab.entity.User;
 import it.uniroma3.cyberlab.entity.UserProgress;
+import it.uniroma3.cyberlab.entity.UserStats;
 import it.uniroma3.cyberlab.repository.UserRepository;
 import it.uniroma3.cyberlab.repository.UserProgressRepository;
 import it.uniroma3.cyberlab.repository.PostRepository;
 import it.uniroma3.cyberlab.repository.CommentRepository;
+import it.uniroma3.cyberlab.security.TtlUserCache;
+import it.uniroma3.cyberlab.util.GroupedCounts;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -15,12 +21,14 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.Map;
-import java.util.HashMap;
 
 @Service
 @Transactional
 public class UserService {
 
+    // Risultati massimi della ricerca utenti (admin, tempo reale)
+    private static final int SEARCH_LIMIT = 50;
+
     @Autowired
     private UserRepository userRepository;
     
@@ -35,17 +43,40 @@ public class UserService {
     
     @Autowired
     private PasswordEncoder passwordEncoder;
+    
+    @Autowired
+    private AccountErasureService accountErasureService;
+    
+    @Autowired
+    private UserPreferenceService userPreferenceService;
+    
+    @Autowired
+    private UserStatsService userStatsService;
+    
+    @Autowired
+    private TtlUserCache userCache;
+    
+    @Autowired
+    private AvailabilityCheckService availabilityCheckService;
 
     /**
      * Crea nuovo utente con validazione
      */
     public User createUser(String username, String email, String password, String name, String surname) {
+        // Uno username con '@' sarebbe ambiguo con le email nel login per identificativo
+        if (username == null || username.indexOf('@') >= 0) {
+            throw new IllegalArgumentException("Username cannot contain '@'");
+        }
+        
         // Validazione duplicati
-        if (userRepository.existsByUsernameIgnoreCase(username)) {
+        if (userRepository.existsByUsernameNormalized(User.normalizeLoginIdentifier(username))) {
             throw new IllegalArgumentException("Username already exists");
         }
         
-        if (userRepository.existsByEmailIgnoreCase(email)) {
+        // Anche contro gli username con '@' registrati prima del controllo
+        String normalizedEmail = User.normalizeLoginIdentifier(email);
+        if (userRepository.existsByEmailNormalized(normalizedEmail)
+                || userRepository.existsByUsernameNormalized(normalizedEmail)) {
             throw new IllegalArgumentException("Email already exists");
         }
         
@@ -67,23 +98,23 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public Optional<User> findByUsernameOrEmail(String usernameOrEmail) {
-        return userRepository.findByUsernameOrEmail(usernameOrEmail, usernameOrEmail);
+        return userRepository.findByLoginIdentifier(usernameOrEmail);
     }
 
     /**
-     * Verifica disponibilità username
+     * Verifica disponibilità username (filtro di Bloom prima del database)
      */
     @Transactional(readOnly = true)
     public boolean isUsernameAvailable(String username) {
-        return !userRepository.existsByUsernameIgnoreCase(username);
+        return availabilityCheckService.isUsernameAvailable(username);
     }
 
     /**
-     * Verifica disponibilità email
+     * Verifica disponibilità email (filtro di Bloom prima del database)
      */
     @Transactional(readOnly = true)
     public boolean isEmailAvailable(String email) {
-        return !userRepository.existsByEmailIgnoreCase(email);
+        return availabilityCheckService.isEmailAvailable(email);
     }
 
     /**
@@ -120,6 +151,7 @@ public class UserService {
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
         
         user.setStatus(status);
+        userCache.removeUserFromCache(user.getUsername());
         return userRepository.save(user);
     }
 
@@ -135,9 +167,23 @@ public class UserService {
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
         
         user.setRole(User.Role.ADMIN);
+        userCache.removeUserFromCache(user.getUsername());
         return userRepository.save(user);
     }
 
+    /**
+     * Migrazione di un blocco di utenti senza username/email normalizzati.
+     * Restituisce l'ultimo id elaborato, o null se non c'e' piu' nulla da migrare
+     */
+    public Long fillLoginIdentifiersChunk(Long afterId, int size) {
+        List<Long> ids = userRepository.findIdsWithoutLoginIdentifiers(afterId, PageRequest.of(0, size));
+        if (ids.isEmpty()) {
+            return null;
+        }
+        userRepository.fillLoginIdentifiers(ids);
+        return ids.get(ids.size() - 1);
+    }
+
     /**
      * Statistiche utente
      */
@@ -145,28 +191,15 @@ public class UserService {
     public UserStatistics getUserStatistics(User user) {
         UserStatistics stats = new UserStatistics();
         
-        // Conteggi base
-        stats.setTotalPosts(postRepository.countByAuthor(user));
-        stats.setTotalComments(commentRepository.countByAuthor(user));
-        stats.setCompletedLabs(userProgressRepository.countCompletedByUser(user));
-        stats.setInProgressLabs(userProgressRepository.countInProgressByUser(user));
-        
-        // Tempo totale sui lab
-        Long totalTime = userProgressRepository.findTotalTimeSpentByUser(user);
-        stats.setTotalTimeSpent(totalTime != null ? totalTime : 0L);
-        
-        // Progresso lab
-        List<UserProgress> allProgress = userProgressRepository.findByUser(user);
-        stats.setTotalLabsStarted(allProgress.size());
-        
-        // Calcola percentuale completamento generale
-        if (!allProgress.isEmpty()) {
-            double avgCompletion = allProgress.stream()
-                    .mapToInt(UserProgress::getCompletionPercentage)
-                    .average()
-                    .orElse(0.0);
-            stats.setOverallProgress((int) avgCompletion);
-        }
+        // Snapshot incrementale: un solo lookup per chiave primaria
+        UserStats snapshot = userStatsService.getStats(user.getId());
+        stats.setTotalPosts(snapshot.getPostCount());
+        stats.setTotalComments(snapshot.getCommentCount());
+        stats.setCompletedLabs(snapshot.getLabsCompleted());
+        stats.setInProgressLabs(snapshot.getLabsInProgress());
+        stats.setTotalTimeSpent(snapshot.getTotalTimeSpent());
+        stats.setTotalLabsStarted(snapshot.getLabsStarted());
+        stats.setOverallProgress((int) snapshot.getAverageCompletion());
         
         return stats;
     }
@@ -176,14 +209,13 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public AdminStatistics getAdminStatistics() {
-        long totalUsers = userRepository.count();
-        long activeUsers = userRepository.countActiveUsers();
-        long bannedUsers = userRepository.countBannedUsers();
+        Map<User.UserStatus, Long> byStatus = userRepository.countPerStatus();
         
         LocalDateTime oneMonthAgo = LocalDateTime.now().minusMonths(1);
         long newUsersThisMonth = userRepository.countUsersJoinedAfter(oneMonthAgo);
         
-        return new AdminStatistics(totalUsers, activeUsers, bannedUsers, newUsersThisMonth);
+        return new AdminStatistics(GroupedCounts.sum(byStatus), byStatus.get(User.UserStatus.ACTIVE),
+                byStatus.get(User.UserStatus.BANNED), newUsersThisMonth);
     }
 
     /**
@@ -191,30 +223,20 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public List<User> findUsersWithFilters(String search, String status, int page, int size) {
-        List<User> users;
+        // Filtro e pagina nella query
+        PageRequest pageRequest = PageRequest.of(page, size, Sort.by("id"));
         
         if (search != null && !search.trim().isEmpty()) {
-            users = userRepository.searchUsers(search.trim());
+            return userRepository.searchUsers(search.trim(), PageRequest.of(page, size));
         } else if (!"all".equals(status)) {
             try {
                 User.UserStatus userStatus = User.UserStatus.valueOf(status.toUpperCase());
-                users = userRepository.findByStatus(userStatus);
+                return userRepository.findByStatus(userStatus, pageRequest).getContent();
             } catch (IllegalArgumentException e) {
-                users = userRepository.findAll();
+                return userRepository.findAll(pageRequest).getContent();
             }
-        } else {
-            users = userRepository.findAll();
-        }
-        
-        // Simulazione paginazione
-        int start = page * size;
-        int end = Math.min(start + size, users.size());
-        
-        if (start < users.size()) {
-            return users.subList(start, end);
-        } else {
-            return List.of();
         }
+        return userRepository.findAll(pageRequest).getContent();
     }
 
     /**
@@ -222,7 +244,7 @@ public class UserService {
      */
     @Transactional(readOnly = true)
     public List<User> searchUsers(String searchTerm) {
-        return userRepository.searchUsers(searchTerm);
+        return userRepository.searchUsers(searchTerm, PageRequest.of(0, SEARCH_LIMIT));
     }
 
     /**
@@ -255,16 +277,15 @@ public class UserService {
     @Transactional(readOnly = true)
     public List<User> findRecentActiveUsers(int limit) {
         LocalDateTime oneWeekAgo = LocalDateTime.now().minusWeeks(1);
-        List<User> users = userRepository.findNewActiveUsers(oneWeekAgo);
-        return users.stream().limit(limit).toList();
+        return userRepository.findNewActiveUsers(oneWeekAgo, PageRequest.of(0, limit));
     }
 
     /**
-     * Conta utenti per status
+     * Conta utenti per status (tutti gli stati in una query)
      */
     @Transactional(readOnly = true)
-    public long countUsersByStatus(User.UserStatus status) {
-        return userRepository.findByStatus(status).size();
+    public Map<User.UserStatus, Long> countUsersByStatus() {
+        return userRepository.countPerStatus();
     }
 
     /**
@@ -274,9 +295,10 @@ public class UserService {
     public AdminUserStatistics getAdminUserStatistics() {
         AdminUserStatistics stats = new AdminUserStatistics();
         
-        stats.setTotalUsers(userRepository.count());
-        stats.setActiveUsers(userRepository.countActiveUsers());
-        stats.setBannedUsers(userRepository.countBannedUsers());
+        Map<User.UserStatus, Long> byStatus = userRepository.countPerStatus();
+        stats.setTotalUsers(GroupedCounts.sum(byStatus));
+        stats.setActiveUsers(byStatus.get(User.UserStatus.ACTIVE));
+        stats.setBannedUsers(byStatus.get(User.UserStatus.BANNED));
         stats.setAdminUsers(userRepository.countByRole(User.Role.ADMIN));
         
         // Nuovi utenti ultimo mese
@@ -438,21 +460,17 @@ public class UserService {
   */
  @Transactional(readOnly = true)
  public boolean isEmailAvailableForUser(String email, Long userId) {
-     // Usa il metodo esistente existsByEmailIgnoreCase
-     if (!userRepository.existsByEmailIgnoreCase(email)) {
-         return true; // Email disponibile
-     }
-     
-     // Se email esiste, verifica se appartiene allo stesso utente
-     Optional<User> existingUser = userRepository.findByUsernameOrEmail(email, email);
-     return existingUser.isPresent() && existingUser.get().getId().equals(userId);
+     // Una sola ricerca sull'email normalizzata: libera oppure gia' dello stesso utente
+     Optional<User> existingUser = userRepository.findFirstByEmailNormalizedOrderByIdAsc(User.normalizeLoginIdentifier(email));
+     return existingUser.isEmpty() || existingUser.get().getId().equals(userId);
  }
 
  /**
   * Aggiorna solo email utente
   */
  public User updateUserEmail(User user, String newEmail) {
-     if (!isEmailAvailable(newEmail)) {
+     // Controllo definitivo su database (il filtro puo' non conoscere le email registrate su altri nodi)
+     if (userRepository.existsByEmailNormalized(User.normalizeLoginIdentifier(newEmail))) {
          throw new IllegalArgumentException("Email is already in use");
      }
      
@@ -461,60 +479,27 @@ public class UserService {
  }
 
  /**
-  * Aggiorna avatar utente (placeholder per upload)
+  * Aggiorna avatar utente
   */
  public User updateUserAvatar(User user, String avatarFileName) {
-     // In un sistema reale, salveresti il file e aggiorneresti il campo avatar
-     // Per ora, salviamo solo il nome del file nel profileInfo
-     String currentInfo = user.getProfileInfo();
-     String updatedInfo = (currentInfo != null ? currentInfo + "\n" : "") + 
-                         "[Avatar] " + avatarFileName;
-     user.setProfileInfo(updatedInfo);
+     user.setAvatar(avatarFileName);
      return userRepository.save(user);
  }
 
  /**
-  * Salva preferenze utente (versione semplificata)
+  * Salva preferenze utente (tabella user_preference)
   */
  public User updateUserPreferences(User user, Map<String, Object> preferences) {
-     // In un sistema reale, useresti una tabella UserPreferences separata
-     // Per ora, salviamo nel campo profileInfo
-     
-     StringBuilder prefString = new StringBuilder("[Preferences] ");
-     preferences.forEach((key, value) -> 
-         prefString.append(key).append(": ").append(value).append("; "));
-     
-     String currentInfo = user.getProfileInfo();
-     // Rimuovi vecchie preferenze se esistono
-     if (currentInfo != null && currentInfo.contains("[Preferences]")) {
-         currentInfo = currentInfo.replaceAll("\\[Preferences\\][^\\n]*", "").trim();
-     }
-     
-     String updatedInfo = (currentInfo != null && !currentInfo.isEmpty() ? currentInfo + "\n" : "") + 
-                         prefString.toString();
-     
-     user.setProfileInfo(updatedInfo);
-     return userRepository.save(user);
+     userPreferenceService.updatePreferences(user, preferences);
+     return user;
  }
 
  /**
-  * Elimina account utente (soft delete)
+  * Elimina account utente (anonimizzazione immediata + cancellazione in background)
   */
- public void deleteUserAccount(User user) {
-     // In un sistema reale, implementeresti una soft delete o hard delete
-     // con cleanup di tutti i dati correlati (posts, comments, progress, etc.)
-     
-     // Per ora, cambiamo solo lo status
-     user.setStatus(User.UserStatus.SUSPENDED);
-     user.setEmail("deleted_" + user.getId() + "@cyberlab.deleted");
-     user.setUsername("deleted_user_" + user.getId());
-     userRepository.save(user);
-     
-     // TODO: In un sistema reale dovresti anche:
-     // 1. Eliminare o anonimizzare posts e comments
-     // 2. Eliminare progress dei lab
-     // 3. Eliminare reports e segnalazioni
-     // 4. Notificare admin della cancellazione
+ public BackgroundJob deleteUserAccount(User user) {
+     // Dati personali rimossi subito, contenuti e progressi gestiti a blocchi in background
+     return accountErasureService.requestErasure(user.getId());
  }
 
  /**
@@ -553,42 +538,11 @@ public class UserService {
  }
 
  /**
-  * Ottieni preferenze utente dal profileInfo
+  * Ottieni preferenze utente (con default, dalla cache per utente)
   */
  @Transactional(readOnly = true)
  public Map<String, String> getUserPreferences(User user) {
-     Map<String, String> preferences = new HashMap<>();
-     
-     if (user.getProfileInfo() != null && user.getProfileInfo().contains("[Preferences]")) {
-         String prefLine = user.getProfileInfo();
-         int start = prefLine.indexOf("[Preferences]");
-         if (start != -1) {
-             String prefString = prefLine.substring(start + "[Preferences]".length());
-             int end = prefString.indexOf("\n");
-             if (end != -1) {
-                 prefString = prefString.substring(0, end);
-             }
-             
-             // Parse preferences string
-             String[] pairs = prefString.split(";");
-             for (String pair : pairs) {
-                 String[] keyValue = pair.split(":");
-                 if (keyValue.length == 2) {
-                     preferences.put(keyValue[0].trim(), keyValue[1].trim());
-                 }
-             }
-         }
-     }
-     
-     // Default values se non trovate
-     preferences.putIfAbsent("Email Notifications", "enabled");
-     preferences.putIfAbsent("Lab Completion Notifications", "enabled");
-     preferences.putIfAbsent("Weekly Digest", "disabled");
-     preferences.putIfAbsent("Theme", "dark");
-     preferences.putIfAbsent("Language", "en");
-     preferences.putIfAbsent("Timezone", "Europe/Rome");
-     
-     return preferences;
+     return userPreferenceService.getPreferences(user.getId());
  }
 
  /**
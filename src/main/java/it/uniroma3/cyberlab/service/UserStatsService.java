@@ -0,0 +1,245 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.UserProgress;
+import it.uniroma3.cyberlab.entity.UserProgress.ProgressStatus;
+import it.uniroma3.cyberlab.entity.UserStats;
+import it.uniroma3.cyberlab.repository.CommentRepository;
+import it.uniroma3.cyberlab.repository.PostRepository;
+import it.uniroma3.cyberlab.repository.UserProgressRepository;
+import it.uniroma3.cyberlab.repository.UserStatsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshot user_stats: i servizi che creano/eliminano post e commenti o cambiano un progresso
+ * applicano il delta; le pagine leggono la riga per chiave primaria.
+ * La prima lettura di un utente senza snapshot lo costruisce dai dati reali.
+ */
+@Service
+@Transactional
+public class UserStatsService {
+
+    @Autowired
+    private UserStatsRepository userStatsRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private UserProgressRepository userProgressRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * Snapshot dell'utente (costruito al primo accesso)
+     */
+    @Transactional(readOnly = true)
+    public UserStats getStats(Long userId) {
+        return userStatsRepository.findById(userId).orElseGet(() -> buildSnapshot(userId));
+    }
+
+    // =============================================================================
+    // DELTA
+    // =============================================================================
+
+    public void onPostCreated(Long authorId) {
+        userStatsRepository.adjustContent(authorId, 1, 0, LocalDateTime.now());
+    }
+
+    public void onPostDeleted(Long authorId) {
+        userStatsRepository.adjustContent(authorId, -1, 0, LocalDateTime.now());
+    }
+
+    public void onCommentCreated(Long authorId) {
+        userStatsRepository.adjustContent(authorId, 0, 1, LocalDateTime.now());
+    }
+
+    /**
+     * Commenti inseriti in blocco (autore -> numero): un UPDATE per autore
+     */
+    public void onCommentsCreated(Map<Long, Long> countsByAuthor) {
+        LocalDateTime now = LocalDateTime.now();
+        countsByAuthor.forEach((authorId, count) -> userStatsRepository.adjustContent(authorId, 0, count, now));
+    }
+
+    /**
+     * Commenti eliminati in blocco (righe [authorId, count]): un UPDATE per autore
+     */
+    public void onCommentsDeleted(List<Object[]> countsByAuthor) {
+        LocalDateTime now = LocalDateTime.now();
+        for (Object[] row : countsByAuthor) {
+            userStatsRepository.adjustContent((Long) row[0], 0, -((Long) row[1]), now);
+        }
+    }
+
+    /**
+     * Stato di un progresso prima della modifica (da passare a onProgressChanged); NONE per un progresso nuovo
+     */
+    public static ProgressState capture(UserProgress progress) {
+        if (progress == null) {
+            return ProgressState.NONE;
+        }
+        return new ProgressState(progress.getId(), progress.getLab() != null ? progress.getLab().getId() : null,
+                progress.getStatus(), valueOf(progress.getTimeSpent()), valueOf(progress.getCompletionPercentage()),
+                valueOf(progress.getAttemptsCount()));
+    }
+
+    /**
+     * Applica la differenza tra lo stato precedente e quello attuale (after null = progresso eliminato)
+     */
+    public void onProgressChanged(Long userId, ProgressState before, UserProgress after) {
+        ProgressState current = capture(after);
+
+        long started = current.count() - before.count();
+        long completed = current.count(ProgressStatus.COMPLETED) - before.count(ProgressStatus.COMPLETED);
+        long inProgress = current.count(ProgressStatus.IN_PROGRESS) - before.count(ProgressStatus.IN_PROGRESS);
+        long abandoned = current.count(ProgressStatus.ABANDONED) - before.count(ProgressStatus.ABANDONED);
+        long time = current.timeSpent - before.timeSpent;
+        long completion = current.completionPercentage - before.completionPercentage;
+
+        if (started == 0 && completed == 0 && inProgress == 0 && abandoned == 0 && time == 0 && completion == 0) {
+            return;
+        }
+        userStatsRepository.adjustProgress(userId, started, completed, inProgress, abandoned, time, completion,
+                LocalDateTime.now());
+    }
+
+    /**
+     * Snapshot da ricostruire (es. contenuti riassegnati in blocco)
+     */
+    public void invalidate(Collection<Long> userIds) {
+        userStatsRepository.deleteByUserIds(userIds);
+    }
+
+    /**
+     * Snapshot da ricostruire per chi ha progressi sul lab (da chiamare prima di eliminarlo)
+     */
+    public void invalidateForLab(Long labId) {
+        userStatsRepository.deleteByProgressOnLab(labId);
+    }
+
+    /**
+     * Riallinea tutti gli snapshot ai dati reali; ritorna il numero di righe corrette
+     */
+    public int reconcile() {
+        return userStatsRepository.reconcileAll(LocalDateTime.now());
+    }
+
+    // =============================================================================
+    // COSTRUZIONE SNAPSHOT
+    // =============================================================================
+
+    /**
+     * Calcolo completo in transazioni separate in scrittura (la lettura puo' essere su una replica read-only).
+     * Prima si crea la riga vuota, cosi' i delta concorrenti non vanno persi; poi, con la riga bloccata,
+     * si scrivono i conteggi reali: un delta confermato prima del lock e' gia' nei conteggi e viene sovrascritto,
+     * uno successivo si somma al risultato.
+     */
+    private UserStats buildSnapshot(Long userId) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!userStatsRepository.existsById(userId)) {
+                    userStatsRepository.save(new UserStats(userId));
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            // Creata nel frattempo da un'altra richiesta: i conteggi vengono comunque riscritti sotto lock
+        }
+
+        return transactionTemplate.execute(status -> {
+            UserStats stats = userStatsRepository.findByIdForUpdate(userId)
+                    .orElseThrow(() -> new IllegalStateException("User stats not found for user " + userId));
+            stats.setLabsStarted(0);
+            stats.setLabsCompleted(0);
+            stats.setLabsInProgress(0);
+            stats.setLabsAbandoned(0);
+            stats.setTotalTimeSpent(0);
+            stats.setCompletionSum(0);
+            stats.setPostCount(postRepository.countByAuthorId(userId));
+            stats.setCommentCount(commentRepository.countByAuthorId(userId));
+
+            for (Object[] row : userProgressRepository.aggregateByStatusForUser(userId)) {
+                ProgressStatus progressStatus = (ProgressStatus) row[0];
+                long count = ((Number) row[1]).longValue();
+                stats.setLabsStarted(stats.getLabsStarted() + count);
+                stats.setTotalTimeSpent(stats.getTotalTimeSpent() + ((Number) row[2]).longValue());
+                stats.setCompletionSum(stats.getCompletionSum() + ((Number) row[3]).longValue());
+                switch (progressStatus) {
+                    case COMPLETED -> stats.setLabsCompleted(count);
+                    case IN_PROGRESS -> stats.setLabsInProgress(count);
+                    case ABANDONED -> stats.setLabsAbandoned(count);
+                    default -> { }
+                }
+            }
+            stats.setLastUpdated(LocalDateTime.now());
+            return stats;
+        });
+    }
+
+    private static long valueOf(Integer value) {
+        return value != null ? value : 0L;
+    }
+
+    // =============================================================================
+    // DTO CLASSES
+    // =============================================================================
+
+    /**
+     * Stato di un progresso rilevante per le statistiche (utente e lab)
+     */
+    public static class ProgressState {
+        public static final ProgressState NONE = new ProgressState(null, null, null, 0, 0, 0);
+
+        private final Long progressId;
+        private final Long labId;
+        private final ProgressStatus status;
+        private final long timeSpent;
+        private final long completionPercentage;
+        private final long attemptsCount;
+
+        public ProgressState(Long progressId, Long labId, ProgressStatus status, long timeSpent,
+                             long completionPercentage, long attemptsCount) {
+            this.progressId = progressId;
+            this.labId = labId;
+            this.status = status;
+            this.timeSpent = timeSpent;
+            this.completionPercentage = completionPercentage;
+            this.attemptsCount = attemptsCount;
+        }
+
+        public Long getProgressId() { return progressId; }
+        public Long getLabId() { return labId; }
+        public ProgressStatus getStatus() { return status; }
+        public long getTimeSpent() { return timeSpent; }
+        public long getCompletionPercentage() { return completionPercentage; }
+        public long getAttemptsCount() { return attemptsCount; }
+
+        public boolean isNone() {
+            return this == NONE;
+        }
+
+        long count() {
+            return this == NONE ? 0 : 1;
+        }
+
+        long count(ProgressStatus target) {
+            return this != NONE && status == target ? 1 : 0;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package it.uniroma3.cyberlab.util;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conteggi per valore di un enum da una query GROUP BY (righe [valore, COUNT]).
+ * Ogni valore dell'enum e' presente nella mappa, a 0 se la query non lo restituisce.
+ */
+public final class GroupedCounts {
+
+    private GroupedCounts() {
+    }
+
+    public static <E extends Enum<E>> Map<E, Long> toEnumMap(Class<E> type, List<Object[]> rows) {
+        Map<E, Long> counts = new EnumMap<>(type);
+        for (E value : type.getEnumConstants()) {
+            counts.put(value, 0L);
+        }
+        for (Object[] row : rows) {
+            if (row[0] != null) {
+                counts.merge(type.cast(row[0]), ((Number) row[1]).longValue(), Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Somma dei conteggi dei valori indicati (tutti se nessuno e' indicato)
+     */
+    @SafeVarargs
+    public static <E extends Enum<E>> long sum(Map<E, Long> counts, E... values) {
+        if (values.length == 0) {
+            return counts.values().stream().mapToLong(Long::longValue).sum();
+        }
+        long total = 0;
+        for (E value : values) {
+            total += counts.getOrDefault(value, 0L);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,63 @@
+package it.uniroma3.cyberlab.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Token bucket per chiave (es. indirizzo del client): fino a capacity richieste di fila,
+ * poi refillPerSecond al secondo. I bucket pieni da tempo vengono scartati quando la mappa cresce.
+ */
+public final class RateLimiter {
+
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final double capacity;
+    private final double refillPerMillis;
+
+    public RateLimiter(int capacity, double refillPerSecond) {
+        this.capacity = capacity;
+        this.refillPerMillis = refillPerSecond / 1000.0;
+    }
+
+    /**
+     * Consuma un token per la chiave; false se il bucket e' vuoto (richiesta da rifiutare)
+     */
+    public boolean tryAcquire(String key) {
+        long now = System.currentTimeMillis();
+        if (buckets.size() > SWEEP_THRESHOLD) {
+            buckets.values().removeIf(bucket -> bucket.isFullAt(now));
+        }
+        return buckets.computeIfAbsent(key, k -> new Bucket(capacity, now)).tryAcquire(now);
+    }
+
+    private final class Bucket {
+
+        private double tokens;
+        private long updatedAt;
+
+        Bucket(double tokens, long updatedAt) {
+            this.tokens = tokens;
+            this.updatedAt = updatedAt;
+        }
+
+        synchronized boolean tryAcquire(long now) {
+            refill(now);
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        synchronized boolean isFullAt(long now) {
+            refill(now);
+            return tokens >= capacity;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(capacity, tokens + (now - updatedAt) * refillPerMillis);
+            updatedAt = now;
+        }
+    }
+}
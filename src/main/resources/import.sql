@@ -21,28 +21,26 @@ INSERT INTO users (id, username, password, role, name, surname, email, join_date
 -- Password: userP@sswOrd! (hash BCrypt generato)
 INSERT INTO users (id, username, password, role, name, surname, email, join_date, status) VALUES (2, 'alice_hacker', '$2a$10$1byHsAaEEwNXtIxqOE9aw.IgdyrRVwT8hMi9o1R1Vi0lO7LyNTs9S', 'USER', 'Alice', 'Security', 'alice@example.com', CURRENT_TIMESTAMP, 'ACTIVE');
 
--- Inserisce i laboratori, UN COMANDO PER OGNI LAB
-INSERT INTO lab (id, title, description, category_id, theory, exercise, difficulty, created_by, created_date) VALUES (1, 'XSS Basics', 'Introduction to Cross-Site Scripting attacks', 1, 'XSS allows attackers to inject malicious scripts into web applications...', 'Try to execute alert() in the vulnerable form below', 'BEGINNER', 1, CURRENT_TIMESTAMP);
-INSERT INTO lab (id, title, description, category_id, theory, exercise, difficulty, created_by, created_date) VALUES (2, 'SQL Injection Fundamentals', 'Basic SQL injection techniques', 2, 'SQL injection occurs when user input is not properly sanitized...', 'Bypass the login form using SQL injection', 'BEGINNER', 1, CURRENT_TIMESTAMP);
-INSERT INTO lab (id, title, description, category_id, theory, exercise, difficulty, created_by, created_date) VALUES (3, 'Path Traversal Attack', 'Directory traversal vulnerabilities', 3, 'Path traversal attacks allow access to files outside the web root...', 'Access /etc/passwd using directory traversal', 'INTERMEDIATE', 1, CURRENT_TIMESTAMP);
+-- Inserisce i laboratori, UN COMANDO PER OGNI LAB (teoria ed esercizio in lab_content)
+INSERT INTO lab_content (id, theory, exercise) VALUES (1, 'XSS allows attackers to inject malicious scripts into web applications...', 'Try to execute alert() in the vulnerable form below');
+INSERT INTO lab_content (id, theory, exercise) VALUES (2, 'SQL injection occurs when user input is not properly sanitized...', 'Bypass the login form using SQL injection');
+INSERT INTO lab_content (id, theory, exercise) VALUES (3, 'Path traversal attacks allow access to files outside the web root...', 'Access /etc/passwd using directory traversal');
+INSERT INTO lab (id, title, description, category_id, content_id, difficulty, created_by, created_date) VALUES (1, 'XSS Basics', 'Introduction to Cross-Site Scripting attacks', 1, 1, 'BEGINNER', 1, CURRENT_TIMESTAMP);
+INSERT INTO lab (id, title, description, category_id, content_id, difficulty, created_by, created_date) VALUES (2, 'SQL Injection Fundamentals', 'Basic SQL injection techniques', 2, 2, 'BEGINNER', 1, CURRENT_TIMESTAMP);
+INSERT INTO lab (id, title, description, category_id, content_id, difficulty, created_by, created_date) VALUES (3, 'Path Traversal Attack', 'Directory traversal vulnerabilities', 3, 3, 'INTERMEDIATE', 1, CURRENT_TIMESTAMP);
 
 -- Inserisce i post del forum, UN COMANDO PER OGNI POST
-INSERT INTO post (id, title, content, category_id, author_id, created_date, last_modified, post_type) VALUES (1, 'Advanced XSS Payload Collection', 'Here are some advanced XSS payloads I have collected from various CTFs and real-world scenarios...', 1, 2, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 'SCRIPT');
-INSERT INTO post (id, title, content, category_id, author_id, created_date, last_modified, post_type) VALUES (2, 'OSINT Tool: Sherlock', 'Great tool for username reconnaissance across social networks. Very useful for information gathering phase...', 6, 3, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 'TOOL');
-INSERT INTO post (id, title, content, category_id, author_id, created_date, last_modified, post_type) VALUES (3, 'PicoCTF 2023 Binary Exploitation Writeup', 'Step-by-step solution for the buffer overflow challenge from PicoCTF 2023...', 5, 4, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 'WRITEUP');
+INSERT INTO post_body (id, content) VALUES (1, 'Here are some advanced XSS payloads I have collected from various CTFs and real-world scenarios...');
+INSERT INTO post_body (id, content) VALUES (2, 'Great tool for username reconnaissance across social networks. Very useful for information gathering phase...');
+INSERT INTO post_body (id, content) VALUES (3, 'Step-by-step solution for the buffer overflow challenge from PicoCTF 2023...');
+INSERT INTO post (id, title, body_id, category_id, author_id, created_date, last_modified, post_type) VALUES (1, 'Advanced XSS Payload Collection', 1, 1, 2, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 'SCRIPT');
+INSERT INTO post (id, title, body_id, category_id, author_id, created_date, last_modified, post_type) VALUES (2, 'OSINT Tool: Sherlock', 2, 6, 3, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 'TOOL');
+INSERT INTO post (id, title, body_id, category_id, author_id, created_date, last_modified, post_type) VALUES (3, 'PicoCTF 2023 Binary Exploitation Writeup', 3, 5, 4, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP, 'WRITEUP');
 
 -- Inserisce i commenti, UN COMANDO PER OGNI COMMENTO
 INSERT INTO comment (id, content, post_id, author_id, created_date, is_reported, report_count) VALUES (1, 'Great collection! The DOM-based payloads are particularly useful for modern web applications.', 1, 3, CURRENT_TIMESTAMP, false, 0);
 INSERT INTO comment (id, content, post_id, author_id, created_date, is_reported, report_count) VALUES (2, 'Thanks for sharing this tool, works perfectly! Already found several accounts linked to my target.', 2, 2, CURRENT_TIMESTAMP, false, 0);
 INSERT INTO comment (id, content, post_id, author_id, created_date, is_reported, report_count) VALUES (3, 'Excellent writeup, very detailed explanation of the exploitation process.', 3, 2, CURRENT_TIMESTAMP, false, 0);
 
--- =========================================================================
--- ***** AGGIUNGI QUESTO BLOCCO ALLA FINE DELLO SCRIPT *****
--- Sincronizza i contatori degli ID per PostgreSQL dopo gli inserimenti manuali.
--- Questo comando dice al DB: "guarda l'ID più alto e fai partire il prossimo da lì".
-SELECT setval(pg_get_serial_sequence('category', 'id'), COALESCE(MAX(id), 1)) FROM category;
-SELECT setval(pg_get_serial_sequence('users', 'id'), COALESCE(MAX(id), 1)) FROM users;
-SELECT setval(pg_get_serial_sequence('lab', 'id'), COALESCE(MAX(id), 1)) FROM lab;
-SELECT setval(pg_get_serial_sequence('post', 'id'), COALESCE(MAX(id), 1)) FROM post;
-SELECT setval(pg_get_serial_sequence('comment', 'id'), COALESCE(MAX(id), 1)) FROM comment;
--- =========================================================================
\ No newline at end of file
+-- Gli id espliciti qui sopra non passano dalle sequenze: SequenceAlignmentMigration
+-- le porta oltre il MAX(id) di ogni tabella all'avvio.
@@ -280,6 +280,8 @@ async function checkUsernameAvailability(username) {
     
     try {
         const response = await fetch(`/check-username?username=${encodeURIComponent(username)}`);
+        // Troppi controlli ravvicinati (429): si riprova al prossimo tasto
+        if (!response.ok) return;
         const available = await response.json();
         
         const input = document.querySelector('input[name="username"]');
@@ -302,6 +304,8 @@ async function checkEmailAvailability(email) {
     
     try {
         const response = await fetch(`/check-email?email=${encodeURIComponent(email)}`);
+        // Troppi controlli ravvicinati (429): si riprova al prossimo tasto
+        if (!response.ok) return;
         const available = await response.json();
         
         const input = document.querySelector('input[name="email"]');
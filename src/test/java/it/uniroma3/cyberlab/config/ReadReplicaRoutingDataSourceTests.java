@@ -0,0 +1,141 @@
+package it.uniroma3.cyberlab.config;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Routing primario/repliche con due database H2 al posto di PostgreSQL
+ */
+class ReadReplicaRoutingDataSourceTests {
+
+	private ReadReplicaRoutingDataSource routing;
+	private JdbcTemplate jdbcTemplate;
+	private TransactionTemplate readWrite;
+	private TransactionTemplate readOnly;
+
+	@BeforeEach
+	void setUp() {
+		Map<String, DataSource> replicas = new LinkedHashMap<>();
+		replicas.put("replica-1", h2("replica", "replica"));
+		createRouting(replicas);
+	}
+
+	@AfterEach
+	void tearDown() {
+		RequestContextHolder.resetRequestAttributes();
+		routing.destroy();
+	}
+
+	@Test
+	void readOnlyTransactionsGoToReplica() {
+		assertEquals("replica", readOnly.execute(status -> currentDatabase()));
+		assertEquals("primary", readWrite.execute(status -> currentDatabase()));
+	}
+
+	@Test
+	void sessionStaysOnPrimaryAfterWrite() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.getSession(true);
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+		readWrite.executeWithoutResult(status -> jdbcTemplate.update("UPDATE marker SET name = name"));
+		assertEquals("primary", readOnly.execute(status -> currentDatabase()));
+
+		// Nuova richiesta della stessa sessione, ancora nella finestra read-your-writes
+		MockHttpServletRequest next = new MockHttpServletRequest();
+		next.setSession(request.getSession());
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(next));
+		assertEquals("primary", readOnly.execute(status -> currentDatabase()));
+
+		// Altra sessione: legge dalla replica
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+		assertEquals("replica", readOnly.execute(status -> currentDatabase()));
+	}
+
+	@Test
+	void readOnlyWorkInWriteTransactionDoesNotPin() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.getSession(true);
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+		// Transazione di scrittura che ha solo letto: la sessione continua a leggere dalla replica
+		assertEquals("primary", readWrite.execute(status -> currentDatabase()));
+		assertEquals("replica", readOnly.execute(status -> currentDatabase()));
+	}
+
+	@Test
+	void anonymousWriteDoesNotCreateSession() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+		readWrite.executeWithoutResult(status -> jdbcTemplate.update("UPDATE marker SET name = ?", "primary"));
+
+		// Richiesta corrente sul primario, ma nessuna sessione creata per ricordarlo
+		assertEquals("primary", readOnly.execute(status -> currentDatabase()));
+		assertNull(request.getSession(false));
+	}
+
+	@Test
+	void failsOverToPrimaryWhenReplicaIsDown() {
+		routing.destroy();
+		Map<String, DataSource> replicas = new LinkedHashMap<>();
+		replicas.put("broken", new SimpleDriverDataSource() {
+			@Override
+			protected java.sql.Connection getConnectionFromDriver(java.util.Properties props) throws SQLException {
+				throw new SQLException("replica offline");
+			}
+		});
+		createRouting(replicas);
+
+		assertEquals("primary", readOnly.execute(status -> currentDatabase()));
+		assertFalse(routing.isReplicaHealthy("broken"));
+		assertEquals("primary", readOnly.execute(status -> currentDatabase()));
+	}
+
+	private void createRouting(Map<String, DataSource> replicas) {
+		routing = new ReadReplicaRoutingDataSource(h2("primary", "primary"), replicas,
+				Duration.ofSeconds(5), Duration.ofSeconds(10), "", Duration.ZERO);
+		routing.afterPropertiesSet();
+
+		DataSource dataSource = new LazyConnectionDataSourceProxy(routing);
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		readWrite = new TransactionTemplate(transactionManager);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+	}
+
+	private String currentDatabase() {
+		return jdbcTemplate.queryForObject("SELECT name FROM marker", String.class);
+	}
+
+	private static DataSource h2(String database, String marker) {
+		JdbcDataSource dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1");
+		JdbcTemplate template = new JdbcTemplate(dataSource);
+		template.execute("CREATE TABLE IF NOT EXISTS marker (name VARCHAR(20))");
+		template.execute("DELETE FROM marker");
+		template.update("INSERT INTO marker (name) VALUES (?)", marker);
+		return dataSource;
+	}
+}
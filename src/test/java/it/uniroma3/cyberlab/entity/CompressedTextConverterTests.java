@@ -0,0 +1,38 @@
+package it.uniroma3.cyberlab.entity;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Formato dei testi compressi di lab_content
+ */
+class CompressedTextConverterTests {
+
+	private final CompressedTextConverter converter = new CompressedTextConverter();
+
+	@Test
+	void shortTextIsStoredAsIs() {
+		String text = "XSS allows attackers to inject malicious scripts...";
+		assertEquals(text, converter.convertToDatabaseColumn(text));
+		assertEquals(text, converter.convertToEntityAttribute(text));
+		assertNull(converter.convertToDatabaseColumn(null));
+		assertNull(converter.convertToEntityAttribute(null));
+	}
+
+	@Test
+	void longTextIsCompressedAndRestored() {
+		String text = "<p>Il <strong>Cross-Site Scripting</strong> è una vulnerabilità…</p>\n".repeat(200);
+		String stored = converter.convertToDatabaseColumn(text);
+		assertTrue(stored.length() < text.length() / 4, "Compressione insufficiente: " + stored.length());
+		assertEquals(text, converter.convertToEntityAttribute(stored));
+	}
+
+	@Test
+	void textStartingWithMarkerIsNotAmbiguous() {
+		String text = "\u0001not compressed";
+		assertEquals(text, converter.convertToEntityAttribute(converter.convertToDatabaseColumn(text)));
+	}
+}
@@ -0,0 +1,199 @@
+package it.uniroma3.cyberlab.repository;
+
+import it.uniroma3.cyberlab.entity.BackgroundJob;
+import it.uniroma3.cyberlab.entity.Comment;
+import it.uniroma3.cyberlab.entity.Post;
+import it.uniroma3.cyberlab.entity.RememberMeToken;
+import it.uniroma3.cyberlab.entity.Report;
+import it.uniroma3.cyberlab.entity.ReportCase;
+import it.uniroma3.cyberlab.entity.User;
+import it.uniroma3.cyberlab.entity.UserPreference;
+import it.uniroma3.cyberlab.entity.UserProgress;
+import it.uniroma3.cyberlab.entity.UserStats;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.type.filter.AssignableTypeFilter;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.Repository;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Architettura: i repository delle tabelle che crescono con gli utenti non espongono query
+ * che restituiscono liste senza limite. Una query a piu' righe deve ricevere un Pageable o un Limit,
+ * oppure usare First/Top nel nome; le eccezioni sono elencate qui sotto con il motivo.
+ * Un Pageable.unpaged() nel codice renderebbe di nuovo illimitata una query con Pageable: vietato nei sorgenti.
+ */
+class RepositoryQueryBoundsTests {
+
+	private static final Set<Class<?>> LARGE_TABLES = Set.of(Post.class, Comment.class, Report.class,
+			ReportCase.class, UserProgress.class, User.class, UserStats.class, UserPreference.class,
+			BackgroundJob.class, RememberMeToken.class);
+
+	private static final Pattern DERIVED_TOP = Pattern.compile("^(find|read|get|query|search|stream)(Distinct)?(First|Top)\\d*By.*");
+
+	private static final Map<String, String> ALLOWED = new HashMap<>();
+
+	static {
+		// Una riga per chiave primaria (proiezione Object[])
+		ALLOWED.put("PostRepository.findPageVersionById", "una riga per id");
+		ALLOWED.put("UserProgressRepository.findPageVersionByUserAndLab", "una riga per (utente, lab)");
+
+		// Caricamento completo voluto: ranking in memoria all'avvio (proiezione, non entita')
+		ALLOWED.put("PostRepository.findRankingSeeds", "seed del ranking hot all'avvio");
+
+		// Discussione di un post: mostrata per intero nella pagina del post
+		ALLOWED.put("CommentRepository.findTopLevelCommentsByPost", "commenti di un solo post");
+		ALLOWED.put("CommentRepository.findByParentComment", "risposte di un solo commento");
+		ALLOWED.put("CommentRepository.findSubtreeByDepth", "id del sotto-albero in eliminazione");
+		ALLOWED.put("CommentRepository.findThreadByDepth", "id dei commenti del post in eliminazione");
+
+		// Un progresso per lab del catalogo (vincolo user_id, lab_id)
+		ALLOWED.put("UserProgressRepository.findByUser", "progressi di un utente");
+		ALLOWED.put("UserProgressRepository.findByUserOrderByLastAccessedDesc", "progressi di un utente");
+		ALLOWED.put("UserProgressRepository.findByUserAndStatus", "progressi di un utente");
+		ALLOWED.put("UserProgressRepository.findRecentActivityByUser", "progressi di un utente");
+		ALLOWED.put("UserPreferenceRepository.findByUserId", "preferenze di un utente");
+
+		// Aggregati GROUP BY: una riga per valore dell'enum o per combinazione distinta
+		ALLOWED.put("ReportRepository.findReportCountByReason", "una riga per motivo");
+		ALLOWED.put("ReportRepository.groupCountsByStatus", "una riga per stato");
+		ALLOWED.put("ReportRepository.groupCountsByStatusForReporter", "una riga per stato");
+		ALLOWED.put("ReportCaseRepository.groupCountsByStatus", "una riga per stato");
+		ALLOWED.put("UserRepository.groupCountsByStatus", "una riga per stato");
+		ALLOWED.put("UserProgressRepository.groupCountsByStatus", "una riga per stato");
+		ALLOWED.put("PostRepository.groupCountsByPostType", "una riga per tipo");
+		ALLOWED.put("UserProgressRepository.aggregateByStatusForUser", "una riga per stato");
+		ALLOWED.put("UserProgressRepository.aggregateByLab", "istogrammi di un lab");
+		ALLOWED.put("CommentRepository.countByAuthorForPost", "autori dei commenti di un post");
+
+		// Lotti di id: il chiamante limita la dimensione del lotto
+		ALLOWED.put("ReportRepository.findCaseEntriesForIds", "lotto di segnalazioni");
+		ALLOWED.put("ReportRepository.countByPostForIds", "lotto di segnalazioni");
+		ALLOWED.put("ReportRepository.countByCommentForIds", "lotto di segnalazioni");
+		ALLOWED.put("ReportRepository.findReporterIdsForCase", "lotto di segnalazioni");
+		ALLOWED.put("UserProgressRepository.findLabIdsForIds", "lotto di progressi");
+		ALLOWED.put("UserProgressRepository.countCompletedByLabForIds", "lotto di progressi");
+
+		// Job ancora in coda o in esecuzione
+		ALLOWED.put("BackgroundJobRepository.findByJobTypeAndStatusIn", "job attivi di un tipo");
+
+		// Export dei dati personali: Stream con fetch size, il chiamante svuota il contesto a intervalli
+		ALLOWED.put("PostRepository.streamByAuthorForExport", "export in streaming");
+		ALLOWED.put("CommentRepository.streamByAuthorForExport", "export in streaming");
+		ALLOWED.put("UserProgressRepository.streamByUserForExport", "export in streaming");
+		ALLOWED.put("ReportRepository.streamByReporterForExport", "export in streaming");
+	}
+
+	@Test
+	void largeTableQueriesAreBounded() {
+		List<String> violations = new ArrayList<>();
+		for (Method method : largeTableQueryMethods()) {
+			String key = key(method);
+			if (isMultiRow(method) && !isBounded(method) && !ALLOWED.containsKey(key)) {
+				violations.add(key + " -> " + method.getGenericReturnType().getTypeName());
+			}
+		}
+		assertTrue(violations.isEmpty(), "Query senza limite su tabelle grandi (aggiungere Pageable/Limit/Top "
+				+ "o un'eccezione motivata): " + violations);
+	}
+
+	@Test
+	void allowlistHasNoStaleEntries() {
+		Set<String> unbounded = new TreeSet<>();
+		for (Method method : largeTableQueryMethods()) {
+			if (isMultiRow(method) && !isBounded(method)) {
+				unbounded.add(key(method));
+			}
+		}
+		List<String> stale = ALLOWED.keySet().stream().filter(key -> !unbounded.contains(key)).sorted().toList();
+		assertTrue(stale.isEmpty(), "Eccezioni non piu' necessarie: " + stale);
+	}
+
+	@Test
+	void sourcesNeverPassAnUnpagedPageable() throws IOException {
+		List<String> violations = new ArrayList<>();
+		try (Stream<Path> sources = Files.walk(Path.of("src/main/java"))) {
+			for (Path source : sources.filter(path -> path.toString().endsWith(".java")).toList()) {
+				List<String> lines = Files.readAllLines(source);
+				for (int i = 0; i < lines.size(); i++) {
+					if (lines.get(i).contains("Pageable.unpaged()")) {
+						violations.add(source.getFileName() + ":" + (i + 1));
+					}
+				}
+			}
+		}
+		assertTrue(violations.isEmpty(), "Pageable.unpaged() carica tutte le righe (passare un limite reale): "
+				+ violations);
+	}
+
+	private static List<Method> largeTableQueryMethods() {
+		List<Method> methods = new ArrayList<>();
+		for (Class<?> repository : repositories()) {
+			Class<?> domainType = ResolvableType.forClass(repository).as(Repository.class).resolveGeneric(0);
+			if (domainType == null || !LARGE_TABLES.contains(domainType)) {
+				continue;
+			}
+			for (Method method : repository.getDeclaredMethods()) {
+				if (!method.isSynthetic() && !method.isBridge()) {
+					methods.add(method);
+				}
+			}
+		}
+		assertFalse(methods.isEmpty(), "Nessun repository trovato");
+		return methods;
+	}
+
+	private static List<Class<?>> repositories() {
+		ClassPathScanningCandidateComponentProvider scanner = new ClassPathScanningCandidateComponentProvider(false) {
+			@Override
+			protected boolean isCandidateComponent(AnnotatedBeanDefinition beanDefinition) {
+				return beanDefinition.getMetadata().isInterface();
+			}
+		};
+		scanner.addIncludeFilter(new AssignableTypeFilter(Repository.class));
+
+		List<Class<?>> repositories = new ArrayList<>();
+		for (BeanDefinition candidate : scanner.findCandidateComponents(RepositoryQueryBoundsTests.class.getPackageName())) {
+			repositories.add(ClassUtils.resolveClassName(candidate.getBeanClassName(), null));
+		}
+		return repositories;
+	}
+
+	private static boolean isMultiRow(Method method) {
+		Class<?> type = method.getReturnType();
+		return Iterable.class.isAssignableFrom(type) || Stream.class.isAssignableFrom(type) || type.isArray();
+	}
+
+	private static boolean isBounded(Method method) {
+		for (Class<?> parameter : method.getParameterTypes()) {
+			if (Pageable.class.isAssignableFrom(parameter) || Limit.class.isAssignableFrom(parameter)) {
+				return true;
+			}
+		}
+		return DERIVED_TOP.matcher(method.getName()).matches();
+	}
+
+	private static String key(Method method) {
+		return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+	}
+}
@@ -0,0 +1,45 @@
+package it.uniroma3.cyberlab.security;
+
+import it.uniroma3.cyberlab.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.util.SerializationUtils;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CustomUserPrincipalTests {
+
+	@Test
+	void sessionContextHoldsOnlyTheSnapshot() {
+		User user = new User("alice_hacker", "alice@example.com", "$2a$10$hashedPasswordValue");
+		user.setId(42L);
+		user.setProfileInfo("x".repeat(5000));
+		CustomUserPrincipal principal = new CustomUserPrincipal(user);
+		UsernamePasswordAuthenticationToken authentication = UsernamePasswordAuthenticationToken.authenticated(
+				principal, null, principal.getAuthorities());
+		authentication.eraseCredentials();
+
+		byte[] bytes = SerializationUtils.serialize(new SecurityContextImpl(authentication));
+		String serialized = new String(bytes, StandardCharsets.ISO_8859_1);
+
+		// Niente entita' (bio, email, collezioni) ne' hash della password nella sessione condivisa
+		assertTrue(bytes.length < 2048, "Contesto serializzato: " + bytes.length + " byte");
+		assertFalse(serialized.contains("alice@example.com"));
+		assertFalse(serialized.contains("hashedPasswordValue"));
+
+		SecurityContextImpl restored = (SecurityContextImpl) SerializationUtils.deserialize(bytes);
+		CustomUserPrincipal restoredPrincipal = (CustomUserPrincipal) restored.getAuthentication().getPrincipal();
+		assertEquals(42L, restoredPrincipal.getId());
+		assertEquals("alice_hacker", restoredPrincipal.getUsername());
+		assertTrue(restoredPrincipal.isUser());
+		assertTrue(restoredPrincipal.isEnabled());
+		assertNull(restoredPrincipal.getPassword());
+		assertEquals(principal, restoredPrincipal);
+	}
+}
@@ -0,0 +1,169 @@
+package it.uniroma3.cyberlab.security;
+
+import it.uniroma3.cyberlab.entity.User;
+import it.uniroma3.cyberlab.repository.RememberMeTokenRepository;
+import it.uniroma3.cyberlab.repository.UserRepository;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.CachingUserDetailsService;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.web.authentication.rememberme.AbstractRememberMeServices;
+import org.springframework.security.web.authentication.rememberme.CookieTheftException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DataJpaTest
+@Import({RememberMeTokenService.class, CachingPersistentTokenRepository.class, TtlUserCache.class,
+		CustomUserDetailsService.class})
+class PersistentRememberMeServicesTests {
+
+	@Autowired
+	private CachingPersistentTokenRepository tokenRepository;
+
+	@Autowired
+	private RememberMeTokenRepository rememberMeTokenRepository;
+
+	@Autowired
+	private TtlUserCache userCache;
+
+	@Autowired
+	private RememberMeTokenService rememberMeTokenService;
+
+	@Autowired
+	private CustomUserDetailsService customUserDetailsService;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	private final AtomicInteger userLoads = new AtomicInteger();
+
+	private PersistentRememberMeServices services;
+
+	private CachingUserDetailsService userDetailsService;
+
+	@BeforeEach
+	void createServices() {
+		User user = new User("alice_hacker", "alice@example.com", "secret");
+		user.setId(2L);
+		userDetailsService = new CachingUserDetailsService(username -> {
+			userLoads.incrementAndGet();
+			return new CustomUserPrincipal(user);
+		});
+		userDetailsService.setUserCache(userCache);
+		services = new PersistentRememberMeServices("test-key", userDetailsService, tokenRepository);
+	}
+
+	@Test
+	void requestsRacingTheRotationAreAcceptedOnce() {
+		Cookie loginCookie = login();
+
+		// Prima richiesta senza sessione: token ruotato
+		MockHttpServletResponse first = new MockHttpServletResponse();
+		assertNotNull(services.autoLogin(request(loginCookie), first));
+		Cookie rotated = first.getCookie(AbstractRememberMeServices.SPRING_SECURITY_REMEMBER_ME_COOKIE_KEY);
+		assertNotEquals(loginCookie.getValue(), rotated.getValue());
+
+		// Richiesta partita in parallelo con il cookie vecchio: riceve il token corrente, nessuna nuova rotazione
+		MockHttpServletResponse parallel = new MockHttpServletResponse();
+		assertNotNull(services.autoLogin(request(loginCookie), parallel));
+		assertEquals(rotated.getValue(),
+				parallel.getCookie(AbstractRememberMeServices.SPRING_SECURITY_REMEMBER_ME_COOKIE_KEY).getValue());
+		assertEquals(1, rememberMeTokenRepository.count());
+
+		// Utente caricato una volta sola grazie alla cache
+		assertEquals(1, userLoads.get());
+	}
+
+	@Test
+	void staleCacheOnAnotherNodeDoesNotOverwriteTheRotation() {
+		Cookie loginCookie = login();
+		// Secondo nodo: stessa tabella, cache propria e vuota
+		CachingPersistentTokenRepository otherCache = new CachingPersistentTokenRepository();
+		ReflectionTestUtils.setField(otherCache, "delegate", rememberMeTokenService);
+		ReflectionTestUtils.setField(otherCache, "ttl", Duration.ofSeconds(30));
+		PersistentRememberMeServices otherNode = new PersistentRememberMeServices("test-key", userDetailsService, otherCache);
+
+		MockHttpServletResponse rotatedOnOtherNode = new MockHttpServletResponse();
+		assertNotNull(otherNode.autoLogin(request(loginCookie), rotatedOnOtherNode));
+		String rotated = rotatedOnOtherNode.getCookie(AbstractRememberMeServices.SPRING_SECURITY_REMEMBER_ME_COOKIE_KEY).getValue();
+
+		// Questo nodo ha ancora in cache il token del login: la rotazione fallisce e la richiesta riceve il token corrente
+		MockHttpServletResponse staleNode = new MockHttpServletResponse();
+		assertNotNull(services.autoLogin(request(loginCookie), staleNode));
+		assertEquals(rotated, staleNode.getCookie(AbstractRememberMeServices.SPRING_SECURITY_REMEMBER_ME_COOKIE_KEY).getValue());
+		assertEquals(tokenOf(rotated), rememberMeTokenRepository.findAll().get(0).getToken());
+	}
+
+	@Test
+	void unknownTokenForAKnownSeriesRemovesTheUserSeries() {
+		Cookie loginCookie = login();
+		String series = new String(Base64.getDecoder().decode(loginCookie.getValue())).split(":")[0];
+		Cookie forged = new Cookie(AbstractRememberMeServices.SPRING_SECURITY_REMEMBER_ME_COOKIE_KEY,
+				Base64.getEncoder().withoutPadding().encodeToString((series + ":forged").getBytes()));
+
+		assertThrows(CookieTheftException.class,
+				() -> services.autoLogin(request(forged), new MockHttpServletResponse()));
+		assertEquals(0, rememberMeTokenRepository.count());
+	}
+
+	@Test
+	void tokenOfAUsernameShapedLikeAnEmailLoadsItsOwnAccount() {
+		User victim = userRepository.save(new User("victim", "victim@example.com", "secret"));
+		User attacker = userRepository.save(new User("victim@example.com", "attacker@example.com", "secret"));
+		CachingUserDetailsService exactUsernames =
+				new CachingUserDetailsService(customUserDetailsService::loadUserByExactUsername);
+		PersistentRememberMeServices realUsers = new PersistentRememberMeServices("test-key", exactUsernames, tokenRepository);
+
+		// Il token conserva lo username dell'attaccante, uguale all'email della vittima
+		Cookie loginCookie = login(realUsers, attacker.getUsername());
+		Authentication authentication = realUsers.autoLogin(request(loginCookie), new MockHttpServletResponse());
+
+		CustomUserPrincipal principal = (CustomUserPrincipal) authentication.getPrincipal();
+		assertEquals(attacker.getId(), principal.getId());
+		assertNotEquals(victim.getId(), principal.getId());
+		UserDetails byIdentifier = customUserDetailsService.loadUserByUsername(attacker.getUsername());
+		assertEquals(victim.getId(), ((CustomUserPrincipal) byIdentifier).getId());
+	}
+
+	private Cookie login() {
+		return login(services, "alice_hacker");
+	}
+
+	private static Cookie login(PersistentRememberMeServices services, String username) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setParameter(AbstractRememberMeServices.DEFAULT_PARAMETER, "on");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		Authentication authentication = UsernamePasswordAuthenticationToken.authenticated(username, null, null);
+		services.loginSuccess(request, response, authentication);
+		return response.getCookie(AbstractRememberMeServices.SPRING_SECURITY_REMEMBER_ME_COOKIE_KEY);
+	}
+
+	private static String tokenOf(String cookieValue) {
+		String token = new String(Base64.getDecoder().decode(cookieValue)).split(":")[1];
+		return URLDecoder.decode(token, StandardCharsets.UTF_8);
+	}
+
+	private static MockHttpServletRequest request(Cookie cookie) {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setCookies(cookie);
+		return request;
+	}
+}
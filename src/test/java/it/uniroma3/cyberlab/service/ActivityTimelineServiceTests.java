@@ -0,0 +1,101 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.Category;
+import it.uniroma3.cyberlab.entity.Comment;
+import it.uniroma3.cyberlab.entity.Lab;
+import it.uniroma3.cyberlab.entity.Post;
+import it.uniroma3.cyberlab.entity.User;
+import it.uniroma3.cyberlab.entity.UserProgress;
+import it.uniroma3.cyberlab.service.ActivityTimelineService.ActivityItem;
+import it.uniroma3.cyberlab.service.ActivityTimelineService.ActivityType;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Slice;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cronologia UNION ALL sfogliata pagina per pagina: nessuna voce persa o ripetuta, anche con date uguali
+ */
+@DataJpaTest
+@Import(ActivityTimelineService.class)
+class ActivityTimelineServiceTests {
+
+	private static final int COMMENTS = 45;
+	private static final int PAGE_SIZE = 10;
+
+	@Autowired
+	private ActivityTimelineService activityTimelineService;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	private User user;
+
+	@BeforeEach
+	void createActivity() {
+		LocalDateTime base = LocalDateTime.of(2025, 1, 1, 12, 0);
+		user = new User("timeline_user", "timeline@example.com", "password");
+		Category category = new Category("Timeline", "Activity");
+		Post post = new Post("Timeline post", "Post content", user, category);
+		post.setCreatedDate(base);
+		entityManager.persist(user);
+		entityManager.persist(category);
+		entityManager.persist(post);
+
+		// Quattro commenti per minuto: date uguali a cavallo delle pagine
+		for (int i = 0; i < COMMENTS; i++) {
+			Comment comment = new Comment("Comment " + i, post, user);
+			comment.setCreatedDate(base.plusMinutes(1 + i / 4));
+			entityManager.persist(comment);
+		}
+
+		Lab lab = new Lab("Timeline lab", "Theory", "Exercise", category, user);
+		entityManager.persist(lab);
+		UserProgress progress = new UserProgress(user, lab);
+		progress.setStatus(UserProgress.ProgressStatus.COMPLETED);
+		progress.setCompletedDate(base.plusMinutes(5));
+		entityManager.persist(progress);
+
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	@Test
+	void pagesCoverEveryItemOnceInDateOrder() {
+		List<ActivityItem> all = new ArrayList<>();
+		int page = 0;
+		Slice<ActivityItem> slice;
+		do {
+			slice = activityTimelineService.getTimeline(user.getId(), page++, PAGE_SIZE);
+			all.addAll(slice.getContent());
+		} while (slice.hasNext());
+
+		assertEquals(COMMENTS + 2, all.size());
+		assertEquals(5, page);
+
+		Set<String> keys = new HashSet<>();
+		for (int i = 0; i < all.size(); i++) {
+			assertTrue(keys.add(all.get(i).getType() + ":" + all.get(i).getId()), "Voce ripetuta: " + all.get(i).getId());
+			if (i > 0) {
+				assertFalse(all.get(i).getOccurredAt().isAfter(all.get(i - 1).getOccurredAt()));
+			}
+		}
+
+		ActivityItem last = all.get(all.size() - 1);
+		assertEquals(ActivityType.POST, last.getType());
+		assertTrue(all.stream().anyMatch(item -> item.getType() == ActivityType.LAB && "COMPLETED".equals(item.getDetail())));
+	}
+}
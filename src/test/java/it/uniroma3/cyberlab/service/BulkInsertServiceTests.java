@@ -0,0 +1,73 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.Category;
+import it.uniroma3.cyberlab.entity.Comment;
+import it.uniroma3.cyberlab.entity.Post;
+import it.uniroma3.cyberlab.entity.User;
+import it.uniroma3.cyberlab.migration.SequenceAlignmentMigration;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Insert in batch JDBC con id da sequenza, su H2 al posto di PostgreSQL
+ */
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.jdbc.batch_size=50",
+		"spring.jpa.properties.hibernate.order_inserts=true",
+		"spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({BulkInsertService.class, SequenceAlignmentMigration.class})
+class BulkInsertServiceTests {
+
+	private static final int COMMENTS = 120;
+
+	@Autowired
+	private BulkInsertService bulkInsertService;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Test
+	void commentsAreInsertedInJdbcBatches() {
+		User author = new User("bulk_author", "bulk@example.com", "password");
+		author.setName("Bulk");
+		author.setSurname("Author");
+		Category category = new Category("Bulk", "Bulk insert");
+		Post post = new Post("Bulk post", "Bulk content", author, category);
+		entityManager.persist(author);
+		entityManager.persist(category);
+		entityManager.persist(post);
+		entityManager.flush();
+
+		List<Comment> comments = new ArrayList<>();
+		for (int i = 0; i < COMMENTS; i++) {
+			comments.add(new Comment("Comment " + i, post, author));
+		}
+
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		assertEquals(COMMENTS, bulkInsertService.persistAll(comments));
+		assertEquals(COMMENTS, statistics.getEntityInsertCount());
+		assertTrue(comments.stream().allMatch(comment -> comment.getId() != null));
+
+		// Con IDENTITY sarebbe uno statement per riga; con la sequenza uno per batch piu' i nextval dei blocchi
+		long statements = statistics.getPrepareStatementCount();
+		assertTrue(statements <= 10, "Statement preparati per " + COMMENTS + " insert: " + statements);
+	}
+}
@@ -0,0 +1,202 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.Category;
+import it.uniroma3.cyberlab.entity.Comment;
+import it.uniroma3.cyberlab.entity.Post;
+import it.uniroma3.cyberlab.entity.Report;
+import it.uniroma3.cyberlab.entity.ReportCase;
+import it.uniroma3.cyberlab.entity.ReportCase.TargetType;
+import it.uniroma3.cyberlab.entity.User;
+import it.uniroma3.cyberlab.repository.CommentRepository;
+import it.uniroma3.cyberlab.repository.PostRepository;
+import it.uniroma3.cyberlab.repository.ReportCaseRepository;
+import it.uniroma3.cyberlab.repository.ReportRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Eliminazione set-based di una discussione da 5.000 commenti, su H2 al posto di PostgreSQL
+ */
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.jdbc.batch_size=50",
+		"spring.jpa.properties.hibernate.order_inserts=true",
+		"spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({ContentDeletionService.class, ReportService.class, BulkInsertService.class})
+class ContentDeletionServiceTests {
+
+	private static final int THREAD_SIZE = 5000;
+
+	@MockBean
+	private UserStatsService userStatsService;
+
+	@MockBean
+	private TagService tagService;
+
+	@MockBean
+	private PostRankingService postRankingService;
+
+	@MockBean
+	private ContentVersionService contentVersionService;
+
+	@Autowired
+	private ContentDeletionService contentDeletionService;
+
+	@Autowired
+	private BulkInsertService bulkInsertService;
+
+	@Autowired
+	private PostRepository postRepository;
+
+	@Autowired
+	private CommentRepository commentRepository;
+
+	@Autowired
+	private ReportRepository reportRepository;
+
+	@Autowired
+	private ReportCaseRepository reportCaseRepository;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private User author;
+	private Post post;
+	private Comment root;
+	private Comment sibling;
+	private ReportCase rootCase;
+	private ReportCase siblingCase;
+	private ReportCase postCase;
+
+	@BeforeEach
+	void createThread() {
+		author = new User("thread_author", "thread@example.com", "password");
+		author.setName("Thread");
+		author.setSurname("Author");
+		Category category = new Category("Threads", "Deletion");
+		post = new Post("Long thread", "Thread content", author, category);
+		entityManager.persist(author);
+		entityManager.persist(category);
+		entityManager.persist(post);
+
+		// Albero ternario sotto root (profondita' ~8) piu' un commento fratello con una risposta
+		List<Comment> thread = new ArrayList<>();
+		root = new Comment("Root", post, author);
+		thread.add(root);
+		for (int i = 1; i < THREAD_SIZE; i++) {
+			thread.add(new Comment("Reply " + i, post, author, thread.get((i - 1) / 3)));
+		}
+		sibling = new Comment("Sibling", post, author);
+		List<Comment> comments = new ArrayList<>(thread);
+		comments.add(sibling);
+		comments.add(new Comment("Sibling reply", post, author, sibling));
+		bulkInsertService.persistAll(comments);
+
+		// Casi aperti sulla radice, sul commento fratello e sul post
+		rootCase = openCase(TargetType.COMMENT, root.getId());
+		siblingCase = openCase(TargetType.COMMENT, sibling.getId());
+		postCase = openCase(TargetType.POST, post.getId());
+
+		List<Report> reports = new ArrayList<>();
+		for (int i = 0; i < THREAD_SIZE; i += 500) {
+			reports.add(new Report(thread.get(i), author, Report.ReportReason.SPAM));
+		}
+		reports.get(0).setReportCase(rootCase);
+		Report siblingReport = new Report(sibling, author, Report.ReportReason.SPAM);
+		siblingReport.setReportCase(siblingCase);
+		reports.add(siblingReport);
+		Report postReport = new Report(post, author, Report.ReportReason.SPAM);
+		postReport.setReportCase(postCase);
+		reports.add(postReport);
+		bulkInsertService.persistAll(reports);
+
+		postRepository.adjustCommentCount(post.getId(), THREAD_SIZE + 2);
+		entityManager.clear();
+	}
+
+	@Test
+	void commentSubtreeIsDeletedWithFewStatements() {
+		Comment comment = commentRepository.findById(root.getId()).orElseThrow();
+		Statistics statistics = statistics();
+
+		assertEquals(THREAD_SIZE, contentDeletionService.deleteComment(comment));
+		entityManager.flush();
+		entityManager.clear();
+
+		// Sotto-albero (1), chiusura casi e DELETE segnalazioni a blocchi da 1000 (5 + 5), DELETE per livello
+		// (9 livelli, i due piu' grandi a blocchi: 12), UPDATE comment_count (1): nessun caricamento per riga
+		assertTrue(statistics.getPrepareStatementCount() <= 24, "Statement: " + statistics.getPrepareStatementCount());
+		assertEquals(0, statistics.getEntityLoadCount());
+
+		assertEquals(2, commentRepository.count());
+		assertEquals(2, reportRepository.count());
+		assertEquals(2, postRepository.findById(post.getId()).orElseThrow().getCommentCount());
+		assertTrue(commentRepository.existsById(sibling.getId()));
+	}
+
+	@Test
+	void openCasesOfDeletedCommentsAreClosed() {
+		contentDeletionService.deleteComment(commentRepository.findById(root.getId()).orElseThrow());
+		entityManager.flush();
+		entityManager.clear();
+
+		ReportCase closed = reportCaseRepository.findById(rootCase.getId()).orElseThrow();
+		assertEquals(Report.ReportStatus.RESOLVED, closed.getStatus());
+		assertEquals(0, closed.getOpenReports());
+		assertNotNull(closed.getResolvedDate());
+		assertEquals(Report.ReportStatus.PENDING, reportCaseRepository.findById(siblingCase.getId()).orElseThrow().getStatus());
+		assertEquals(Report.ReportStatus.PENDING, reportCaseRepository.findById(postCase.getId()).orElseThrow().getStatus());
+	}
+
+	@Test
+	void postIsDeletedWithItsThread() {
+		Post loaded = postRepository.findById(post.getId()).orElseThrow();
+		Statistics statistics = statistics();
+
+		assertEquals(THREAD_SIZE + 2, contentDeletionService.deletePost(loaded));
+		entityManager.flush();
+		entityManager.clear();
+
+		assertEquals(0, statistics.getCollectionLoadCount());
+		assertFalse(postRepository.existsById(post.getId()));
+		assertEquals(0, commentRepository.count());
+		assertEquals(0, reportRepository.count());
+		for (ReportCase reportCase : reportCaseRepository.findAllById(List.of(rootCase.getId(), siblingCase.getId(), postCase.getId()))) {
+			assertEquals(Report.ReportStatus.RESOLVED, reportCase.getStatus());
+			assertEquals(0, reportCase.getOpenReports());
+		}
+	}
+
+	private ReportCase openCase(TargetType targetType, Long targetId) {
+		ReportCase reportCase = new ReportCase(targetType, targetId);
+		reportCase.addReport(Report.ReportReason.SPAM, LocalDateTime.now());
+		entityManager.persist(reportCase);
+		return reportCase;
+	}
+
+	private Statistics statistics() {
+		Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+		return statistics;
+	}
+}
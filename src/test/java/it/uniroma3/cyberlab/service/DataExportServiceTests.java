@@ -0,0 +1,213 @@
+package it.uniroma3.cyberlab.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.uniroma3.cyberlab.entity.Category;
+import it.uniroma3.cyberlab.entity.Comment;
+import it.uniroma3.cyberlab.entity.Lab;
+import it.uniroma3.cyberlab.entity.Post;
+import it.uniroma3.cyberlab.entity.Report;
+import it.uniroma3.cyberlab.entity.User;
+import it.uniroma3.cyberlab.entity.UserPreference;
+import it.uniroma3.cyberlab.entity.UserProgress;
+import it.uniroma3.cyberlab.service.DataExportService.Section;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Export dei dati personali su qualche centinaio di righe per sezione: quoting CSV, formule neutralizzate,
+ * voci dello ZIP, forma dell'NDJSON e contesto di persistenza svuotato durante lo streaming
+ */
+@DataJpaTest(properties = {
+		"spring.jpa.properties.hibernate.jdbc.batch_size=50",
+		"spring.jpa.properties.hibernate.order_inserts=true"
+})
+@Import({DataExportService.class, BulkInsertService.class, JacksonAutoConfiguration.class})
+class DataExportServiceTests {
+
+	private static final int POSTS = 300;
+	// Oltre l'intervallo di svuotamento del servizio (500 righe)
+	private static final int COMMENTS = 1200;
+	private static final int LABS = 200;
+	private static final int REPORTS = 300;
+	private static final int PREFERENCES = 200;
+
+	@Autowired
+	private DataExportService dataExportService;
+
+	@Autowired
+	private BulkInsertService bulkInsertService;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	private User user;
+
+	@BeforeEach
+	void createData() {
+		user = new User("export_user", "export@example.com", "password");
+		User other = new User("export_other", "other@example.com", "password");
+		Category category = new Category("Export", "Personal data");
+		entityManager.persist(user);
+		entityManager.persist(other);
+		entityManager.persist(category);
+
+		// I primi post hanno titoli da quotare o da neutralizzare nel foglio di calcolo
+		List<Post> posts = new ArrayList<>();
+		posts.add(new Post("Quote \"this\", please", "line one\nline two", user, category));
+		posts.add(new Post("=1+2", "Formula title", user, category));
+		posts.add(new Post("\tTabbed", "Leading tab", user, category));
+		posts.add(new Post("\rReturn", "Carriage return", user, category));
+		posts.add(new Post("@SUM(A1)", "Leading at sign", user, category));
+		while (posts.size() < POSTS) {
+			posts.add(new Post("Post " + posts.size(), "Post content " + posts.size(), user, category));
+		}
+		bulkInsertService.persistAll(posts);
+
+		List<Comment> comments = new ArrayList<>();
+		for (int i = 0; i < COMMENTS; i++) {
+			comments.add(new Comment("Comment " + i, posts.get(i % POSTS), user));
+		}
+		bulkInsertService.persistAll(comments);
+
+		List<Lab> labs = new ArrayList<>();
+		for (int i = 0; i < LABS; i++) {
+			labs.add(new Lab("Lab " + i, "Theory", "Exercise", category, other));
+		}
+		bulkInsertService.persistAll(labs);
+		List<UserProgress> progress = new ArrayList<>();
+		for (Lab lab : labs) {
+			progress.add(new UserProgress(user, lab));
+		}
+		bulkInsertService.persistAll(progress);
+
+		List<Report> reports = new ArrayList<>();
+		for (int i = 0; i < REPORTS; i++) {
+			reports.add(new Report(posts.get(i), user, Report.ReportReason.SPAM));
+		}
+		bulkInsertService.persistAll(reports);
+
+		List<UserPreference> preferences = new ArrayList<>();
+		for (int i = 0; i < PREFERENCES; i++) {
+			preferences.add(new UserPreference(user, "pref_" + i, "value," + i));
+		}
+		bulkInsertService.persistAll(preferences);
+	}
+
+	@Test
+	void csvQuotesFieldsAndNeutralizesFormulas() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		dataExportService.exportCsv(user.getId(), Section.POSTS, out);
+		List<String> lines = records(out.toString(StandardCharsets.UTF_8));
+
+		assertEquals(POSTS + 1, lines.size());
+		assertEquals("id,title,post_type,category,tags,created_date,last_modified,content", lines.get(0));
+		assertTrue(lines.get(1).contains(",\"Quote \"\"this\"\", please\","), lines.get(1));
+		assertTrue(lines.get(1).endsWith(",\"line one\nline two\""), lines.get(1));
+		assertTrue(lines.get(2).contains(",'=1+2,"), lines.get(2));
+		assertTrue(lines.get(3).contains(",'\tTabbed,"), lines.get(3));
+		assertTrue(lines.get(4).contains(",\"'\rReturn\","), lines.get(4));
+		assertTrue(lines.get(5).contains(",'@SUM(A1),"), lines.get(5));
+	}
+
+	@Test
+	void zipHasOneCsvPerSection() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		dataExportService.exportZip(user.getId(), out);
+
+		Map<Section, Integer> expected = expectedRows();
+		List<String> names = new ArrayList<>();
+		try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()), StandardCharsets.UTF_8)) {
+			ZipEntry entry;
+			while ((entry = zip.getNextEntry()) != null) {
+				names.add(entry.getName());
+				Section section = Section.valueOf(entry.getName().replace(".csv", "").toUpperCase());
+				List<String> lines = records(new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+				assertEquals(expected.get(section) + 1, lines.size(), entry.getName());
+			}
+		}
+		assertEquals(List.of("posts.csv", "comments.csv", "progress.csv", "reports.csv", "preferences.csv"), names);
+	}
+
+	@Test
+	void ndjsonHasOneObjectPerRowAndKeepsThePersistenceContextSmall() throws IOException {
+		Session session = entityManager.unwrap(Session.class);
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		int[] maxManaged = new int[1];
+		// Entita' gestite misurate a ogni riga scritta
+		OutputStream out = new OutputStream() {
+			@Override
+			public void write(int b) {
+				buffer.write(b);
+			}
+
+			@Override
+			public void write(byte[] bytes, int offset, int length) {
+				buffer.write(bytes, offset, length);
+				maxManaged[0] = Math.max(maxManaged[0], session.getStatistics().getEntityCount());
+			}
+		};
+		dataExportService.exportNdjson(user.getId(), null, out);
+
+		Map<Section, Integer> counts = new EnumMap<>(Section.class);
+		for (String line : buffer.toString(StandardCharsets.UTF_8).split("\n")) {
+			JsonNode record = objectMapper.readTree(line);
+			assertTrue(record.isObject(), line);
+			Iterator<String> fields = record.fieldNames();
+			assertEquals("section", fields.next());
+			Section section = Section.valueOf(record.get("section").asText().toUpperCase());
+			counts.merge(section, 1, Integer::sum);
+			if (section == Section.PREFERENCES) {
+				assertEquals(4, record.size());
+				assertTrue(record.get("value").asText().startsWith("value,"));
+			}
+		}
+		assertEquals(expectedRows(), counts);
+
+		// Al massimo un intervallo di svuotamento (500 righe, con le entita' collegate) resta gestito
+		assertTrue(maxManaged[0] <= 1000, "Entita' gestite: " + maxManaged[0]);
+		assertEquals(0, session.getStatistics().getEntityCount());
+	}
+
+	private static Map<Section, Integer> expectedRows() {
+		Map<Section, Integer> expected = new EnumMap<>(Section.class);
+		expected.put(Section.POSTS, POSTS);
+		expected.put(Section.COMMENTS, COMMENTS);
+		expected.put(Section.PROGRESS, LABS);
+		expected.put(Section.REPORTS, REPORTS);
+		expected.put(Section.PREFERENCES, PREFERENCES);
+		return expected;
+	}
+
+	// Record CSV separati da CRLF (i campi possono contenere solo LF)
+	private static List<String> records(String csv) {
+		List<String> lines = new ArrayList<>(List.of(csv.split("\r\n")));
+		assertTrue(csv.endsWith("\r\n"));
+		return lines;
+	}
+}
@@ -0,0 +1,63 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.Category;
+import it.uniroma3.cyberlab.entity.Lab;
+import it.uniroma3.cyberlab.entity.User;
+import it.uniroma3.cyberlab.entity.UserProgress;
+import it.uniroma3.cyberlab.entity.UserStats;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Eliminazione di un lab: i progressi spariscono in cascata e gli snapshot user_stats dei loro utenti
+ * vengono scartati (ricostruiti alla prossima lettura), quelli degli altri utenti restano
+ */
+@DataJpaTest
+@Import({LabService.class, UserStatsService.class, LabAnalyticsService.class})
+class LabServiceTests {
+
+	@Autowired
+	private LabService labService;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Test
+	void deletingALabDropsTheStatsOfItsLearners() {
+		User author = new User("lab_author", "author@example.com", "password");
+		User learner = new User("lab_learner", "learner@example.com", "password");
+		User other = new User("lab_other", "other@example.com", "password");
+		Category category = new Category("Labs", "Exercises");
+		entityManager.persist(author);
+		entityManager.persist(learner);
+		entityManager.persist(other);
+		entityManager.persist(category);
+
+		Lab deleted = new Lab("Deleted lab", "Theory", "Exercise", category, author);
+		Lab kept = new Lab("Kept lab", "Theory", "Exercise", category, author);
+		entityManager.persist(deleted);
+		entityManager.persist(kept);
+		entityManager.persist(new UserProgress(learner, deleted));
+		entityManager.persist(new UserProgress(other, kept));
+		entityManager.persist(new UserStats(learner.getId()));
+		entityManager.persist(new UserStats(other.getId()));
+		entityManager.flush();
+		entityManager.clear();
+
+		assertEquals("Deleted lab", labService.deleteLab(deleted.getId()));
+		entityManager.flush();
+		entityManager.clear();
+
+		assertNull(entityManager.find(UserStats.class, learner.getId()));
+		assertNotNull(entityManager.find(UserStats.class, other.getId()));
+		assertEquals(1L, entityManager.createQuery("SELECT COUNT(up) FROM UserProgress up", Long.class)
+				.getSingleResult());
+	}
+}
@@ -0,0 +1,70 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.Post;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostContentRendererTests {
+
+	private final PostContentRenderer renderer = new PostContentRenderer();
+
+	@Test
+	void userHtmlAndUnsafeLinksAreNotRendered() {
+		Post post = post("<script>alert(1)</script>\n\n[click](javascript:alert(1)) <img src=x onerror=alert(1)>");
+
+		renderer.render(post);
+
+		assertFalse(post.getContentHtml().contains("<script"));
+		assertFalse(post.getContentHtml().contains("<img"));
+		assertFalse(post.getContentHtml().contains("javascript:"));
+		assertTrue(post.getContentHtml().contains("&lt;script&gt;"));
+	}
+
+	@Test
+	void codeBlocksAreHighlightedAndEscaped() {
+		Post post = post("Payload:\n\n```python\n# test\nprint(\"<b>\") if True else None\n```\n");
+
+		renderer.render(post);
+
+		String html = post.getContentHtml();
+		assertTrue(html.contains("<code class=\"language-python\">"));
+		assertTrue(html.contains("<span class=\"tok-com\"># test</span>"));
+		assertTrue(html.contains("<span class=\"tok-str\">&quot;&lt;b&gt;&quot;</span>"));
+		assertTrue(html.contains("<span class=\"tok-kw\">if</span>"));
+	}
+
+	@Test
+	void excerptIsPlainTextAndBounded() {
+		Post post = post("# Titolo\n\nTesto **in grassetto** " + "parola ".repeat(100));
+
+		renderer.render(post);
+
+		assertTrue(post.getExcerpt().startsWith("Titolo Testo in grassetto parola"));
+		assertTrue(post.getExcerpt().length() <= PostContentRenderer.EXCERPT_LENGTH);
+		assertTrue(post.getExcerpt().endsWith("..."));
+	}
+
+	@Test
+	void unchangedContentIsNotRenderedAgain() {
+		Post post = post("Contenuto del post in **markdown**");
+		assertTrue(renderer.render(post));
+		String hash = post.getContentHash();
+
+		post.setContent("Contenuto del post in **markdown**");
+		assertFalse(renderer.render(post));
+
+		post.setContent("Contenuto modificato del post");
+		assertTrue(renderer.render(post));
+		assertFalse(hash.equals(post.getContentHash()));
+		assertEquals("Contenuto modificato del post", post.getExcerpt());
+	}
+
+	private static Post post(String content) {
+		Post post = new Post();
+		post.setContent(content);
+		return post;
+	}
+}
@@ -0,0 +1,83 @@
+package it.uniroma3.cyberlab.service;
+
+import it.uniroma3.cyberlab.entity.Category;
+import it.uniroma3.cyberlab.entity.Post;
+import it.uniroma3.cyberlab.entity.Report;
+import it.uniroma3.cyberlab.entity.ReportCase;
+import it.uniroma3.cyberlab.entity.User;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Blocco automatico dei post segnalati: un caso risolto e poi riaperto, se rifiutato, sblocca ancora il post
+ */
+@DataJpaTest(properties = {
+		"cyberlab.reports.auto-lock-threshold=2",
+		// Lock dei casi (FOR NO KEY UPDATE del dialetto PostgreSQL) non supportato da H2
+		"spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect"
+})
+@Import({ReportService.class, BulkInsertService.class})
+class ReportServiceTests {
+
+	@MockBean
+	private PostRankingService postRankingService;
+
+	@MockBean
+	private ContentVersionService contentVersionService;
+
+	@Autowired
+	private ReportService reportService;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Test
+	void dismissingAReopenedCaseUnlocksTheAutoLockedPost() {
+		User author = persist(new User("lock_author", "author@example.com", "password"));
+		User admin = new User("lock_admin", "admin@example.com", "password");
+		admin.setRole(User.Role.ADMIN);
+		persist(admin);
+		Category category = persist(new Category("Reports", "Moderation"));
+		Post post = persist(new Post("Reported post", "Reported content", author, category));
+		// Caso gia' presente: niente transazione separata per crearlo
+		ReportCase reportCase = persist(new ReportCase(ReportCase.TargetType.POST, post.getId()));
+		entityManager.flush();
+
+		report(post, "first");
+		report(post, "second");
+		assertTrue(reload(post).isLocked());
+
+		// Risolto senza sblocco, poi una nuova segnalazione lo riapre
+		reportService.resolveCase(reportCase.getId(), admin, "Reviewed");
+		report(post, "third");
+		assertTrue(reportService.findCaseById(reportCase.getId()).isAutoLocked());
+
+		reportService.dismissCase(reportCase.getId(), admin, "False alarm");
+		assertFalse(reload(post).isLocked());
+	}
+
+	private void report(Post post, String reporter) {
+		User user = persist(new User(reporter + "_reporter", reporter + "@example.com", "password"));
+		reportService.reportPost(post.getId(), user, Report.ReportReason.SPAM, null);
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	private Post reload(Post post) {
+		entityManager.flush();
+		entityManager.clear();
+		return entityManager.find(Post.class, post.getId());
+	}
+
+	private <T> T persist(T entity) {
+		entityManager.persist(entity);
+		return entity;
+	}
+}
@@ -0,0 +1,34 @@
+package it.uniroma3.cyberlab.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTests {
+
+	@Test
+	void insertedValuesAreAlwaysFound() {
+		BloomFilter filter = new BloomFilter(10_000, 0.01);
+		for (int i = 0; i < 10_000; i++) {
+			filter.put("user" + i + "@example.com");
+		}
+		for (int i = 0; i < 10_000; i++) {
+			assertTrue(filter.mightContain("user" + i + "@example.com"));
+		}
+	}
+
+	@Test
+	void falsePositiveRateStaysNearTheTarget() {
+		BloomFilter filter = new BloomFilter(10_000, 0.01);
+		for (int i = 0; i < 10_000; i++) {
+			filter.put("user" + i);
+		}
+		int falsePositives = 0;
+		for (int i = 0; i < 100_000; i++) {
+			if (filter.mightContain("other" + i)) {
+				falsePositives++;
+			}
+		}
+		assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+	}
+}